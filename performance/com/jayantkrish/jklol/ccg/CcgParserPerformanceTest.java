@@ -0,0 +1,139 @@
+package com.jayantkrish.jklol.ccg;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.jayantkrish.jklol.nlpannotation.AnnotatedSentence;
+import com.jayantkrish.jklol.testing.PerformanceTest;
+import com.jayantkrish.jklol.testing.PerformanceTestCase;
+import com.jayantkrish.jklol.testing.PerformanceTestRunner;
+import com.jayantkrish.jklol.training.NullLogFunction;
+
+/**
+ * Performance tests for beam search parsing with a synthetic grammar
+ * whose number of syntactic categories and binary rules approaches
+ * that of a grammar extracted from CCGbank: 1706 syntactic
+ * categories and 7110 search moves.
+ *
+ * @author jayantk
+ */
+public class CcgParserPerformanceTest extends PerformanceTestCase {
+
+  // Each atomic category combines with NUM_ARGUMENT_TYPES other
+  // atomic categories using forward and backward modifiers and
+  // transitive verbs.
+  private static final int NUM_ATOMIC_TYPES = 100;
+  private static final int NUM_ARGUMENT_TYPES = 5;
+  // The number of atomic categories with type-raising unary rules.
+  private static final int NUM_TYPE_RAISED_TYPES = 5;
+
+  private static final int NUM_SENTENCES = 100;
+  // Sentences consist of two phrases of this length and a verb.
+  private static final int PHRASE_LENGTH = 8;
+  private static final int BEAM_SIZE = 50;
+  private static final String POS = ParametricCcgParser.DEFAULT_POS_TAG;
+
+  private CcgParser parser;
+  private CcgParser cachedParser;
+  private List<AnnotatedSentence> sentences;
+
+  @Override
+  public void setUp() {
+    List<String> lexicon = Lists.newArrayList();
+    List<String> rules = Lists.newArrayList();
+    List<String> words = Lists.newArrayList();
+    for (int i = 0; i < NUM_ATOMIC_TYPES; i++) {
+      String noun = "noun" + i;
+      lexicon.add(noun + ",T" + i + "{0},,0 " + noun);
+      words.add(noun);
+      if (i < NUM_TYPE_RAISED_TYPES) {
+        rules.add("T" + i + "{0} (S{1}/(S{1}\\T" + i + "{0}){1}){1}");
+      }
+
+      for (int k = 1; k <= NUM_ARGUMENT_TYPES; k++) {
+        int j = (i + k) % NUM_ATOMIC_TYPES;
+        String suffix = i + "_" + j;
+        lexicon.add("fmod" + suffix + ",(T" + i + "{1}/T" + j + "{1}){0},,0 fmod" + suffix
+            + ",fmod" + suffix + " 1 1");
+        lexicon.add("bmod" + suffix + ",(T" + i + "{1}\\T" + j + "{1}){0},,0 bmod" + suffix
+            + ",bmod" + suffix + " 1 1");
+        lexicon.add("verb" + suffix + ",((S{0}\\T" + i + "{1}){0}/T" + j + "{2}){0},,0 verb"
+            + suffix + ",verb" + suffix + " 1 1,verb" + suffix + " 2 2");
+        words.add("fmod" + suffix);
+        words.add("bmod" + suffix);
+        words.add("verb" + suffix);
+      }
+    }
+
+    ParametricCcgParser family = ParametricCcgParser.parseFromLexicon(lexicon,
+        Collections.<String>emptyList(), rules,
+        new DefaultCcgFeatureFactory(false, false), Sets.newHashSet(POS), true, null, false);
+    parser = family.getModelFromParameters(family.getNewSufficientStatistics());
+    cachedParser = parser.withDependencyScoreCache(1 << 16);
+
+    Random random = new Random(0);
+    sentences = Lists.newArrayList();
+    for (int i = 0; i < NUM_SENTENCES; i++) {
+      // Generate a sentence with at least one parse, of the form
+      // "<phrase of type a> verb_a_b <phrase of type b>".
+      int subjectType = random.nextInt(NUM_ATOMIC_TYPES);
+      int objectType = (subjectType + 1 + random.nextInt(NUM_ARGUMENT_TYPES)) % NUM_ATOMIC_TYPES;
+      List<String> sentenceWords = Lists.newArrayList();
+      generatePhrase(subjectType, PHRASE_LENGTH, random, sentenceWords);
+      sentenceWords.add("verb" + subjectType + "_" + objectType);
+      generatePhrase(objectType, PHRASE_LENGTH, random, sentenceWords);
+      sentences.add(new AnnotatedSentence(sentenceWords,
+          Collections.nCopies(sentenceWords.size(), POS)));
+    }
+  }
+
+  /**
+   * Appends a phrase of {@code length} words with syntactic category
+   * {@code T<type>} to {@code words}. The phrase is a noun with
+   * randomly-chosen forward and backward modifiers.
+   */
+  private static void generatePhrase(int type, int length, Random random, List<String> words) {
+    if (length <= 1) {
+      words.add("noun" + type);
+      return;
+    }
+
+    int argType = (type + 1 + random.nextInt(NUM_ARGUMENT_TYPES)) % NUM_ATOMIC_TYPES;
+    if (random.nextBoolean()) {
+      words.add("fmod" + type + "_" + argType);
+      generatePhrase(argType, length - 1, random, words);
+    } else {
+      generatePhrase(argType, length - 1, random, words);
+      words.add("bmod" + type + "_" + argType);
+    }
+  }
+
+  @PerformanceTest(value = 5, warmup = 2)
+  public void testBeamSearch() {
+    for (AnnotatedSentence sentence : sentences) {
+      parser.beamSearch(sentence, BEAM_SIZE);
+    }
+  }
+
+  @PerformanceTest(value = 5, warmup = 2)
+  public void testBeamSearchDependencyScoreCache() {
+    for (AnnotatedSentence sentence : sentences) {
+      cachedParser.beamSearch(sentence, BEAM_SIZE);
+    }
+  }
+
+  @PerformanceTest(value = 5, warmup = 2)
+  public void testBeamSearchParallel() {
+    for (AnnotatedSentence sentence : sentences) {
+      parser.beamSearch(sentence, BEAM_SIZE, null, new NullLogFunction(), -1,
+          Integer.MAX_VALUE, 4);
+    }
+  }
+
+  public static void main(String[] args) {
+    PerformanceTestRunner.run(new CcgParserPerformanceTest());
+  }
+}
@@ -0,0 +1,123 @@
+package com.jayantkrish.jklol.parallel;
+
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+import com.jayantkrish.jklol.models.DiscreteVariable;
+import com.jayantkrish.jklol.models.VariableNumMap;
+import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
+import com.jayantkrish.jklol.models.parametric.TensorSufficientStatistics;
+import com.jayantkrish.jklol.parallel.LocalMapReduceExecutor.PoolType;
+import com.jayantkrish.jklol.testing.PerformanceTest;
+import com.jayantkrish.jklol.testing.PerformanceTestCase;
+import com.jayantkrish.jklol.testing.PerformanceTestRunner;
+import com.jayantkrish.jklol.training.GradientEvaluation;
+import com.jayantkrish.jklol.training.GradientOracle;
+import com.jayantkrish.jklol.training.GradientReducer;
+import com.jayantkrish.jklol.training.LogFunction;
+import com.jayantkrish.jklol.training.NullLogFunction;
+
+/**
+ * Performance tests for accumulating minibatch gradients with
+ * {@link GradientReducer}, using a dense parameter vector whose size is
+ * comparable to that of a CCG parser trained on CCGbank.
+ *
+ * @author jayantk
+ */
+public class LocalMapReduceExecutorPerformanceTest extends PerformanceTestCase {
+
+  private static final int NUM_PARAMETERS = 2000000;
+  private static final int NUM_FEATURES_PER_EXAMPLE = 200;
+  private static final int NUM_EXAMPLES = 256;
+  private static final int NUM_ITERATIONS = 10;
+
+  private static final int NUM_THREADS = 8;
+  private static final int BATCHES_PER_THREAD = 20;
+
+  private LocalMapReduceExecutor executor;
+  private LocalMapReduceExecutor threadLocalExecutor;
+  private GradientReducer<Object, int[]> reducer;
+  private List<int[]> examples;
+
+  @Override
+  public void setUp() {
+    executor = new LocalMapReduceExecutor(NUM_THREADS, BATCHES_PER_THREAD, PoolType.FIXED);
+    threadLocalExecutor = new LocalMapReduceExecutor(NUM_THREADS, BATCHES_PER_THREAD,
+        PoolType.FIXED, true);
+
+    final VariableNumMap parameterNames = VariableNumMap.singleton(0, "features",
+        DiscreteVariable.sequence("features", NUM_PARAMETERS));
+    GradientOracle<Object, int[]> oracle = new GradientOracle<Object, int[]>() {
+      @Override
+      public SufficientStatistics initializeGradient() {
+        return TensorSufficientStatistics.createDense(parameterNames);
+      }
+
+      @Override
+      public Object instantiateModel(SufficientStatistics parameters) {
+        return parameters;
+      }
+
+      @Override
+      public double accumulateGradient(SufficientStatistics gradient,
+          SufficientStatistics currentParameters, Object instantiatedModel, int[] example,
+          LogFunction log) {
+        TensorSufficientStatistics tensorGradient = (TensorSufficientStatistics) gradient;
+        for (int i = 0; i < example.length; i++) {
+          tensorGradient.incrementFeatureByIndex(1.0, example[i]);
+        }
+        return example.length;
+      }
+    };
+
+    SufficientStatistics parameters = oracle.initializeGradient();
+    reducer = new GradientReducer<Object, int[]>(parameters, parameters, oracle,
+        new NullLogFunction());
+
+    Random random = new Random(0);
+    examples = Lists.newArrayList();
+    for (int i = 0; i < NUM_EXAMPLES; i++) {
+      int[] features = new int[NUM_FEATURES_PER_EXAMPLE];
+      for (int j = 0; j < features.length; j++) {
+        features[j] = random.nextInt(NUM_PARAMETERS);
+      }
+      examples.add(features);
+    }
+  }
+
+  @Override
+  public void tearDown() {
+    executor.shutdown();
+    threadLocalExecutor.shutdown();
+  }
+
+  /**
+   * Accumulates gradients into one accumulator per thread.
+   */
+  @PerformanceTest(value = 3, warmup = 1)
+  public void testGradientThreadLocal() {
+    GradientEvaluation accumulator = reducer.getInitialValue();
+    for (int i = 0; i < NUM_ITERATIONS; i++) {
+      accumulator.zeroOut();
+      threadLocalExecutor.mapReduce(examples, Mappers.<int[]>identity(), reducer, accumulator);
+    }
+  }
+
+  /**
+   * Accumulates gradients into one accumulator per batch, which are
+   * combined in parallel.
+   */
+  @PerformanceTest(value = 3, warmup = 1)
+  public void testGradientPerBatch() {
+    GradientEvaluation accumulator = reducer.getInitialValue();
+    for (int i = 0; i < NUM_ITERATIONS; i++) {
+      accumulator.zeroOut();
+      executor.mapReduce(examples, Mappers.<int[]>identity(), reducer, accumulator);
+    }
+  }
+
+  public static void main(String[] args) {
+    PerformanceTestRunner.run(new LocalMapReduceExecutorPerformanceTest());
+  }
+}
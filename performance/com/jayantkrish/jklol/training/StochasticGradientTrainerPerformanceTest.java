@@ -0,0 +1,139 @@
+package com.jayantkrish.jklol.training;
+
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+import com.jayantkrish.jklol.models.DiscreteVariable;
+import com.jayantkrish.jklol.models.VariableNumMap;
+import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
+import com.jayantkrish.jklol.models.parametric.TensorSufficientStatistics;
+import com.jayantkrish.jklol.testing.PerformanceTest;
+import com.jayantkrish.jklol.testing.PerformanceTestCase;
+import com.jayantkrish.jklol.testing.PerformanceTestRunner;
+
+/**
+ * Performance tests for regularized stochastic gradient descent with
+ * sparse gradients. The time per iteration of eager regularization
+ * grows with the number of parameters, whereas the time of lazy
+ * regularization depends only on the number of nonzero gradient
+ * entries. Compare {@code testLazyL2} with {@code testLazyL2LargeModel},
+ * which has 10 times as many parameters; the difference between them
+ * is the one-time cost of allocating the decay timestamps and flushing
+ * the parameters at the end of training.
+ *
+ * @author jayantk
+ */
+public class StochasticGradientTrainerPerformanceTest extends PerformanceTestCase {
+
+  private static final int NUM_PARAMETERS = 2000000;
+  private static final int NUM_FEATURES_PER_EXAMPLE = 200;
+  private static final int NUM_EXAMPLES = 256;
+  private static final int NUM_ITERATIONS = 500;
+  private static final int BATCH_SIZE = 4;
+
+  private static final double L2_PENALTY = 0.01;
+
+  private final SparseFeatureOracle oracle = new SparseFeatureOracle(NUM_PARAMETERS);
+  private final SparseFeatureOracle largeOracle = new SparseFeatureOracle(NUM_PARAMETERS * 10);
+
+  private List<int[]> examples;
+  private SufficientStatistics parameters;
+  private SufficientStatistics largeParameters;
+
+  @Override
+  public void setUp() {
+    parameters = oracle.initializeParameters();
+    largeParameters = largeOracle.initializeParameters();
+
+    Random random = new Random(0);
+    examples = Lists.newArrayList();
+    for (int i = 0; i < NUM_EXAMPLES; i++) {
+      int[] features = new int[NUM_FEATURES_PER_EXAMPLE];
+      for (int j = 0; j < features.length; j++) {
+        features[j] = random.nextInt(NUM_PARAMETERS);
+      }
+      examples.add(features);
+    }
+  }
+
+  @PerformanceTest(value = 3, warmup = 1)
+  public void testEagerL2() {
+    train(StochasticGradientTrainer.createWithL2Regularization(NUM_ITERATIONS, BATCH_SIZE,
+        0.1, true, false, Double.MAX_VALUE, L2_PENALTY, null), oracle, parameters);
+  }
+
+  @PerformanceTest(value = 3, warmup = 1)
+  public void testLazyL2() {
+    train(StochasticGradientTrainer.createWithLazyL2Regularization(NUM_ITERATIONS, BATCH_SIZE,
+        0.1, true, false, Double.MAX_VALUE, L2_PENALTY, null), oracle, parameters);
+  }
+
+  @PerformanceTest(value = 3, warmup = 1)
+  public void testLazyL2LargeModel() {
+    train(StochasticGradientTrainer.createWithLazyL2Regularization(NUM_ITERATIONS, BATCH_SIZE,
+        0.1, true, false, Double.MAX_VALUE, L2_PENALTY, null), largeOracle, largeParameters);
+  }
+
+  @PerformanceTest(value = 3, warmup = 1)
+  public void testLazyL2Averaged() {
+    train(StochasticGradientTrainer.createWithLazyL2Regularization(NUM_ITERATIONS, BATCH_SIZE,
+        0.1, true, true, Double.MAX_VALUE, L2_PENALTY, null), oracle, parameters);
+  }
+
+  private void train(GradientOptimizer trainer, SparseFeatureOracle oracle,
+      SufficientStatistics initialParameters) {
+    trainer.train(oracle, initialParameters, examples);
+  }
+
+  /**
+   * Oracle for a linear model whose gradient on each example is the
+   * example's feature vector. Gradients are accumulated in sparse
+   * tensors.
+   */
+  private static class SparseFeatureOracle implements SparseGradientOracle<SufficientStatistics, int[]> {
+    private final VariableNumMap features;
+
+    public SparseFeatureOracle(int numFeatures) {
+      features = VariableNumMap.singleton(0, "features",
+          DiscreteVariable.sequence("features", numFeatures));
+    }
+
+    public SufficientStatistics initializeParameters() {
+      return TensorSufficientStatistics.createDense(features);
+    }
+
+    @Override
+    public SufficientStatistics initializeGradient() {
+      return TensorSufficientStatistics.createHashSparse(features);
+    }
+
+    @Override
+    public SufficientStatistics instantiateModel(SufficientStatistics parameters) {
+      return parameters;
+    }
+
+    @Override
+    public double accumulateGradient(SufficientStatistics gradient,
+        SufficientStatistics currentParameters, SufficientStatistics instantiatedModel,
+        int[] example, LogFunction log) {
+      TensorSufficientStatistics tensorGradient = (TensorSufficientStatistics) gradient;
+      for (int i = 0; i < example.length; i++) {
+        tensorGradient.incrementFeatureByIndex(1.0, example[i]);
+      }
+      return example.length;
+    }
+
+    @Override
+    public void accumulateUsedParameters(SufficientStatistics usedParameters, int[] example) {
+      TensorSufficientStatistics tensorUsedParameters = (TensorSufficientStatistics) usedParameters;
+      for (int i = 0; i < example.length; i++) {
+        tensorUsedParameters.incrementFeatureByIndex(1.0, example[i]);
+      }
+    }
+  }
+
+  public static void main(String[] args) {
+    PerformanceTestRunner.run(new StochasticGradientTrainerPerformanceTest());
+  }
+}
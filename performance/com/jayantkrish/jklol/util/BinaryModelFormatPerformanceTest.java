@@ -0,0 +1,61 @@
+package com.jayantkrish.jklol.util;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.jayantkrish.jklol.tensor.DenseTensor;
+import com.jayantkrish.jklol.tensor.SparseTensor;
+import com.jayantkrish.jklol.testing.PerformanceTest;
+import com.jayantkrish.jklol.testing.PerformanceTestCase;
+import com.jayantkrish.jklol.testing.PerformanceTestRunner;
+
+/**
+ * Compares the time required to load a model stored with Java
+ * serialization and with {@link BinaryModelFormat}.
+ * 
+ * @author jayantk
+ */
+public class BinaryModelFormatPerformanceTest extends PerformanceTestCase {
+
+  File serializedFile, binaryFile;
+
+  public void setUp() {
+    int numEntries = 10000000;
+    long[] keyNums = new long[numEntries];
+    double[] values = new double[numEntries];
+    for (int i = 0; i < numEntries; i++) {
+      keyNums[i] = 2 * i;
+      values[i] = i;
+    }
+    SparseTensor sparse = new SparseTensor(new int[] {0, 1}, new int[] {20000, 1000},
+        keyNums, values);
+    DenseTensor dense = new DenseTensor(new int[] {0, 1}, new int[] {1000, 1000},
+        new double[1000000]);
+    Object[] model = new Object[] {sparse, dense};
+
+    try {
+      serializedFile = File.createTempFile("model", ".ser");
+      serializedFile.deleteOnExit();
+      binaryFile = File.createTempFile("model", ".bin");
+      binaryFile.deleteOnExit();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    IoUtils.serializeObjectToFile(model, serializedFile.getPath());
+    IoUtils.serializeObjectToBinaryFile(model, binaryFile.getPath());
+  }
+
+  @PerformanceTest(5)
+  public void testReadSerialized() {
+    IoUtils.readSerializedObject(serializedFile.getPath(), Object[].class);
+  }
+
+  @PerformanceTest(5)
+  public void testReadBinary() {
+    IoUtils.readSerializedObject(binaryFile.getPath(), Object[].class);
+  }
+
+  public static void main(String[] args) {
+    PerformanceTestRunner.run(new BinaryModelFormatPerformanceTest());
+  }
+}
@@ -0,0 +1,112 @@
+package com.jayantkrish.jklol.util;
+
+import com.jayantkrish.jklol.tensor.DenseTensor;
+import com.jayantkrish.jklol.tensor.DenseTensorKernels;
+import com.jayantkrish.jklol.tensor.SparseTensor;
+import com.jayantkrish.jklol.testing.PerformanceTest;
+import com.jayantkrish.jklol.testing.PerformanceTestCase;
+import com.jayantkrish.jklol.testing.PerformanceTestRunner;
+
+/**
+ * Performance tests for {@link DenseTensorKernels} and the
+ * {@link DenseTensor} operations that use them, at the vector sizes
+ * used by CVSMs and linear classifiers.
+ * 
+ * @author jayantk
+ */
+public class DenseTensorKernelsPerformanceTest extends PerformanceTestCase {
+
+  private static final int NUM_REPETITIONS = 10000;
+
+  DenseTensor vector100, vector1k, vector10k, matrix1k;
+  
+  public void setUp() {
+    vector100 = DenseTensor.random(new int[] {0}, new int[] {100}, 0.0, 1.0);
+    vector1k = DenseTensor.random(new int[] {0}, new int[] {1000}, 0.0, 1.0);
+    vector10k = DenseTensor.random(new int[] {0}, new int[] {10000}, 0.0, 1.0);
+    matrix1k = DenseTensor.random(new int[] {0, 1}, new int[] {1000, 1000}, 0.0, 1.0);
+  }
+
+  @PerformanceTest(3)
+  public void testInnerProduct100() {
+    for (int i = 0; i < NUM_REPETITIONS * 100; i++) {
+      vector100.innerProduct(vector100);
+    }
+  }
+
+  @PerformanceTest(3)
+  public void testInnerProduct10k() {
+    for (int i = 0; i < NUM_REPETITIONS; i++) {
+      vector10k.innerProduct(vector10k);
+    }
+  }
+
+  @PerformanceTest(3)
+  public void testScalarDot10k() {
+    double[] values = vector10k.getValues();
+    for (int i = 0; i < NUM_REPETITIONS; i++) {
+      double sum = 0.0;
+      for (int j = 0; j < values.length; j++) {
+        sum += values[j] * values[j];
+      }
+    }
+  }
+
+  @PerformanceTest(3)
+  public void testKernelDot10k() {
+    double[] values = vector10k.getValues();
+    for (int i = 0; i < NUM_REPETITIONS; i++) {
+      DenseTensorKernels.dot(values, values);
+    }
+  }
+
+  @PerformanceTest(3)
+  public void testElementwiseProduct10k() {
+    for (int i = 0; i < NUM_REPETITIONS; i++) {
+      vector10k.elementwiseProduct(vector10k);
+    }
+  }
+
+  @PerformanceTest(3)
+  public void testElementwiseExp10k() {
+    for (int i = 0; i < NUM_REPETITIONS; i++) {
+      vector10k.elementwiseExp();
+    }
+  }
+
+  @PerformanceTest(3)
+  public void testMatrixVectorRight1k() {
+    for (int i = 0; i < 100; i++) {
+      matrix1k.innerProduct(vector1k.relabelDimensions(new int[] {1}));
+    }
+  }
+
+  @PerformanceTest(3)
+  public void testMatrixVectorLeft1k() {
+    for (int i = 0; i < 100; i++) {
+      matrix1k.innerProduct(vector1k);
+    }
+  }
+
+  @PerformanceTest(3)
+  public void testOuterProduct1k() {
+    for (int i = 0; i < 100; i++) {
+      vector1k.outerProduct(vector1k.relabelDimensions(new int[] {1}));
+    }
+  }
+
+  @PerformanceTest(3)
+  public void testMatrixMatrix1k() {
+    matrix1k.matrixInnerProduct(matrix1k.relabelDimensions(new int[] {1, 2}));
+  }
+
+  @PerformanceTest(3)
+  public void testSparseMatrixMatrix1k() {
+    SparseTensor sparse = SparseTensor.copyOf(matrix1k);
+    sparse.matrixInnerProduct(matrix1k.relabelDimensions(new int[] {1, 2}));
+  }
+
+  public static void main(String[] args) {
+    PerformanceTestRunner.run(new DenseTensorKernelsPerformanceTest());
+  }
+}
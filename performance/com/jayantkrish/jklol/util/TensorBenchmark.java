@@ -0,0 +1,178 @@
+package com.jayantkrish.jklol.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.jayantkrish.jklol.tensor.CachedSparseTensor;
+import com.jayantkrish.jklol.tensor.DenseTensorBuilder;
+import com.jayantkrish.jklol.tensor.LogSpaceTensorAdapter;
+import com.jayantkrish.jklol.tensor.SparseTensorBuilder;
+import com.jayantkrish.jklol.tensor.Tensor;
+import com.jayantkrish.jklol.tensor.TensorBuilder;
+import com.jayantkrish.jklol.tensor.TensorFactory;
+import com.jayantkrish.jklol.testing.PerformanceTest;
+import com.jayantkrish.jklol.testing.PerformanceTestCase;
+
+/**
+ * Performance tests for common tensor operations, parameterized by the
+ * tensor implementation, the size of each dimension, and the fraction
+ * of nonzero entries. {@link TensorBenchmarkSuite} runs these tests
+ * for a grid of parameter values.
+ *
+ * @author jayantk
+ */
+public class TensorBenchmark extends PerformanceTestCase {
+
+  /**
+   * The tensor implementations to benchmark.
+   */
+  public static enum TensorType {
+    SPARSE, DENSE, CACHED_SPARSE, LOG_SPACE;
+
+    public TensorFactory getFactory() {
+      switch (this) {
+      case SPARSE:
+        return SparseTensorBuilder.getFactory();
+      case CACHED_SPARSE:
+        return CachedSparseTensor.getFactory();
+      default:
+        return DenseTensorBuilder.getFactory();
+      }
+    }
+
+    public Tensor build(TensorBuilder builder) {
+      Tensor tensor = builder.build();
+      // The built values are treated as log weights.
+      return this == LOG_SPACE ? new LogSpaceTensorAdapter(tensor) : tensor;
+    }
+  }
+
+  private static final int[] DIMS = new int[] {0, 1, 2};
+  private static final int[] LEFT_DIMS = new int[] {0, 1};
+  private static final int[] RELABELED_DIMS = new int[] {5, 4, 3};
+
+  private final TensorType type;
+  private final int dimensionSize;
+  private final double density;
+
+  private int[] sizes, leftSizes;
+  private long[] keyNums, otherKeyNums;
+  private double[] values;
+  private Tensor table, otherTable, leftTable;
+  private TensorBuilder builder;
+
+  public TensorBenchmark(TensorType type, int dimensionSize, double density) {
+    this.type = type;
+    this.dimensionSize = dimensionSize;
+    this.density = density;
+  }
+
+  @Override
+  public String getName() {
+    return "TensorBenchmark[type=" + type + ",size=" + dimensionSize + ",density=" + density + "]";
+  }
+
+  @Override
+  public void setUp() {
+    sizes = new int[] {dimensionSize, dimensionSize, dimensionSize};
+    leftSizes = new int[] {dimensionSize, dimensionSize};
+
+    // A fixed seed makes runs with the same parameters comparable.
+    Random random = new Random(0);
+    keyNums = sampleKeyNums(random, sizes);
+    otherKeyNums = sampleKeyNums(random, sizes);
+    values = new double[keyNums.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = random.nextDouble();
+    }
+
+    table = buildTable(DIMS, sizes, keyNums);
+    otherTable = buildTable(DIMS, sizes, otherKeyNums);
+    leftTable = buildTable(LEFT_DIMS, leftSizes, sampleKeyNums(random, leftSizes));
+    builder = type.getFactory().getBuilder(DIMS, sizes);
+  }
+
+  private long[] sampleKeyNums(Random random, int[] dimensionSizes) {
+    long maxKeyNum = 1;
+    for (int i = 0; i < dimensionSizes.length; i++) {
+      maxKeyNum *= dimensionSizes[i];
+    }
+
+    long[] sampled = new long[(int) (maxKeyNum * density)];
+    int numSampled = 0;
+    for (long keyNum = 0; keyNum < maxKeyNum && numSampled < sampled.length; keyNum++) {
+      if (random.nextDouble() < density) {
+        sampled[numSampled] = keyNum;
+        numSampled++;
+      }
+    }
+    return Arrays.copyOf(sampled, numSampled);
+  }
+
+  private Tensor buildTable(int[] dims, int[] dimSizes, long[] tableKeyNums) {
+    TensorBuilder tableBuilder = type.getFactory().getBuilder(dims, dimSizes);
+    for (int i = 0; i < tableKeyNums.length; i++) {
+      tableBuilder.putByKeyNum(tableKeyNums[i], values[i % values.length]);
+    }
+    return type.build(tableBuilder);
+  }
+
+  @PerformanceTest(value = 10, warmup = 3)
+  public void testBuild() {
+    TensorBuilder tableBuilder = type.getFactory().getBuilder(DIMS, sizes);
+    for (int i = 0; i < keyNums.length; i++) {
+      tableBuilder.putByKeyNum(keyNums[i], values[i]);
+    }
+    type.build(tableBuilder);
+  }
+
+  @PerformanceTest(value = 10, warmup = 3)
+  public void testBuilderIncrement() {
+    builder.incrementWithMultiplier(table, 0.5);
+    builder.incrementWithMultiplier(otherTable, 0.5);
+  }
+
+  @PerformanceTest(value = 10, warmup = 3)
+  public void testGetByKeyNum() {
+    for (int i = 0; i < otherKeyNums.length; i++) {
+      table.get(otherKeyNums[i]);
+    }
+  }
+
+  @PerformanceTest(value = 10, warmup = 3)
+  public void testElementwiseProduct() {
+    table.elementwiseProduct(otherTable);
+  }
+
+  @PerformanceTest(value = 10, warmup = 3)
+  public void testElementwiseProductLeftAligned() {
+    table.elementwiseProduct(leftTable);
+  }
+
+  @PerformanceTest(value = 10, warmup = 3)
+  public void testElementwiseAddition() {
+    table.elementwiseAddition(otherTable);
+  }
+
+  @PerformanceTest(value = 10, warmup = 3)
+  public void testInnerProduct() {
+    table.innerProduct(otherTable);
+  }
+
+  @PerformanceTest(value = 10, warmup = 3)
+  public void testSumOutDimensions() {
+    table.sumOutDimensions(Arrays.asList(2));
+  }
+
+  @PerformanceTest(value = 10, warmup = 3)
+  public void testMaxOutDimensions() {
+    table.maxOutDimensions(Arrays.asList(0));
+  }
+
+  @PerformanceTest(value = 10, warmup = 3)
+  public void testRelabelDimensions() {
+    // Reverses the order of the dimensions, which requires
+    // reordering the keys.
+    table.relabelDimensions(RELABELED_DIMS);
+  }
+}
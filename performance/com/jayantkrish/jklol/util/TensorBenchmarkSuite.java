@@ -0,0 +1,85 @@
+package com.jayantkrish.jklol.util;
+
+import java.util.List;
+
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+
+import com.google.common.collect.Lists;
+import com.jayantkrish.jklol.cli.AbstractCli;
+import com.jayantkrish.jklol.testing.PerformanceTestResult;
+import com.jayantkrish.jklol.testing.PerformanceTestRunner;
+import com.jayantkrish.jklol.util.TensorBenchmark.TensorType;
+
+/**
+ * Runs {@link TensorBenchmark} for every combination of the given
+ * tensor types, dimension sizes and densities, and optionally writes
+ * the results to a JSON report. If a baseline report is given, this
+ * program fails if any test is slower than its baseline by more than
+ * {@code --maxRegression}.
+ *
+ * @author jayantk
+ */
+public class TensorBenchmarkSuite extends AbstractCli {
+
+  private OptionSpec<TensorType> types;
+  private OptionSpec<Integer> sizes;
+  private OptionSpec<Double> densities;
+
+  private OptionSpec<String> output;
+  private OptionSpec<String> baseline;
+  private OptionSpec<Double> maxRegression;
+
+  @Override
+  public void initializeOptions(OptionParser parser) {
+    types = parser.accepts("types").withRequiredArg().ofType(TensorType.class)
+        .withValuesSeparatedBy(',').defaultsTo(TensorType.values());
+    sizes = parser.accepts("sizes", "Size of each of the 3 dimensions of the tested tensors.")
+        .withRequiredArg().ofType(Integer.class).withValuesSeparatedBy(',').defaultsTo(50, 100);
+    densities = parser.accepts("densities", "Fraction of nonzero entries in the tested tensors.")
+        .withRequiredArg().ofType(Double.class).withValuesSeparatedBy(',').defaultsTo(0.01, 0.1);
+
+    output = parser.accepts("output", "Write the results to this file in JSON format.")
+        .withRequiredArg().ofType(String.class);
+    baseline = parser.accepts("baseline", "JSON report of an earlier run to compare against.")
+        .withRequiredArg().ofType(String.class);
+    maxRegression = parser.accepts("maxRegression", "Largest allowed slowdown relative to "
+        + "the baseline, as a fraction of the baseline running time.").withRequiredArg()
+        .ofType(Double.class).defaultsTo(0.2);
+  }
+
+  @Override
+  public void run(OptionSet options) {
+    List<PerformanceTestResult> results = Lists.newArrayList();
+    for (TensorType type : options.valuesOf(types)) {
+      for (int size : options.valuesOf(sizes)) {
+        for (double density : options.valuesOf(densities)) {
+          results.addAll(PerformanceTestRunner.run(new TensorBenchmark(type, size, density)));
+        }
+      }
+    }
+
+    if (options.has(output)) {
+      PerformanceTestRunner.writeReport(results, options.valueOf(output));
+    }
+
+    if (options.has(baseline)) {
+      List<PerformanceTestResult> baselineResults = PerformanceTestRunner.readReport(
+          options.valueOf(baseline));
+      List<String> regressions = PerformanceTestRunner.findRegressions(baselineResults,
+          results, options.valueOf(maxRegression));
+      if (regressions.size() > 0) {
+        System.out.println("Performance regressions:");
+        for (String regression : regressions) {
+          System.out.println("  " + regression);
+        }
+        System.exit(1);
+      }
+    }
+  }
+
+  public static void main(String[] args) {
+    new TensorBenchmarkSuite().run(args);
+  }
+}
@@ -0,0 +1,360 @@
+package com.jayantkrish.jklol.ccg;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.jayantkrish.jklol.ccg.chart.CcgLeftToRightChart;
+import com.jayantkrish.jklol.ccg.chart.ChartCost;
+import com.jayantkrish.jklol.ccg.chart.ChartEntry;
+import com.jayantkrish.jklol.ccg.chart.SumChartCost;
+import com.jayantkrish.jklol.nlpannotation.AnnotatedSentence;
+import com.jayantkrish.jklol.training.LogFunction;
+import com.jayantkrish.jklol.util.IntMultimap;
+import com.jayantkrish.jklol.util.KbestQueue;
+
+/**
+ * Agenda-based A* CCG parsing algorithm. Chart entries are
+ * processed in order of their inside probability times an upper
+ * bound on their outside probability. The bound is the product of
+ * the best lexicon entry probability for each word outside of the
+ * entry's span. This is the scoring used by supertagger-factored
+ * models, where {@code SupertagLexiconScorer} determines the
+ * possible lexicon entries for each word.
+ * <p>
+ * Search stops as soon as the requested number of complete parses
+ * have been found, so on long sentences much less of the chart is
+ * built than with {@link CcgCkyInference}. The returned parses are
+ * exact if the parser's weights for everything except lexicon
+ * entries are at most 1 (e.g., if the parser is a supertag-factored
+ * model). Otherwise the outside bound may not be admissible, and
+ * parsing is approximate.
+ *
+ * @author jayantk
+ */
+public class CcgAStarInference implements CcgInference {
+
+  private static final long serialVersionUID = 1L;
+
+  // Optional constraint to use during inference. Null if
+  // no constraints are imposed on the search.
+  private final ChartCost searchFilter;
+
+  // Maximum number of chart entries to use from each span, and
+  // the number of parses returned by beamSearch.
+  private final int beamSize;
+
+  // Maximum number of milliseconds to spend parsing a single sentence.
+  private final long maxParseTimeMillis;
+
+  // Maximum number of chart entries for a single sentence.
+  private final int maxChartSize;
+
+  public CcgAStarInference(ChartCost searchFilter, int beamSize, long maxParseTimeMillis,
+      int maxChartSize) {
+    this.searchFilter = searchFilter;
+    this.beamSize = beamSize;
+    this.maxParseTimeMillis = maxParseTimeMillis;
+    this.maxChartSize = maxChartSize;
+  }
+
+  /**
+   * Get an A* inference algorithm with sane default parameters.
+   *
+   * @param beamSize
+   * @return
+   */
+  public static CcgAStarInference getDefault(int beamSize) {
+    return new CcgAStarInference(null, beamSize, -1, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public CcgParse getBestParse(CcgParser parser, AnnotatedSentence sentence,
+      ChartCost chartFilter, LogFunction log) {
+    return Iterables.getFirst(parse(parser, sentence, chartFilter, log, 1), null);
+  }
+
+  @Override
+  public List<CcgParse> beamSearch(CcgParser parser, AnnotatedSentence sentence,
+      ChartCost chartFilter, LogFunction log) {
+    return parse(parser, sentence, chartFilter, log, beamSize);
+  }
+
+  private List<CcgParse> parse(CcgParser parser, AnnotatedSentence sentence,
+      ChartCost chartFilter, LogFunction log, int numParses) {
+    ChartCost filter = SumChartCost.create(searchFilter, chartFilter);
+    CcgLeftToRightChart chart = new CcgLeftToRightChart(sentence, maxChartSize);
+    parser.initializeChart(chart, sentence, filter);
+    parser.initializeChartTerminals(chart, sentence, parser.canSkipWords());
+
+    AStarSearch search = new AStarSearch(parser, chart, log);
+    KbestQueue<Integer> finished = new KbestQueue<Integer>(numParses, new Integer[0]);
+    if (!search.run(finished, numParses)) {
+      return Lists.newArrayList();
+    }
+
+    int rootSpanEnd = chart.size() - 1;
+    List<CcgParse> parses = Lists.newArrayList();
+    while (finished.size() > 0) {
+      int rootIndex = finished.removeMin();
+      parses.add(chart.decodeParseFromSpan(0, rootSpanEnd, rootIndex, parser));
+    }
+    Collections.reverse(parses);
+    return parses;
+  }
+
+  /**
+   * The state of the search for the parses of a single sentence.
+   * Chart entries are added to {@code chart} when they are created,
+   * and are used to build larger entries once they are popped from
+   * the agenda.
+   */
+  private class AStarSearch {
+    private final CcgParser parser;
+    private final CcgLeftToRightChart chart;
+    private final LogFunction log;
+    private final int numTerminals;
+
+    // Log of the upper bound on the probability of the words
+    // before / after each index.
+    private final double[] prefixLogBounds;
+    private final double[] suffixLogBounds;
+
+    private final PriorityQueue<AgendaItem> agenda;
+
+    // Indexes of the chart entries of each span that have been
+    // popped from the agenda, and a multimap from their syntactic
+    // categories to their indexes. The multimap is null if it must
+    // be recomputed.
+    private final int[][] poppedIndexes;
+    private final int[] numPopped;
+    private final IntMultimap[] poppedTypes;
+
+    public AStarSearch(CcgParser parser, CcgLeftToRightChart chart, LogFunction log) {
+      this.parser = parser;
+      this.chart = chart;
+      this.log = log;
+      this.numTerminals = chart.size();
+
+      this.agenda = new PriorityQueue<AgendaItem>();
+      this.poppedIndexes = new int[numTerminals * numTerminals][];
+      this.numPopped = new int[numTerminals * numTerminals];
+      this.poppedTypes = new IntMultimap[numTerminals * numTerminals];
+
+      // A lexicon entry spanning multiple words bounds each of its
+      // words by the geometric mean of its probability.
+      double[] wordLogBounds = new double[numTerminals];
+      Arrays.fill(wordLogBounds, Double.NEGATIVE_INFINITY);
+      for (int i = 0; i < numTerminals; i++) {
+        for (int j = i; j < numTerminals; j++) {
+          double[] probs = chart.getChartEntryProbsForSpan(i, j);
+          for (int k = 0; k < chart.getNumChartEntriesForSpan(i, j); k++) {
+            double perWordLogProb = Math.log(probs[k]) / (j - i + 1);
+            for (int word = i; word <= j; word++) {
+              wordLogBounds[word] = Math.max(wordLogBounds[word], perWordLogProb);
+            }
+          }
+        }
+      }
+
+      // Prefix and suffix sums are kept separately to avoid
+      // subtracting infinite bounds.
+      prefixLogBounds = new double[numTerminals + 1];
+      suffixLogBounds = new double[numTerminals + 1];
+      for (int i = 0; i < numTerminals; i++) {
+        prefixLogBounds[i + 1] = prefixLogBounds[i] + wordLogBounds[i];
+        suffixLogBounds[numTerminals - i - 1] = suffixLogBounds[numTerminals - i]
+            + wordLogBounds[numTerminals - i - 1];
+      }
+
+      for (int i = 0; i < numTerminals; i++) {
+        for (int j = i; j < numTerminals; j++) {
+          queueEntries(i, j, 0, false);
+        }
+      }
+    }
+
+    /**
+     * Pops entries from the agenda until {@code numParses} complete
+     * parses have been found or the agenda is empty. The chart
+     * indexes of the complete parses are added to {@code finished}.
+     * Returns {@code false} if the search exceeded the time or chart
+     * size limits.
+     *
+     * @param finished
+     * @param numParses
+     * @return
+     */
+    public boolean run(KbestQueue<Integer> finished, int numParses) {
+      long endTime = System.currentTimeMillis() + maxParseTimeMillis;
+      int numFinished = 0;
+      while (agenda.size() > 0 && numFinished < numParses) {
+        AgendaItem item = agenda.poll();
+        if (item.isRoot) {
+          finished.offer(item.chartIndex, item.priority);
+          numFinished++;
+          continue;
+        }
+
+        int spanIndex = (item.spanStart * numTerminals) + item.spanEnd;
+        if (numPopped[spanIndex] >= beamSize) {
+          continue;
+        }
+        addPopped(spanIndex, item.chartIndex);
+
+        if (item.spanStart == 0 && item.spanEnd == numTerminals - 1) {
+          queueRootEntries(item.chartIndex);
+        } else {
+          combine(item);
+        }
+
+        if (maxParseTimeMillis >= 0 && System.currentTimeMillis() > endTime) {
+          return false;
+        }
+        if (chart.exceedsMaxChartSize()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void addPopped(int spanIndex, int chartIndex) {
+      if (poppedIndexes[spanIndex] == null) {
+        poppedIndexes[spanIndex] = new int[beamSize];
+      }
+      poppedIndexes[spanIndex][numPopped[spanIndex]] = chartIndex;
+      numPopped[spanIndex]++;
+      poppedTypes[spanIndex] = null;
+    }
+
+    private IntMultimap getPoppedTypes(int spanStart, int spanEnd) {
+      int spanIndex = (spanStart * numTerminals) + spanEnd;
+      if (numPopped[spanIndex] == 0) {
+        return null;
+      } else if (poppedTypes[spanIndex] == null) {
+        ChartEntry[] entries = chart.getChartEntriesForSpan(spanStart, spanEnd);
+        int[] keys = new int[numPopped[spanIndex]];
+        int[] values = Arrays.copyOf(poppedIndexes[spanIndex], numPopped[spanIndex]);
+        for (int i = 0; i < values.length; i++) {
+          keys[i] = entries[values[i]].getHeadedSyntax();
+        }
+        poppedTypes[spanIndex] = IntMultimap.createFromUnsortedArrays(keys, values, 0);
+      }
+      return poppedTypes[spanIndex];
+    }
+
+    /**
+     * Combines {@code item} with every popped entry in an adjacent
+     * span, and queues the resulting entries.
+     */
+    private void combine(AgendaItem item) {
+      int spanStart = item.spanStart;
+      int spanEnd = item.spanEnd;
+      ChartEntry[] entries = chart.getChartEntriesForSpan(spanStart, spanEnd);
+      double[] probs = chart.getChartEntryProbsForSpan(spanStart, spanEnd);
+      IntMultimap itemTypes = IntMultimap.createFromUnsortedArrays(
+          new int[] {entries[item.chartIndex].getHeadedSyntax()}, new int[] {item.chartIndex}, 0);
+
+      for (int leftSpanStart = 0; leftSpanStart < spanStart; leftSpanStart++) {
+        IntMultimap leftTypes = getPoppedTypes(leftSpanStart, spanStart - 1);
+        if (leftTypes != null) {
+          int numEntries = chart.getNumChartEntriesForSpan(leftSpanStart, spanEnd);
+          parser.applySearchMoves(chart, leftSpanStart, spanStart - 1, spanStart, spanEnd,
+              chart.getChartEntriesForSpan(leftSpanStart, spanStart - 1),
+              chart.getChartEntryProbsForSpan(leftSpanStart, spanStart - 1), leftTypes,
+              entries, probs, itemTypes, log);
+          queueEntries(leftSpanStart, spanEnd, numEntries, false);
+        }
+      }
+
+      for (int rightSpanEnd = spanEnd + 1; rightSpanEnd < numTerminals; rightSpanEnd++) {
+        IntMultimap rightTypes = getPoppedTypes(spanEnd + 1, rightSpanEnd);
+        if (rightTypes != null) {
+          int numEntries = chart.getNumChartEntriesForSpan(spanStart, rightSpanEnd);
+          parser.applySearchMoves(chart, spanStart, spanEnd, spanEnd + 1, rightSpanEnd,
+              entries, probs, itemTypes, chart.getChartEntriesForSpan(spanEnd + 1, rightSpanEnd),
+              chart.getChartEntryProbsForSpan(spanEnd + 1, rightSpanEnd), rightTypes, log);
+          queueEntries(spanStart, rightSpanEnd, numEntries, false);
+        }
+      }
+    }
+
+    /**
+     * Applies unary rules and the root factor to a chart entry
+     * spanning the entire sentence, and queues the resulting
+     * complete parses. This is the same computation as
+     * {@link CcgParser#reweightRootEntries}.
+     */
+    private void queueRootEntries(int chartIndex) {
+      int spanEnd = numTerminals - 1;
+      ChartEntry entry = chart.getChartEntriesForSpan(0, spanEnd)[chartIndex];
+      double prob = chart.getChartEntryProbsForSpan(0, spanEnd)[chartIndex];
+
+      int unaryStart = chart.getNumChartEntriesForSpan(0, spanEnd);
+      parser.applyUnaryRules(chart, entry, prob, 0, spanEnd);
+      int unaryEnd = chart.getNumChartEntriesForSpan(0, spanEnd);
+
+      queueRootEntry(chartIndex);
+      for (int i = unaryStart; i < unaryEnd; i++) {
+        queueRootEntry(i);
+      }
+    }
+
+    private void queueRootEntry(int chartIndex) {
+      int spanEnd = numTerminals - 1;
+      ChartEntry entry = chart.getChartEntriesForSpan(0, spanEnd)[chartIndex];
+      double prob = chart.getChartEntryProbsForSpan(0, spanEnd)[chartIndex];
+
+      int numEntries = chart.getNumChartEntriesForSpan(0, spanEnd);
+      chart.addChartEntryForSpan(entry, prob * parser.scoreRootEntry(entry, chart), 0, spanEnd,
+          parser.getSyntaxVarType());
+      queueEntries(0, spanEnd, numEntries, true);
+    }
+
+    /**
+     * Queues the chart entries for a span starting from
+     * {@code firstIndex}.
+     */
+    private void queueEntries(int spanStart, int spanEnd, int firstIndex, boolean isRoot) {
+      double outsideBound = Math.exp(prefixLogBounds[spanStart] + suffixLogBounds[spanEnd + 1]);
+      double[] probs = chart.getChartEntryProbsForSpan(spanStart, spanEnd);
+      int numEntries = chart.getNumChartEntriesForSpan(spanStart, spanEnd);
+      for (int i = firstIndex; i < numEntries; i++) {
+        double priority = probs[i] * outsideBound;
+        if (priority > 0.0) {
+          agenda.offer(new AgendaItem(spanStart, spanEnd, i, priority, isRoot));
+        }
+      }
+    }
+  }
+
+  private static class AgendaItem implements Comparable<AgendaItem> {
+    public final int spanStart;
+    public final int spanEnd;
+    public final int chartIndex;
+    public final double priority;
+
+    // True if this item is a complete parse, including the root
+    // factor.
+    public final boolean isRoot;
+
+    public AgendaItem(int spanStart, int spanEnd, int chartIndex, double priority,
+        boolean isRoot) {
+      this.spanStart = spanStart;
+      this.spanEnd = spanEnd;
+      this.chartIndex = chartIndex;
+      this.priority = priority;
+      this.isRoot = isRoot;
+    }
+
+    @Override
+    public int compareTo(AgendaItem other) {
+      // The agenda is a min-heap, so higher priority items must be
+      // ordered first.
+      return Double.compare(other.priority, priority);
+    }
+  }
+}
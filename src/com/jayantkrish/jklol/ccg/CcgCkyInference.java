@@ -16,6 +16,8 @@ import com.jayantkrish.jklol.training.LogFunction;
  */
 public class CcgCkyInference implements CcgInference {
 
+  private static final long serialVersionUID = 1L;
+
   // Optional constraint to use during inference. Null if
   // no constraints are imposed on the search.
   private final ChartCost searchFilter;
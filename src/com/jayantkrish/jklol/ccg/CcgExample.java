@@ -1,5 +1,6 @@
 package com.jayantkrish.jklol.ccg;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Set;
 
@@ -18,7 +19,9 @@ import com.jayantkrish.jklol.nlpannotation.AnnotatedSentence;
  * 
  * @author jayant
  */
-public class CcgExample {
+public class CcgExample implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   // The sentence to parse, along with part-of-speech tags for each word
   // and optional supertags (syntactic categories to consider for each word).
@@ -1,5 +1,6 @@
 package com.jayantkrish.jklol.ccg;
 
+import java.io.Serializable;
 import java.util.List;
 
 import com.jayantkrish.jklol.ccg.chart.ChartCost;
@@ -12,7 +13,7 @@ import com.jayantkrish.jklol.training.LogFunction;
  * @author jayant
  *
  */
-public interface CcgInference {
+public interface CcgInference extends Serializable {
 
   /**
    * Finds the best parse of a supertagged {@code sentence}. 
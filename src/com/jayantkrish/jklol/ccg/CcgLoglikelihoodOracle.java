@@ -1,5 +1,6 @@
 package com.jayantkrish.jklol.ccg;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Set;
 
@@ -24,7 +25,9 @@ import com.jayantkrish.jklol.training.LogFunction;
  * 
  * @author jayant
  */
-public class CcgLoglikelihoodOracle implements GradientOracle<CcgParser, CcgExample> {
+public class CcgLoglikelihoodOracle implements GradientOracle<CcgParser, CcgExample>, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private final ParametricCcgParser family;
   
@@ -1,43 +1,65 @@
 package com.jayantkrish.jklol.ccg;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.lang.ref.SoftReference;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.jayantkrish.jklol.ccg.chart.CcgBeamSearchChart;
+import com.jayantkrish.jklol.ccg.chart.CcgBeamSearchChartPool;
 import com.jayantkrish.jklol.ccg.chart.CcgChart;
+import com.jayantkrish.jklol.ccg.chart.CcgExactChart;
 import com.jayantkrish.jklol.ccg.chart.CcgExactHashTableChart;
+import com.jayantkrish.jklol.ccg.chart.CcgMemoryBoundedChart;
 import com.jayantkrish.jklol.ccg.chart.ChartCost;
 import com.jayantkrish.jklol.ccg.chart.ChartEntry;
+import com.jayantkrish.jklol.ccg.chart.LazyKbestDecoder;
 import com.jayantkrish.jklol.ccg.lexicon.CcgLexicon;
 import com.jayantkrish.jklol.ccg.lexicon.LexiconScorer;
 import com.jayantkrish.jklol.models.DiscreteFactor;
 import com.jayantkrish.jklol.models.DiscreteVariable;
+import com.jayantkrish.jklol.models.TableFactor;
 import com.jayantkrish.jklol.models.VariableNumMap;
 import com.jayantkrish.jklol.nlpannotation.AnnotatedSentence;
+import com.jayantkrish.jklol.tensor.CompactTensor;
 import com.jayantkrish.jklol.tensor.SparseTensor;
 import com.jayantkrish.jklol.tensor.Tensor;
+import com.jayantkrish.jklol.tensor.TensorPrecision;
 import com.jayantkrish.jklol.tensor.TensorHash;
 import com.jayantkrish.jklol.training.LogFunction;
 import com.jayantkrish.jklol.training.NullLogFunction;
 import com.jayantkrish.jklol.util.ArrayUtils;
 import com.jayantkrish.jklol.util.Assignment;
+import com.jayantkrish.jklol.util.ConcurrentLongDoubleCache;
 import com.jayantkrish.jklol.util.IntMultimap;
+import com.jayantkrish.jklol.util.Pair;
 
 /**
  * A chart parser for Combinatory Categorial Grammar (CCG).
@@ -101,6 +123,17 @@ public class CcgParser implements Serializable {
   public static final String UNARY_RULE_INPUT_VAR_NAME = "unaryRuleInputVar";
   public static final String UNARY_RULE_VAR_NAME = "unaryRuleVar";
 
+  // Thread pools for parsing with multiple threads, keyed by number
+  // of threads. See calculateInsideBeamParallel.
+  private static final ConcurrentMap<Integer, ForkJoinPool> PARSING_POOLS = Maps.newConcurrentMap();
+
+  // Chart accumulators for each thread, which are used together with
+  // the thread's pooled beam search charts. Like the pooled charts,
+  // they are softly referenced and discarded by clearChartPools.
+  private static final ThreadLocal<SoftReference<ChartAccumulators>> THREAD_ACCUMULATORS =
+      new ThreadLocal<SoftReference<ChartAccumulators>>();
+  private static final AtomicInteger ACCUMULATOR_GENERATION = new AtomicInteger(0);
+
   // Member variables ////////////////////////////////////
 
   // Weights on lexicon entries
@@ -170,6 +203,15 @@ public class CcgParser implements Serializable {
     verbDistanceVarType = DiscreteVariable.sequence("verbDistance", MAX_DISTANCE + 1);
   }
 
+  // Caches the product of the dependency and distance weights for
+  // each dependency, keyed by the dependency's keyNum in
+  // dependencyTensor and its three distances. Unlike the per-chart
+  // dependency cache, this cache is shared across sentences and
+  // threads. Null unless created by withDependencyScoreCache. Only
+  // assigned before the parser is returned to the caller.
+  private ConcurrentLongDoubleCache dependencyScoreCache;
+  private static final int NUM_DISTANCE_VALUES = MAX_DISTANCE + 1;
+
   // Weights on binary combination rules.
   private final VariableNumMap leftSyntaxVar;
   private final VariableNumMap rightSyntaxVar;
@@ -202,6 +244,11 @@ public class CcgParser implements Serializable {
   private final DiscreteVariable searchMoveType;
   private final DiscreteFactor compiledSyntaxDistribution;
 
+  // The binary and unary rules above, compiled into arrays for
+  // fast lookup during parsing. Not serialized, since it is
+  // determined by the other fields.
+  private transient CcgRuleTable ruleTable;
+
   // Weights on the syntactic category of the root of the CCG parse.
   private final VariableNumMap rootSyntaxVar;
   private final VariableNumMap rootPredicateVar;
@@ -321,6 +368,8 @@ public class CcgParser implements Serializable {
     this.distanceHeadPosOffset = verbDistanceTensor.getDimensionOffsets()[3];
     this.distanceDistanceOffset = verbDistanceTensor.getDimensionOffsets()[4];
 
+    this.dependencyScoreCache = null;
+
     this.leftSyntaxVar = Preconditions.checkNotNull(leftSyntaxVar);
     this.rightSyntaxVar = Preconditions.checkNotNull(rightSyntaxVar);
     this.combinatorVar = Preconditions.checkNotNull(parentSyntaxVar);
@@ -386,6 +435,17 @@ public class CcgParser implements Serializable {
     }
 
     this.normalFormOnly = normalFormOnly;
+    this.ruleTable = compileRuleTable();
+  }
+
+  private CcgRuleTable compileRuleTable() {
+    return new CcgRuleTable((SparseTensor) compiledSyntaxDistribution.getWeights(), searchMoveType,
+        binaryRuleDistribution.getWeights(), unaryRuleTensor, unaryRuleVarType);
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    this.ruleTable = compileRuleTable();
   }
 
   public List<CcgLexicon> getLexicons() {
@@ -422,6 +482,49 @@ public class CcgParser implements Serializable {
   public boolean canSkipWords() {
     return wordSkipFactor != null;
   }
+
+  /**
+   * Gets a copy of this parser that caches the score of each
+   * dependency (given its word, punctuation and verb distances) in a
+   * cache of {@code capacity} entries, which is shared by all
+   * sentences and threads parsing with the copy. The cache replaces
+   * four weight lookups with one, and is only worthwhile for a parser
+   * that parses many sentences, e.g., during evaluation; parsers
+   * built for each training iteration should not use it. The cache
+   * is not used if the dependency keys are too large to cache.
+   *
+   * @param capacity
+   * @return
+   */
+  public CcgParser withDependencyScoreCache(int capacity) {
+    CcgParser parser = new CcgParser(lexicons, lexiconScorers, wordSkipWordVar, wordSkipFactor,
+        dependencyHeadVar, dependencySyntaxVar, dependencyArgNumVar, dependencyArgVar,
+        dependencyHeadPosVar, dependencyArgPosVar, dependencyDistribution, wordDistanceVar,
+        wordDistanceFactor, puncDistanceVar, puncDistanceFactor, puncTagSet, verbDistanceVar,
+        verbDistanceFactor, verbTagSet, leftSyntaxVar, rightSyntaxVar, combinatorVar,
+        binaryRuleDistribution, unaryRuleInputVar, unaryRuleVar, unaryRuleFactor,
+        headedBinaryPredicateVar, headedBinaryPosVar, headedBinaryRuleDistribution,
+        searchMoveVar, compiledSyntaxDistribution, rootSyntaxVar, rootPredicateVar,
+        rootPosVar, rootSyntaxDistribution, headedRootSyntaxDistribution, normalFormOnly);
+
+    long numDistanceKeys = NUM_DISTANCE_VALUES * NUM_DISTANCE_VALUES * NUM_DISTANCE_VALUES;
+    if (capacity > 0 && dependencyTensor.getMaxKeyNum() < Long.MAX_VALUE / numDistanceKeys) {
+      parser.dependencyScoreCache = new ConcurrentLongDoubleCache(capacity);
+    }
+    return parser;
+  }
+
+  /**
+   * Gets the cache of dependency scores shared by all sentences
+   * parsed with this parser, e.g., to report its hit rate. Returns
+   * {@code null} if this parser does not cache dependency scores.
+   * See {@link #withDependencyScoreCache(int)}.
+   *
+   * @return
+   */
+  public ConcurrentLongDoubleCache getDependencyScoreCache() {
+    return dependencyScoreCache;
+  }
   
   public double getWordSkipProbability(String lowercaseWord) {
     Assignment assignment = wordSkipWordVar.outcomeArrayToAssignment(Arrays.asList(lowercaseWord));
@@ -501,6 +604,40 @@ public class CcgParser implements Serializable {
     return binaryRuleDistribution;
   }
 
+  /**
+   * Gets a copy of this parser whose distributions store their
+   * weights with {@code precision}. This conversion reduces the
+   * memory required by a trained parser that is only used for
+   * inference, at the cost of a small change in the parser's scores.
+   * The lexicons, lexicon scorers, and the compiled syntax
+   * distribution are not converted.
+   *
+   * @param precision
+   * @return
+   */
+  public CcgParser toCompactForm(TensorPrecision precision) {
+    return new CcgParser(lexicons, lexiconScorers, wordSkipWordVar,
+        toCompactForm(wordSkipFactor, precision), dependencyHeadVar, dependencySyntaxVar,
+        dependencyArgNumVar, dependencyArgVar, dependencyHeadPosVar, dependencyArgPosVar,
+        toCompactForm(dependencyDistribution, precision), wordDistanceVar,
+        toCompactForm(wordDistanceFactor, precision), puncDistanceVar,
+        toCompactForm(puncDistanceFactor, precision), puncTagSet, verbDistanceVar,
+        toCompactForm(verbDistanceFactor, precision), verbTagSet, leftSyntaxVar, rightSyntaxVar,
+        combinatorVar, toCompactForm(binaryRuleDistribution, precision), unaryRuleInputVar,
+        unaryRuleVar, toCompactForm(unaryRuleFactor, precision), headedBinaryPredicateVar,
+        headedBinaryPosVar, toCompactForm(headedBinaryRuleDistribution, precision),
+        searchMoveVar, compiledSyntaxDistribution, rootSyntaxVar, rootPredicateVar, rootPosVar,
+        toCompactForm(rootSyntaxDistribution, precision),
+        toCompactForm(headedRootSyntaxDistribution, precision), normalFormOnly);
+  }
+
+  private static DiscreteFactor toCompactForm(DiscreteFactor factor, TensorPrecision precision) {
+    if (factor == null) {
+      return null;
+    }
+    return new TableFactor(factor.getVars(), CompactTensor.copyOf(factor.getWeights(), precision));
+  }
+
   public boolean isNormalFormOnly() {
     return normalFormOnly;
   }
@@ -525,6 +662,29 @@ public class CcgParser implements Serializable {
     return beamSearch(input, beamSize, new NullLogFunction());
   }
 
+  /**
+   * Releases the beam search charts and chart accumulators that
+   * every thread retains for reuse across calls to
+   * {@link #beamSearch}. Threads allocate new charts the next time
+   * they parse a sentence.
+   */
+  public static void clearChartPools() {
+    CcgBeamSearchChartPool.clearAll();
+    ACCUMULATOR_GENERATION.incrementAndGet();
+    THREAD_ACCUMULATORS.remove();
+  }
+
+  private static ChartAccumulators getThreadAccumulators() {
+    SoftReference<ChartAccumulators> reference = THREAD_ACCUMULATORS.get();
+    ChartAccumulators accumulators = (reference != null) ? reference.get() : null;
+    int generation = ACCUMULATOR_GENERATION.get();
+    if (accumulators == null || accumulators.generation != generation) {
+      accumulators = new ChartAccumulators(generation);
+      THREAD_ACCUMULATORS.set(new SoftReference<ChartAccumulators>(accumulators));
+    }
+    return accumulators;
+  }
+
   /**
    * 
    * @param input
@@ -541,15 +701,24 @@ public class CcgParser implements Serializable {
    */
   public List<CcgParse> beamSearch(AnnotatedSentence input, int beamSize, ChartCost beamFilter,
       LogFunction log, long maxParseTimeMillis, int maxChartSize, int numThreads) {
-    CcgBeamSearchChart chart = new CcgBeamSearchChart(input, maxChartSize, beamSize);
-    parseCommon(chart, input, beamFilter, log, maxParseTimeMillis, numThreads);
-    
-    if (chart.isFinishedParsing()) {
-      int numParses = Math.min(beamSize, chart.getNumChartEntriesForSpan(0, chart.size() - 1));
-      return chart.decodeBestParsesForSpan(0, chart.size() - 1, numParses, this);
-    } else {
-      System.out.println("CCG Parser Timeout");
-      return Lists.newArrayList();
+    // The chart and accumulators are reused by later calls on this
+    // thread. This is safe because the decoded parses do not
+    // reference the chart.
+    CcgBeamSearchChartPool chartPool = CcgBeamSearchChartPool.forCurrentThread();
+    CcgBeamSearchChart chart = chartPool.checkOut(input, maxChartSize, beamSize);
+    try {
+      parseCommon(chart, input, beamFilter, log, maxParseTimeMillis, numThreads,
+          getThreadAccumulators());
+
+      if (chart.isFinishedParsing()) {
+        int numParses = Math.min(beamSize, chart.getNumChartEntriesForSpan(0, chart.size() - 1));
+        return chart.decodeBestParsesForSpan(0, chart.size() - 1, numParses, this);
+      } else {
+        System.out.println("CCG Parser Timeout");
+        return Lists.newArrayList();
+      }
+    } finally {
+      chartPool.checkIn(chart);
     }
   }
 
@@ -577,7 +746,129 @@ public class CcgParser implements Serializable {
       return null;
     }
   }
-  
+
+  /**
+   * Same as {@link #parse(AnnotatedSentence, ChartCost, LogFunction, long, int, int)},
+   * except that the size of the chart is bounded by an estimated
+   * number of bytes, instead of a number of chart entries. See
+   * {@link CcgMemoryBoundedChart}.
+   * 
+   * @param input sentence to parse.
+   * @param beamFilter May be {@code null}, in which case no chart entries are pruned.
+   * @param log May be {@code null} to suppress logging output.
+   * @param maxParseTimeMillis maximum parsing time, in milliseconds. If parsing
+   * exceeds this time, it is cancelled and null is returned.
+   * @param maxChartBytes maximum (estimated) memory used by the chart entries,
+   * in bytes. If the chart exceeds this size, parsing is cancelled and null is returned.
+   * @param sumProbabilities if {@code true}, chart entries with the same syntax
+   * and semantics are scored by the sum of the probabilities of their derivations,
+   * instead of the maximum.
+   * @param numThreads number of threads to use for parsing.
+   * @return
+   */
+  public CcgParse parseMemoryBounded(AnnotatedSentence input, ChartCost beamFilter,
+      LogFunction log, long maxParseTimeMillis, long maxChartBytes, boolean sumProbabilities,
+      int numThreads) {
+    CcgMemoryBoundedChart chart = new CcgMemoryBoundedChart(input, maxChartBytes,
+        sumProbabilities);
+    parseCommon(chart, input, beamFilter, log, maxParseTimeMillis, numThreads);
+
+    if (log != null) {
+      log.logStatistic(0, "chart entries merged", chart.getNumEntriesMerged());
+      log.logStatistic(0, "chart deduplication ratio", chart.getDeduplicationRatio());
+      log.logStatistic(0, "chart bytes", chart.getEstimatedChartBytes());
+    }
+
+    if (chart.isFinishedParsing()) {
+      return chart.decodeBestParseForSpan(0, chart.size() - 1, this);
+    } else {
+      System.out.println("CCG Parser Timeout");
+      return null;
+    }
+  }
+
+  /**
+   * Gets the {@code numParses} highest-scoring parses of
+   * {@code input} using exact inference. Unlike {@link #parse}, the
+   * chart retains every derivation of each chart entry, and the
+   * k-best parses are found by {@link LazyKbestDecoder}, which only
+   * decodes the returned parses.
+   *
+   * @param input sentence to parse.
+   * @param numParses
+   * @param beamFilter May be {@code null}, in which case no chart entries are pruned.
+   * @param log May be {@code null} to suppress logging output.
+   * @param maxParseTimeMillis maximum parsing time, in milliseconds. If parsing
+   * exceeds this time, it is cancelled and an empty list is returned.
+   * @param maxChartSize maximum number of entries allowed in the parse chart. If the
+   * chart exceeds this size, parsing is cancelled and an empty list is returned.
+   * @return
+   */
+  public List<CcgParse> parseKBest(AnnotatedSentence input, int numParses, ChartCost beamFilter,
+      LogFunction log, long maxParseTimeMillis, int maxChartSize) {
+    // The merged derivations are not thread-safe, so parsing uses a
+    // single thread.
+    CcgExactChart chart = new CcgExactChart(input, maxChartSize, true);
+    parseCommon(chart, input, beamFilter, log, maxParseTimeMillis, 1);
+
+    if (chart.isFinishedParsing()) {
+      return LazyKbestDecoder.decodeBestParses(chart, 0, chart.size() - 1, numParses, this);
+    } else {
+      System.out.println("CCG Parser Timeout");
+      return Lists.newArrayList();
+    }
+  }
+
+  /**
+   * Performs a beam search for each sentence in {@code inputs}
+   * concurrently, using the threads of {@code executor}. Each
+   * sentence is parsed by a single thread, and each thread reuses its
+   * chart and chart accumulators across sentences. This method returns
+   * immediately; the parses of each sentence are available from the
+   * corresponding future, to which callbacks may be added using
+   * {@link com.google.common.util.concurrent.Futures#addCallback}.
+   * See {@link #beamSearch(AnnotatedSentence, int, ChartCost, LogFunction, long, int, int)}
+   * for a description of the remaining arguments.
+   *
+   * @param inputs
+   * @param beamSize
+   * @param beamFilter
+   * @param maxParseTimeMillis
+   * @param maxChartSize
+   * @param executor
+   * @return one future per element of {@code inputs}, in the same order.
+   */
+  public List<ListenableFuture<List<CcgParse>>> parseBatch(List<AnnotatedSentence> inputs,
+      final int beamSize, final ChartCost beamFilter, final long maxParseTimeMillis,
+      final int maxChartSize, ExecutorService executor) {
+    ListeningExecutorService listeningExecutor = MoreExecutors.listeningDecorator(executor);
+    List<ListenableFuture<List<CcgParse>>> results = Lists.newArrayList();
+    for (final AnnotatedSentence input : inputs) {
+      results.add(listeningExecutor.submit(new Callable<List<CcgParse>>() {
+        @Override
+        public List<CcgParse> call() {
+          return beamSearch(input, beamSize, beamFilter, new NullLogFunction(),
+              maxParseTimeMillis, maxChartSize, 1);
+        }
+      }));
+    }
+    return results;
+  }
+
+  /**
+   * Same as {@link #parseBatch(List, int, ChartCost, long, int, ExecutorService)},
+   * using a shared executor with one thread per processor, and no
+   * limit on parse time or chart size.
+   *
+   * @param inputs
+   * @param beamSize
+   * @return
+   */
+  public List<ListenableFuture<List<CcgParse>>> parseBatch(List<AnnotatedSentence> inputs,
+      int beamSize) {
+    return parseBatch(inputs, beamSize, null, -1, Integer.MAX_VALUE, BatchExecutorHolder.EXECUTOR);
+  }
+
   /**
    * Simplified version of {@link #parse} with sane default arguments.
    *  
@@ -590,6 +881,17 @@ public class CcgParser implements Serializable {
 
   public void parseCommon(CcgChart chart, AnnotatedSentence input, ChartCost beamFilter,
       LogFunction log, long maxParseTimeMillis, int numThreads) {
+    parseCommon(chart, input, beamFilter, log, maxParseTimeMillis, numThreads, null);
+  }
+
+  /**
+   * Same as {@link #parseCommon(CcgChart, AnnotatedSentence, ChartCost, LogFunction, long, int)},
+   * except that {@code accumulators} are used instead of allocating
+   * new accumulators for the chart. If {@code accumulators} is
+   * {@code null}, new accumulators are allocated.
+   */
+  private void parseCommon(CcgChart chart, AnnotatedSentence input, ChartCost beamFilter,
+      LogFunction log, long maxParseTimeMillis, int numThreads, ChartAccumulators accumulators) {
     if (log == null) {
       log = new NullLogFunction();
     }
@@ -598,7 +900,8 @@ public class CcgParser implements Serializable {
         "Maximum sentence length is %s", MAX_WORDS);
 
     log.startTimer("ccg_parse/initialize_chart");
-    initializeChart(chart, input, beamFilter);
+    initializeChart(chart, input, beamFilter,
+        accumulators != null ? accumulators : new ChartAccumulators(0));
     initializeChartTerminals(chart, input, wordSkipFactor != null);
     log.stopTimer("ccg_parse/initialize_chart");
 
@@ -618,6 +921,11 @@ public class CcgParser implements Serializable {
   }
 
   public void initializeChart(CcgChart chart, AnnotatedSentence input, ChartCost chartFilter) {
+    initializeChart(chart, input, chartFilter, new ChartAccumulators(0));
+  }
+
+  private void initializeChart(CcgChart chart, AnnotatedSentence input, ChartCost chartFilter,
+      ChartAccumulators accumulators) {
     int numWords = input.size();
     int[] puncCounts = computeDistanceCounts(input.getPosTags(), puncTagSet);
     int[] verbCounts = computeDistanceCounts(input.getPosTags(), verbTagSet);
@@ -641,13 +949,7 @@ public class CcgParser implements Serializable {
 
     // Create one accumulator per token in the sentence. This permits
     // parsing in parallel while reusing the accumulators.
-    chart.setAssignmentVarIndexAccumulator(new int[input.size()][MAX_CHART_VAR_INDEX]);
-    chart.setAssignmentAccumulator(new long[input.size()][MAX_CHART_ASSIGNMENTS]);
-    chart.setFilledDepAccumulator(new long[input.size()][MAX_CHART_DEPS]);
-    chart.setUnfilledDepVarIndexAccumulator(new int[input.size()][MAX_CHART_VAR_INDEX]);
-    chart.setUnfilledDepAccumulator(new long[input.size()][MAX_CHART_DEPS]);
-    chart.setDepLongCache(new long[input.size()]);
-    chart.setDepProbCache(new double[input.size()]);
+    accumulators.setAccumulators(chart, input.size());
   }
 
   public void initializeChartTerminals(CcgChart chart, AnnotatedSentence sentence, boolean wordSkip) {
@@ -663,6 +965,59 @@ public class CcgParser implements Serializable {
     }
   }
 
+  /**
+   * Extends a beam search {@code chart} for a prefix of
+   * {@code sentence} to a chart for all of {@code sentence}. Only
+   * the spans that end in the new words of {@code sentence} are
+   * parsed. {@code chart} must not have been passed to
+   * {@link #reweightRootEntries}, and this parser must not skip
+   * words.
+   *
+   * @param chart
+   * @param sentence
+   * @param chartFilter
+   * @param log
+   */
+  public void extendChart(CcgBeamSearchChart chart, AnnotatedSentence sentence,
+      ChartCost chartFilter, LogFunction log) {
+    Preconditions.checkState(!canSkipWords(), "Cannot extend charts for parsers that skip words");
+    Preconditions.checkState(sentence.size() <= MAX_WORDS,
+        "Maximum sentence length is %s", MAX_WORDS);
+    if (log == null) {
+      log = new NullLogFunction();
+    }
+
+    int prefixSize = chart.size();
+    chart.extendSentence(sentence);
+    initializeChart(chart, sentence, chartFilter, getThreadAccumulators());
+
+    for (int spanEnd = prefixSize; spanEnd < sentence.size(); spanEnd++) {
+      for (int spanStart = spanEnd; spanStart >= 0; spanStart--) {
+        for (int k = 0; k < lexicons.size(); k++) {
+          List<Object> triggerAccumulator = Lists.newArrayList();
+          List<CcgCategory> accumulator = Lists.newArrayList();
+          List<Double> probAccumulator = Lists.newArrayList();
+          lexicons.get(k).getLexiconEntries(spanStart, spanEnd, sentence,
+              chart.getChartEntriesForSpan(spanStart, spanEnd),
+              chart.getNumChartEntriesForSpan(spanStart, spanEnd), triggerAccumulator,
+              accumulator, probAccumulator);
+
+          for (int n = 0; n < accumulator.size(); n++) {
+            addLexiconEntryToChart(chart, triggerAccumulator.get(n), accumulator.get(n),
+                probAccumulator.get(n), spanStart, spanEnd, spanStart, spanEnd, sentence, k);
+          }
+        }
+        chart.doneAddingChartEntriesForSpan(spanStart, spanEnd);
+      }
+
+      // Each span depends on the spans with the same end and a
+      // later start, so spans are parsed from shortest to longest.
+      for (int spanStart = spanEnd - 1; spanStart >= 0; spanStart--) {
+        calculateInsideBeam(spanStart, spanEnd, chart, log);
+      }
+    }
+  }
+
   /**
    * Adds lexicon entry {@code category} to {@code chart}. This
    * method should be used by instances of {@code CcgLexicon}
@@ -863,7 +1218,7 @@ public class CcgParser implements Serializable {
           }
         }
         
-        if (chart.getTotalNumChartEntries() > chart.getMaxChartEntries()) {
+        if (chart.exceedsMaxChartSize()) {
           return false;
         }
         // System.out.println(spanStart + "." + spanEnd + " : " +
@@ -873,49 +1228,38 @@ public class CcgParser implements Serializable {
     return true;
   }
 
+  /**
+   * Same as {@link #calculateInsideBeamSingleThreaded}, except that
+   * spans are parsed in parallel on a shared pool of
+   * {@code numThreads} threads. A span is parsed as soon as all of
+   * its subspans have been parsed, rather than after all shorter
+   * spans.
+   * 
+   * @param chart
+   * @param log
+   * @param maxParseTimeMillis
+   * @param numThreads
+   * @return
+   */
   public boolean calculateInsideBeamParallel(CcgChart chart, LogFunction log, long maxParseTimeMillis,
       int numThreads) {
-    int chartSize = chart.size();
-    long currentTime = 0;
-    long endTime = System.currentTimeMillis() + maxParseTimeMillis;
-    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-    try {
-      List<Future<Void>> results = Lists.newArrayListWithCapacity(chartSize);
-      for (int spanSize = 1; spanSize < chartSize; spanSize++) {
-        results.clear();
-        for (int spanStart = 0; spanStart + spanSize < chartSize; spanStart++) {
-          int spanEnd = spanStart + spanSize;
-          results.add(executor.submit(new CalculateInsideBeamCallable(this, chart, spanStart, spanEnd, log)));
-        }
-
-        // Wait for the current set of spans to finish.
-        for (Future<Void> result : results) {
-          result.get();
-        }
+    InsideBeamScheduler scheduler = new InsideBeamScheduler(this, chart, log, maxParseTimeMillis);
+    return scheduler.run(getParsingPool(numThreads));
+  }
 
-        if (maxParseTimeMillis >= 0) {
-          currentTime = System.currentTimeMillis();
-          if (currentTime > endTime) {
-            return false;
-          }
-        }
-        
-        if (chart.getTotalNumChartEntries() > chart.getMaxChartEntries()) {
-          return false;
-        }        
-      }
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-      e.getCause().printStackTrace();
-      throw new RuntimeException(e);
-    } catch (ExecutionException e) {
-      e.printStackTrace();
-      e.getCause().printStackTrace();
-      throw new RuntimeException(e);
-    } finally {
-      executor.shutdown();
+  /**
+   * Gets a pool with {@code numThreads} threads for parsing. Pools are
+   * created on first use and shared by all parsers.
+   */
+  private static ForkJoinPool getParsingPool(int numThreads) {
+    ForkJoinPool pool = PARSING_POOLS.get(numThreads);
+    if (pool == null) {
+      // Pools do not start any threads until they are used, so
+      // discarding a pool created by a concurrent call is harmless.
+      PARSING_POOLS.putIfAbsent(numThreads, new ForkJoinPool(numThreads));
+      pool = PARSING_POOLS.get(numThreads);
     }
-    return true;
+    return pool;
   }
 
   private void calculateInsideBeam(int spanStart, int spanEnd, CcgChart chart, LogFunction log) {
@@ -941,67 +1285,55 @@ public class CcgParser implements Serializable {
       IntMultimap leftTypes, ChartEntry[] rightTrees, double[] rightProbs, IntMultimap rightTypes,
       LogFunction log) {
     
-    Tensor binaryRuleTensor = binaryRuleDistribution.getWeights();
-    SparseTensor syntaxDistributionTensor = (SparseTensor) compiledSyntaxDistribution.getWeights();
-    long[] syntaxKeyNums = syntaxDistributionTensor.getKeyNums();
-    long[] dimensionOffsets = syntaxDistributionTensor.getDimensionOffsets();
-    int tensorSize = syntaxDistributionTensor.size();
-
     if (leftTypes == null || rightTypes == null) {
       // At least one of the partial spans has no possible parses. This may
       // happen if some single-word spans have no lexicon entries.
       return;
     }
 
+    int[] leftOffsets = ruleTable.getLeftOffsets();
+    int[] ruleRightTypes = ruleTable.getRightTypes();
+    int[] moveOffsets = ruleTable.getMoveOffsets();
+    CcgSearchMove[] searchMoves = ruleTable.getSearchMoves();
+    double[] binaryRuleProbs = ruleTable.getBinaryRuleProbs();
+    double[] leftUnaryProbs = ruleTable.getLeftUnaryProbs();
+    double[] rightUnaryProbs = ruleTable.getRightUnaryProbs();
+    int numLeftTypes = ruleTable.getNumLeftTypes();
+
     // log.startTimer("ccg_parse/beam_loop");
     for (int leftType : leftTypes.keySetArray()) {
-      long keyNumPrefix = leftType * dimensionOffsets[0]; // syntaxDistributionTensor.dimKeyPrefixToKeyNum(key);
-      int index = syntaxDistributionTensor.getNearestIndex(keyNumPrefix);
-      if (index == -1 || index >= tensorSize) {
+      if (leftType >= numLeftTypes) {
         continue;
       }
-      long maxKeyNum = keyNumPrefix + dimensionOffsets[0];
-      long curKeyNum = syntaxKeyNums[index];
 
-      while (curKeyNum < maxKeyNum && index < tensorSize) {
-        int rightType = (int) (((curKeyNum - keyNumPrefix) / dimensionOffsets[1]) % dimensionOffsets[0]);
-        if (rightTypes.containsKey(rightType)) {
-          // Get the operation we're supposed to apply at this chart entry.
-          CcgSearchMove searchMove = (CcgSearchMove) searchMoveType.getValue(
-              (int) ((curKeyNum - keyNumPrefix) % dimensionOffsets[1]));
+      int pairEnd = leftOffsets[leftType + 1];
+      for (int pair = leftOffsets[leftType]; pair < pairEnd; pair++) {
+        int rightType = ruleRightTypes[pair];
+        if (!rightTypes.containsKey(rightType)) {
+          continue;
+        }
 
-          // Apply the binary rule.
-          double ruleProb = binaryRuleTensor.get(searchMove.getBinaryCombinatorKeyNum());
+        int moveEnd = moveOffsets[pair + 1];
+        for (int move = moveOffsets[pair]; move < moveEnd; move++) {
+          // Get the operation we're supposed to apply at this chart entry.
+          CcgSearchMove searchMove = searchMoves[move];
+          double ruleProb = binaryRuleProbs[move];
+          double leftUnaryProb = leftUnaryProbs[move];
+          double rightUnaryProb = rightUnaryProbs[move];
 
           for (int leftIndex : leftTypes.getArray(leftType)) {
             ChartEntry leftRoot = leftTrees[leftIndex];
-            double leftProb = leftProbs[leftIndex];
-
-            long leftUnaryKeyNum = searchMove.getLeftUnaryKeyNum();
-            if (leftUnaryKeyNum != -1) {
-              leftProb *= unaryRuleTensor.get(leftUnaryKeyNum);
-            }
+            double leftProb = leftProbs[leftIndex] * leftUnaryProb;
 
             for (int rightIndex : rightTypes.getArray(rightType)) {
               ChartEntry rightRoot = rightTrees[rightIndex];
-              double rightProb = rightProbs[rightIndex];
-
-              long rightUnaryKeyNum = searchMove.getRightUnaryKeyNum();
-              if (rightUnaryKeyNum != -1) {
-                rightProb *= unaryRuleTensor.get(searchMove.getRightUnaryKeyNum());
-              }
+              double rightProb = rightProbs[rightIndex] * rightUnaryProb;
 
               applyBinary(chart, leftSpanStart, leftSpanEnd, leftIndex, leftRoot, leftProb,
                   rightSpanStart, rightSpanEnd, rightIndex, rightRoot, rightProb, searchMove, ruleProb,
                   log);
             }
-          } 
-        }
-
-        // Advance the iterator over rules.
-        index++;
-        if (index < tensorSize) {
-          curKeyNum = syntaxKeyNums[index];
+          }
         }
       }
     }
@@ -1241,8 +1573,6 @@ public class CcgParser implements Serializable {
     int filledDepArrayLength = filledDepArray.length;
     for (int depIndex = 0; depIndex < filledDepArrayLength; depIndex++) {
       // The contents of this loop takes ~1/3 of all parsing time.
-      // TODO: possible speed improvement: use a hash table to cache
-      // more than one depLong per core.
       long depLong = filledDepArray[depIndex];
       if (depLong == depLongCache[leftSpanStart]) {
         depProb *= depProbCache[leftSpanStart];
@@ -1265,12 +1595,6 @@ public class CcgParser implements Serializable {
           + (argNumNum * dependencyArgNumOffset) + (objectNum * dependencyObjectOffset)
           + (headPosNum * dependencyHeadPosOffset) + (objectPosNum * dependencyObjectPosOffset);
 
-      // Get the probability of this
-      // predicate-argument combination.
-      // log.startTimer("chart_entry/dependency_prob");
-      curDepProb = dependencyTensorHash.get(depNum);
-      // log.stopTimer("chart_entry/dependency_prob");
-
       // Compute distance features.
       // log.startTimer("chart_entry/compute_distance");
       int distanceIndex = (subjectWordIndex * numTerminals) + objectWordIndex;
@@ -1279,6 +1603,27 @@ public class CcgParser implements Serializable {
       int verbDistance = verbDistances[distanceIndex];
       // log.stopTimer("chart_entry/compute_distance");
 
+      // The score of the dependency only depends on its keyNum and
+      // distances, which are shared by many sentences.
+      long cacheKey = 0;
+      if (dependencyScoreCache != null) {
+        cacheKey = (((depNum * NUM_DISTANCE_VALUES + wordDistance) * NUM_DISTANCE_VALUES
+            + puncDistance) * NUM_DISTANCE_VALUES) + verbDistance;
+        curDepProb = dependencyScoreCache.get(cacheKey);
+        if (!Double.isNaN(curDepProb)) {
+          depProb *= curDepProb;
+          depLongCache[leftSpanStart] = depLong;
+          depProbCache[leftSpanStart] = curDepProb;
+          continue;
+        }
+      }
+
+      // Get the probability of this
+      // predicate-argument combination.
+      // log.startTimer("chart_entry/dependency_prob");
+      curDepProb = dependencyTensorHash.get(depNum);
+      // log.stopTimer("chart_entry/dependency_prob");
+
       // log.startTimer("chart_entry/lookup_distance");
       long distanceKeyNumBase = (headNum * distanceHeadOffset) 
           + (headSyntaxNum * distanceSyntaxOffset) + (argNumNum * distanceArgNumOffset)
@@ -1290,6 +1635,10 @@ public class CcgParser implements Serializable {
       long verbDistanceKeyNum = distanceKeyNumBase + (verbDistance * distanceDistanceOffset);
       curDepProb *= verbDistanceTensorHash.get(verbDistanceKeyNum);
       // log.stopTimer("chart_entry/lookup_distance");
+
+      if (dependencyScoreCache != null) {
+        dependencyScoreCache.put(cacheKey, curDepProb);
+      }
       // System.out.println(longToUnfilledDependency(depLong)
       // + " " + depProb);
 
@@ -1309,50 +1658,57 @@ public class CcgParser implements Serializable {
   public final void applyUnaryRules(CcgChart chart, ChartEntry result, double resultProb,
       int spanStart, int spanEnd) {
     int headedSyntax = result.getHeadedSyntax();
-    long keyNumPrefix = unaryRuleTensor.dimKeyPrefixToKeyNum(new int[] { headedSyntax });
-    int index = unaryRuleTensor.getNearestIndex(keyNumPrefix);
-    int tensorSize = unaryRuleTensor.size();
-    if (index == -1 || index >= tensorSize) {
+    if (headedSyntax >= ruleTable.getNumInputTypes()) {
       return;
     }
-    long[] dimensionOffsets = unaryRuleTensor.getDimensionOffsets();
-    long maxKeyNum = keyNumPrefix + dimensionOffsets[0];
-    long curKeyNum = unaryRuleTensor.indexToKeyNum(index);
-
-    while (curKeyNum < maxKeyNum && index < tensorSize) {
-      int unaryRuleIndex = (int) (curKeyNum % dimensionOffsets[0]);
-      UnaryCombinator unaryRuleCombinator = (UnaryCombinator) unaryRuleVarType.getValue(unaryRuleIndex);
-      double ruleProb = unaryRuleTensor.getByIndex(index);
-
-      int[] assignmentInverseRelabeling = unaryRuleCombinator.getInverseRelabeling();
-      int[] relabeledAssignmentVarIndex = new int[assignmentInverseRelabeling.length + 1];
-      long[] relabeledAssignments = result.getAssignmentsRelabeled(relabeledAssignmentVarIndex);
-      
-      int[] relabeledUnfilledDepVarIndex = new int[assignmentInverseRelabeling.length + 1];
-      long[] relabeledUnfilledDeps = result.getUnfilledDependenciesRelabeled(assignmentInverseRelabeling);
-
-      ChartEntry unaryRuleResult = result.applyUnaryRule(unaryRuleCombinator.getSyntax(),
-          unaryRuleCombinator.getSyntaxUniqueVars(), unaryRuleCombinator.getSyntaxHeadVar(), unaryRuleCombinator,
-          relabeledAssignmentVarIndex, relabeledAssignments, relabeledUnfilledDepVarIndex,
-          relabeledUnfilledDeps, result.getDependencies());
-      if (unaryRuleResult != null) {
-        chart.addChartEntryForSpan(unaryRuleResult, resultProb * ruleProb, spanStart, spanEnd,
-            syntaxVarType);
-        /*
-         * System.out.println(spanStart + "." + spanEnd + " " +
-         * unaryRuleResult.getHeadedSyntax() + " " +
-         * unaryRuleResult.getDependencies() + " " + totalProb);
-         */
-      }
 
-      // Advance the iterator over unary rules.
-      index++;
-      if (index < tensorSize) {
-        curKeyNum = unaryRuleTensor.indexToKeyNum(index);
+    // Charts that merge equivalent derivations of result also need
+    // the unary rules applied to each merged derivation.
+    List<Pair<ChartEntry, Double>> mergedDerivations = chart.getMergedDerivations(result);
+
+    int[] unaryOffsets = ruleTable.getUnaryOffsets();
+    UnaryCombinator[] unaryCombinators = ruleTable.getUnaryCombinators();
+    double[] unaryRuleProbs = ruleTable.getUnaryRuleProbs();
+    int ruleEnd = unaryOffsets[headedSyntax + 1];
+    for (int rule = unaryOffsets[headedSyntax]; rule < ruleEnd; rule++) {
+      UnaryCombinator unaryRuleCombinator = unaryCombinators[rule];
+      double ruleProb = unaryRuleProbs[rule];
+      applyUnaryRule(chart, result, resultProb * ruleProb, unaryRuleCombinator,
+          spanStart, spanEnd);
+
+      for (Pair<ChartEntry, Double> derivation : mergedDerivations) {
+        if (derivation.getLeft().getRootUnaryRule() == null) {
+          applyUnaryRule(chart, derivation.getLeft(),
+              resultProb * derivation.getRight() * ruleProb, unaryRuleCombinator,
+              spanStart, spanEnd);
+        }
       }
     }
   }
 
+  private final void applyUnaryRule(CcgChart chart, ChartEntry result, double prob,
+      UnaryCombinator unaryRuleCombinator, int spanStart, int spanEnd) {
+    int[] assignmentInverseRelabeling = unaryRuleCombinator.getInverseRelabeling();
+    int[] relabeledAssignmentVarIndex = new int[assignmentInverseRelabeling.length + 1];
+    long[] relabeledAssignments = result.getAssignmentsRelabeled(relabeledAssignmentVarIndex);
+    
+    int[] relabeledUnfilledDepVarIndex = new int[assignmentInverseRelabeling.length + 1];
+    long[] relabeledUnfilledDeps = result.getUnfilledDependenciesRelabeled(assignmentInverseRelabeling);
+
+    ChartEntry unaryRuleResult = result.applyUnaryRule(unaryRuleCombinator.getSyntax(),
+        unaryRuleCombinator.getSyntaxUniqueVars(), unaryRuleCombinator.getSyntaxHeadVar(), unaryRuleCombinator,
+        relabeledAssignmentVarIndex, relabeledAssignments, relabeledUnfilledDepVarIndex,
+        relabeledUnfilledDeps, result.getDependencies());
+    if (unaryRuleResult != null) {
+      chart.addChartEntryForSpan(unaryRuleResult, prob, spanStart, spanEnd, syntaxVarType);
+      /*
+       * System.out.println(spanStart + "." + spanEnd + " " +
+       * unaryRuleResult.getHeadedSyntax() + " " +
+       * unaryRuleResult.getDependencies() + " " + totalProb);
+       */
+    }
+  }
+
   private static final int fillDependencies(int[] assignmentVarIndex, long[] assignment, int[] unfilledDepVarIndex,
       long[] unfilledDeps, int[] depToAssignmentRelabeling, long[] filledDepAccumulator, int numFilledDeps) {
     if (numFilledDeps == -1) {
@@ -1666,28 +2022,213 @@ public class CcgParser implements Serializable {
     return assignment ^ (((long) oldVarNum ^ newVarNum) << ASSIGNMENT_VAR_NUM_OFFSET);
   }
   
-  private static class CalculateInsideBeamCallable implements Callable<Void> {
+  /**
+   * Parses the spans of a chart in parallel, in an order determined
+   * by their dependencies. Span {@code (i, j)} depends on
+   * {@code (i, j - 1)} and {@code (i + 1, j)}, which transitively
+   * depend on all other subspans of {@code (i, j)}. Each span is
+   * submitted to the pool as soon as both of these spans are
+   * complete. Spans with the same start index are therefore never
+   * parsed concurrently, which allows them to share the chart's
+   * per-start-index accumulators.
+   */
+  private static class InsideBeamScheduler {
     private final CcgParser parser;
     private final CcgChart chart;
-
-    private final int spanStart;
-    private final int spanEnd;
-
     private final LogFunction log;
-
-    public CalculateInsideBeamCallable(CcgParser parser, CcgChart chart, int spanStart, int spanEnd,
-        LogFunction log) {
+    private final int chartSize;
+    private final long maxParseTimeMillis;
+    private final long endTime;
+
+    // Number of subspans of each span that are not yet complete,
+    // indexed by (spanStart * chartSize) + spanEnd.
+    private final AtomicIntegerArray numPendingSubspans;
+    // Number of spans that have been submitted but not completed.
+    // Parsing is finished when this number reaches 0.
+    private final AtomicInteger numSubmittedSpans;
+    private final CountDownLatch finished;
+
+    private volatile boolean cancelled;
+    private final AtomicReference<Throwable> error;
+
+    public InsideBeamScheduler(CcgParser parser, CcgChart chart, LogFunction log,
+        long maxParseTimeMillis) {
       this.parser = Preconditions.checkNotNull(parser);
       this.chart = Preconditions.checkNotNull(chart);
-      this.spanStart = spanStart;
-      this.spanEnd = spanEnd;
       this.log = log;
+      this.chartSize = chart.size();
+      this.maxParseTimeMillis = maxParseTimeMillis;
+      this.endTime = System.currentTimeMillis() + maxParseTimeMillis;
+
+      this.numPendingSubspans = new AtomicIntegerArray(chartSize * chartSize);
+      this.numSubmittedSpans = new AtomicInteger(0);
+      this.finished = new CountDownLatch(1);
+      this.cancelled = false;
+      this.error = new AtomicReference<Throwable>();
     }
 
-    @Override
-    public Void call() {
-      parser.calculateInsideBeam(spanStart, spanEnd, chart, log);
-      return null;
+    /**
+     * Parses the chart using {@code pool}. Returns {@code false} if
+     * parsing was stopped because it exceeded the maximum parse time
+     * or chart size.
+     */
+    public boolean run(ForkJoinPool pool) {
+      if (chartSize <= 1) {
+        return true;
+      }
+
+      for (int spanSize = 2; spanSize < chartSize; spanSize++) {
+        for (int spanStart = 0; spanStart + spanSize < chartSize; spanStart++) {
+          numPendingSubspans.set((spanStart * chartSize) + spanStart + spanSize, 2);
+        }
+      }
+
+      // Spans of length 1 only depend on the terminals.
+      numSubmittedSpans.set(chartSize - 1);
+      for (int spanStart = 0; spanStart + 1 < chartSize; spanStart++) {
+        pool.execute(new SpanTask(spanStart, spanStart + 1));
+      }
+
+      try {
+        finished.await();
+      } catch (InterruptedException e) {
+        cancelled = true;
+        throw new RuntimeException(e);
+      }
+
+      if (error.get() != null) {
+        throw new RuntimeException(error.get());
+      }
+      return !cancelled;
+    }
+
+    private boolean exceedsLimits() {
+      if (maxParseTimeMillis >= 0 && System.currentTimeMillis() > endTime) {
+        return true;
+      }
+      return chart.exceedsMaxChartSize();
+    }
+
+    private void parseSpan(int spanStart, int spanEnd) {
+      try {
+        if (!cancelled) {
+          parser.calculateInsideBeam(spanStart, spanEnd, chart, log);
+
+          if (exceedsLimits()) {
+            cancelled = true;
+          } else {
+            if (spanStart > 0) {
+              subspanCompleted(spanStart - 1, spanEnd);
+            }
+            if (spanEnd + 1 < chartSize) {
+              subspanCompleted(spanStart, spanEnd + 1);
+            }
+          }
+        }
+      } catch (Throwable t) {
+        error.compareAndSet(null, t);
+        cancelled = true;
+      } finally {
+        if (numSubmittedSpans.decrementAndGet() == 0) {
+          finished.countDown();
+        }
+      }
+    }
+
+    private void subspanCompleted(int spanStart, int spanEnd) {
+      if (numPendingSubspans.decrementAndGet((spanStart * chartSize) + spanEnd) == 0) {
+        numSubmittedSpans.incrementAndGet();
+        new SpanTask(spanStart, spanEnd).fork();
+      }
+    }
+
+    private class SpanTask extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+
+      private final int spanStart;
+      private final int spanEnd;
+
+      public SpanTask(int spanStart, int spanEnd) {
+        this.spanStart = spanStart;
+        this.spanEnd = spanEnd;
+      }
+
+      @Override
+      protected void compute() {
+        parseSpan(spanStart, spanEnd);
+      }
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * The scratch arrays used by a chart during parsing, which can be
+   * reused to parse many sentences. Each array has one entry per
+   * token; arrays are grown as necessary to parse longer sentences,
+   * up to {@code MAX_RETAINED_ACCUMULATOR_WORDS} tokens. Longer
+   * sentences use accumulators that are not retained.
+   */
+  private static class ChartAccumulators {
+    // About 3KB per token.
+    private static final int MAX_RETAINED_ACCUMULATOR_WORDS = 256;
+
+    private final int generation;
+
+    private int[][] assignmentVarIndexAccumulator = new int[0][];
+    private long[][] assignmentAccumulator = new long[0][];
+    private long[][] filledDepAccumulator = new long[0][];
+    private int[][] unfilledDepVarIndexAccumulator = new int[0][];
+    private long[][] unfilledDepAccumulator = new long[0][];
+    private long[] depLongCache = new long[0];
+    private double[] depProbCache = new double[0];
+
+    public ChartAccumulators(int generation) {
+      this.generation = generation;
+    }
+
+    public void setAccumulators(CcgChart chart, int numWords) {
+      if (depLongCache.length < numWords) {
+        if (numWords > MAX_RETAINED_ACCUMULATOR_WORDS) {
+          new ChartAccumulators(generation).allocate(numWords).setOnChart(chart);
+          return;
+        }
+        allocate(numWords);
+      } else {
+        // The cached dependency probabilities depend on the
+        // sentence, so they must not be reused.
+        Arrays.fill(depLongCache, 0L);
+      }
+      setOnChart(chart);
+    }
+
+    private ChartAccumulators allocate(int numWords) {
+      assignmentVarIndexAccumulator = new int[numWords][MAX_CHART_VAR_INDEX];
+      assignmentAccumulator = new long[numWords][MAX_CHART_ASSIGNMENTS];
+      filledDepAccumulator = new long[numWords][MAX_CHART_DEPS];
+      unfilledDepVarIndexAccumulator = new int[numWords][MAX_CHART_VAR_INDEX];
+      unfilledDepAccumulator = new long[numWords][MAX_CHART_DEPS];
+      depLongCache = new long[numWords];
+      depProbCache = new double[numWords];
+      return this;
+    }
+
+    private void setOnChart(CcgChart chart) {
+      chart.setAssignmentVarIndexAccumulator(assignmentVarIndexAccumulator);
+      chart.setAssignmentAccumulator(assignmentAccumulator);
+      chart.setFilledDepAccumulator(filledDepAccumulator);
+      chart.setUnfilledDepVarIndexAccumulator(unfilledDepVarIndexAccumulator);
+      chart.setUnfilledDepAccumulator(unfilledDepAccumulator);
+      chart.setDepLongCache(depLongCache);
+      chart.setDepProbCache(depProbCache);
+    }
+  }
+
+  /**
+   * Holds the default executor for {@link CcgParser#parseBatch},
+   * which is created the first time it is used.
+   */
+  private static class BatchExecutorHolder {
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ccg-parse-batch-%d").build());
+  }
+}
@@ -1,5 +1,6 @@
 package com.jayantkrish.jklol.ccg;
 
+import java.io.Serializable;
 import java.util.List;
 
 import com.google.common.base.Preconditions;
@@ -12,7 +13,9 @@ import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
 import com.jayantkrish.jklol.training.GradientOracle;
 import com.jayantkrish.jklol.training.LogFunction;
 
-public class CcgPerceptronOracle implements GradientOracle<CcgParser, CcgExample> {
+public class CcgPerceptronOracle implements GradientOracle<CcgParser, CcgExample>, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private final ParametricCcgParser family;
   
@@ -0,0 +1,183 @@
+package com.jayantkrish.jklol.ccg;
+
+import com.jayantkrish.jklol.models.DiscreteVariable;
+import com.jayantkrish.jklol.tensor.SparseTensor;
+import com.jayantkrish.jklol.tensor.Tensor;
+
+/**
+ * The binary and unary rules of a {@link CcgParser}, compiled into
+ * arrays indexed by syntactic category. These tables replace tensor
+ * lookups in the inner loop of parsing with array accesses.
+ * <p>
+ * Rules are stored in compressed sparse row format, since CCG
+ * grammars have thousands of syntactic categories but each category
+ * only combines with a few others. The search moves for a pair of
+ * left and right categories are stored contiguously, in the same
+ * order as the parser's syntax distribution, along with the
+ * probabilities of their binary and unary rules.
+ *
+ * @author jayantk
+ */
+class CcgRuleTable {
+
+  // The right categories that combine with each left category are
+  // rightTypes[leftOffsets[left]] to rightTypes[leftOffsets[left + 1] - 1].
+  private final int[] leftOffsets;
+  private final int[] rightTypes;
+  // The moves for the ith (left, right) pair are
+  // searchMoves[moveOffsets[i]] to searchMoves[moveOffsets[i + 1] - 1].
+  private final int[] moveOffsets;
+  private final CcgSearchMove[] searchMoves;
+  private final double[] binaryRuleProbs;
+  // 1.0 for moves without a unary rule.
+  private final double[] leftUnaryProbs;
+  private final double[] rightUnaryProbs;
+
+  // The unary rules for each input category are
+  // unaryCombinators[unaryOffsets[input]] to
+  // unaryCombinators[unaryOffsets[input + 1] - 1].
+  private final int[] unaryOffsets;
+  private final UnaryCombinator[] unaryCombinators;
+  private final double[] unaryRuleProbs;
+
+  /**
+   * Compiles a rule table from the weights of a parser's syntax
+   * distribution, binary rule distribution and unary rule
+   * distribution.
+   *
+   * @param syntaxDistributionTensor
+   * @param searchMoveType
+   * @param binaryRuleTensor
+   * @param unaryRuleTensor
+   * @param unaryRuleVarType
+   */
+  public CcgRuleTable(SparseTensor syntaxDistributionTensor, DiscreteVariable searchMoveType,
+      Tensor binaryRuleTensor, Tensor unaryRuleTensor, DiscreteVariable unaryRuleVarType) {
+    long[] keyNums = syntaxDistributionTensor.getKeyNums();
+    long[] offsets = syntaxDistributionTensor.getDimensionOffsets();
+    int numMoves = syntaxDistributionTensor.size();
+    int numLeftTypes = syntaxDistributionTensor.getDimensionSizes()[0];
+
+    searchMoves = new CcgSearchMove[numMoves];
+    binaryRuleProbs = new double[numMoves];
+    leftUnaryProbs = new double[numMoves];
+    rightUnaryProbs = new double[numMoves];
+
+    // Key numbers are sorted, so the moves are grouped by left
+    // category, then by right category.
+    int[] pairLeftTypes = new int[numMoves];
+    int[] pairRightTypes = new int[numMoves];
+    int[] pairOffsets = new int[numMoves + 1];
+    int numPairs = 0;
+    for (int i = 0; i < numMoves; i++) {
+      int leftType = (int) (keyNums[i] / offsets[0]);
+      int rightType = (int) ((keyNums[i] % offsets[0]) / offsets[1]);
+      int moveIndex = (int) (keyNums[i] % offsets[1]);
+
+      if (numPairs == 0 || pairLeftTypes[numPairs - 1] != leftType
+          || pairRightTypes[numPairs - 1] != rightType) {
+        pairLeftTypes[numPairs] = leftType;
+        pairRightTypes[numPairs] = rightType;
+        pairOffsets[numPairs] = i;
+        numPairs++;
+      }
+
+      CcgSearchMove searchMove = (CcgSearchMove) searchMoveType.getValue(moveIndex);
+      searchMoves[i] = searchMove;
+      binaryRuleProbs[i] = binaryRuleTensor.get(searchMove.getBinaryCombinatorKeyNum());
+      leftUnaryProbs[i] = getUnaryRuleProb(unaryRuleTensor, searchMove.getLeftUnaryKeyNum());
+      rightUnaryProbs[i] = getUnaryRuleProb(unaryRuleTensor, searchMove.getRightUnaryKeyNum());
+    }
+    pairOffsets[numPairs] = numMoves;
+
+    rightTypes = new int[numPairs];
+    moveOffsets = new int[numPairs + 1];
+    System.arraycopy(pairRightTypes, 0, rightTypes, 0, numPairs);
+    System.arraycopy(pairOffsets, 0, moveOffsets, 0, numPairs + 1);
+    leftOffsets = toOffsets(pairLeftTypes, numPairs, numLeftTypes);
+
+    // Unary rule key numbers are sorted by input category.
+    int numUnaryRules = unaryRuleTensor.size();
+    long unaryInputOffset = unaryRuleTensor.getDimensionOffsets()[0];
+    int numInputTypes = unaryRuleTensor.getDimensionSizes()[0];
+    int[] inputTypes = new int[numUnaryRules];
+    unaryCombinators = new UnaryCombinator[numUnaryRules];
+    unaryRuleProbs = new double[numUnaryRules];
+    for (int i = 0; i < numUnaryRules; i++) {
+      long keyNum = unaryRuleTensor.indexToKeyNum(i);
+      inputTypes[i] = (int) (keyNum / unaryInputOffset);
+      unaryCombinators[i] = (UnaryCombinator) unaryRuleVarType.getValue(
+          (int) (keyNum % unaryInputOffset));
+      unaryRuleProbs[i] = unaryRuleTensor.getByIndex(i);
+    }
+    unaryOffsets = toOffsets(inputTypes, numUnaryRules, numInputTypes);
+  }
+
+  private static double getUnaryRuleProb(Tensor unaryRuleTensor, long unaryKeyNum) {
+    return unaryKeyNum == -1 ? 1.0 : unaryRuleTensor.get(unaryKeyNum);
+  }
+
+  /**
+   * Converts a sorted array of {@code numItems} row numbers in
+   * {@code [0, numRows)} into an array whose {@code i}th entry is the
+   * index of the first item in row {@code i}.
+   */
+  private static int[] toOffsets(int[] rows, int numItems, int numRows) {
+    int[] offsets = new int[numRows + 1];
+    for (int i = 0; i < numItems; i++) {
+      offsets[rows[i] + 1]++;
+    }
+    for (int i = 0; i < numRows; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    return offsets;
+  }
+
+  public int getNumLeftTypes() {
+    return leftOffsets.length - 1;
+  }
+
+  public int[] getLeftOffsets() {
+    return leftOffsets;
+  }
+
+  public int[] getRightTypes() {
+    return rightTypes;
+  }
+
+  public int[] getMoveOffsets() {
+    return moveOffsets;
+  }
+
+  public CcgSearchMove[] getSearchMoves() {
+    return searchMoves;
+  }
+
+  public double[] getBinaryRuleProbs() {
+    return binaryRuleProbs;
+  }
+
+  public double[] getLeftUnaryProbs() {
+    return leftUnaryProbs;
+  }
+
+  public double[] getRightUnaryProbs() {
+    return rightUnaryProbs;
+  }
+
+  public int getNumInputTypes() {
+    return unaryOffsets.length - 1;
+  }
+
+  public int[] getUnaryOffsets() {
+    return unaryOffsets;
+  }
+
+  public UnaryCombinator[] getUnaryCombinators() {
+    return unaryCombinators;
+  }
+
+  public double[] getUnaryRuleProbs() {
+    return unaryRuleProbs;
+  }
+}
@@ -22,7 +22,9 @@ import com.jayantkrish.jklol.util.SegregatedKbestQueue;
  * @author jayantk
  */
 public class CcgShiftReduceInference implements CcgInference {
-  
+
+  private static final long serialVersionUID = 1L;
+
   private final int beamSize;
   private final int maxStackSize;
 
@@ -1,5 +1,6 @@
 package com.jayantkrish.jklol.ccg;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Set;
 
@@ -8,7 +9,10 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
-public class CcgSyntaxTree {
+public class CcgSyntaxTree implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
   // The syntactic category at the root of this tree, 
   // possibly after the application of a unary rule.
   private final SyntacticCategory syntax;
@@ -1,5 +1,6 @@
 package com.jayantkrish.jklol.ccg;
 
+import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -237,12 +238,7 @@ public class DefaultCcgFeatureFactory implements CcgFeatureFactory {
           lexiconFeatureVariable, null, false);
 
       scorers.add(new ParametricFeaturizedLexiconScorer(lexiconFeatureAnnotationName,
-          terminalSyntaxVar, featureVar, featureFamily, new Function<CcgCategory, Object>() {
-            @Override
-            public Object apply(CcgCategory category) {
-              return category.getSyntax();
-            }
-          }));
+          terminalSyntaxVar, featureVar, featureFamily, new CategoryToSyntax()));
     }
 
     return scorers;
@@ -312,4 +308,18 @@ public class DefaultCcgFeatureFactory implements CcgFeatureFactory {
     return new CombiningParametricFactor(allVars, Arrays.asList("root-word",
         "root-pos"), Arrays.asList(wordFactor, posFactor), true);
   }
-}
\ No newline at end of file
+
+  /**
+   * Maps a lexicon entry to its syntactic category, the label of
+   * lexicon features. Serializable, unlike an anonymous function, so
+   * that parsers using it can be saved and sent to other processes.
+   */
+  public static class CategoryToSyntax implements Function<CcgCategory, Object>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Object apply(CcgCategory category) {
+      return category.getSyntax();
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package com.jayantkrish.jklol.ccg;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.jayantkrish.jklol.ccg.chart.CcgBeamSearchChart;
+import com.jayantkrish.jklol.ccg.chart.ChartCost;
+import com.jayantkrish.jklol.ccg.chart.ChartEntry;
+import com.jayantkrish.jklol.nlpannotation.AnnotatedSentence;
+import com.jayantkrish.jklol.training.NullLogFunction;
+import com.jayantkrish.jklol.util.ArrayUtils;
+
+/**
+ * A beam search parsing session for a sentence whose words arrive
+ * one at a time, e.g., from a speech recognizer. Each call to
+ * {@link #addToken} parses only the spans that end at the new word,
+ * so the cost of parsing is spread over the sentence. The best
+ * parses of the words received so far are available after each
+ * word, and are identical to the parses produced by
+ * {@link CcgParser#beamSearch} for the same words.
+ * <p>
+ * Sessions are not thread-safe.
+ *
+ * @author jayantk
+ */
+public class IncrementalCcgParser {
+
+  private final CcgParser parser;
+  private final int beamSize;
+  // May be null, in which case no chart entries are pruned.
+  private final ChartCost chartFilter;
+
+  private final CcgBeamSearchChart chart;
+  private final List<String> words;
+  private final List<String> posTags;
+
+  /**
+   * Creates a session for parsing a sentence of at most
+   * {@code maxSentenceLength} words.
+   *
+   * @param parser
+   * @param beamSize
+   * @param maxSentenceLength
+   * @param chartFilter May be {@code null}, in which case all beam
+   * entries are retained.
+   */
+  public IncrementalCcgParser(CcgParser parser, int beamSize, int maxSentenceLength,
+      ChartCost chartFilter) {
+    Preconditions.checkArgument(!parser.canSkipWords(),
+        "Incremental parsing does not support parsers that skip words");
+    this.parser = parser;
+    this.beamSize = beamSize;
+    this.chartFilter = chartFilter;
+
+    this.words = Lists.newArrayList();
+    this.posTags = Lists.newArrayList();
+    this.chart = new CcgBeamSearchChart(maxSentenceLength, beamSize);
+    chart.reset(getSentence(), Integer.MAX_VALUE, beamSize);
+  }
+
+  /**
+   * Gets the words received so far.
+   *
+   * @return
+   */
+  public AnnotatedSentence getSentence() {
+    return new AnnotatedSentence(words, posTags);
+  }
+
+  public int size() {
+    return words.size();
+  }
+
+  /**
+   * Appends a word to the sentence and parses the spans that end at
+   * the word.
+   *
+   * @param word
+   * @param pos
+   * @return the best complete parses of the words received so far.
+   */
+  public List<CcgParse> addToken(String word, String pos) {
+    words.add(word);
+    posTags.add(pos);
+    parser.extendChart(chart, getSentence(), chartFilter, new NullLogFunction());
+    return getBestParses(beamSize);
+  }
+
+  /**
+   * Gets the {@code numParses} best parses of the words received so
+   * far, including the parser's scores for the root of the parse.
+   *
+   * @param numParses
+   * @return
+   */
+  public List<CcgParse> getBestParses(int numParses) {
+    if (words.size() == 0) {
+      return Collections.emptyList();
+    }
+
+    // Scoring the root modifies the chart entries for the whole
+    // sentence, so they are restored afterward to allow further
+    // words to be parsed.
+    int spanEnd = chart.size() - 1;
+    int numEntries = chart.getNumChartEntriesForSpan(0, spanEnd);
+    ChartEntry[] entries = CcgBeamSearchChart.copyChartEntryArray(
+        chart.getChartEntriesForSpan(0, spanEnd), numEntries);
+    double[] probs = ArrayUtils.copyOf(chart.getChartEntryProbsForSpan(0, spanEnd), numEntries);
+
+    parser.reweightRootEntries(chart);
+    List<CcgParse> parses = chart.decodeBestParsesForSpan(0, spanEnd,
+        Math.min(numParses, chart.getNumChartEntriesForSpan(0, spanEnd)), parser);
+
+    // The probabilities of the restored entries already include the
+    // chart filter.
+    chart.clearChartEntriesForSpan(0, spanEnd);
+    chart.setChartCost(null);
+    for (int i = 0; i < numEntries; i++) {
+      chart.addChartEntryForSpan(entries[i], probs[i], 0, spanEnd, parser.getSyntaxVarType());
+    }
+    chart.setChartCost(chartFilter);
+    chart.doneAddingChartEntriesForSpan(0, spanEnd);
+
+    return parses;
+  }
+
+  /**
+   * Gets the {@code numParses} best partial parses of the words
+   * received so far. Unlike {@link #getBestParses}, these parses do
+   * not include scores for the root of the parse, and can be
+   * extended by parsing further words.
+   *
+   * @param numParses
+   * @return
+   */
+  public List<CcgParse> getBestPartialParses(int numParses) {
+    if (words.size() == 0) {
+      return Collections.emptyList();
+    }
+    int spanEnd = chart.size() - 1;
+    return chart.decodeBestParsesForSpan(0, spanEnd,
+        Math.min(numParses, chart.getNumChartEntriesForSpan(0, spanEnd)), parser);
+  }
+}
@@ -1,9 +1,13 @@
 package com.jayantkrish.jklol.ccg;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Doubles;
 import com.jayantkrish.jklol.ccg.chart.ChartCost;
 import com.jayantkrish.jklol.ccg.supertag.ListSupertaggedSentence;
 import com.jayantkrish.jklol.ccg.supertag.Supertagger;
@@ -17,7 +21,9 @@ import com.jayantkrish.jklol.training.NullLogFunction;
  * The parser can be configured to use a backoff strategy that
  * adjusts the supertagger's multitag threshold (which affects
  * the number of supertags assigned to each token) when CCG
- * parsing fails.
+ * parsing fails. Each threshold is tried in a separate parsing pass,
+ * and {@link #getPassStatistics()} reports the number of parses
+ * attempted, the success rate and the parsing time of each pass.
  *
  * @author jayantk
  */
@@ -30,6 +36,16 @@ public class SupertaggingCcgParser {
   private final double[] multitagThresholds;
   private final String supertaggerAnnotationName;
 
+  // The supertagger is run once per sentence, at the smallest
+  // (i.e., least restrictive) threshold. Unused if there are no
+  // thresholds.
+  private final double minMultitagThreshold;
+
+  // Statistics for each parsing pass, indexed by threshold. If
+  // supertagging is not used, there is a single pass.
+  private final AtomicLongArray passAttempts;
+  private final AtomicLongArray passSuccesses;
+  private final AtomicLongArray passNanos;
 
   public SupertaggingCcgParser(CcgParser parser, CcgInference inference,
       Supertagger supertagger, double[] multitagThresholds, String supertaggerAnnotationName) {
@@ -40,6 +56,38 @@ public class SupertaggingCcgParser {
     this.supertagger = supertagger;
     this.multitagThresholds = Arrays.copyOf(multitagThresholds, multitagThresholds.length);
     this.supertaggerAnnotationName = supertaggerAnnotationName;
+    this.minMultitagThreshold = multitagThresholds.length > 0 ? Doubles.min(multitagThresholds) : 0.0;
+
+    int numPasses = Math.max(multitagThresholds.length, 1);
+    this.passAttempts = new AtomicLongArray(numPasses);
+    this.passSuccesses = new AtomicLongArray(numPasses);
+    this.passNanos = new AtomicLongArray(numPasses);
+  }
+
+  /**
+   * Creates a parser that first parses with the most restrictive
+   * threshold in {@code multitagThresholds}, and only tries less
+   * restrictive thresholds if parsing fails. Parsing fails if the
+   * sentence has no parse using the assigned supertags, or if
+   * {@code inference} exceeds its time or chart size limit. Most
+   * sentences can be parsed using few supertags per word, so this
+   * is much faster than parsing every sentence at a single, less
+   * restrictive threshold.
+   *
+   * @param parser
+   * @param inference
+   * @param supertagger
+   * @param multitagThresholds
+   * @param supertaggerAnnotationName
+   * @return
+   */
+  public static SupertaggingCcgParser createAdaptive(CcgParser parser, CcgInference inference,
+      Supertagger supertagger, double[] multitagThresholds, String supertaggerAnnotationName) {
+    // Larger thresholds assign fewer supertags.
+    List<Double> sortedThresholds = Lists.newArrayList(Doubles.asList(multitagThresholds));
+    Collections.sort(sortedThresholds, Collections.reverseOrder());
+    return new SupertaggingCcgParser(parser, inference, supertagger,
+        Doubles.toArray(sortedThresholds), supertaggerAnnotationName);
   }
 
   /**
@@ -56,19 +104,28 @@ public class SupertaggingCcgParser {
   public CcgParseResult parse(AnnotatedSentence sentence, ChartCost inputFilter) {
     AnnotatedSentence annotatedSentence = null;
     if (supertagger != null) {
+      if (multitagThresholds.length == 0) {
+        // No parsing pass would use the supertags.
+        return null;
+      }
+      List<WordAndPos> supertaggerInput = sentence.getWordsAndPosTags();
+      ListSupertaggedSentence allSupertags = supertagger.multitag(supertaggerInput,
+          minMultitagThreshold);
+
       for (int i = 0; i < multitagThresholds.length; i++) {
         // Try parsing at each multitag threshold. If parsing succeeds,
         // immediately return the parse. Otherwise, continue to further
         // thresholds.
-        List<WordAndPos> supertaggerInput = sentence.getWordsAndPosTags();
-        ListSupertaggedSentence supertaggedSentence = supertagger
-            .multitag(supertaggerInput, multitagThresholds[i]);
-        
+        long startTime = System.nanoTime();
+        ListSupertaggedSentence supertaggedSentence = allSupertags.filterSupertags(
+            multitagThresholds[i]);
+
         annotatedSentence = sentence.addAnnotation(supertaggerAnnotationName,
             supertaggedSentence.getAnnotation());
 
         CcgParse parse = inference.getBestParse(parser, annotatedSentence, inputFilter,
             new NullLogFunction());
+        recordPass(i, parse != null, System.nanoTime() - startTime);
         if (parse != null) {
           return new CcgParseResult(parse, annotatedSentence, multitagThresholds[i]);
         }
@@ -76,7 +133,9 @@ public class SupertaggingCcgParser {
       // Parsing was unsuccessful at all thresholds
       return null;
     } else {
+      long startTime = System.nanoTime();
       CcgParse parse = inference.getBestParse(parser, sentence, inputFilter, new NullLogFunction());
+      recordPass(0, parse != null, System.nanoTime() - startTime);
       if (parse != null) {
         return new CcgParseResult(parse, sentence, 0.0);
       } else {
@@ -100,6 +159,82 @@ public class SupertaggingCcgParser {
     return parser;
   }
 
+  private void recordPass(int pass, boolean success, long nanos) {
+    passAttempts.incrementAndGet(pass);
+    if (success) {
+      passSuccesses.incrementAndGet(pass);
+    }
+    passNanos.addAndGet(pass, nanos);
+  }
+
+  /**
+   * Gets statistics about each parsing pass performed by this
+   * parser so far. There is one pass per multitag threshold, in the
+   * order the thresholds are tried, or a single pass if this parser
+   * does not use a supertagger. This method is safe to call while
+   * other threads are parsing.
+   *
+   * @return
+   */
+  public List<PassStatistics> getPassStatistics() {
+    List<PassStatistics> statistics = Lists.newArrayList();
+    for (int i = 0; i < passAttempts.length(); i++) {
+      double threshold = i < multitagThresholds.length ? multitagThresholds[i] : 0.0;
+      statistics.add(new PassStatistics(threshold, passAttempts.get(i), passSuccesses.get(i),
+          passNanos.get(i) / 1000000.0));
+    }
+    return statistics;
+  }
+
+  /**
+   * The number of sentences parsed during a single parsing pass, the
+   * number of successful parses, and the total time taken.
+   */
+  public static class PassStatistics {
+    private final double tagThreshold;
+    private final long numAttempts;
+    private final long numSuccesses;
+    private final double totalMillis;
+
+    public PassStatistics(double tagThreshold, long numAttempts, long numSuccesses,
+        double totalMillis) {
+      this.tagThreshold = tagThreshold;
+      this.numAttempts = numAttempts;
+      this.numSuccesses = numSuccesses;
+      this.totalMillis = totalMillis;
+    }
+
+    public double getTagThreshold() {
+      return tagThreshold;
+    }
+
+    public long getNumAttempts() {
+      return numAttempts;
+    }
+
+    public long getNumSuccesses() {
+      return numSuccesses;
+    }
+
+    public double getSuccessRate() {
+      return numAttempts > 0 ? ((double) numSuccesses) / numAttempts : 0.0;
+    }
+
+    public double getTotalMillis() {
+      return totalMillis;
+    }
+
+    public double getMeanMillis() {
+      return numAttempts > 0 ? totalMillis / numAttempts : 0.0;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("threshold %s: %d/%d parsed (%.3f), %.3f ms total, %.3f ms/sentence",
+          tagThreshold, numSuccesses, numAttempts, getSuccessRate(), totalMillis, getMeanMillis());
+    }
+  }
+
   public static class CcgParseResult {
     private final CcgParse parse;
     private final AnnotatedSentence sentence;
@@ -1,6 +1,8 @@
 package com.jayantkrish.jklol.ccg.chart;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import com.google.common.base.Preconditions;
@@ -13,6 +15,7 @@ import com.jayantkrish.jklol.models.DiscreteFactor;
 import com.jayantkrish.jklol.models.DiscreteVariable;
 import com.jayantkrish.jklol.nlpannotation.AnnotatedSentence;
 import com.jayantkrish.jklol.util.IntMultimap;
+import com.jayantkrish.jklol.util.Pair;
 
 /**
  * Common implementations of CCG parse chart methods.
@@ -22,13 +25,13 @@ import com.jayantkrish.jklol.util.IntMultimap;
 public abstract class AbstractCcgChart implements CcgChart {
 
   // The words and pos tags of the sentence being parsed.
-  private final AnnotatedSentence input;
-  private final List<String> terminals;
-  private final List<String> posTags;
+  private AnnotatedSentence input;
+  private List<String> terminals;
+  private List<String> posTags;
   private int[] posTagsInt;
   
   // Maximum number of chart entries.
-  private final int maxChartSize;
+  private int maxChartSize;
 
   // Various kinds of distances between words in the sentence.
   private int[] wordDistances;
@@ -52,6 +55,28 @@ public abstract class AbstractCcgChart implements CcgChart {
   private boolean finishedParsing;
 
   public AbstractCcgChart(AnnotatedSentence input, int maxChartSize) {
+    setSentence(input, maxChartSize);
+  }
+
+  /**
+   * Creates a chart with no sentence, which must be set using
+   * {@link #setSentence} before parsing.
+   */
+  protected AbstractCcgChart() {
+    this.terminals = ImmutableList.of();
+    this.posTags = ImmutableList.of();
+    this.finishedParsing = false;
+  }
+
+  /**
+   * Sets the sentence being parsed, discarding any per-sentence
+   * state of this chart. The accumulators are retained, and may be
+   * reused while parsing {@code input}.
+   *
+   * @param input
+   * @param maxChartSize
+   */
+  protected void setSentence(AnnotatedSentence input, int maxChartSize) {
     this.input = input;
     this.terminals = ImmutableList.copyOf(input.getWords());
     this.posTags = ImmutableList.copyOf(input.getPosTags());
@@ -59,6 +84,11 @@ public abstract class AbstractCcgChart implements CcgChart {
 
     // dependencyTensor, the distance arrays / tensors, and syntax distribution are
     // left null, and must be manually set.
+    this.posTagsInt = null;
+    this.wordDistances = null;
+    this.puncDistances = null;
+    this.verbDistances = null;
+    this.entryFilter = null;
 
     this.finishedParsing = false;
   }
@@ -88,6 +118,11 @@ public abstract class AbstractCcgChart implements CcgChart {
     return maxChartSize;
   }
 
+  @Override
+  public boolean exceedsMaxChartSize() {
+    return getTotalNumChartEntries() > getMaxChartEntries();
+  }
+
   @Override
   public final void setPosTagsInt(int[] posTagsInt) {
     Preconditions.checkArgument(posTagsInt.length == size());
@@ -228,8 +263,39 @@ public abstract class AbstractCcgChart implements CcgChart {
    * @return
    */
   public CcgParse decodeParseFromSpan(int spanStart, int spanEnd, int beamIndex, CcgParser parser) {
-    DiscreteVariable syntaxVarType = parser.getSyntaxVarType();
     ChartEntry entry = getChartEntriesForSpan(spanStart, spanEnd)[beamIndex];
+    double probability = getChartEntryProbsForSpan(spanStart, spanEnd)[beamIndex];
+
+    CcgParse left = null;
+    CcgParse right = null;
+    if (!entry.isTerminal()) {
+      left = decodeParseFromSpan(entry.getLeftSpanStart(), entry.getLeftSpanEnd(),
+          entry.getLeftChartIndex(), parser);
+      right = decodeParseFromSpan(entry.getRightSpanStart(), entry.getRightSpanEnd(),
+          entry.getRightChartIndex(), parser);
+    }
+    return decodeParse(entry, probability, spanStart, spanEnd, left, right, parser);
+  }
+
+  /**
+   * Creates the CCG parse for {@code entry}, a chart entry spanning
+   * {@code spanStart} to {@code spanEnd} with the given
+   * {@code probability}. If {@code entry} is a nonterminal,
+   * {@code left} and {@code right} are the already-decoded parses of
+   * the chart entries it combines.
+   * 
+   * @param entry
+   * @param probability
+   * @param spanStart
+   * @param spanEnd
+   * @param left
+   * @param right
+   * @param parser
+   * @return
+   */
+  protected CcgParse decodeParse(ChartEntry entry, double probability, int spanStart,
+      int spanEnd, CcgParse left, CcgParse right, CcgParser parser) {
+    DiscreteVariable syntaxVarType = parser.getSyntaxVarType();
     HeadedSyntacticCategory syntax = (HeadedSyntacticCategory) syntaxVarType.getValue(
         entry.getHeadedSyntax());
 
@@ -245,14 +311,9 @@ public abstract class AbstractCcgChart implements CcgChart {
       return CcgParse.forTerminal(syntax, lexiconEntryInfo, posTags.subList(spanStart, spanEnd + 1),
           parser.variableToIndexedPredicateArray(syntax.getHeadVariable(), entry.getAssignments()),
           Arrays.asList(parser.longArrayToFilledDependencyArray(entry.getDependencies())),
-          terminals.subList(spanStart, spanEnd + 1), getChartEntryProbsForSpan(spanStart, spanEnd)[beamIndex],
+          terminals.subList(spanStart, spanEnd + 1), probability,
           entry.getRootUnaryRule(), spanStart, spanEnd);
     } else {
-      CcgParse left = decodeParseFromSpan(entry.getLeftSpanStart(), entry.getLeftSpanEnd(),
-          entry.getLeftChartIndex(), parser);
-      CcgParse right = decodeParseFromSpan(entry.getRightSpanStart(), entry.getRightSpanEnd(),
-          entry.getRightChartIndex(), parser);
-
       if (entry.getLeftUnaryRule() != null) {
         left = left.addUnaryRule(entry.getLeftUnaryRule(), (HeadedSyntacticCategory)
             syntaxVarType.getValue(entry.getLeftUnaryRule().getSyntax()));
@@ -262,8 +323,7 @@ public abstract class AbstractCcgChart implements CcgChart {
             syntaxVarType.getValue(entry.getRightUnaryRule().getSyntax()));
       }
 
-      double nodeProb = getChartEntryProbsForSpan(spanStart, spanEnd)[beamIndex] /
-          (left.getSubtreeProbability() * right.getSubtreeProbability());
+      double nodeProb = probability / (left.getSubtreeProbability() * right.getSubtreeProbability());
 
       return CcgParse.forNonterminal(syntax,
           parser.variableToIndexedPredicateArray(syntax.getHeadVariable(), entry.getAssignments()),
@@ -272,6 +332,30 @@ public abstract class AbstractCcgChart implements CcgChart {
     }
   }
 
+  @Override
+  public List<Pair<ChartEntry, Double>> getMergedDerivations(ChartEntry entry) {
+    return Collections.emptyList();
+  }
+
+  /**
+   * Gets an iterator over the parses spanning {@code spanStart} to
+   * {@code spanEnd}, in order of decreasing probability. Each parse
+   * is only decoded when it is returned by the iterator, so the cost
+   * of decoding depends on the number of parses retrieved, not the
+   * number of entries in the chart. In charts that merge
+   * derivations, the iterator also returns the merged derivations of
+   * each chart entry. See {@link LazyKbestDecoder}.
+   * 
+   * @param spanStart
+   * @param spanEnd
+   * @param parser
+   * @return
+   */
+  public Iterator<CcgParse> iterateBestParsesForSpan(int spanStart, int spanEnd,
+      CcgParser parser) {
+    return new LazyKbestDecoder(this, spanStart, spanEnd, parser);
+  }
+
   protected  IntMultimap aggregateBySyntacticType(ChartEntry[] entries, int numEntries) {
     int[] keys = new int[numEntries];
     int[] values = new int[numEntries];
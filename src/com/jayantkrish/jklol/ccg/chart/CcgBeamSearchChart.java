@@ -4,6 +4,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.jayantkrish.jklol.ccg.CcgParse;
@@ -21,8 +22,12 @@ import com.jayantkrish.jklol.util.IntMultimap;
  */
 public class CcgBeamSearchChart extends AbstractCcgChart {
 
-  private final int beamSize;
-  private final int numTerminals;
+  // The largest sentence and beam that this chart can store.
+  private final int maxSentenceLength;
+  private final int maxBeamSize;
+
+  private int beamSize;
+  private int numTerminals;
 
   private final ChartEntry[][][] chart;
   private final double[][][] probabilities;
@@ -41,20 +46,114 @@ public class CcgBeamSearchChart extends AbstractCcgChart {
    * @param beamSize
    */
   public CcgBeamSearchChart(AnnotatedSentence sentence, int maxChartSize, int beamSize) {
-    super(sentence, maxChartSize);
-    this.beamSize = beamSize;
+    this(sentence.size(), beamSize);
+    reset(sentence, maxChartSize, beamSize);
+  }
+
+  /**
+   * Creates an empty CCG chart that can be reused to parse any
+   * sentence with at most {@code maxSentenceLength} words, using a
+   * beam of at most {@code maxBeamSize} entries. {@link #reset} must
+   * be called before parsing each sentence.
+   * 
+   * @param maxSentenceLength
+   * @param maxBeamSize
+   */
+  public CcgBeamSearchChart(int maxSentenceLength, int maxBeamSize) {
+    super();
+    this.maxSentenceLength = maxSentenceLength;
+    this.maxBeamSize = maxBeamSize;
+    this.beamSize = maxBeamSize;
+    this.numTerminals = 0;
 
-    numTerminals = sentence.size();
-    this.chart = new ChartEntry[numTerminals][numTerminals][beamSize + 1];
-    this.probabilities = new double[numTerminals][numTerminals][beamSize + 1];
-    this.chartSizes = new int[numTerminals * numTerminals];
+    this.chart = new ChartEntry[maxSentenceLength][maxSentenceLength][maxBeamSize + 1];
+    this.probabilities = new double[maxSentenceLength][maxSentenceLength][maxBeamSize + 1];
+    this.chartSizes = new int[maxSentenceLength * maxSentenceLength];
     Arrays.fill(chartSizes, 0);
 
-    this.chartEntriesBySyntacticCategory = new IntMultimap[numTerminals][numTerminals];
+    this.chartEntriesBySyntacticCategory = new IntMultimap[maxSentenceLength][maxSentenceLength];
 
     this.totalChartSize = 0;
   }
 
+  /**
+   * Prepares this chart to parse {@code sentence}, discarding the
+   * chart entries for any previously parsed sentence. The time taken
+   * is proportional to the number of entries in the chart, not its
+   * maximum size.
+   * 
+   * @param sentence
+   * @param maxChartSize
+   * @param beamSize
+   */
+  public void reset(AnnotatedSentence sentence, int maxChartSize, int beamSize) {
+    Preconditions.checkArgument(sentence.size() <= maxSentenceLength,
+        "Sentence length %s exceeds chart capacity %s", sentence.size(), maxSentenceLength);
+    Preconditions.checkArgument(beamSize <= maxBeamSize,
+        "Beam size %s exceeds chart capacity %s", beamSize, maxBeamSize);
+
+    clear();
+    setSentence(sentence, maxChartSize);
+    this.beamSize = beamSize;
+    this.numTerminals = sentence.size();
+  }
+
+  /**
+   * Replaces the sentence being parsed with {@code sentence}, which
+   * must consist of the current sentence followed by zero or more
+   * additional words. The chart entries of the current sentence are
+   * retained. See {@link CcgParser#extendChart}.
+   *
+   * @param sentence
+   */
+  public void extendSentence(AnnotatedSentence sentence) {
+    Preconditions.checkArgument(sentence.size() >= numTerminals,
+        "Sentence cannot be shortened from %s to %s words", numTerminals, sentence.size());
+    Preconditions.checkArgument(sentence.size() <= maxSentenceLength,
+        "Sentence length %s exceeds chart capacity %s", sentence.size(), maxSentenceLength);
+
+    setSentence(sentence, getMaxChartEntries());
+    this.numTerminals = sentence.size();
+  }
+
+  /**
+   * Removes all chart entries, releasing references to them. Only the
+   * spans of the most recently parsed sentence are cleared.
+   */
+  public void clear() {
+    for (int i = 0; i < numTerminals; i++) {
+      for (int j = i; j < numTerminals; j++) {
+        int spanIndex = j + (maxSentenceLength * i);
+        // Removing the minimum entry from a full beam leaves it in
+        // the array just past the end of the heap.
+        Arrays.fill(chart[i][j], 0, Math.min(chartSizes[spanIndex] + 1, chart[i][j].length), null);
+        chartSizes[spanIndex] = 0;
+        chartEntriesBySyntacticCategory[i][j] = null;
+      }
+    }
+    numTerminals = 0;
+    totalChartSize = 0;
+  }
+
+  /**
+   * Gets the maximum number of words in a sentence that can be
+   * parsed using this chart.
+   * 
+   * @return
+   */
+  public int getMaxSentenceLength() {
+    return maxSentenceLength;
+  }
+
+  /**
+   * Gets the maximum beam size that can be used with this chart.
+   * 
+   * @return
+   */
+  public int getMaxBeamSize() {
+    return maxBeamSize;
+  }
+
   /**
    * Gets the size of the beam, which is the maximum number of parses
    * to retain any span during beam search.
@@ -168,7 +267,7 @@ public class CcgBeamSearchChart extends AbstractCcgChart {
 
   @Override
   public int getNumChartEntriesForSpan(int spanStart, int spanEnd) {
-    return chartSizes[spanEnd + (numTerminals * spanStart)];
+    return chartSizes[spanEnd + (maxSentenceLength * spanStart)];
   }
   
   @Override
@@ -191,8 +290,8 @@ public class CcgBeamSearchChart extends AbstractCcgChart {
 
   @Override
   public void clearChartEntriesForSpan(int spanStart, int spanEnd) {
-    totalChartSize -= chartSizes[spanEnd + (numTerminals * spanStart)];
-    chartSizes[spanEnd + (numTerminals * spanStart)] = 0;
+    totalChartSize -= chartSizes[spanEnd + (maxSentenceLength * spanStart)];
+    chartSizes[spanEnd + (maxSentenceLength * spanStart)] = 0;
     chartEntriesBySyntacticCategory[spanStart][spanEnd] = null;
 
     // This part is unnecessary, but makes debugging easier.
@@ -213,14 +312,14 @@ public class CcgBeamSearchChart extends AbstractCcgChart {
    */
   private final void offerEntry(ChartEntry entry, double probability, int spanStart, int spanEnd) {
     HeapUtils.offer(chart[spanStart][spanEnd], probabilities[spanStart][spanEnd],
-        chartSizes[spanEnd + (numTerminals * spanStart)], entry, probability);
-    chartSizes[spanEnd + (numTerminals * spanStart)]++;
+        chartSizes[spanEnd + (maxSentenceLength * spanStart)], entry, probability);
+    chartSizes[spanEnd + (maxSentenceLength * spanStart)]++;
     totalChartSize++;
 
-    if (chartSizes[spanEnd + (numTerminals * spanStart)] > beamSize) {
+    if (chartSizes[spanEnd + (maxSentenceLength * spanStart)] > beamSize) {
       HeapUtils.removeMin(chart[spanStart][spanEnd], probabilities[spanStart][spanEnd],
-          chartSizes[spanEnd + (numTerminals * spanStart)]);
-      chartSizes[spanEnd + (numTerminals * spanStart)]--;
+          chartSizes[spanEnd + (maxSentenceLength * spanStart)]);
+      chartSizes[spanEnd + (maxSentenceLength * spanStart)]--;
       totalChartSize--;
     }
   }
@@ -0,0 +1,147 @@
+package com.jayantkrish.jklol.ccg.chart;
+
+import java.lang.ref.SoftReference;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Supplier;
+import com.jayantkrish.jklol.nlpannotation.AnnotatedSentence;
+import com.jayantkrish.jklol.util.ObjectPool;
+
+/**
+ * A pool of reusable {@link CcgBeamSearchChart}s, which avoids
+ * allocating a new chart for every parsed sentence. Pooled charts
+ * grow as necessary to fit longer sentences or larger beams, so
+ * after parsing a few sentences checking out a chart does not
+ * allocate. Charts with more than {@link #MAX_POOLED_CHART_CELLS}
+ * cells are allocated for a single sentence and never pooled, so a
+ * pool retains at most a bounded amount of memory.
+ * <p>
+ * Pools are not thread-safe. Use {@link #forCurrentThread()} to get
+ * a pool that belongs to the calling thread. Each thread's pool is
+ * softly referenced, so it is released under memory pressure, and
+ * {@link #clearAll()} releases the pools of every thread.
+ *
+ * @author jayantk
+ */
+public class CcgBeamSearchChartPool {
+
+  // The number of charts that a single thread is expected to have
+  // checked out at once.
+  private static final int MAX_THREAD_POOL_SIZE = 4;
+
+  /**
+   * The maximum number of cells (sentence length squared times beam
+   * size) of a pooled chart. Each cell takes 16 bytes, so a pooled
+   * chart uses at most 16MB.
+   */
+  public static final long MAX_POOLED_CHART_CELLS = 1L << 20;
+
+  private static final ThreadLocal<SoftReference<CcgBeamSearchChartPool>> THREAD_POOLS =
+      new ThreadLocal<SoftReference<CcgBeamSearchChartPool>>();
+
+  // Incremented by clearAll. Thread pools created before the current
+  // generation are discarded the next time they are used.
+  private static final AtomicInteger GENERATION = new AtomicInteger(0);
+
+  private final ObjectPool<CcgBeamSearchChart> pool;
+  private final int generation;
+
+  /**
+   * Creates a pool that permits at most {@code maxSize} charts to be
+   * checked out at once.
+   *
+   * @param maxSize
+   */
+  public CcgBeamSearchChartPool(int maxSize) {
+    this(maxSize, GENERATION.get());
+  }
+
+  private CcgBeamSearchChartPool(int maxSize, int generation) {
+    this.generation = generation;
+    this.pool = new ObjectPool<CcgBeamSearchChart>(new Supplier<CcgBeamSearchChart>() {
+      @Override
+      public CcgBeamSearchChart get() {
+        // Charts are sized when they are checked out.
+        return new CcgBeamSearchChart(0, 0);
+      }
+    }, maxSize, new CcgBeamSearchChart[0]);
+  }
+
+  /**
+   * Gets the pool for the calling thread.
+   *
+   * @return
+   */
+  public static CcgBeamSearchChartPool forCurrentThread() {
+    SoftReference<CcgBeamSearchChartPool> reference = THREAD_POOLS.get();
+    CcgBeamSearchChartPool pool = (reference != null) ? reference.get() : null;
+    int currentGeneration = GENERATION.get();
+    if (pool == null || pool.generation != currentGeneration) {
+      pool = new CcgBeamSearchChartPool(MAX_THREAD_POOL_SIZE, currentGeneration);
+      THREAD_POOLS.set(new SoftReference<CcgBeamSearchChartPool>(pool));
+    }
+    return pool;
+  }
+
+  /**
+   * Releases the pooled charts of every thread. Each thread's pool is
+   * replaced the next time the thread calls {@link #forCurrentThread()};
+   * until then, its charts are only softly reachable. Charts that
+   * are checked out when this method is called remain valid.
+   */
+  public static void clearAll() {
+    GENERATION.incrementAndGet();
+    THREAD_POOLS.remove();
+  }
+
+  private static long getNumCells(int sentenceLength, int beamSize) {
+    return ((long) sentenceLength) * sentenceLength * (beamSize + 1);
+  }
+
+  /**
+   * Gets an empty chart for parsing {@code sentence}. The chart must
+   * be returned using {@link #checkIn} once it is no longer needed.
+   *
+   * @param sentence
+   * @param maxChartSize
+   * @param beamSize
+   * @return
+   */
+  public CcgBeamSearchChart checkOut(AnnotatedSentence sentence, int maxChartSize,
+      int beamSize) {
+    if (getNumCells(sentence.size(), beamSize) > MAX_POOLED_CHART_CELLS) {
+      // Too large to keep in the pool; checkIn discards this chart.
+      return new CcgBeamSearchChart(sentence, maxChartSize, beamSize);
+    }
+
+    CcgBeamSearchChart chart = pool.alloc();
+    if (chart.getMaxSentenceLength() < sentence.size() || chart.getMaxBeamSize() < beamSize) {
+      int maxSentenceLength = Math.max(chart.getMaxSentenceLength(), sentence.size());
+      int maxBeamSize = Math.max(chart.getMaxBeamSize(), beamSize);
+      if (getNumCells(maxSentenceLength, maxBeamSize) > MAX_POOLED_CHART_CELLS) {
+        maxSentenceLength = sentence.size();
+        maxBeamSize = beamSize;
+      }
+      chart = new CcgBeamSearchChart(maxSentenceLength, maxBeamSize);
+    }
+    chart.reset(sentence, maxChartSize, beamSize);
+    return chart;
+  }
+
+  /**
+   * Returns {@code chart}, which was checked out from this pool, to
+   * the pool. {@code chart} must not be used after calling this
+   * method.
+   *
+   * @param chart
+   */
+  public void checkIn(CcgBeamSearchChart chart) {
+    if (getNumCells(chart.getMaxSentenceLength(), chart.getMaxBeamSize())
+        > MAX_POOLED_CHART_CELLS) {
+      // Not from the pool.
+      return;
+    }
+    chart.clear();
+    pool.dealloc(chart);
+  }
+}
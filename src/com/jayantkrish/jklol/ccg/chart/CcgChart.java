@@ -7,6 +7,7 @@ import com.jayantkrish.jklol.ccg.CcgParser;
 import com.jayantkrish.jklol.models.DiscreteVariable;
 import com.jayantkrish.jklol.nlpannotation.AnnotatedSentence;
 import com.jayantkrish.jklol.util.IntMultimap;
+import com.jayantkrish.jklol.util.Pair;
 
 public interface CcgChart {
 
@@ -33,6 +34,16 @@ public interface CcgChart {
    */
   public int getMaxChartEntries();
 
+  /**
+   * Returns {@code true} if this chart has grown beyond its maximum
+   * size, in which case parsing should be cancelled. Unless otherwise
+   * specified, the size of a chart is its total number of chart
+   * entries, and its maximum size is {@link #getMaxChartEntries()}.
+   *
+   * @return
+   */
+  public boolean exceedsMaxChartSize();
+
   /**
    * Gets the words being parsed.
    * 
@@ -184,6 +195,18 @@ public interface CcgChart {
    */
   public void clearChartEntriesForSpan(int spanStart, int spanEnd);
   
+  /**
+   * Gets the derivations that were merged into {@code entry} because
+   * they have the same syntactic category and semantics. Each
+   * derivation is paired with the ratio of its probability to the
+   * probability of {@code entry}, which is at most 1. Charts that
+   * do not merge derivations return an empty list.
+   * 
+   * @param entry
+   * @return
+   */
+  public List<Pair<ChartEntry, Double>> getMergedDerivations(ChartEntry entry);
+
   /**
    * Retrieves the highest-scoring parse from the parse chart. Returns
    * {@code null} if no complete parse was found.
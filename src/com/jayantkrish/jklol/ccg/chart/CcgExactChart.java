@@ -1,12 +1,18 @@
 package com.jayantkrish.jklol.ccg.chart;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
+import com.google.common.collect.Lists;
 import com.jayantkrish.jklol.ccg.CcgParse;
 import com.jayantkrish.jklol.ccg.CcgParser;
 import com.jayantkrish.jklol.models.DiscreteVariable;
 import com.jayantkrish.jklol.nlpannotation.AnnotatedSentence;
 import com.jayantkrish.jklol.util.IntMultimap;
+import com.jayantkrish.jklol.util.Pair;
 
 /**
  * CCG chart for performing exact inference.
@@ -23,9 +29,29 @@ public class CcgExactChart extends AbstractCcgChart {
   
   private int totalChartSize;
 
+  // If non-null, the derivations merged into each chart entry,
+  // paired with the ratio of their probability to the entry's.
+  private final Map<ChartEntry, List<Pair<ChartEntry, Double>>> mergedDerivations;
+
   private static final int NUM_INITIAL_SPAN_ENTRIES = 100;
 
   public CcgExactChart(AnnotatedSentence input, int maxChartSize) {
+    this(input, maxChartSize, false);
+  }
+
+  /**
+   * Creates a chart for exact inference. If
+   * {@code retainMergedDerivations} is {@code true}, the chart
+   * remembers every derivation of each chart entry, instead of only
+   * the best one. These derivations are used to find the k-best
+   * parses using {@link LazyKbestDecoder}.
+   * 
+   * @param input
+   * @param maxChartSize
+   * @param retainMergedDerivations
+   */
+  public CcgExactChart(AnnotatedSentence input, int maxChartSize,
+      boolean retainMergedDerivations) {
     super(input, maxChartSize);
     numTerminals = input.size();
     this.chart = new ChartEntry[numTerminals][numTerminals][];
@@ -41,6 +67,11 @@ public class CcgExactChart extends AbstractCcgChart {
       }
     }
     totalChartSize = 0;
+
+    // Chart entries are compared by identity because entries with the
+    // same syntax and semantics are equal.
+    mergedDerivations = retainMergedDerivations ?
+        new IdentityHashMap<ChartEntry, List<Pair<ChartEntry, Double>>>() : null;
   }
 
   /**
@@ -125,9 +156,14 @@ public class CcgExactChart extends AbstractCcgChart {
           // semantics. Retain the entry with the highest probability.
           if (probability > spanProbs[i]) {
             // New entry better than old entry. Replace it.
+            if (mergedDerivations != null) {
+              mergeDerivations(other, spanProbs[i], entry, probability);
+            }
             spanChart[i] = entry;
             spanProbs[i] = probability;
-          } 
+          } else if (mergedDerivations != null && other != entry) {
+            mergeDerivations(entry, probability, other, spanProbs[i]);
+          }
           return;
         }
       }
@@ -147,6 +183,36 @@ public class CcgExactChart extends AbstractCcgChart {
     }
   }
 
+  @Override
+  public List<Pair<ChartEntry, Double>> getMergedDerivations(ChartEntry entry) {
+    if (mergedDerivations != null && mergedDerivations.containsKey(entry)) {
+      return mergedDerivations.get(entry);
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * Records {@code merged} and its merged derivations as derivations
+   * of {@code entry}.
+   */
+  private void mergeDerivations(ChartEntry merged, double mergedProb, ChartEntry entry,
+      double entryProb) {
+    List<Pair<ChartEntry, Double>> derivations = mergedDerivations.get(entry);
+    if (derivations == null) {
+      derivations = Lists.newArrayList();
+      mergedDerivations.put(entry, derivations);
+    }
+
+    double ratio = mergedProb / entryProb;
+    derivations.add(Pair.of(merged, ratio));
+    List<Pair<ChartEntry, Double>> mergedDerivationsOfMerged = mergedDerivations.remove(merged);
+    if (mergedDerivationsOfMerged != null) {
+      for (Pair<ChartEntry, Double> derivation : mergedDerivationsOfMerged) {
+        derivations.add(Pair.of(derivation.getLeft(), derivation.getRight() * ratio));
+      }
+    }
+  }
+
   @Override
   public void clearChartEntriesForSpan(int spanStart, int spanEnd) {
     totalChartSize -= chartSizes[spanStart][spanEnd];
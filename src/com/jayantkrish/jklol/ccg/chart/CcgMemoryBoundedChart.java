@@ -0,0 +1,419 @@
+package com.jayantkrish.jklol.ccg.chart;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.jayantkrish.jklol.ccg.CcgParse;
+import com.jayantkrish.jklol.ccg.CcgParser;
+import com.jayantkrish.jklol.models.DiscreteVariable;
+import com.jayantkrish.jklol.nlpannotation.AnnotatedSentence;
+import com.jayantkrish.jklol.util.IntMultimap;
+
+/**
+ * CCG chart for exact inference whose size is bounded by an
+ * (estimated) number of bytes, instead of a number of chart entries.
+ * Chart entries are hashed by their signature, i.e., their syntactic
+ * category, semantic assignments and unfilled dependencies, and
+ * entries with the same signature are merged as they are added. Merged
+ * entries either retain the maximum probability of any derivation
+ * (as in {@link CcgExactChart}) or the sum of the probabilities of all
+ * derivations. In the second case, the probabilities of the chart
+ * entries are inside probabilities, and the parse tree of each entry
+ * is its most probable derivation.
+ * <p>
+ * Once the chart exceeds its memory budget, new signatures are
+ * discarded, and {@link #exceedsMaxChartSize()} returns {@code true},
+ * which causes the parser to cancel parsing. The budget includes the
+ * arrays that store each span's entries, which are allocated for all
+ * spans when the chart is created.
+ * <p>
+ * Each span is filled by a single thread, so per-span state is not
+ * synchronized. Totals over all spans are updated atomically when a
+ * span is finished or cleared, so the chart may be filled by multiple
+ * threads.
+ *
+ * @author jayantk
+ */
+public class CcgMemoryBoundedChart extends AbstractCcgChart {
+
+  private final int numTerminals;
+  private final long maxChartBytes;
+  private final boolean sumProbabilities;
+
+  private final ChartEntry[][][] chart;
+  private final double[][][] probabilities;
+  // The probability of the derivation stored in chart, which differs
+  // from probabilities when sumProbabilities is true.
+  private final double[][][] entryProbabilities;
+  private final int[][] chartSizes;
+  private final IntMultimap[][] chartEntriesBySyntacticCategory;
+
+  // Open-addressing hash table from entry signatures to 1 + the index
+  // of the entry in the span. 0 marks an empty bucket.
+  private final int[][][] hashTables;
+
+  private final long[][] spanBytes;
+  private final AtomicLong chartBytes;
+  private final AtomicInteger totalChartSize;
+
+  private final long[][] spanEntriesAdded;
+  private final long[][] spanEntriesMerged;
+  private final AtomicLong numEntriesAdded;
+  private final AtomicLong numEntriesMerged;
+
+  private static final int NUM_INITIAL_SPAN_ENTRIES = 16;
+
+  // Estimated memory used by a chart entry, excluding its arrays, and
+  // by each slot of a span's chart, probability and hash table arrays.
+  private static final long ENTRY_BYTES = 128;
+  private static final long SLOT_BYTES = 8 + 8 + 8 + 2 * 4;
+  private static final long ARRAY_BYTES = 16;
+
+  /**
+   * Creates a chart that uses at most (approximately)
+   * {@code maxChartBytes} bytes for its chart entries and the arrays
+   * that store them. If
+   * {@code sumProbabilities} is {@code true}, the probabilities of
+   * entries with the same signature are summed; otherwise, only the
+   * most probable entry is retained.
+   *
+   * @param input
+   * @param maxChartBytes
+   * @param sumProbabilities
+   */
+  public CcgMemoryBoundedChart(AnnotatedSentence input, long maxChartBytes,
+      boolean sumProbabilities) {
+    super(input, Integer.MAX_VALUE);
+    Preconditions.checkArgument(maxChartBytes > 0);
+    this.numTerminals = input.size();
+    this.maxChartBytes = maxChartBytes;
+    this.sumProbabilities = sumProbabilities;
+
+    this.chart = new ChartEntry[numTerminals][numTerminals][];
+    this.probabilities = new double[numTerminals][numTerminals][];
+    this.entryProbabilities = new double[numTerminals][numTerminals][];
+    this.chartSizes = new int[numTerminals][numTerminals];
+    this.chartEntriesBySyntacticCategory = new IntMultimap[numTerminals][numTerminals];
+    this.hashTables = new int[numTerminals][numTerminals][];
+    this.spanBytes = new long[numTerminals][numTerminals];
+    this.spanEntriesAdded = new long[numTerminals][numTerminals];
+    this.spanEntriesMerged = new long[numTerminals][numTerminals];
+
+    for (int spanStart = 0; spanStart < numTerminals; spanStart++) {
+      for (int spanEnd = 0; spanEnd < numTerminals; spanEnd++) {
+        chart[spanStart][spanEnd] = new ChartEntry[NUM_INITIAL_SPAN_ENTRIES];
+        probabilities[spanStart][spanEnd] = new double[NUM_INITIAL_SPAN_ENTRIES];
+        entryProbabilities[spanStart][spanEnd] = new double[NUM_INITIAL_SPAN_ENTRIES];
+        hashTables[spanStart][spanEnd] = new int[NUM_INITIAL_SPAN_ENTRIES * 2];
+      }
+    }
+    this.chartBytes = new AtomicLong(((long) numTerminals) * numTerminals
+        * estimateSpanArrayBytes(NUM_INITIAL_SPAN_ENTRIES));
+    this.totalChartSize = new AtomicInteger(0);
+    this.numEntriesAdded = new AtomicLong(0);
+    this.numEntriesMerged = new AtomicLong(0);
+  }
+
+  /**
+   * Gets the best CCG parse for the given span. Returns {@code null}
+   * if no parse was found.
+   *
+   * @param spanStart
+   * @param spanEnd
+   * @param parser
+   * @return
+   */
+  public CcgParse decodeBestParseForSpan(int spanStart, int spanEnd, CcgParser parser) {
+    double maxProb = -1;
+    int maxEntryIndex = -1;
+    double[] probs = getChartEntryProbsForSpan(spanStart, spanEnd);
+    for (int i = 0; i < chartSizes[spanStart][spanEnd]; i++) {
+      if (probs[i] > maxProb) {
+        maxProb = probs[i];
+        maxEntryIndex = i;
+      }
+    }
+
+    if (maxEntryIndex == -1) {
+      // No parses.
+      return null;
+    } else {
+      return decodeParseFromSpan(spanStart, spanEnd, maxEntryIndex, parser);
+    }
+  }
+
+  @Override
+  public CcgParse decodeBestParse(CcgParser parser) {
+    return decodeBestParseForSpan(0, size() - 1, parser);
+  }
+
+  @Override
+  public ChartEntry[] getChartEntriesForSpan(int spanStart, int spanEnd) {
+    return chart[spanStart][spanEnd];
+  }
+
+  @Override
+  public double[] getChartEntryProbsForSpan(int spanStart, int spanEnd) {
+    return probabilities[spanStart][spanEnd];
+  }
+
+  @Override
+  public int getNumChartEntriesForSpan(int spanStart, int spanEnd) {
+    return chartSizes[spanStart][spanEnd];
+  }
+
+  @Override
+  public IntMultimap getChartEntriesBySyntacticCategoryForSpan(int spanStart, int spanEnd) {
+    return chartEntriesBySyntacticCategory[spanStart][spanEnd];
+  }
+
+  @Override
+  public int getTotalNumChartEntries() {
+    return totalChartSize.get();
+  }
+
+  @Override
+  public boolean exceedsMaxChartSize() {
+    return chartBytes.get() > maxChartBytes;
+  }
+
+  /**
+   * Gets the maximum number of bytes that this chart may use for
+   * chart entries and span arrays.
+   *
+   * @return
+   */
+  public long getMaxChartBytes() {
+    return maxChartBytes;
+  }
+
+  /**
+   * Gets the estimated number of bytes used by the span arrays and by
+   * the chart entries of all spans for which
+   * {@link #doneAddingChartEntriesForSpan} has been called.
+   *
+   * @return
+   */
+  public long getEstimatedChartBytes() {
+    return chartBytes.get();
+  }
+
+  /**
+   * Gets the number of chart entries added to finished spans of this
+   * chart, including entries that were merged with an existing entry.
+   *
+   * @return
+   */
+  public long getNumEntriesAdded() {
+    return numEntriesAdded.get();
+  }
+
+  /**
+   * Gets the number of chart entries of finished spans that were
+   * merged with an existing entry with the same signature.
+   *
+   * @return
+   */
+  public long getNumEntriesMerged() {
+    return numEntriesMerged.get();
+  }
+
+  /**
+   * Gets the fraction of added chart entries that were merged with an
+   * existing entry.
+   *
+   * @return
+   */
+  public double getDeduplicationRatio() {
+    long added = numEntriesAdded.get();
+    return added == 0 ? 0.0 : ((double) numEntriesMerged.get()) / added;
+  }
+
+  @Override
+  public void addChartEntryForSpan(ChartEntry entry, double probability, int spanStart,
+      int spanEnd, DiscreteVariable syntaxVarType) {
+    if (entryFilter != null) {
+      probability *= Math.exp(entryFilter.apply(entry, spanStart, spanEnd, numTerminals, syntaxVarType));
+    }
+
+    if (probability == 0.0) {
+      return;
+    }
+    spanEntriesAdded[spanStart][spanEnd]++;
+
+    int[] hashTable = hashTables[spanStart][spanEnd];
+    ChartEntry[] spanChart = chart[spanStart][spanEnd];
+    int mask = hashTable.length - 1;
+    int bucket = hash(entry.getSyntaxHeadHashCode()) & mask;
+    while (hashTable[bucket] != 0) {
+      int index = hashTable[bucket] - 1;
+      if (haveSameSignature(entry, spanChart[index])) {
+        mergeEntry(entry, probability, spanStart, spanEnd, index);
+        return;
+      }
+      bucket = (bucket + 1) & mask;
+    }
+
+    // There is no existing entry with the same signature.
+    int spanSize = chartSizes[spanStart][spanEnd];
+    long entryBytes = estimateBytes(entry);
+    long growthBytes = 0;
+    if (spanSize == spanChart.length) {
+      growthBytes = estimateSpanArrayBytes(spanSize * 2) - estimateSpanArrayBytes(spanSize);
+    }
+    if (chartBytes.get() + spanBytes[spanStart][spanEnd] + entryBytes + growthBytes
+        > maxChartBytes) {
+      // Discard the entry. The parser will cancel parsing after
+      // this span because the chart is full.
+      spanBytes[spanStart][spanEnd] += entryBytes;
+      return;
+    }
+
+    if (spanSize == spanChart.length) {
+      // The resized arrays are retained when the span is cleared, so
+      // they are charged to the chart immediately.
+      resizeSpan(spanStart, spanEnd);
+      chartBytes.addAndGet(growthBytes);
+      bucket = findEmptyBucket(hashTables[spanStart][spanEnd], entry.getSyntaxHeadHashCode());
+    }
+
+    chart[spanStart][spanEnd][spanSize] = entry;
+    probabilities[spanStart][spanEnd][spanSize] = probability;
+    entryProbabilities[spanStart][spanEnd][spanSize] = probability;
+    hashTables[spanStart][spanEnd][bucket] = spanSize + 1;
+    chartSizes[spanStart][spanEnd]++;
+    spanBytes[spanStart][spanEnd] += entryBytes;
+  }
+
+  private void mergeEntry(ChartEntry entry, double probability, int spanStart, int spanEnd,
+      int index) {
+    spanEntriesMerged[spanStart][spanEnd]++;
+    double[] spanProbs = probabilities[spanStart][spanEnd];
+    double[] spanEntryProbs = entryProbabilities[spanStart][spanEnd];
+    if (probability > spanEntryProbs[index]) {
+      chart[spanStart][spanEnd][index] = entry;
+      spanEntryProbs[index] = probability;
+    }
+
+    if (sumProbabilities) {
+      spanProbs[index] += probability;
+    } else {
+      spanProbs[index] = spanEntryProbs[index];
+    }
+  }
+
+  private void resizeSpan(int spanStart, int spanEnd) {
+    int newSize = chart[spanStart][spanEnd].length * 2;
+    chart[spanStart][spanEnd] = Arrays.copyOf(chart[spanStart][spanEnd], newSize);
+    probabilities[spanStart][spanEnd] = Arrays.copyOf(probabilities[spanStart][spanEnd], newSize);
+    entryProbabilities[spanStart][spanEnd] = Arrays.copyOf(
+        entryProbabilities[spanStart][spanEnd], newSize);
+
+    ChartEntry[] spanChart = chart[spanStart][spanEnd];
+    int[] hashTable = new int[newSize * 2];
+    for (int i = 0; i < chartSizes[spanStart][spanEnd]; i++) {
+      hashTable[findEmptyBucket(hashTable, spanChart[i].getSyntaxHeadHashCode())] = i + 1;
+    }
+    hashTables[spanStart][spanEnd] = hashTable;
+  }
+
+  private static int findEmptyBucket(int[] hashTable, long hashCode) {
+    int mask = hashTable.length - 1;
+    int bucket = hash(hashCode) & mask;
+    while (hashTable[bucket] != 0) {
+      bucket = (bucket + 1) & mask;
+    }
+    return bucket;
+  }
+
+  private static int hash(long hashCode) {
+    // Spread the bits of the hash code, since the low-order bits of
+    // syntax head hash codes are often similar.
+    long h = hashCode * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /**
+   * Returns {@code true} if {@code first} and {@code second} have the
+   * same syntactic category and semantics.
+   */
+  private static boolean haveSameSignature(ChartEntry first, ChartEntry second) {
+    return first.getSyntaxHeadHashCode() == second.getSyntaxHeadHashCode()
+        && first.getHeadedSyntax() == second.getHeadedSyntax()
+        && first.isProducedByConjunction() == second.isProducedByConjunction()
+        && longMultisetsEqual(first.getUnfilledDependencies(), second.getUnfilledDependencies())
+        && longMultisetsEqual(first.getAssignments(), second.getAssignments());
+  }
+
+  /**
+   * Checks if two multisets of long numbers contain the same keys
+   * with the same frequency. Unlike {@link CcgExactChart}, this method
+   * does not sort its arguments, which are the arrays of chart
+   * entries. These arrays are short, so a quadratic comparison is
+   * fast.
+   */
+  private static boolean longMultisetsEqual(long[] first, long[] second) {
+    if (first.length != second.length) {
+      return false;
+    }
+
+    for (int i = 0; i < first.length; i++) {
+      int firstCount = 0;
+      int secondCount = 0;
+      for (int j = 0; j < first.length; j++) {
+        firstCount += first[j] == first[i] ? 1 : 0;
+        secondCount += second[j] == first[i] ? 1 : 0;
+      }
+      if (firstCount != secondCount) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Estimates the number of bytes used by {@code entry}. Each
+   * assignment and unfilled dependency is stored with a variable
+   * index, which is counted along with it.
+   */
+  private static long estimateBytes(ChartEntry entry) {
+    int numAssignments = entry.getAssignments().length;
+    int numUnfilledDeps = entry.getUnfilledDependencies().length;
+    int numDeps = entry.getDependencies().length;
+    return ENTRY_BYTES + (5 * ARRAY_BYTES)
+        + (12 * (numAssignments + numUnfilledDeps)) + (8 * numDeps);
+  }
+
+  /**
+   * Estimates the number of bytes used by the arrays of a span with
+   * room for {@code numEntries} chart entries.
+   */
+  private static long estimateSpanArrayBytes(int numEntries) {
+    return (SLOT_BYTES * numEntries) + (4 * ARRAY_BYTES);
+  }
+
+  @Override
+  public void doneAddingChartEntriesForSpan(int spanStart, int spanEnd) {
+    chartBytes.addAndGet(spanBytes[spanStart][spanEnd]);
+    totalChartSize.addAndGet(chartSizes[spanStart][spanEnd]);
+    numEntriesAdded.addAndGet(spanEntriesAdded[spanStart][spanEnd]);
+    numEntriesMerged.addAndGet(spanEntriesMerged[spanStart][spanEnd]);
+    spanEntriesAdded[spanStart][spanEnd] = 0;
+    spanEntriesMerged[spanStart][spanEnd] = 0;
+    chartEntriesBySyntacticCategory[spanStart][spanEnd] = aggregateBySyntacticType(
+        chart[spanStart][spanEnd], chartSizes[spanStart][spanEnd]);
+  }
+
+  @Override
+  public void clearChartEntriesForSpan(int spanStart, int spanEnd) {
+    chartBytes.addAndGet(-spanBytes[spanStart][spanEnd]);
+    totalChartSize.addAndGet(-chartSizes[spanStart][spanEnd]);
+    spanBytes[spanStart][spanEnd] = 0;
+    chartSizes[spanStart][spanEnd] = 0;
+    chartEntriesBySyntacticCategory[spanStart][spanEnd] = null;
+    Arrays.fill(chart[spanStart][spanEnd], null);
+    Arrays.fill(hashTables[spanStart][spanEnd], 0);
+  }
+}
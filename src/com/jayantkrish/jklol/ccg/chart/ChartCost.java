@@ -1,5 +1,7 @@
 package com.jayantkrish.jklol.ccg.chart;
 
+import java.io.Serializable;
+
 import com.jayantkrish.jklol.models.DiscreteVariable;
 
 /**
@@ -8,7 +10,7 @@ import com.jayantkrish.jklol.models.DiscreteVariable;
  * 
  * @author jayantk
  */
-public interface ChartCost {
+public interface ChartCost extends Serializable {
 
   /**
    * Returns a cost for {@code entry} being added to the chart
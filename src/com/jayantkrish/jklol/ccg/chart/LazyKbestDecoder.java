@@ -0,0 +1,344 @@
+package com.jayantkrish.jklol.ccg.chart;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.jayantkrish.jklol.ccg.CcgParse;
+import com.jayantkrish.jklol.ccg.CcgParser;
+import com.jayantkrish.jklol.util.Pair;
+
+/**
+ * Iterates over the parses of a span of a CCG chart in order of
+ * decreasing probability, decoding each parse only when it is
+ * requested. This class implements the lazy k-best algorithm of
+ * Huang and Chiang (2005), "Better k-best parsing" (Algorithm 3),
+ * which treats the chart as a hypergraph. Each chart entry is a node
+ * whose incoming hyperedges are the entry itself plus any
+ * derivations merged into it (see
+ * {@link AbstractCcgChart#getMergedDerivations}). The kth best
+ * derivation of each node is computed on demand from the best
+ * derivations of its children, so retrieving k parses only examines
+ * O(k) derivations per node instead of every entry of every span.
+ * <p>
+ * In beam search charts, every chart entry has a single derivation,
+ * so this iterator returns the chart entries of the span in order.
+ * Decoded subtrees are shared between the returned parses.
+ *
+ * @author jayantk
+ */
+public class LazyKbestDecoder implements Iterator<CcgParse> {
+
+  private final AbstractCcgChart chart;
+  private final CcgParser parser;
+  private final int numTerminals;
+
+  private final Map<Long, Node> nodes;
+
+  // The next derivation of each node in the span, ordered by
+  // probability.
+  private final PriorityQueue<RootCandidate> rootCandidates;
+
+  /**
+   * Creates an iterator over the parses of {@code chart} that span
+   * {@code spanStart} to {@code spanEnd}. {@code chart} must not be
+   * modified while this iterator is in use.
+   *
+   * @param chart
+   * @param spanStart
+   * @param spanEnd
+   * @param parser
+   */
+  public LazyKbestDecoder(AbstractCcgChart chart, int spanStart, int spanEnd,
+      CcgParser parser) {
+    this.chart = Preconditions.checkNotNull(chart);
+    this.parser = Preconditions.checkNotNull(parser);
+    this.numTerminals = chart.size();
+    this.nodes = Maps.newHashMap();
+
+    this.rootCandidates = new PriorityQueue<RootCandidate>();
+    int numEntries = chart.getNumChartEntriesForSpan(spanStart, spanEnd);
+    for (int i = 0; i < numEntries; i++) {
+      Node node = getNode(spanStart, spanEnd, i);
+      rootCandidates.offer(new RootCandidate(node, 0, node.getKthBest(0).prob));
+    }
+  }
+
+  /**
+   * Gets the {@code numParses} best parses of {@code chart} that
+   * span {@code spanStart} to {@code spanEnd}. Fewer parses are
+   * returned if the chart does not contain {@code numParses} parses.
+   *
+   * @param chart
+   * @param spanStart
+   * @param spanEnd
+   * @param numParses
+   * @param parser
+   * @return
+   */
+  public static List<CcgParse> decodeBestParses(AbstractCcgChart chart, int spanStart,
+      int spanEnd, int numParses, CcgParser parser) {
+    LazyKbestDecoder decoder = new LazyKbestDecoder(chart, spanStart, spanEnd, parser);
+    List<CcgParse> parses = Lists.newArrayList();
+    while (parses.size() < numParses && decoder.hasNext()) {
+      parses.add(decoder.next());
+    }
+    return parses;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return !rootCandidates.isEmpty();
+  }
+
+  /**
+   * Gets the probability of the parse that will be returned by the
+   * next call to {@link #next}, without decoding it.
+   *
+   * @return
+   */
+  public double peekProbability() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return rootCandidates.peek().prob;
+  }
+
+  @Override
+  public CcgParse next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    RootCandidate candidate = rootCandidates.poll();
+    Derivation successor = candidate.node.getKthBest(candidate.k + 1);
+    if (successor != null) {
+      rootCandidates.offer(new RootCandidate(candidate.node, candidate.k + 1, successor.prob));
+    }
+    return candidate.node.decode(candidate.k);
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  private Node getNode(int spanStart, int spanEnd, int chartIndex) {
+    long key = (((long) (spanStart * numTerminals) + spanEnd) << 32) + chartIndex;
+    Node node = nodes.get(key);
+    if (node == null) {
+      node = new Node(spanStart, spanEnd, chartIndex);
+      nodes.put(key, node);
+    }
+    return node;
+  }
+
+  /**
+   * A chart entry and the derivations of it found so far.
+   */
+  private class Node {
+    private final int spanStart;
+    private final int spanEnd;
+
+    // The hyperedges entering this node, i.e., the derivations of
+    // the chart entry that use the best derivations of their
+    // children, and their probabilities.
+    private final ChartEntry[] edges;
+    private final double[] edgeProbs;
+
+    // The best derivations of this node, in order, and their decoded
+    // parses, which are filled in as they are requested.
+    private final List<Derivation> derivations;
+    private final List<CcgParse> parses;
+    private int numExpanded;
+
+    private final PriorityQueue<Derivation> candidates;
+    private final Set<Derivation> seen;
+
+    public Node(int spanStart, int spanEnd, int chartIndex) {
+      this.spanStart = spanStart;
+      this.spanEnd = spanEnd;
+
+      ChartEntry entry = chart.getChartEntriesForSpan(spanStart, spanEnd)[chartIndex];
+      double prob = chart.getChartEntryProbsForSpan(spanStart, spanEnd)[chartIndex];
+      List<Pair<ChartEntry, Double>> merged = chart.getMergedDerivations(entry);
+      edges = new ChartEntry[merged.size() + 1];
+      edgeProbs = new double[merged.size() + 1];
+      edges[0] = entry;
+      edgeProbs[0] = prob;
+      for (int i = 0; i < merged.size(); i++) {
+        edges[i + 1] = merged.get(i).getLeft();
+        edgeProbs[i + 1] = merged.get(i).getRight() * prob;
+      }
+
+      this.derivations = Lists.newArrayList();
+      this.parses = Lists.newArrayList();
+      this.numExpanded = 0;
+
+      this.candidates = new PriorityQueue<Derivation>();
+      this.seen = Sets.newHashSet();
+      for (int i = 0; i < edges.length; i++) {
+        offer(new Derivation(i, 0, 0, edgeProbs[i]));
+      }
+    }
+
+    /**
+     * Gets the {@code k}th best derivation of this node (starting
+     * from 0), or {@code null} if it has fewer than {@code k + 1}
+     * derivations.
+     */
+    public Derivation getKthBest(int k) {
+      while (derivations.size() <= k) {
+        // The successors of a derivation are only added to the
+        // candidates after the derivation itself is selected.
+        if (numExpanded < derivations.size()) {
+          addSuccessors(derivations.get(numExpanded));
+          numExpanded++;
+        }
+
+        if (candidates.isEmpty()) {
+          return null;
+        }
+        derivations.add(candidates.poll());
+      }
+      return derivations.get(k);
+    }
+
+    private void addSuccessors(Derivation derivation) {
+      ChartEntry edge = edges[derivation.edge];
+      if (edge.isTerminal()) {
+        return;
+      }
+
+      Node left = getLeft(edge);
+      Node right = getRight(edge);
+      Derivation leftNext = left.getKthBest(derivation.leftK + 1);
+      if (leftNext != null) {
+        Derivation rightCurrent = right.getKthBest(derivation.rightK);
+        offer(new Derivation(derivation.edge, derivation.leftK + 1, derivation.rightK,
+            getProb(derivation.edge, left, leftNext, right, rightCurrent)));
+      }
+
+      Derivation rightNext = right.getKthBest(derivation.rightK + 1);
+      if (rightNext != null) {
+        Derivation leftCurrent = left.getKthBest(derivation.leftK);
+        offer(new Derivation(derivation.edge, derivation.leftK, derivation.rightK + 1,
+            getProb(derivation.edge, left, leftCurrent, right, rightNext)));
+      }
+    }
+
+    private void offer(Derivation derivation) {
+      if (seen.add(derivation)) {
+        candidates.offer(derivation);
+      }
+    }
+
+    /**
+     * Gets the probability of a derivation using {@code edge} that
+     * combines the given derivations of its children. The edge's
+     * probability includes the best derivations of its children, so
+     * it is rescaled by the probability of the given derivations.
+     */
+    private double getProb(int edge, Node left, Derivation leftDerivation, Node right,
+        Derivation rightDerivation) {
+      double leftRatio = leftDerivation.prob / left.getKthBest(0).prob;
+      double rightRatio = rightDerivation.prob / right.getKthBest(0).prob;
+      return edgeProbs[edge] * leftRatio * rightRatio;
+    }
+
+    private Node getLeft(ChartEntry edge) {
+      return getNode(edge.getLeftSpanStart(), edge.getLeftSpanEnd(), edge.getLeftChartIndex());
+    }
+
+    private Node getRight(ChartEntry edge) {
+      return getNode(edge.getRightSpanStart(), edge.getRightSpanEnd(), edge.getRightChartIndex());
+    }
+
+    /**
+     * Decodes the {@code k}th best derivation of this node, which
+     * must have been found by {@link #getKthBest}.
+     */
+    public CcgParse decode(int k) {
+      while (parses.size() <= k) {
+        parses.add(null);
+      }
+
+      if (parses.get(k) == null) {
+        Derivation derivation = derivations.get(k);
+        ChartEntry edge = edges[derivation.edge];
+        CcgParse left = null;
+        CcgParse right = null;
+        if (!edge.isTerminal()) {
+          left = getLeft(edge).decode(derivation.leftK);
+          right = getRight(edge).decode(derivation.rightK);
+        }
+        parses.set(k, chart.decodeParse(edge, derivation.prob, spanStart, spanEnd,
+            left, right, parser));
+      }
+      return parses.get(k);
+    }
+  }
+
+  /**
+   * A derivation of a node that uses the {@code leftK}th and
+   * {@code rightK}th best derivations of the children of its
+   * {@code edge}th hyperedge. Derivations are ordered by decreasing
+   * probability.
+   */
+  private static class Derivation implements Comparable<Derivation> {
+    private final int edge;
+    private final int leftK;
+    private final int rightK;
+    private final double prob;
+
+    public Derivation(int edge, int leftK, int rightK, double prob) {
+      this.edge = edge;
+      this.leftK = leftK;
+      this.rightK = rightK;
+      this.prob = prob;
+    }
+
+    @Override
+    public int compareTo(Derivation other) {
+      return Double.compare(other.prob, prob);
+    }
+
+    @Override
+    public int hashCode() {
+      return (((edge * 31) + leftK) * 31) + rightK;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Derivation)) {
+        return false;
+      }
+      Derivation other = (Derivation) o;
+      return edge == other.edge && leftK == other.leftK && rightK == other.rightK;
+    }
+  }
+
+  private static class RootCandidate implements Comparable<RootCandidate> {
+    private final Node node;
+    private final int k;
+    private final double prob;
+
+    public RootCandidate(Node node, int k, double prob) {
+      this.node = node;
+      this.k = k;
+      this.prob = prob;
+    }
+
+    @Override
+    public int compareTo(RootCandidate other) {
+      return Double.compare(other.prob, prob);
+    }
+  }
+}
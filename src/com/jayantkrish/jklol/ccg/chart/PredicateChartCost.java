@@ -18,6 +18,8 @@ import com.jayantkrish.jklol.models.DiscreteVariable;
  */
 public class PredicateChartCost implements ChartCost {
 
+  private static final long serialVersionUID = 1L;
+
   private final Expression2 logicalForm;
   private final Set<String> predicates;
   
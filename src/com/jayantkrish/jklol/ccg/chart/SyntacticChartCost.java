@@ -21,6 +21,8 @@ import com.jayantkrish.jklol.models.DiscreteVariable;
  */
 public class SyntacticChartCost implements ChartCost {
 
+  private static final long serialVersionUID = 1L;
+
   private final Map<Integer, SyntacticCategory> binaryRuleResult;
   private final Map<Integer, SyntacticCategory> leftUnaryRuleResult;
   private final Map<Integer, SyntacticCategory> rightUnaryRuleResult;
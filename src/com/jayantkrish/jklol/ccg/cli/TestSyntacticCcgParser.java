@@ -14,6 +14,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.common.primitives.Doubles;
+import com.jayantkrish.jklol.ccg.CcgAStarInference;
 import com.jayantkrish.jklol.ccg.CcgCkyInference;
 import com.jayantkrish.jklol.ccg.CcgExample;
 import com.jayantkrish.jklol.ccg.CcgInference;
@@ -27,6 +28,7 @@ import com.jayantkrish.jklol.ccg.LexiconEntryInfo;
 import com.jayantkrish.jklol.ccg.ParametricCcgParser;
 import com.jayantkrish.jklol.ccg.SupertaggingCcgParser;
 import com.jayantkrish.jklol.ccg.SupertaggingCcgParser.CcgParseResult;
+import com.jayantkrish.jklol.ccg.SupertaggingCcgParser.PassStatistics;
 import com.jayantkrish.jklol.ccg.SyntacticCategory;
 import com.jayantkrish.jklol.ccg.chart.CcgChart;
 import com.jayantkrish.jklol.ccg.chart.CcgExactHashTableChart;
@@ -40,6 +42,7 @@ import com.jayantkrish.jklol.nlpannotation.AnnotatedSentence;
 import com.jayantkrish.jklol.parallel.MapReduceConfiguration;
 import com.jayantkrish.jklol.parallel.Mapper;
 import com.jayantkrish.jklol.parallel.Reducer.SimpleReducer;
+import com.jayantkrish.jklol.tensor.TensorPrecision;
 import com.jayantkrish.jklol.training.LogFunction;
 import com.jayantkrish.jklol.training.LogFunctions;
 import com.jayantkrish.jklol.util.IoUtils;
@@ -62,6 +65,9 @@ public class TestSyntacticCcgParser extends AbstractCli {
   private OptionSpec<Void> pos;
   private OptionSpec<Void> printLf;
   private OptionSpec<Void> exactInference;
+  private OptionSpec<Void> aStar;
+  private OptionSpec<TensorPrecision> tensorPrecision;
+  private OptionSpec<Integer> dependencyScoreCacheSize;
   
   private OptionSpec<String> testFile;
   private OptionSpec<String> syntaxMap;
@@ -71,6 +77,7 @@ public class TestSyntacticCcgParser extends AbstractCli {
 
   private OptionSpec<String> supertagger;
   private OptionSpec<Double> multitagThresholds;
+  private OptionSpec<Void> adaptiveSupertagging;
 
   private OptionSpec<String> cliInput;
   
@@ -92,6 +99,15 @@ public class TestSyntacticCcgParser extends AbstractCli {
     atomic = parser.accepts("atomic", "Only print parses whose root category is atomic (i.e., non-functional).");
     pos = parser.accepts("pos", "Treat input as POS-tagged text, in the format word/POS.");
     printLf = parser.accepts("printLf", "Print logical forms for the generated parses.");
+    tensorPrecision = parser.accepts("tensorPrecision", "Precision used to store the parser's "
+        + "parameters during inference. One of DOUBLE, FLOAT, or INT8.").withRequiredArg()
+        .ofType(TensorPrecision.class).defaultsTo(TensorPrecision.DOUBLE);
+    dependencyScoreCacheSize = parser.accepts("dependencyScoreCacheSize", "Number of "
+        + "dependency scores to cache across sentences. 0 disables the cache.")
+        .withRequiredArg().ofType(Integer.class).defaultsTo(1 << 16);
+    aStar = parser.accepts("aStar", "Parse using A* search instead of CKY beam search. "
+        + "Compare the reported accuracy and parsing speed against a run without this "
+        + "option to evaluate the effect of A* search.");
 
     testFile = parser.accepts("test", "If provided, running this program computes test error using " +
     		"the given file. Otherwise, this program parses a string provided on the command line. " +
@@ -104,6 +120,9 @@ public class TestSyntacticCcgParser extends AbstractCli {
 
     supertagger = parser.accepts("supertagger").withRequiredArg().ofType(String.class);
     multitagThresholds = parser.accepts("multitagThreshold").withRequiredArg().ofType(Double.class).withValuesSeparatedBy(',');
+    adaptiveSupertagging = parser.accepts("adaptiveSupertagging", "Parse each sentence using "
+        + "the most restrictive multitag threshold first, and only try less restrictive "
+        + "thresholds if parsing fails.");
     
     cliInput = parser.nonOptions().ofType(String.class);
   }
@@ -112,11 +131,22 @@ public class TestSyntacticCcgParser extends AbstractCli {
   public void run(OptionSet options) {
     // Read the parser.
     CcgParser ccgParser = IoUtils.readSerializedObject(options.valueOf(model), CcgParser.class);
+    if (options.valueOf(tensorPrecision) != TensorPrecision.DOUBLE) {
+      ccgParser = ccgParser.toCompactForm(options.valueOf(tensorPrecision));
+    }
+    if (options.valueOf(dependencyScoreCacheSize) > 0) {
+      ccgParser = ccgParser.withDependencyScoreCache(options.valueOf(dependencyScoreCacheSize));
+    }
 
     // Configure inference options
     CcgInference inferenceAlgorithm = null;
-    inferenceAlgorithm = new CcgCkyInference(null, options.valueOf(beamSize),
-        options.valueOf(maxParseTimeMillis), options.valueOf(maxChartSize), options.valueOf(parserThreads));
+    if (options.has(aStar)) {
+      inferenceAlgorithm = new CcgAStarInference(null, options.valueOf(beamSize),
+          options.valueOf(maxParseTimeMillis), options.valueOf(maxChartSize));
+    } else {
+      inferenceAlgorithm = new CcgCkyInference(null, options.valueOf(beamSize),
+          options.valueOf(maxParseTimeMillis), options.valueOf(maxChartSize), options.valueOf(parserThreads));
+    }
     
     if (options.has(testFile)) {
       // Parse all test examples.
@@ -133,12 +163,30 @@ public class TestSyntacticCcgParser extends AbstractCli {
       }
 
       LogFunctions.getLogFunction().notifyIterationStart(0);
-      SupertaggingCcgParser supertaggingParser = new SupertaggingCcgParser(ccgParser,
-          inferenceAlgorithm, tagger, tagThresholds, TrainSyntacticCcgParser.SUPERTAG_ANNOTATION_NAME);
+      SupertaggingCcgParser supertaggingParser = null;
+      if (options.has(adaptiveSupertagging)) {
+        supertaggingParser = SupertaggingCcgParser.createAdaptive(ccgParser, inferenceAlgorithm,
+            tagger, tagThresholds, TrainSyntacticCcgParser.SUPERTAG_ANNOTATION_NAME);
+      } else {
+        supertaggingParser = new SupertaggingCcgParser(ccgParser, inferenceAlgorithm, tagger,
+            tagThresholds, TrainSyntacticCcgParser.SUPERTAG_ANNOTATION_NAME);
+      }
+      long startTime = System.nanoTime();
       CcgLoss loss = runTestSetEvaluation(testExamples, supertaggingParser,
           options.has(useGoldSyntacticTrees), options.has(filterDependenciesCcgbank));
+      double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
       LogFunctions.getLogFunction().notifyIterationEnd(0);
       System.out.println(loss);
+      System.out.println("Parsed " + testExamples.size() + " sentences in " + elapsedSeconds
+          + " seconds (" + (testExamples.size() / elapsedSeconds) + " sentences/sec, "
+          + options.valueOf(tensorPrecision) + " precision, "
+          + (options.has(aStar) ? "A*" : "CKY") + " inference)");
+      for (PassStatistics passStatistics : supertaggingParser.getPassStatistics()) {
+        System.out.println("Parsing pass " + passStatistics);
+      }
+      if (ccgParser.getDependencyScoreCache() != null) {
+        System.out.println("Dependency score cache: " + ccgParser.getDependencyScoreCache());
+      }
     } else {
       // Parse a string from the command line.
       List<String> input = Lists.newArrayList(options.valuesOf(cliInput));
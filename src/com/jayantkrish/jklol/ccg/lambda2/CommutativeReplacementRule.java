@@ -13,7 +13,9 @@ import com.google.common.collect.Lists;
  *
  */
 public class CommutativeReplacementRule implements ExpressionReplacementRule {
-  
+
+  private static final long serialVersionUID = 1L;
+
   private final String conjunctionPred;
   
   public CommutativeReplacementRule(String conjunctionPred) {
@@ -6,6 +6,8 @@ import com.google.common.base.Preconditions;
 
 public class ExistsReplacementRule implements ExpressionReplacementRule {
 
+  private static final long serialVersionUID = 1L;
+
   private final String existsPred;
   private final String conjunctionPred;
   private final String equalPred;
@@ -1,12 +1,14 @@
 package com.jayantkrish.jklol.ccg.lambda2;
 
+import java.io.Serializable;
+
 /**
  * Interface for comparing expressions for equality.
  * 
  * @author jayant
  *
  */
-public interface ExpressionComparator {
+public interface ExpressionComparator extends Serializable {
 
   /**
    * Returns {@code true} if {@code a} and {@code b} are
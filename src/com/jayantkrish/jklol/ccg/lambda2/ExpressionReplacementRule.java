@@ -1,6 +1,8 @@
 package com.jayantkrish.jklol.ccg.lambda2;
 
-public interface ExpressionReplacementRule {
+import java.io.Serializable;
+
+public interface ExpressionReplacementRule extends Serializable {
 
   public Expression2 getReplacement(Expression2 input, int index);
 
@@ -1,5 +1,6 @@
 package com.jayantkrish.jklol.ccg.lambda2;
 
+import java.io.Serializable;
 import java.util.List;
 
 import com.google.common.collect.ImmutableList;
@@ -17,8 +18,10 @@ import com.google.common.collect.Lists;
  * @author jayant
  * 
  */
-public class ExpressionSimplifier {
-  
+public class ExpressionSimplifier implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
   private final List<ExpressionReplacementRule> rules;
 
   public ExpressionSimplifier(List<ExpressionReplacementRule> rules) {
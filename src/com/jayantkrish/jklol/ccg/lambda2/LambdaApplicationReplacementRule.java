@@ -14,6 +14,8 @@ import com.google.common.collect.Lists;
  */
 public class LambdaApplicationReplacementRule implements ExpressionReplacementRule {
 
+  private static final long serialVersionUID = 1L;
+
   @Override
   public Expression2 getReplacement(Expression2 expression, int index) {
     Expression2 subexpression = expression.getSubexpression(index);
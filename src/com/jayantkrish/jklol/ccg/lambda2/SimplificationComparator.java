@@ -11,6 +11,8 @@ import com.google.common.base.Preconditions;
  */
 public class SimplificationComparator implements ExpressionComparator {
 
+  private static final long serialVersionUID = 1L;
+
   private final ExpressionSimplifier simplifier;
   
   public SimplificationComparator(ExpressionSimplifier simplifier) {
@@ -13,6 +13,8 @@ import com.jayantkrish.jklol.ccg.lambda2.StaticAnalysis.ScopeSet;
  */
 public class VariableCanonicalizationReplacementRule implements ExpressionReplacementRule {
 
+  private static final long serialVersionUID = 1L;
+
   @Override
   public Expression2 getReplacement(Expression2 input, int index) {
     boolean changed = false;
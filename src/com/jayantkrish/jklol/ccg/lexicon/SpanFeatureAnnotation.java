@@ -1,5 +1,7 @@
 package com.jayantkrish.jklol.ccg.lexicon;
 
+import java.io.Serializable;
+
 import com.google.common.base.Preconditions;
 import com.jayantkrish.jklol.nlpannotation.AnnotatedSentence;
 import com.jayantkrish.jklol.preprocessing.FeatureVectorGenerator;
@@ -12,7 +14,10 @@ import com.jayantkrish.jklol.tensor.Tensor;
  * @author jayantk
  *
  */
-public class SpanFeatureAnnotation {
+public class SpanFeatureAnnotation implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
   private final Tensor[] featureVectors;
   private final int length;
   
@@ -37,6 +37,46 @@ public class ListSupertaggedSentence extends ListMultitaggedSequence<WordAndPos,
     return new ListSupertaggedSentence(words, supertags, labelProbabilities);
   }
 
+  /**
+   * Gets the supertags of this sentence whose score is greater than
+   * {@code threshold} times the score of the best supertag for the
+   * same word. The best supertag for each word is always retained.
+   * Applied to the output of
+   * {@link Supertagger#multitag(List, double)}, this method produces
+   * the same supertags as multitagging with a larger
+   * {@code threshold}, without rerunning the supertagger.
+   * 
+   * @param threshold
+   * @return
+   */
+  public ListSupertaggedSentence filterSupertags(double threshold) {
+    List<List<HeadedSyntacticCategory>> supertags = getLabels();
+    List<List<Double>> scores = getLabelProbabilities();
+    List<List<HeadedSyntacticCategory>> filteredSupertags = Lists.newArrayList();
+    List<List<Double>> filteredScores = Lists.newArrayList();
+    for (int i = 0; i < supertags.size(); i++) {
+      List<Double> wordScores = scores.get(i);
+      int bestIndex = 0;
+      for (int j = 1; j < wordScores.size(); j++) {
+        if (wordScores.get(j) > wordScores.get(bestIndex)) {
+          bestIndex = j;
+        }
+      }
+
+      List<HeadedSyntacticCategory> wordSupertags = Lists.newArrayList();
+      List<Double> wordSupertagScores = Lists.newArrayList();
+      for (int j = 0; j < wordScores.size(); j++) {
+        if (j == bestIndex || wordScores.get(j) > threshold * wordScores.get(bestIndex)) {
+          wordSupertags.add(supertags.get(i).get(j));
+          wordSupertagScores.add(wordScores.get(j));
+        }
+      }
+      filteredSupertags.add(wordSupertags);
+      filteredScores.add(wordSupertagScores);
+    }
+    return replaceSupertags(filteredSupertags, filteredScores);
+  }
+
   public ListSupertaggedSentence removeSupertags() {
     List<WordAndPos> words = getItems();
     return replaceSupertags(Collections.nCopies(words.size(), Collections.<HeadedSyntacticCategory>emptyList()),
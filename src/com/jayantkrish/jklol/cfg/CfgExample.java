@@ -1,5 +1,6 @@
 package com.jayantkrish.jklol.cfg;
 
+import java.io.Serializable;
 import java.util.List;
 
 import com.google.common.base.Preconditions;
@@ -10,7 +11,9 @@ import com.google.common.base.Preconditions;
  * @author jayant
  *
  */
-public class CfgExample {
+public class CfgExample implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private final List<Object> words;
   private final CfgParseTree parse;
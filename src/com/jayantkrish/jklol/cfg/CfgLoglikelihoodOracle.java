@@ -1,5 +1,7 @@
 package com.jayantkrish.jklol.cfg;
 
+import java.io.Serializable;
+
 import com.google.common.base.Preconditions;
 import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
 import com.jayantkrish.jklol.training.GradientOracle;
@@ -13,8 +15,10 @@ import com.jayantkrish.jklol.training.LogFunction;
  * @author jayant
  *
  */
-public class CfgLoglikelihoodOracle implements GradientOracle<CfgParser, CfgExample> {
-  
+public class CfgLoglikelihoodOracle implements GradientOracle<CfgParser, CfgExample>, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
   private final ParametricCfgParser family;
   
   public CfgLoglikelihoodOracle(ParametricCfgParser family) {
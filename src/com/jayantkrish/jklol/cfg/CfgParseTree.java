@@ -1,12 +1,15 @@
 package com.jayantkrish.jklol.cfg;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * A CFG parse tree.
  */
-public class CfgParseTree implements Comparable<CfgParseTree> { 
+public class CfgParseTree implements Comparable<CfgParseTree>, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private final Object root;
   // Field for extra information associated with the current parse tree rule.
@@ -16,10 +16,13 @@ import com.google.common.collect.Sets;
 import com.jayantkrish.jklol.boost.FunctionalGradientAscent;
 import com.jayantkrish.jklol.dtree.RegressionTreeTrainer;
 import com.jayantkrish.jklol.parallel.LocalMapReduceExecutor;
+import com.jayantkrish.jklol.parallel.LocalMapReduceExecutor.PoolType;
 import com.jayantkrish.jklol.parallel.MapReduceConfiguration;
 import com.jayantkrish.jklol.sequence.cli.TrainSequenceModel;
+import com.jayantkrish.jklol.tensor.TensorParallelism;
 import com.jayantkrish.jklol.training.DefaultLogFunction;
 import com.jayantkrish.jklol.training.GradientOptimizer;
+import com.jayantkrish.jklol.training.HogwildGradientTrainer;
 import com.jayantkrish.jklol.training.Lbfgs;
 import com.jayantkrish.jklol.training.LogFunction;
 import com.jayantkrish.jklol.training.LogFunctions;
@@ -102,6 +105,9 @@ public abstract class AbstractCli {
   protected OptionSpec<Double> sgdRegularizationFrequency;
   protected OptionSpec<Double> sgdClipGradients;
   protected OptionSpec<Void> sgdAdagrad;
+  protected OptionSpec<Void> sgdLazyRegularization;
+  protected OptionSpec<Void> sgdHogwild;
+  protected OptionSpec<Integer> sgdHogwildThreads;
 
   // LBFGS options.
   protected OptionSpec<Void> lbfgs;
@@ -121,6 +127,9 @@ public abstract class AbstractCli {
   // Map reduce options.
   protected OptionSpec<Integer> mrMaxThreads;
   protected OptionSpec<Integer> mrMaxBatchesPerThread;
+  protected OptionSpec<PoolType> mrThreadPool;
+  protected OptionSpec<Void> mrThreadLocalReduction;
+  protected OptionSpec<Integer> tensorParallelThreshold;
 
   // Functional gradient ascent options
   protected OptionSpec<Integer> fgaIterations;
@@ -269,6 +278,16 @@ public abstract class AbstractCli {
       sgdClipGradients = parser.accepts("clipGradients", "Clip gradients to a max l2 norm of the given value.")
           .withRequiredArg().ofType(Double.class).defaultsTo(Double.MAX_VALUE);
       sgdAdagrad = parser.accepts("adagrad", "Use the adagrad algorithm for stochastic gradient descent.");
+      sgdLazyRegularization = parser.accepts("lazyRegularization", "Apply L2 regularization and "
+          + "parameter averaging only to parameters used by each minibatch. Requires a training "
+          + "oracle that reports the parameters used by each example (SparseGradientOracle); "
+          + "other models are trained with ordinary L2 regularization. Ignores "
+          + "regularizationFrequency.");
+      sgdHogwild = parser.accepts("hogwild", "Run stochastic gradient descent asynchronously on "
+          + "multiple threads without locking the parameters. The minibatch size defaults to 1.");
+      sgdHogwildThreads = parser.accepts("hogwildThreads",
+          "Number of threads to use for asynchronous stochastic gradient descent.")
+          .withRequiredArg().ofType(Integer.class).defaultsTo(Runtime.getRuntime().availableProcessors());
     }
 
     if (opts.contains(CommonOptions.LBFGS)) {
@@ -318,6 +337,16 @@ public abstract class AbstractCli {
       mrMaxBatchesPerThread = parser.accepts("maxBatchesPerThread",
           "Number of batches of items to create per thread.")
           .withRequiredArg().ofType(Integer.class).defaultsTo(20);
+      mrThreadPool = parser.accepts("threadPool",
+          "Type of thread pool to use during parallel execution. PER_CALL creates new threads for "
+          + "each parallel task, while FIXED and WORK_STEALING reuse threads across tasks.")
+          .withRequiredArg().ofType(PoolType.class).defaultsTo(PoolType.FIXED);
+      mrThreadLocalReduction = parser.accepts("threadLocalReduction",
+          "Reduce all items processed by a thread into a single accumulator when possible. "
+          + "Faster, but floating point results may depend on thread scheduling.");
+      tensorParallelThreshold = parser.accepts("tensorParallelThreshold",
+          "Minimum number of nonzero entries in a sparse tensor for tensor operations to be parallelized.")
+          .withRequiredArg().ofType(Integer.class).defaultsTo(TensorParallelism.DEFAULT_PARALLEL_THRESHOLD);
     }
 
     if (opts.contains(CommonOptions.FUNCTIONAL_GRADIENT_ASCENT)) {
@@ -351,7 +380,9 @@ public abstract class AbstractCli {
 
     if (opts.contains(CommonOptions.MAP_REDUCE)) {
       MapReduceConfiguration.setMapReduceExecutor(new LocalMapReduceExecutor(
-          options.valueOf(mrMaxThreads), options.valueOf(mrMaxBatchesPerThread)));
+          options.valueOf(mrMaxThreads), options.valueOf(mrMaxBatchesPerThread),
+          options.valueOf(mrThreadPool), options.has(mrThreadLocalReduction)));
+      TensorParallelism.setParallelThreshold(options.valueOf(tensorParallelThreshold));
     }
 
     if (opts.contains(CommonOptions.STOCHASTIC_GRADIENT) || opts.contains(CommonOptions.LBFGS)) {
@@ -388,7 +419,14 @@ public abstract class AbstractCli {
 
     LogFunction log = LogFunctions.getLogFunction();
     StochasticGradientTrainer trainer = null;
-    if (!parsedOptions.has(sgdAdagrad)) {
+    if (parsedOptions.has(sgdLazyRegularization)) {
+      Preconditions.checkState(!parsedOptions.has(sgdAdagrad),
+          "--lazyRegularization cannot be used with --adagrad");
+      trainer = StochasticGradientTrainer.createWithLazyL2Regularization(
+          numIterations, batchSize, initialStepSize, !parsedOptions.has(sgdNoDecayStepSize),
+          !parsedOptions.has(sgdNoReturnAveragedParameters), parsedOptions.valueOf(sgdClipGradients),
+          l2Regularization, log);
+    } else if (!parsedOptions.has(sgdAdagrad)) {
       trainer = StochasticGradientTrainer.createWithStochasticL2Regularization(
           numIterations, batchSize, initialStepSize, !parsedOptions.has(sgdNoDecayStepSize),
           !parsedOptions.has(sgdNoReturnAveragedParameters), parsedOptions.valueOf(sgdClipGradients),
@@ -403,6 +441,39 @@ public abstract class AbstractCli {
     return trainer;
   }
 
+  /**
+   * Creates a {@code HogwildGradientTrainer} configured using the
+   * provided options. Regularization frequency and gradient clipping
+   * are not supported by this trainer, and are ignored.
+   * 
+   * @param numExamples
+   * @return
+   */
+  private HogwildGradientTrainer createHogwildTrainer(int numExamples) {
+    Preconditions.checkState(opts.contains(CommonOptions.STOCHASTIC_GRADIENT));
+
+    long iterationsOption = parsedOptions.valueOf(sgdIterations);
+    int batchSize = 1;
+    if (parsedOptions.has(sgdBatchSize)) {
+      batchSize = parsedOptions.valueOf(sgdBatchSize);
+    }
+    long numIterations = (int) Math.ceil(iterationsOption * numExamples / ((double) batchSize));
+
+    return new HogwildGradientTrainer(numIterations, batchSize,
+        parsedOptions.valueOf(sgdHogwildThreads), parsedOptions.valueOf(sgdInitialStep),
+        !parsedOptions.has(sgdNoDecayStepSize), !parsedOptions.has(sgdNoReturnAveragedParameters),
+        parsedOptions.has(sgdAdagrad), parsedOptions.valueOf(sgdL2Regularization),
+        LogFunctions.getLogFunction());
+  }
+
+  private GradientOptimizer createStochasticGradientOptimizer(int numExamples) {
+    if (parsedOptions.has(sgdHogwild)) {
+      return createHogwildTrainer(numExamples);
+    } else {
+      return createStochasticGradientTrainer(numExamples);
+    }
+  }
+
   private GradientOptimizer createLbfgs(int numExamples) {
     Preconditions.checkState(opts.contains(CommonOptions.LBFGS));
 
@@ -450,10 +521,10 @@ public abstract class AbstractCli {
       if (parsedOptions.has(lbfgs)) {
         return createLbfgs(numExamples);
       } else {
-        return createStochasticGradientTrainer(numExamples);
+        return createStochasticGradientOptimizer(numExamples);
       }
     } else if (opts.contains(CommonOptions.STOCHASTIC_GRADIENT)) {
-      return createStochasticGradientTrainer(numExamples);
+      return createStochasticGradientOptimizer(numExamples);
     } else if (opts.contains(CommonOptions.LBFGS)) {
       return createLbfgs(numExamples);
     }
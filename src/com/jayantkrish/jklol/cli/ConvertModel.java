@@ -0,0 +1,43 @@
+package com.jayantkrish.jklol.cli;
+
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+
+import com.jayantkrish.jklol.util.BinaryModelFormat;
+import com.jayantkrish.jklol.util.IoUtils;
+
+/**
+ * Converts a model serialized with Java serialization (e.g., a
+ * {@code .ser} file produced by a training program) to the
+ * {@link BinaryModelFormat}, which loads considerably faster. Programs
+ * that read models through {@link IoUtils#readSerializedObject} accept
+ * either format.
+ *
+ * @author jayantk
+ */
+public class ConvertModel extends AbstractCli {
+
+  private OptionSpec<String> input;
+  private OptionSpec<String> output;
+
+  public ConvertModel() {
+    super();
+  }
+
+  @Override
+  public void initializeOptions(OptionParser parser) {
+    input = parser.accepts("input").withRequiredArg().ofType(String.class).required();
+    output = parser.accepts("output").withRequiredArg().ofType(String.class).required();
+  }
+
+  @Override
+  public void run(OptionSet options) {
+    Object model = IoUtils.readSerializedObject(options.valueOf(input), Object.class);
+    IoUtils.serializeObjectToBinaryFile(model, options.valueOf(output));
+  }
+
+  public static void main(String[] args) {
+    new ConvertModel().run(args);
+  }
+}
@@ -1,11 +1,15 @@
 package com.jayantkrish.jklol.cvsm;
 
+import java.io.Serializable;
+
 import com.google.common.base.Preconditions;
 import com.jayantkrish.jklol.ccg.CcgParse;
 import com.jayantkrish.jklol.ccg.lambda2.Expression2;
 import com.jayantkrish.jklol.tensor.Tensor;
 
-public class CvsmExample {
+public class CvsmExample implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private final Expression2 logicalForm;
 
@@ -1,5 +1,7 @@
 package com.jayantkrish.jklol.cvsm;
 
+import java.io.Serializable;
+
 import com.google.common.base.Preconditions;
 import com.jayantkrish.jklol.cvsm.lrt.TensorLowRankTensor;
 import com.jayantkrish.jklol.cvsm.tree.CvsmHingeElementwiseLossTree;
@@ -20,7 +22,9 @@ import com.jayantkrish.jklol.training.LogFunction;
  * 
  * @author jayantk
  */
-public class CvsmLoglikelihoodOracle implements GradientOracle<Cvsm, CvsmExample> {
+public class CvsmLoglikelihoodOracle implements GradientOracle<Cvsm, CvsmExample>, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private final CvsmFamily family;
   private final CvsmLoss lossFunction;
@@ -59,7 +63,7 @@ public class CvsmLoglikelihoodOracle implements GradientOracle<Cvsm, CvsmExample
     return gradientTree.getLoss();
   }
   
-  public static interface CvsmLoss {
+  public static interface CvsmLoss extends Serializable {
 
     /**
      * Adds loss nodes to {@code tree} to compute gradients, etc.
@@ -71,6 +75,9 @@ public class CvsmLoglikelihoodOracle implements GradientOracle<Cvsm, CvsmExample
   }
   
   public static class CvsmSquareLoss implements CvsmLoss {
+
+    private static final long serialVersionUID = 1L;
+
     @Override
     public CvsmTree augmentTreeWithLoss(CvsmTree tree, Cvsm cvsm, Tensor targets) {
       return new CvsmSquareLossTree(targets, tree);
@@ -84,6 +91,9 @@ public class CvsmLoglikelihoodOracle implements GradientOracle<Cvsm, CvsmExample
    * @author jayantk
    */
   public static class CvsmKlLoss implements CvsmLoss {
+
+    private static final long serialVersionUID = 1L;
+
     @Override
     public CvsmTree augmentTreeWithLoss(CvsmTree tree, Cvsm cvsm, Tensor targets) {
       return new CvsmKlLossTree(targets, tree);
@@ -91,6 +101,9 @@ public class CvsmLoglikelihoodOracle implements GradientOracle<Cvsm, CvsmExample
   }
   
   public static class CvsmValueLoss implements CvsmLoss {
+
+    private static final long serialVersionUID = 1L;
+
     @Override
     public CvsmTree augmentTreeWithLoss(CvsmTree tree, Cvsm cvsm, Tensor targets) {
       return new CvsmValueLossTree(tree);
@@ -98,6 +111,9 @@ public class CvsmLoglikelihoodOracle implements GradientOracle<Cvsm, CvsmExample
   }
 
   public static class CvsmKlElementwiseLoss implements CvsmLoss {
+
+    private static final long serialVersionUID = 1L;
+
     @Override
     public CvsmTree augmentTreeWithLoss(CvsmTree tree, Cvsm cvsm, Tensor targets) {
       return new CvsmKlElementwiseLossTree(targets, tree);
@@ -105,6 +121,9 @@ public class CvsmLoglikelihoodOracle implements GradientOracle<Cvsm, CvsmExample
   }
 
   public static class CvsmHingeElementwiseLoss implements CvsmLoss {
+
+    private static final long serialVersionUID = 1L;
+
     @Override
     public CvsmTree augmentTreeWithLoss(CvsmTree tree, Cvsm cvsm, Tensor targets) {
       return new CvsmHingeElementwiseLossTree(targets, tree);
@@ -14,7 +14,9 @@ import com.jayantkrish.jklol.ccg.lambda2.ExpressionSimplifier;
 
 
 public class WikiTableExecutionComparator implements ExpressionComparator {
-  
+
+  private static final long serialVersionUID = 1L;
+
   private final ExpressionSimplifier simplifier;
   
   private final ExpressionExecutor executor;
@@ -6,12 +6,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.jayantkrish.jklol.ccg.CcgCategory;
 import com.jayantkrish.jklol.ccg.CcgFeatureFactory;
+import com.jayantkrish.jklol.ccg.DefaultCcgFeatureFactory.CategoryToSyntax;
 import com.jayantkrish.jklol.ccg.HeadedSyntacticCategory;
 import com.jayantkrish.jklol.ccg.LexiconEntry;
 import com.jayantkrish.jklol.ccg.lambda.ExpressionParser;
@@ -227,12 +227,7 @@ public class WikiTablesCcgFeatureFactory implements CcgFeatureFactory {
           lexiconFeatureVariable, null, false);
 
       scorers.add(new ParametricFeaturizedLexiconScorer(lexiconFeatureAnnotationName,
-          terminalSyntaxVar, featureVar, featureFamily, new Function<CcgCategory, Object>() {
-            @Override
-            public Object apply(CcgCategory category) {
-              return category.getSyntax();
-            }
-          }));
+          terminalSyntaxVar, featureVar, featureFamily, new CategoryToSyntax()));
     }
 
     return scorers;
@@ -16,6 +16,7 @@ import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 import com.google.common.collect.SortedSetMultimap;
 import com.google.common.collect.TreeMultimap;
+import com.google.common.primitives.Ints;
 import com.jayantkrish.jklol.tensor.CachedSparseTensor;
 import com.jayantkrish.jklol.tensor.SparseTensor;
 import com.jayantkrish.jklol.tensor.SparseTensorBuilder;
@@ -150,6 +151,46 @@ public abstract class DiscreteFactor extends AbstractFactor {
         getWeights().maxOutDimensions(Sets.newHashSet(varNumsToEliminate)));
   }
 
+  /**
+   * Computes {@code this.product(other).marginalize(varNumsToEliminate)}
+   * without constructing the intermediate product factor.
+   * {@code other}'s variables must be a subset of this factor's
+   * variables.
+   * 
+   * @param other
+   * @param varNumsToEliminate
+   * @return
+   */
+  public DiscreteFactor productMarginalize(Factor other, Collection<Integer> varNumsToEliminate) {
+    Preconditions.checkArgument(getVars().containsAll(other.getVars()));
+    return new TableFactor(getVars().removeAll(varNumsToEliminate), getWeights()
+        .productSumOut(other.coerceToDiscrete().getWeights(), Ints.toArray(varNumsToEliminate)));
+  }
+
+  public DiscreteFactor productMarginalize(Factor other, VariableNumMap vars) {
+    return productMarginalize(other, vars.getVariableNums());
+  }
+
+  /**
+   * Computes {@code this.product(other).maxMarginalize(varNumsToEliminate)}
+   * without constructing the intermediate product factor.
+   * {@code other}'s variables must be a subset of this factor's
+   * variables.
+   * 
+   * @param other
+   * @param varNumsToEliminate
+   * @return
+   */
+  public DiscreteFactor productMaxMarginalize(Factor other, Collection<Integer> varNumsToEliminate) {
+    Preconditions.checkArgument(getVars().containsAll(other.getVars()));
+    return new TableFactor(getVars().removeAll(varNumsToEliminate), getWeights()
+        .productMaxOut(other.coerceToDiscrete().getWeights(), Ints.toArray(varNumsToEliminate)));
+  }
+
+  public DiscreteFactor productMaxMarginalize(Factor other, VariableNumMap vars) {
+    return productMaxMarginalize(other, vars.getVariableNums());
+  }
+
   @Override
   public DiscreteFactor add(Factor other) {
     VariableNumMap varsNotInOther = getVars().removeAll(other.getVars());
@@ -59,8 +59,7 @@ public class DenseIndicatorLogLinearFactor extends AbstractParametricFactor {
   @Override
   public SufficientStatistics getNewSufficientStatistics() {
     if (isSparse) {
-      return TensorSufficientStatistics.createSparse(getVars(), 
-          SparseTensor.empty(getVars().getVariableNumsArray(), getVars().getVariableSizes()));
+      return TensorSufficientStatistics.createHashSparse(getVars());
     } else {
       return TensorSufficientStatistics.createDense(getVars(), 
           new DenseTensorBuilder(getVars().getVariableNumsArray(), getVars().getVariableSizes()));
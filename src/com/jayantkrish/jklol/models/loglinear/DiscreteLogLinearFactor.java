@@ -114,8 +114,8 @@ public class DiscreteLogLinearFactor extends AbstractParametricFactor {
   @Override
   public DiscreteFactor getModelFromParameters(SufficientStatistics parameters) {
     Tensor featureWeights = getFeatureWeights(parameters);
-    Tensor logProbs = featureValues.getWeights().elementwiseProduct(featureWeights)
-        .sumOutDimensions(featureVariables.getVariableNumsArray());
+    Tensor logProbs = featureValues.getWeights().productSumOut(featureWeights,
+        featureVariables.getVariableNumsArray());
 
     return exponentiateLogProbs(logProbs); 
   }
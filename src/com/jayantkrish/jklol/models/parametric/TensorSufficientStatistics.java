@@ -11,6 +11,7 @@ import com.jayantkrish.jklol.models.TableFactor;
 import com.jayantkrish.jklol.models.VariableNumMap;
 import com.jayantkrish.jklol.tensor.DenseTensor;
 import com.jayantkrish.jklol.tensor.DenseTensorBuilder;
+import com.jayantkrish.jklol.tensor.HashTensorBuilder;
 import com.jayantkrish.jklol.tensor.SparseTensor;
 import com.jayantkrish.jklol.tensor.Tensor;
 import com.jayantkrish.jklol.tensor.TensorBuilder;
@@ -30,7 +31,8 @@ public class TensorSufficientStatistics implements SufficientStatistics {
   private final VariableNumMap statisticNames;
 
   // This flag determines whether statisticsTensor or statistics
-  // contains the current parameters.
+  // contains the current parameters. statistics may be either a dense
+  // builder or a sparse HashTensorBuilder.
   private boolean isDense;
   private Tensor statisticsTensor;
   private TensorBuilder statistics;
@@ -109,6 +111,22 @@ public class TensorSufficientStatistics implements SufficientStatistics {
         new DenseTensorBuilder(statisticNames.getVariableNumsArray(), statisticNames.getVariableSizes()));
   }
 
+  /**
+   * Creates an empty sufficient statistics vector represented using a
+   * sparse {@link HashTensorBuilder}. Unlike {@link #createSparse},
+   * whose statistics wrap an immutable sparse tensor that is copied on
+   * every update, incrementing a single feature of the returned
+   * statistics takes constant time, so this representation is
+   * preferable for accumulating sparse gradients.
+   *
+   * @param statisticNames
+   * @return
+   */
+  public static TensorSufficientStatistics createHashSparse(VariableNumMap statisticNames) {
+    return new TensorSufficientStatistics(statisticNames,
+        new HashTensorBuilder(statisticNames.getVariableNumsArray(), statisticNames.getVariableSizes()));
+  }
+
   /**
    * Gets the tensor in {@code this}.
    * <p>
@@ -287,12 +305,8 @@ public class TensorSufficientStatistics implements SufficientStatistics {
 
   @Override
   public void perturb(double stddev) {
-    if (!isDense) {
-      // Make the representation dense, since the random perturbation is dense.
-      statistics = DenseTensorBuilder.copyOf(statisticsTensor);
-      statisticsTensor = null;
-      isDense = true;
-    }
+    // Make the representation dense, since the random perturbation is dense.
+    makeDense();
 
     Tensor perturbation = DenseTensor.random(getTensorDimensions(), getTensorSizes(), 0.0, stddev);
     statistics.increment(perturbation);
@@ -330,8 +344,8 @@ public class TensorSufficientStatistics implements SufficientStatistics {
 
   @Override
   public void makeDense() {
-    if (!isDense) {
-      statistics = DenseTensorBuilder.copyOf(statisticsTensor);
+    if (!isDense || statistics instanceof HashTensorBuilder) {
+      statistics = DenseTensorBuilder.copyOf(get());
       statisticsTensor = null;
       isDense = true;
     }
@@ -1,5 +1,6 @@
 package com.jayantkrish.jklol.nlpannotation;
 
+import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -18,7 +19,9 @@ import com.jayantkrish.jklol.ccg.supertag.WordAndPos;
  * 
  * @author jayantk
  */
-public class AnnotatedSentence {
+public class AnnotatedSentence implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private final List<String> words;
   private final List<String> lowercaseWords;
@@ -3,21 +3,48 @@ package com.jayantkrish.jklol.parallel;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.jayantkrish.jklol.parallel.Reducer.ThreadLocalReducer;
 import com.jayantkrish.jklol.parallel.Reducers.FilterReducer;
 
 /**
  * A parallelized, single-machine implementation of map-reduce pipelines. This
  * executor batches the input items and executes them on multiple local CPUs.
+ * <p>
+ * By default, a new thread pool is created for each call to the executor.
+ * Programs that call the executor many times on small inputs, such as
+ * stochastic gradient training with small minibatches, should use a
+ * long-lived pool (see {@link PoolType}), which is shared by all calls until
+ * {@link #shutdown()} is invoked. Calls made by tasks running on a
+ * long-lived pool, such as a mapper that invokes the global executor, are
+ * run in the calling thread, since waiting for tasks queued on the same
+ * pool can deadlock.
+ * <p>
+ * Batch results are combined in the order of the batches, so the result of
+ * a call does not depend on how batches are scheduled on threads. An
+ * executor may optionally reduce all batches run by a thread into a single
+ * thread-local accumulator if the reducer is a {@link ThreadLocalReducer}.
+ * This is faster for reducers with large accumulators, such as gradients,
+ * but the order of floating point operations then depends on thread
+ * scheduling, so results may differ slightly between runs.
  * 
  * @author jayantk
  */
@@ -25,6 +52,40 @@ public class LocalMapReduceExecutor implements MapReduceExecutor {
 
   private final int batchesPerThread;
   private final int numThreads;
+  private final boolean threadLocalReduction;
+
+  // If non-null, all tasks are run on this executor. Otherwise, a new
+  // executor is created for each call.
+  private final ExecutorService persistentExecutor;
+  private volatile boolean isShutdown;
+
+  private volatile CallStatistics lastCallStatistics;
+
+  // The pool whose map or reduce task the current thread is running,
+  // if any. Keyed by pool rather than by executor, since executors
+  // created with the same ExecutorService share its threads.
+  private static final ThreadLocal<ExecutorService> runningPool =
+      new ThreadLocal<ExecutorService>();
+
+  /**
+   * The thread pools that can be used by a {@code LocalMapReduceExecutor}.
+   */
+  public static enum PoolType {
+    /**
+     * Creates a new pool of threads for each call, and shuts it down
+     * when the call completes.
+     */
+    PER_CALL,
+    /**
+     * A fixed number of threads shared by all calls. Idle threads are
+     * eventually terminated, and recreated when needed.
+     */
+    FIXED,
+    /**
+     * A work-stealing {@link ForkJoinPool} shared by all calls.
+     */
+    WORK_STEALING,
+  };
 
   /**
    * Constructs an executor that processes batches of items using a fixed number
@@ -36,8 +97,145 @@ public class LocalMapReduceExecutor implements MapReduceExecutor {
    * @param batchesPerThread
    */
   public LocalMapReduceExecutor(int numThreads, int batchesPerThread) {
+    this(numThreads, batchesPerThread, PoolType.PER_CALL);
+  }
+
+  /**
+   * Same as {@link #LocalMapReduceExecutor(int, int)}, except that
+   * tasks are run on a pool of type {@code poolType}.
+   *
+   * @param numThreads
+   * @param batchesPerThread
+   * @param poolType
+   */
+  public LocalMapReduceExecutor(int numThreads, int batchesPerThread, PoolType poolType) {
+    this(numThreads, batchesPerThread, poolType, false);
+  }
+
+  /**
+   * Same as {@link #LocalMapReduceExecutor(int, int, PoolType)}. If
+   * {@code threadLocalReduction} is {@code true}, each thread reduces
+   * all of its batches into a single accumulator whenever the reducer
+   * is a {@link ThreadLocalReducer}.
+   *
+   * @param numThreads
+   * @param batchesPerThread
+   * @param poolType
+   * @param threadLocalReduction
+   */
+  public LocalMapReduceExecutor(int numThreads, int batchesPerThread, PoolType poolType,
+      boolean threadLocalReduction) {
+    this(numThreads, batchesPerThread, createExecutor(numThreads, poolType),
+        threadLocalReduction);
+  }
+
+  /**
+   * Constructs an executor that runs all tasks on {@code executor},
+   * which is assumed to run {@code numThreads} tasks concurrently.
+   * {@code executor} is shut down by {@link #shutdown()}.
+   * 
+   * @param numThreads
+   * @param batchesPerThread
+   * @param executor
+   */
+  public LocalMapReduceExecutor(int numThreads, int batchesPerThread, ExecutorService executor) {
+    this(numThreads, batchesPerThread, executor, false);
+  }
+
+  /**
+   * Same as {@link #LocalMapReduceExecutor(int, int, ExecutorService)},
+   * with thread-local reduction as in
+   * {@link #LocalMapReduceExecutor(int, int, PoolType, boolean)}.
+   *
+   * @param numThreads
+   * @param batchesPerThread
+   * @param executor
+   * @param threadLocalReduction
+   */
+  public LocalMapReduceExecutor(int numThreads, int batchesPerThread, ExecutorService executor,
+      boolean threadLocalReduction) {
+    Preconditions.checkArgument(numThreads > 0);
+    Preconditions.checkArgument(batchesPerThread > 0);
     this.numThreads = numThreads;
     this.batchesPerThread = batchesPerThread;
+    this.persistentExecutor = executor;
+    this.threadLocalReduction = threadLocalReduction;
+    this.isShutdown = false;
+    this.lastCallStatistics = null;
+  }
+
+  private static ExecutorService createExecutor(int numThreads, PoolType poolType) {
+    switch (poolType) {
+    case PER_CALL:
+      return null;
+    case FIXED:
+      // Threads are daemons that time out when idle, so the program can
+      // terminate without the user invoking shutdown().
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(numThreads, numThreads, 60,
+          TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("map-reduce-%d").build());
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+    case WORK_STEALING:
+      return new ForkJoinPool(numThreads);
+    default:
+      throw new IllegalArgumentException("Unknown pool type: " + poolType);
+    }
+  }
+
+  /**
+   * Shuts down the thread pool of this executor. Tasks that are
+   * currently running are completed, but subsequent calls to this
+   * executor throw an exception.
+   */
+  public void shutdown() {
+    isShutdown = true;
+    if (persistentExecutor != null) {
+      persistentExecutor.shutdown();
+    }
+  }
+
+  /**
+   * Returns {@code true} if {@link #shutdown()} has been invoked on
+   * this executor.
+   * 
+   * @return
+   */
+  public boolean isShutdown() {
+    return isShutdown;
+  }
+
+  /**
+   * Returns {@code true} if this executor reuses the same thread pool
+   * across calls.
+   * 
+   * @return
+   */
+  public boolean isPersistent() {
+    return persistentExecutor != null;
+  }
+
+  /**
+   * Returns {@code true} if this executor reduces the batches of each
+   * thread into a single accumulator when the reducer is a
+   * {@link ThreadLocalReducer}.
+   * 
+   * @return
+   */
+  public boolean usesThreadLocalReduction() {
+    return threadLocalReduction;
+  }
+
+  /**
+   * Gets timing statistics for the most recently completed call to
+   * {@link #mapReduce} or {@link #map}, or {@code null} if no call has
+   * completed. If the executor is called from multiple threads, the
+   * statistics are for whichever call finished last.
+   * 
+   * @return
+   */
+  public CallStatistics getLastCallStatistics() {
+    return lastCallStatistics;
   }
   
   @Override
@@ -49,16 +247,20 @@ public class LocalMapReduceExecutor implements MapReduceExecutor {
   @Override
   public <A, B, C, D extends Mapper<A, B>, E extends Reducer<B, C>> C mapReduce(
       Collection<? extends A> items, D mapper, E reducer, C accumulator) {
+    Preconditions.checkState(!isShutdown, "Executor has been shut down.");
+    long startTime = System.nanoTime();
     if (accumulator == null) {
       accumulator = reducer.getInitialValue();
     }
 
-    if (items.size() == 1) {
+    if (items.size() == 1 || isNestedCall()) {
       // Run all computation in this thread, which is faster given only a small number of items.
       for (A item : items) {
         B mappedItem = mapper.map(item);
         accumulator = reducer.reduce(mappedItem, accumulator);
       }
+      long mapNanos = System.nanoTime() - startTime;
+      lastCallStatistics = new CallStatistics(items.size(), 1, 0, mapNanos, 0, mapNanos);
       return accumulator;
     }
 
@@ -66,22 +268,61 @@ public class LocalMapReduceExecutor implements MapReduceExecutor {
     // Set up the item batches for the executor service. 
     ImmutableList<A> itemsAsList = ImmutableList.copyOf(items);
     int batchSize = (int) Math.ceil(((double) items.size()) / (numThreads * batchesPerThread));
-    
-    // If batchSize is 1, then there are potentially more batches than items.
-    List<Future<C>> results = Lists.newArrayList();
+
+    // Batch results are combined in parallel by the threads that
+    // compute them, in a binary tree that preserves the order of the
+    // batches. If this executor and the reducer permit it, each thread
+    // instead reduces all of its batches into a single thread-local
+    // accumulator, and only these accumulators are combined.
+    ConcurrentMap<Thread, C> threadAccumulators = null;
+    TreeCombiner<C> batchCombiner = null;
     int numBatches = (int) Math.ceil(((double) items.size()) / batchSize); 
+    if (threadLocalReduction && reducer instanceof ThreadLocalReducer) {
+      threadAccumulators = new ConcurrentHashMap<Thread, C>();
+    } else {
+      batchCombiner = new TreeCombiner<C>(numBatches, reducer);
+    }
+
+    // If batchSize is 1, then there are potentially more batches than items.
+    List<MapReduceBatch<A, B, C>> batches = Lists.newArrayList();
+    List<Future<?>> results = Lists.newArrayList();
     for (int i = 0; i < numBatches; i++) {
       ImmutableList<A> batchItems = itemsAsList.subList(
           Math.min(i * batchSize, items.size()), Math.min((i + 1) * batchSize, items.size()));
-      results.add(executor.submit(new MapReduceBatch<A, B, C>(batchItems, mapper, reducer)));
+      MapReduceBatch<A, B, C> batch = new MapReduceBatch<A, B, C>(batchItems, mapper, reducer,
+          i, batchCombiner, threadAccumulators, executor);
+      batches.add(batch);
+      results.add(executor.submit(batch));
     }
 
-    // Run the tasks in parallel, aggregating (reducing) their results as 
-    // they become available.
+    // Run the tasks in parallel, then combine their aggregated
+    // (reduced) result with the accumulator.
+    long combineNanos = 0;
     try {
-      for (Future<C> result : results) {
-        accumulator = reducer.combine(result.get(), accumulator);
+      for (Future<?> result : results) {
+        result.get();
+      }
+
+      C combined = null;
+      if (batchCombiner != null) {
+        combined = batchCombiner.getResult();
+        combineNanos += batchCombiner.getCombineNanos();
+      } else {
+        List<C> threadResults = Lists.newArrayList(threadAccumulators.values());
+        TreeCombiner<C> threadCombiner = new TreeCombiner<C>(threadResults.size(), reducer);
+        for (int i = 0; i < threadResults.size(); i++) {
+          results.add(executor.submit(new CombineTask<C>(threadCombiner, i, threadResults.get(i))));
+        }
+        for (Future<?> result : results) {
+          result.get();
+        }
+        combined = threadCombiner.getResult();
+        combineNanos += threadCombiner.getCombineNanos();
       }
+
+      long combineStart = System.nanoTime();
+      accumulator = reducer.combine(combined, accumulator);
+      combineNanos += System.nanoTime() - combineStart;
     } catch (InterruptedException e) {
       e.printStackTrace();
       e.getCause().printStackTrace();
@@ -91,19 +332,42 @@ public class LocalMapReduceExecutor implements MapReduceExecutor {
       e.getCause().printStackTrace();
       throw new RuntimeException(e);
     } finally {
-      executor.shutdown();
+      releaseExecutor(executor, results);
+    }
+
+    long queueWaitNanos = 0;
+    long mapNanos = 0;
+    for (MapReduceBatch<A, B, C> batch : batches) {
+      queueWaitNanos += batch.getQueueWaitNanos();
+      mapNanos += batch.getRunNanos();
     }
+    lastCallStatistics = new CallStatistics(items.size(), numBatches, queueWaitNanos,
+        mapNanos, combineNanos, System.nanoTime() - startTime);
     return accumulator;
   }
 
   @Override
   public <A, B, C extends Mapper<A, B>> List<B> map(Collection<? extends A> items, C mapper) {
+    Preconditions.checkState(!isShutdown, "Executor has been shut down.");
+    long startTime = System.nanoTime();
     List<B> results = Lists.newArrayList();
+    if (isNestedCall()) {
+      for (A item : items) {
+        results.add(mapper.map(item));
+      }
+      long mapNanos = System.nanoTime() - startTime;
+      lastCallStatistics = new CallStatistics(items.size(), 1, 0, mapNanos, 0, mapNanos);
+      return results;
+    }
+
     ExecutorService executor = getExecutor();
+    List<MapBatch<A, B>> batches = Lists.newArrayList();
+    List<Future<B>> futureResults = Lists.newArrayList();
     try {
-      List<Future<B>> futureResults = Lists.newArrayList();
       for (A item : items) {
-        futureResults.add(executor.submit(new MapBatch<A, B>(item, mapper)));
+        MapBatch<A, B> batch = new MapBatch<A, B>(item, mapper, executor);
+        batches.add(batch);
+        futureResults.add(executor.submit(batch));
       }
 
       for (Future<B> future : futureResults) {
@@ -118,8 +382,17 @@ public class LocalMapReduceExecutor implements MapReduceExecutor {
       e.getCause().printStackTrace();
       throw new RuntimeException(e);
     } finally {
-      executor.shutdownNow();
+      releaseExecutor(executor, futureResults);
+    }
+
+    long queueWaitNanos = 0;
+    long mapNanos = 0;
+    for (MapBatch<A, B> batch : batches) {
+      queueWaitNanos += batch.getQueueWaitNanos();
+      mapNanos += batch.getRunNanos();
     }
+    lastCallStatistics = new CallStatistics(items.size(), batches.size(), queueWaitNanos,
+        mapNanos, 0, System.nanoTime() - startTime);
     return results;
   }
 
@@ -128,7 +401,22 @@ public class LocalMapReduceExecutor implements MapReduceExecutor {
     return mapReduce(items, Mappers.<A>identity(), new FilterReducer<A>(predicate));
   }
 
+  /**
+   * Returns {@code true} if this call was made by a task running on
+   * this executor's persistent thread pool, possibly submitted by
+   * another executor that shares the pool. Such calls are run in the
+   * calling thread, since waiting for other tasks on the same pool can
+   * deadlock when all of its threads are waiting.
+   */
+  private boolean isNestedCall() {
+    return persistentExecutor != null && runningPool.get() == persistentExecutor;
+  }
+
   private ExecutorService getExecutor() {
+    if (persistentExecutor != null) {
+      return persistentExecutor;
+    }
+
     // This thread pool executor is equivalent to using 
     // Executors.newFixedThreadPool(numThreads), except that
     // unused threads are eventually terminated, allowing the
@@ -138,53 +426,315 @@ public class LocalMapReduceExecutor implements MapReduceExecutor {
     return executor;
   }
 
+  /**
+   * Releases an executor returned by {@link #getExecutor()} at the end
+   * of a call. Per-call executors are shut down; the tasks of a
+   * persistent executor that are still pending (because the call failed)
+   * are cancelled.
+   */
+  private void releaseExecutor(ExecutorService executor, List<? extends Future<?>> futures) {
+    if (executor != persistentExecutor) {
+      executor.shutdownNow();
+    } else {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
   /*
   private static class MapReduceThread<A, B, C> extends Thread {
   }
   */
 
   /**
-   * A single batch of items to be processed (mapped and reduced).
+   * A single batch of items to be processed (mapped and reduced). The
+   * result of the batch is passed to a {@code TreeCombiner}, or
+   * accumulated in a thread-local accumulator.
    * 
    * @author jayantk
    * @param <A>
    * @param <B>
    */
-  private static class MapReduceBatch<A, B, C> implements Callable<C> {
+  private static class MapReduceBatch<A, B, C> implements Callable<Void> {
 
     private final ImmutableList<A> items;
     private final Mapper<A, B> mapper;
     private final Reducer<B, C> reducer;
 
-    public MapReduceBatch(ImmutableList<A> items, Mapper<A, B> mapper, Reducer<B, C> reducer) {
+    private final int index;
+    private final TreeCombiner<C> combiner;
+    private final ConcurrentMap<Thread, C> threadAccumulators;
+    private final ExecutorService pool;
+
+    private final long submitTime;
+    private long startTime;
+    private long endTime;
+
+    public MapReduceBatch(ImmutableList<A> items, Mapper<A, B> mapper, Reducer<B, C> reducer,
+        int index, TreeCombiner<C> combiner, ConcurrentMap<Thread, C> threadAccumulators,
+        ExecutorService pool) {
       this.items = items;
       this.mapper = mapper;
       this.reducer = reducer;
+      this.index = index;
+      this.combiner = combiner;
+      this.threadAccumulators = threadAccumulators;
+      this.pool = pool;
+      this.submitTime = System.nanoTime();
     }
 
     @Override
-    public C call() {
-      C accumulator = reducer.getInitialValue();
-      for (A item : items) {
-        B mappedItem = mapper.map(item);
-        accumulator = reducer.reduce(mappedItem, accumulator);
+    public Void call() {
+      startTime = System.nanoTime();
+      C accumulator = null;
+      if (threadAccumulators != null) {
+        accumulator = threadAccumulators.get(Thread.currentThread());
       }
-      return accumulator;
+      if (accumulator == null) {
+        accumulator = reducer.getInitialValue();
+      }
+
+      // Work-stealing pools may run this task in a thread that is
+      // waiting for another task, so the previous pool is restored.
+      ExecutorService previousPool = runningPool.get();
+      runningPool.set(pool);
+      try {
+        for (A item : items) {
+          B mappedItem = mapper.map(item);
+          accumulator = reducer.reduce(mappedItem, accumulator);
+        }
+      } finally {
+        runningPool.set(previousPool);
+      }
+      endTime = System.nanoTime();
+
+      if (threadAccumulators != null) {
+        threadAccumulators.put(Thread.currentThread(), accumulator);
+      } else {
+        combiner.complete(index, accumulator);
+      }
+      return null;
+    }
+
+    // These methods may only be called after the result of call() has
+    // been retrieved from its future.
+    public long getQueueWaitNanos() {
+      return startTime - submitTime;
+    }
+
+    public long getRunNanos() {
+      return endTime - startTime;
+    }
+  }
+
+  private static class CombineTask<C> implements Callable<Void> {
+    private final TreeCombiner<C> combiner;
+    private final int index;
+    private final C value;
+
+    public CombineTask(TreeCombiner<C> combiner, int index, C value) {
+      this.combiner = combiner;
+      this.index = index;
+      this.value = value;
+    }
+
+    @Override
+    public Void call() {
+      combiner.complete(index, value);
+      return null;
+    }
+  }
+
+  /**
+   * Combines a sequence of values using a binary tree. Each value
+   * (leaf) is provided by {@link #complete}, which may be called
+   * concurrently from multiple threads. Each internal node is combined
+   * by the thread that completes the second of its children, so
+   * independent subtrees are combined in parallel. Values are combined
+   * in order, i.e., the result is the same as combining the leaves
+   * from left to right.
+   * 
+   * @param <C>
+   */
+  private static class TreeCombiner<C> {
+    private final Reducer<?, C> reducer;
+
+    // The number of nodes at each level of the tree. Level 0 contains
+    // the leaves, and the last level contains the root.
+    private final int[] levelSizes;
+    // The value of each node whose sibling has not yet been computed.
+    private final List<AtomicReferenceArray<C>> values;
+    // The number of children of each node that have been computed.
+    private final List<AtomicIntegerArray> numChildrenComputed;
+
+    private final AtomicLong combineNanos;
+    private volatile C result;
+
+    public TreeCombiner(int numLeaves, Reducer<?, C> reducer) {
+      Preconditions.checkArgument(numLeaves > 0);
+      this.reducer = Preconditions.checkNotNull(reducer);
+
+      List<Integer> sizes = Lists.newArrayList();
+      sizes.add(numLeaves);
+      while (sizes.get(sizes.size() - 1) > 1) {
+        sizes.add((sizes.get(sizes.size() - 1) + 1) / 2);
+      }
+      levelSizes = Ints.toArray(sizes);
+
+      values = Lists.newArrayList();
+      numChildrenComputed = Lists.newArrayList();
+      for (int i = 0; i < levelSizes.length; i++) {
+        values.add(new AtomicReferenceArray<C>(levelSizes[i]));
+        numChildrenComputed.add(new AtomicIntegerArray(levelSizes[i]));
+      }
+
+      combineNanos = new AtomicLong(0);
+      result = null;
+    }
+
+    public void complete(int index, C value) {
+      for (int level = 0; level < levelSizes.length - 1; level++) {
+        int parent = index / 2;
+        int sibling = index ^ 1;
+        if (sibling < levelSizes[level]) {
+          AtomicReferenceArray<C> levelValues = values.get(level);
+          levelValues.set(index, value);
+          if (numChildrenComputed.get(level + 1).getAndIncrement(parent) == 0) {
+            // The sibling's thread combines both children.
+            return;
+          }
+
+          C left = levelValues.getAndSet(parent * 2, null);
+          C right = levelValues.getAndSet((parent * 2) + 1, null);
+          long start = System.nanoTime();
+          value = reducer.combine(right, left);
+          combineNanos.addAndGet(System.nanoTime() - start);
+        }
+        index = parent;
+      }
+      result = value;
+    }
+
+    /**
+     * Gets the result of combining all of the leaves. May only be
+     * called after {@link #complete} has returned for every leaf.
+     * 
+     * @return
+     */
+    public C getResult() {
+      return result;
+    }
+
+    public long getCombineNanos() {
+      return combineNanos.get();
     }
   }
   
   public static class MapBatch<A, B> implements Callable<B> {
     private final A item;
     private final Mapper<A, B> mapper;
+    private final ExecutorService pool;
 
-    public MapBatch(A item, Mapper<A, B> mapper) {
+    private final long submitTime;
+    private long startTime;
+    private long endTime;
+
+    public MapBatch(A item, Mapper<A, B> mapper, ExecutorService pool) {
       this.item = item;
       this.mapper = mapper;
+      this.pool = pool;
+      this.submitTime = System.nanoTime();
     }
     
     @Override
     public B call() {
-      return mapper.map(item);
+      startTime = System.nanoTime();
+      B result = null;
+      ExecutorService previousPool = runningPool.get();
+      runningPool.set(pool);
+      try {
+        result = mapper.map(item);
+      } finally {
+        runningPool.set(previousPool);
+      }
+      endTime = System.nanoTime();
+      return result;
+    }
+
+    public long getQueueWaitNanos() {
+      return startTime - submitTime;
+    }
+
+    public long getRunNanos() {
+      return endTime - startTime;
+    }
+  }
+
+  /**
+   * Timing statistics for a single call to a
+   * {@code LocalMapReduceExecutor}. Queue wait and map times are summed
+   * over all batches, so they may exceed the total (wall clock) time of
+   * the call.
+   */
+  public static class CallStatistics {
+    private final int numItems;
+    private final int numBatches;
+    private final long queueWaitNanos;
+    private final long mapNanos;
+    private final long combineNanos;
+    private final long totalNanos;
+
+    public CallStatistics(int numItems, int numBatches, long queueWaitNanos, long mapNanos,
+        long combineNanos, long totalNanos) {
+      this.numItems = numItems;
+      this.numBatches = numBatches;
+      this.queueWaitNanos = queueWaitNanos;
+      this.mapNanos = mapNanos;
+      this.combineNanos = combineNanos;
+      this.totalNanos = totalNanos;
+    }
+
+    public int getNumItems() {
+      return numItems;
+    }
+
+    public int getNumBatches() {
+      return numBatches;
+    }
+
+    /**
+     * Gets the total time that batches waited to be run after being
+     * submitted to the thread pool.
+     */
+    public long getQueueWaitNanos() {
+      return queueWaitNanos;
+    }
+
+    /**
+     * Gets the total time spent mapping (and reducing) the items of
+     * every batch.
+     */
+    public long getMapNanos() {
+      return mapNanos;
+    }
+
+    /**
+     * Gets the time spent combining the results of the batches.
+     */
+    public long getCombineNanos() {
+      return combineNanos;
+    }
+
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%d items, %d batches: %.3f ms queue wait, %.3f ms map, "
+          + "%.3f ms combine, %.3f ms total", numItems, numBatches, queueWaitNanos / 1e6,
+          mapNanos / 1e6, combineNanos / 1e6, totalNanos / 1e6);
     }
   }
 }
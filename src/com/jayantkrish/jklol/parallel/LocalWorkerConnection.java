@@ -0,0 +1,30 @@
+package com.jayantkrish.jklol.parallel;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@code WorkerConnection} to a {@link MapReduceWorker} in the
+ * current process. Requests and responses are still serialized, so
+ * this connection behaves like a connection to another process, and
+ * is useful for testing.
+ *
+ * @author jayantk
+ */
+public class LocalWorkerConnection implements WorkerConnection {
+
+  private final MapReduceWorker worker;
+
+  public LocalWorkerConnection(MapReduceWorker worker) {
+    this.worker = Preconditions.checkNotNull(worker);
+  }
+
+  @Override
+  public synchronized byte[] call(byte[] request) {
+    return worker.execute(request);
+  }
+
+  @Override
+  public void close() {
+    worker.shutdown();
+  }
+}
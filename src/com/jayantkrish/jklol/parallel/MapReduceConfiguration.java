@@ -28,8 +28,11 @@ public class MapReduceConfiguration {
   public static MapReduceExecutor getMapReduceExecutor() {
     if (executor == null) {
       // Default to using a local executor with one thread per CPU.
+      // The threads are reused across calls, since training algorithms
+      // may invoke the executor once per minibatch. Calls made by its
+      // own tasks run in the calling thread instead of deadlocking.
       executor = new LocalMapReduceExecutor(
-          Runtime.getRuntime().availableProcessors(), 20);
+          Runtime.getRuntime().availableProcessors(), 20, LocalMapReduceExecutor.PoolType.FIXED);
     }
     return executor;
   }
@@ -0,0 +1,307 @@
+package com.jayantkrish.jklol.parallel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.io.BaseEncoding;
+import com.jayantkrish.jklol.parallel.LocalMapReduceExecutor.PoolType;
+
+/**
+ * Runs map-reduce tasks sent by a {@link MultiProcessMapReduceExecutor}.
+ * Each request contains a serialized mapper and reducer along with a
+ * partition of the items, which are processed using a local, multithreaded
+ * executor. The response contains the reduced (or mapped) values of the
+ * partition.
+ * <p>
+ * {@link #main} runs a worker as a separate process that serves requests
+ * over a socket. Requests contain arbitrary serialized objects, so the
+ * worker only accepts a connection whose first bytes are a secret token,
+ * which it reads from standard input. Nothing is deserialized before
+ * the token is checked.
+ *
+ * @author jayantk
+ */
+public class MapReduceWorker {
+
+  private final LocalMapReduceExecutor executor;
+
+  // Number of random bytes in an authentication token.
+  private static final int TOKEN_BYTES = 32;
+  // Time that a connection has to send the token.
+  private static final int HANDSHAKE_TIMEOUT_MILLIS = 10000;
+
+  /**
+   * Creates a worker that processes each request using
+   * {@code numThreads} threads.
+   *
+   * @param numThreads
+   */
+  public MapReduceWorker(int numThreads) {
+    this.executor = new LocalMapReduceExecutor(numThreads, 20, PoolType.FIXED);
+  }
+
+  /**
+   * Executes a serialized {@code WorkerRequest} and returns a
+   * serialized {@code WorkerResponse}. Exceptions thrown while executing
+   * the request are returned in the response.
+   *
+   * @param request
+   * @return
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public byte[] execute(byte[] request) {
+    WorkerResponse response = null;
+    try {
+      WorkerRequest workerRequest = (WorkerRequest) deserialize(request);
+      WorkerTask task = (WorkerTask) deserialize(workerRequest.getTask());
+
+      List items = workerRequest.getItems();
+      Mapper mapper = task.getMapper();
+      Reducer reducer = task.getReducer();
+      Object result = null;
+      if (reducer == null) {
+        result = executor.map(items, mapper);
+      } else {
+        result = executor.mapReduce(items, mapper, reducer);
+      }
+      response = WorkerResponse.success(result);
+      return serialize(response);
+    } catch (Exception e) {
+      response = WorkerResponse.failure(Throwables.getStackTraceAsString(e));
+      try {
+        return serialize(response);
+      } catch (IOException e2) {
+        throw new RuntimeException(e2);
+      }
+    }
+  }
+
+  /**
+   * Shuts down the threads used by this worker.
+   */
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  static byte[] serialize(Object object) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(object);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+    try {
+      return in.readObject();
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Generates a random token for authenticating connections to a
+   * worker.
+   *
+   * @return
+   */
+  public static String generateToken() {
+    byte[] token = new byte[TOKEN_BYTES];
+    new SecureRandom().nextBytes(token);
+    return BaseEncoding.base16().encode(token);
+  }
+
+  /**
+   * Accepts connections on {@code serverSocket} until one sends
+   * {@code token}, then returns that connection. Other connections are
+   * closed without reading anything else from them.
+   */
+  static Socket acceptAuthenticated(ServerSocket serverSocket, String token)
+      throws IOException {
+    byte[] expected = token.getBytes(StandardCharsets.UTF_8);
+    while (true) {
+      Socket socket = serverSocket.accept();
+      byte[] actual = new byte[expected.length];
+      try {
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+        new DataInputStream(socket.getInputStream()).readFully(actual);
+      } catch (EOFException e) {
+        socket.close();
+        continue;
+      } catch (SocketTimeoutException e) {
+        socket.close();
+        continue;
+      }
+
+      if (MessageDigest.isEqual(expected, actual)) {
+        socket.setSoTimeout(0);
+        return socket;
+      }
+      System.err.println("WARNING: map-reduce worker rejected a connection with an invalid token");
+      socket.close();
+    }
+  }
+
+  /**
+   * Runs a worker that accepts a single connection on a local port,
+   * then serves requests until the connection is closed. The number of
+   * threads is given as the first argument. The first line of standard
+   * input is the token that the connection must send before any
+   * requests (see {@link SocketWorkerConnection}). The port is printed
+   * to standard output.
+   *
+   * @param args
+   */
+  public static void main(String[] args) {
+    Preconditions.checkArgument(args.length == 1, "Usage: MapReduceWorker <numThreads>");
+    MapReduceWorker worker = new MapReduceWorker(Integer.parseInt(args[0]));
+
+    try {
+      String token = new BufferedReader(new InputStreamReader(System.in,
+          StandardCharsets.UTF_8)).readLine();
+      Preconditions.checkState(token != null && token.trim().length() > 0,
+          "Expected an authentication token on standard input.");
+      token = token.trim();
+
+      ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+      System.out.println(serverSocket.getLocalPort());
+      System.out.flush();
+      // Nothing reads the standard output of the worker after the port,
+      // so later output is redirected to avoid filling the pipe.
+      System.setOut(System.err);
+
+      Socket socket = acceptAuthenticated(serverSocket, token);
+      serverSocket.close();
+      socket.setTcpNoDelay(true);
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      while (true) {
+        int length = 0;
+        try {
+          length = in.readInt();
+        } catch (EOFException e) {
+          break;
+        }
+        byte[] request = new byte[length];
+        in.readFully(request);
+
+        byte[] response = worker.execute(request);
+        out.writeInt(response.length);
+        out.write(response);
+        out.flush();
+      }
+      socket.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      worker.shutdown();
+    }
+    System.exit(0);
+  }
+
+  /**
+   * The mapper and reducer of a call to the executor. The reducer is
+   * {@code null} for calls to {@code map}. This object is serialized
+   * once per call, and the same bytes are sent to every worker.
+   */
+  static class WorkerTask implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Mapper<?, ?> mapper;
+    private final Reducer<?, ?> reducer;
+
+    public WorkerTask(Mapper<?, ?> mapper, Reducer<?, ?> reducer) {
+      this.mapper = Preconditions.checkNotNull(mapper);
+      this.reducer = reducer;
+    }
+
+    public Mapper<?, ?> getMapper() {
+      return mapper;
+    }
+
+    public Reducer<?, ?> getReducer() {
+      return reducer;
+    }
+  }
+
+  /**
+   * A serialized task along with the partition of items to process.
+   */
+  static class WorkerRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] task;
+    private final List<?> items;
+
+    public WorkerRequest(byte[] task, List<?> items) {
+      this.task = Preconditions.checkNotNull(task);
+      this.items = Preconditions.checkNotNull(items);
+    }
+
+    public byte[] getTask() {
+      return task;
+    }
+
+    public List<?> getItems() {
+      return items;
+    }
+  }
+
+  /**
+   * The result of a request, or a description of the error that
+   * occurred while executing it.
+   */
+  static class WorkerResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Object result;
+    private final String error;
+
+    private WorkerResponse(Object result, String error) {
+      this.result = result;
+      this.error = error;
+    }
+
+    public static WorkerResponse success(Object result) {
+      return new WorkerResponse(result, null);
+    }
+
+    public static WorkerResponse failure(String error) {
+      return new WorkerResponse(null, Preconditions.checkNotNull(error));
+    }
+
+    public Object getResult() {
+      return result;
+    }
+
+    public boolean isSuccess() {
+      return error == null;
+    }
+
+    public String getError() {
+      return error;
+    }
+  }
+}
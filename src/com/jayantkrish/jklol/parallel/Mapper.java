@@ -7,7 +7,8 @@ import com.google.common.base.Function;
  * processing on a collection (see {@link MapReduceExecutor}). Implementors of
  * this class should be thread-safe, as multiple threads may simultaneously
  * execute methods on a single instance. {@code Mapper}s should also be
- * stateless.
+ * stateless. {@code Mapper}s that implement {@link java.io.Serializable} can
+ * be sent to other processes (see {@link MultiProcessMapReduceExecutor}).
  * 
  * @author jayantk
  * @param <A>
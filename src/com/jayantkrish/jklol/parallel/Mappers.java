@@ -1,5 +1,7 @@
 package com.jayantkrish.jklol.parallel;
 
+import java.io.Serializable;
+
 import com.google.common.base.Function;
 
 /**
@@ -25,16 +27,20 @@ public class Mappers {
   }
 
   /**
-   * Gets the identity mapper.
+   * Gets the identity mapper. The returned mapper is serializable.
    * 
    * @return
    */
   public static <A> Mapper<A, A> identity() {
-    return new Mapper<A, A>() {
-      @Override
-      public A map(A item) {
-        return item;
-      }
-    };
+    return new IdentityMapper<A>();
+  }
+
+  private static class IdentityMapper<A> extends Mapper<A, A> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public A map(A item) {
+      return item;
+    }
   }
 }
@@ -0,0 +1,262 @@
+package com.jayantkrish.jklol.parallel;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.jayantkrish.jklol.parallel.LocalMapReduceExecutor.PoolType;
+import com.jayantkrish.jklol.parallel.MapReduceWorker.WorkerRequest;
+import com.jayantkrish.jklol.parallel.MapReduceWorker.WorkerResponse;
+import com.jayantkrish.jklol.parallel.MapReduceWorker.WorkerTask;
+
+/**
+ * A map-reduce executor that distributes work across multiple worker
+ * processes, e.g., several JVMs on one machine. Each call partitions
+ * the items into contiguous blocks, one per worker, and sends each
+ * worker its block along with the serialized mapper and reducer. For
+ * gradient computations, the mapper and reducer contain the current
+ * model parameters, which are therefore sent to each worker once per
+ * call. Workers return reduced values, which are combined by this
+ * executor in the order of the items.
+ * <p>
+ * The mapper, reducer, items and results must be serializable. Calls
+ * whose mapper, reducer or items cannot be serialized are run by a
+ * local executor instead. Gradient computations can be distributed
+ * for the oracles of log-linear models, CCG and CFG parsers and
+ * CVSMs, along with their training examples. The oracles of AmbLisp
+ * and P3 programs contain interpreter state, which is not
+ * serializable, so they always run locally.
+ *
+ * @author jayantk
+ */
+public class MultiProcessMapReduceExecutor implements MapReduceExecutor {
+
+  private final ImmutableList<WorkerConnection> workers;
+  private final MapReduceExecutor localExecutor;
+
+  // Sends requests to the workers and waits for their responses.
+  private final ExecutorService requestExecutor;
+
+  private volatile boolean warnedLocalFallback;
+
+  /**
+   * Creates an executor that sends requests to {@code workers}.
+   * {@code localExecutor} runs calls that cannot be sent to the
+   * workers, as well as calls to {@code filter}.
+   *
+   * @param workers
+   * @param localExecutor
+   */
+  public MultiProcessMapReduceExecutor(List<? extends WorkerConnection> workers,
+      MapReduceExecutor localExecutor) {
+    Preconditions.checkArgument(workers.size() > 0);
+    this.workers = ImmutableList.copyOf(workers);
+    this.localExecutor = Preconditions.checkNotNull(localExecutor);
+    this.requestExecutor = Executors.newFixedThreadPool(workers.size(),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("map-reduce-request-%d").build());
+    this.warnedLocalFallback = false;
+  }
+
+  /**
+   * Starts {@code numWorkers} worker JVMs on this machine, each of
+   * which uses {@code threadsPerWorker} threads. {@code jvmArgs} are
+   * passed to each JVM. The workers are stopped by {@link #shutdown()}.
+   *
+   * @param numWorkers
+   * @param threadsPerWorker
+   * @param jvmArgs
+   * @return
+   */
+  public static MultiProcessMapReduceExecutor forkLocalWorkers(int numWorkers,
+      int threadsPerWorker, List<String> jvmArgs) {
+    List<WorkerConnection> workers = Lists.newArrayList();
+    try {
+      for (int i = 0; i < numWorkers; i++) {
+        workers.add(SocketWorkerConnection.forkLocalWorker(threadsPerWorker, jvmArgs));
+      }
+    } catch (RuntimeException e) {
+      for (WorkerConnection worker : workers) {
+        worker.close();
+      }
+      throw e;
+    }
+    return new MultiProcessMapReduceExecutor(workers,
+        new LocalMapReduceExecutor(threadsPerWorker, 20, PoolType.FIXED));
+  }
+
+  /**
+   * Creates an executor with {@code numWorkers} workers in the current
+   * process. Requests and responses are still serialized, so this
+   * executor is useful for testing that a computation can be
+   * distributed.
+   *
+   * @param numWorkers
+   * @param threadsPerWorker
+   * @return
+   */
+  public static MultiProcessMapReduceExecutor createInProcess(int numWorkers,
+      int threadsPerWorker) {
+    List<WorkerConnection> workers = Lists.newArrayList();
+    for (int i = 0; i < numWorkers; i++) {
+      workers.add(new LocalWorkerConnection(new MapReduceWorker(threadsPerWorker)));
+    }
+    return new MultiProcessMapReduceExecutor(workers,
+        new LocalMapReduceExecutor(threadsPerWorker, 20, PoolType.FIXED));
+  }
+
+  /**
+   * Gets the number of workers used by this executor.
+   *
+   * @return
+   */
+  public int getNumWorkers() {
+    return workers.size();
+  }
+
+  /**
+   * Closes the connections to all workers, stopping any worker
+   * processes started by this executor.
+   */
+  public void shutdown() {
+    requestExecutor.shutdown();
+    for (WorkerConnection worker : workers) {
+      worker.close();
+    }
+    if (localExecutor instanceof LocalMapReduceExecutor) {
+      ((LocalMapReduceExecutor) localExecutor).shutdown();
+    }
+  }
+
+  @Override
+  public <A, B, C, D extends Mapper<A, B>, E extends Reducer<B, C>> C mapReduce(
+      Collection<? extends A> items, D mapper, E reducer) {
+    return mapReduce(items, mapper, reducer, null);
+  }
+
+  @Override
+  public <A, B, C, D extends Mapper<A, B>, E extends Reducer<B, C>> C mapReduce(
+      Collection<? extends A> items, D mapper, E reducer, C accumulator) {
+    if (accumulator == null) {
+      accumulator = reducer.getInitialValue();
+    }
+    if (items.size() == 0) {
+      return accumulator;
+    }
+
+    List<byte[]> requests = createRequests(items, mapper, reducer);
+    if (requests == null) {
+      return localExecutor.mapReduce(items, mapper, reducer, accumulator);
+    }
+
+    // Combine the results in the order of the partitions.
+    for (Object result : sendRequests(requests)) {
+      @SuppressWarnings("unchecked")
+      C partitionResult = (C) result;
+      accumulator = reducer.combine(partitionResult, accumulator);
+    }
+    return accumulator;
+  }
+
+  @Override
+  public <A, B, C extends Mapper<A, B>> List<B> map(Collection<? extends A> items, C mapper) {
+    List<byte[]> requests = createRequests(items, mapper, null);
+    if (requests == null) {
+      return localExecutor.map(items, mapper);
+    }
+
+    List<B> results = Lists.newArrayList();
+    for (Object result : sendRequests(requests)) {
+      @SuppressWarnings("unchecked")
+      List<B> partitionResult = (List<B>) result;
+      results.addAll(partitionResult);
+    }
+    return results;
+  }
+
+  @Override
+  public <A> List<A> filter(List<A> items, Predicate<A> predicate) {
+    // Predicates are not serializable in general.
+    return localExecutor.filter(items, predicate);
+  }
+
+  /**
+   * Creates one serialized request per worker (or item, if there are
+   * fewer items than workers). Returns {@code null} if the call
+   * cannot be serialized.
+   */
+  private List<byte[]> createRequests(Collection<?> items, Mapper<?, ?> mapper,
+      Reducer<?, ?> reducer) {
+    ImmutableList<?> itemsAsList = ImmutableList.copyOf(items);
+    int numPartitions = Math.min(workers.size(), itemsAsList.size());
+    List<byte[]> requests = Lists.newArrayList();
+    try {
+      byte[] task = MapReduceWorker.serialize(new WorkerTask(mapper, reducer));
+      for (int i = 0; i < numPartitions; i++) {
+        int start = (int) (((long) i * itemsAsList.size()) / numPartitions);
+        int end = (int) (((long) (i + 1) * itemsAsList.size()) / numPartitions);
+        // Copy the partition, as sublists serialize the entire list.
+        List<?> partition = Lists.newArrayList(itemsAsList.subList(start, end));
+        requests.add(MapReduceWorker.serialize(new WorkerRequest(task, partition)));
+      }
+    } catch (NotSerializableException e) {
+      if (!warnedLocalFallback) {
+        warnedLocalFallback = true;
+        System.err.println("WARNING: running map-reduce locally, as it is not serializable: "
+            + e.getMessage());
+      }
+      return null;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return requests;
+  }
+
+  /**
+   * Sends the {@code i}th request to the {@code i}th worker, then
+   * returns the results of all requests in order.
+   */
+  private List<Object> sendRequests(List<byte[]> requests) {
+    List<Future<byte[]>> futures = Lists.newArrayList();
+    for (int i = 0; i < requests.size(); i++) {
+      final WorkerConnection worker = workers.get(i);
+      final byte[] request = requests.get(i);
+      futures.add(requestExecutor.submit(new Callable<byte[]>() {
+        @Override
+        public byte[] call() {
+          return worker.call(request);
+        }
+      }));
+    }
+
+    List<Object> results = Lists.newArrayList();
+    try {
+      for (Future<byte[]> future : futures) {
+        WorkerResponse response = (WorkerResponse) MapReduceWorker.deserialize(future.get());
+        if (!response.isSuccess()) {
+          throw new RuntimeException("Map-reduce worker failed: " + response.getError());
+        }
+        results.add(response.getResult());
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+    return results;
+  }
+}
@@ -44,6 +44,21 @@ public interface Reducer<B, C> {
    */
   public C combine(C other, C accumulated);
 
+  /**
+   * A {@code Reducer} whose result does not depend on the order in
+   * which items are reduced and combined, such as a sum. Executors that
+   * are configured to do so may reuse a single accumulator for all of
+   * the items processed by a thread, which avoids calling
+   * {@link #getInitialValue()} for each batch of items and reduces the
+   * number of results to combine. For floating point sums, the result
+   * then depends on thread scheduling, up to rounding error.
+   * 
+   * @param <B>
+   * @param <C>
+   */
+  public interface ThreadLocalReducer<B, C> extends Reducer<B, C> {
+  }
+
   /**
    * Implementation of {@code Reducer} where both the return type and the type
    * being accumulated are the same.
@@ -0,0 +1,147 @@
+package com.jayantkrish.jklol.parallel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A {@code WorkerConnection} to a {@link MapReduceWorker} listening on
+ * a TCP socket. The connection first sends the worker's authentication
+ * token, then each message is sent as its length followed by its bytes.
+ *
+ * @author jayantk
+ */
+public class SocketWorkerConnection implements WorkerConnection {
+
+  private final Socket socket;
+  private final DataInputStream in;
+  private final DataOutputStream out;
+
+  // The worker's process, if it was started by this connection.
+  private final Process process;
+
+  /**
+   * Connects to a worker listening on {@code host}:{@code port}, which
+   * was started with {@code token} on its standard input.
+   *
+   * @param host
+   * @param port
+   * @param token
+   */
+  public SocketWorkerConnection(String host, int port, String token) {
+    this(host, port, token, null);
+  }
+
+  private SocketWorkerConnection(String host, int port, String token, Process process) {
+    try {
+      this.socket = new Socket(host, port);
+      socket.setTcpNoDelay(true);
+      this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      out.write(token.getBytes(StandardCharsets.UTF_8));
+      out.flush();
+    } catch (IOException e) {
+      if (process != null) {
+        process.destroy();
+      }
+      throw new RuntimeException(e);
+    }
+    this.process = process;
+  }
+
+  /**
+   * Starts a worker in a new JVM on this machine and connects to it.
+   * The worker uses the classpath of the current JVM, and runs
+   * {@code numThreads} threads. {@code jvmArgs} are passed to the new
+   * JVM, e.g., to set its maximum heap size. A new random token is
+   * passed to the worker on its standard input, so that only this
+   * connection is accepted by the worker.
+   *
+   * @param numThreads
+   * @param jvmArgs
+   * @return
+   */
+  public static SocketWorkerConnection forkLocalWorker(int numThreads, List<String> jvmArgs) {
+    String javaBinary = System.getProperty("java.home") + File.separator + "bin"
+        + File.separator + "java";
+    List<String> command = Lists.newArrayList(javaBinary);
+    command.addAll(jvmArgs);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(MapReduceWorker.class.getName());
+    command.add(Integer.toString(numThreads));
+
+    String token = MapReduceWorker.generateToken();
+    Process process = null;
+    try {
+      process = new ProcessBuilder(command)
+          .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      Writer tokenWriter = new OutputStreamWriter(process.getOutputStream(),
+          StandardCharsets.UTF_8);
+      tokenWriter.write(token + "\n");
+      tokenWriter.close();
+
+      // The worker prints the port it is listening on.
+      BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+      String line = reader.readLine();
+      if (line == null) {
+        throw new IOException("Map-reduce worker exited before starting: " + command);
+      }
+      int port = Integer.parseInt(line.trim());
+      return new SocketWorkerConnection(InetAddress.getLoopbackAddress().getHostAddress(),
+          port, token, process);
+    } catch (IOException e) {
+      if (process != null) {
+        process.destroy();
+      }
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public synchronized byte[] call(byte[] request) {
+    try {
+      out.writeInt(request.length);
+      out.write(request);
+      out.flush();
+
+      byte[] response = new byte[in.readInt()];
+      in.readFully(response);
+      return response;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      // The worker exits when the connection is closed.
+      socket.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      if (process != null) {
+        try {
+          process.waitFor();
+        } catch (InterruptedException e) {
+          process.destroy();
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+}
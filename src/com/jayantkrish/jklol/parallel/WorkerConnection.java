@@ -0,0 +1,26 @@
+package com.jayantkrish.jklol.parallel;
+
+/**
+ * A connection from a {@link MultiProcessMapReduceExecutor} to a
+ * {@link MapReduceWorker}, which may run in another process. Requests
+ * and responses are serialized objects.
+ *
+ * @author jayantk
+ */
+public interface WorkerConnection {
+
+  /**
+   * Sends {@code request} to the worker, then waits for and returns
+   * its response. A connection processes one request at a time.
+   *
+   * @param request
+   * @return
+   */
+  public byte[] call(byte[] request);
+
+  /**
+   * Closes this connection and stops the worker, if it was started by
+   * this connection.
+   */
+  public void close();
+}
@@ -190,8 +190,8 @@ public class FeatureStandardizer implements Serializable {
       VariableNumMap nonFeatureVars = featureFactor.getVars().removeAll(featureVariableNum);
       numEntries += nonFeatureVars.getNumberOfPossibleAssignments();
 
-      DiscreteFactor factorSumSquares = featureFactor.product(featureFactor)
-          .marginalize(nonFeatureVars);
+      DiscreteFactor factorSumSquares = featureFactor.productMarginalize(featureFactor,
+          nonFeatureVars);
       if (sumSquares == null) {
         sumSquares = factorSumSquares;
       } else {
@@ -78,6 +78,22 @@ public abstract class AbstractTensor extends AbstractTensorBase implements Tenso
         .elementwiseLog().elementwiseAddition(minValues.elementwiseProduct(-1.0));
   }
   
+  @Override
+  public Tensor productSumOut(Tensor other, int[] dimensionsToEliminate) {
+    return elementwiseProduct(other).sumOutDimensions(dimensionsToEliminate);
+  }
+
+  @Override
+  public Tensor productMaxOut(Tensor other, int[] dimensionsToEliminate) {
+    return elementwiseProduct(other).maxOutDimensions(dimensionsToEliminate);
+  }
+
+  @Override
+  public Tensor productMaxOut(Tensor other, int[] dimensionsToEliminate,
+      Backpointers backpointers) {
+    return elementwiseProduct(other).maxOutDimensions(dimensionsToEliminate, backpointers);
+  }
+
   public static Tensor innerProduct(Tensor first, Tensor second, TensorFactory factory) {
     TensorBuilder b = innerProduct(first, second, factory, null);
     return b.buildNoCopy();
@@ -165,6 +181,27 @@ public abstract class AbstractTensor extends AbstractTensorBase implements Tenso
     // parts. Note that numOtherDims must be > 0.
     long otherKeyNumOffset = otherDimensionOffsets[numOtherDims - 1];
 
+    if (mySize > 0 && builder instanceof DenseTensorBuilder
+        && second instanceof DenseTensorBase) {
+      // The result is dense, so the product can be accumulated
+      // directly into its array of values without computing the key
+      // number of each entry.
+      int prefixSize = (int) (first.getMaxKeyNum() / keyNumModulo);
+      int alignedSize = (int) (keyNumModulo / keyNumDivisor);
+      int suffixSize = (int) keyNumDivisor;
+      int otherUnalignedSize = (int) otherKeyNumOffset;
+      double[] resultValues = ((DenseTensorBuilder) builder).values;
+      double[] otherValues = ((DenseTensorBase) second).values;
+      if (first instanceof DenseTensorBase) {
+        denseMatrixInnerProduct(((DenseTensorBase) first).values, otherValues, resultValues,
+            prefixSize, alignedSize, suffixSize, otherUnalignedSize);
+      } else {
+        sparseDenseMatrixInnerProduct(first, otherValues, resultValues, keyNumModulo,
+            keyNumDivisor, suffixSize, otherUnalignedSize);
+      }
+      return builder;
+    }
+
     int myInd = 0;
     while (myInd < mySize) {
       long myKeyNum = first.indexToKeyNum(myInd);
@@ -201,7 +238,52 @@ public abstract class AbstractTensor extends AbstractTensorBase implements Tenso
     }
     return builder;
   }
-  
+
+  /**
+   * Dense implementation of {@link #innerProduct}. {@code first} is
+   * a {@code prefixSize x alignedSize x suffixSize} array and
+   * {@code second} is an {@code alignedSize x otherSize} array. The
+   * product is accumulated into {@code result}, a
+   * {@code prefixSize x otherSize x suffixSize} array.
+   */
+  private static void denseMatrixInnerProduct(double[] first, double[] second, double[] result,
+      int prefixSize, int alignedSize, int suffixSize, int otherSize) {
+    if (suffixSize == 1) {
+      // result = first * second
+      DenseTensorKernels.gemm(prefixSize, otherSize, alignedSize, first, 0, alignedSize, 1,
+          second, 0, otherSize, result, 0, otherSize);
+    } else {
+      // For each prefix, result[prefix] = second^T * first[prefix]
+      int firstBlockSize = alignedSize * suffixSize;
+      int resultBlockSize = otherSize * suffixSize;
+      for (int i = 0; i < prefixSize; i++) {
+        DenseTensorKernels.gemm(otherSize, suffixSize, alignedSize, second, 0, 1, otherSize,
+            first, i * firstBlockSize, suffixSize, result, i * resultBlockSize, suffixSize);
+      }
+    }
+  }
+
+  /**
+   * Implementation of {@link #innerProduct} for an arbitrary
+   * {@code first} and a dense {@code second}. Each entry of
+   * {@code first} scales a row of {@code second}, which is added to
+   * the corresponding (possibly strided) row of {@code result}.
+   */
+  private static void sparseDenseMatrixInnerProduct(Tensor first, double[] second,
+      double[] result, long keyNumModulo, long keyNumDivisor, int suffixSize, int otherSize) {
+    int resultBlockSize = otherSize * suffixSize;
+    int size = first.size();
+    for (int i = 0; i < size; i++) {
+      long keyNum = first.indexToKeyNum(i);
+      int prefix = (int) (keyNum / keyNumModulo);
+      int middle = (int) ((keyNum % keyNumModulo) / keyNumDivisor);
+      int suffix = (int) (keyNum % keyNumDivisor);
+
+      DenseTensorKernels.axpy(first.getByIndex(i), second, middle * otherSize,
+          result, (prefix * resultBlockSize) + suffix, suffixSize, otherSize);
+    }
+  }
+
   /**
    * Default implementation of tensor outer products.
    * 
@@ -0,0 +1,489 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Ordering;
+import com.google.common.primitives.Ints;
+import com.jayantkrish.jklol.util.HeapUtils;
+
+/**
+ * Common implementation of read-only tensors whose values are stored
+ * in a more compact form than {@code double}s, such as
+ * {@link FloatSparseTensor} and {@link QuantizedTensor}. These tensors
+ * are intended for inference with trained models, where the model's
+ * parameters are only read. Subclasses decode a single value given
+ * its index.
+ * <p>
+ * A compact tensor is either dense, in which case it stores a value
+ * for every key and the index of a key is its key number, or sparse,
+ * in which case it stores a sorted array of key numbers like
+ * {@link SparseTensor}. Subclasses may instead store the keys of a
+ * sparse tensor in their own format, as {@link CompressedSparseTensor}
+ * does. Lookups and iteration work directly on the
+ * compact representation. All other operations decode this tensor
+ * into an equivalent {@code DenseTensor} or {@code SparseTensor} (see
+ * {@link #toTensor()}) and return on-heap tensors with {@code double}
+ * values.
+ *
+ * @author jayantk
+ */
+public abstract class CompactTensor extends AbstractTensor {
+
+  private static final long serialVersionUID = 1L;
+
+  // Sorted key numbers of the stored values, or null if this
+  // tensor is dense or its subclass stores its keys.
+  protected final long[] keyNums;
+  private final int size;
+  private final boolean dense;
+
+  /**
+   * Creates a tensor with values for {@code keyNums}, which must be
+   * sorted. If {@code keyNums} is {@code null}, the tensor is dense.
+   *
+   * @param dimensionNums
+   * @param dimensionSizes
+   * @param keyNums
+   */
+  protected CompactTensor(int[] dimensionNums, int[] dimensionSizes, long[] keyNums) {
+    super(dimensionNums, dimensionSizes);
+    Preconditions.checkArgument(Ordering.natural().isOrdered(Ints.asList(dimensionNums)));
+    this.keyNums = keyNums;
+    this.dense = keyNums == null;
+    if (keyNums == null) {
+      Preconditions.checkArgument(getMaxKeyNum() <= Integer.MAX_VALUE);
+      this.size = (int) getMaxKeyNum();
+    } else {
+      this.size = keyNums.length;
+    }
+  }
+
+  /**
+   * Creates a sparse tensor with {@code size} values whose keys are
+   * stored by the subclass. Such subclasses must override
+   * {@link #indexToKeyNum}, {@link #keyNumToIndex},
+   * {@link #getNearestIndex} and {@link #copyKeyNums}.
+   *
+   * @param dimensionNums
+   * @param dimensionSizes
+   * @param size
+   */
+  protected CompactTensor(int[] dimensionNums, int[] dimensionSizes, int size) {
+    super(dimensionNums, dimensionSizes);
+    Preconditions.checkArgument(Ordering.natural().isOrdered(Ints.asList(dimensionNums)));
+    this.keyNums = null;
+    this.dense = false;
+    this.size = size;
+  }
+
+  /**
+   * Copies {@code tensor} into a tensor whose values are stored with
+   * {@code precision}. {@code DOUBLE} precision returns
+   * {@code tensor} itself. The values of log space tensors (e.g.,
+   * {@link LogSpaceTensorAdapter}) are converted in log space, which
+   * preserves their relative precision and the implicit weight of 1
+   * for missing keys.
+   * <p>
+   * The returned tensor is dense if {@code tensor} is dense, and
+   * otherwise stores only the nonzero values of {@code tensor}.
+   *
+   * @param tensor
+   * @param precision
+   * @return
+   */
+  public static Tensor copyOf(Tensor tensor, TensorPrecision precision) {
+    if (precision == TensorPrecision.DOUBLE) {
+      return tensor;
+    } else if (tensor instanceof LogSpaceTensorAdapter) {
+      return new LogSpaceTensorAdapter(copyOf(
+          ((LogSpaceTensorAdapter) tensor).getLogWeights(), precision));
+    } else if (tensor instanceof SparseLogSpaceTensorAdapter) {
+      return new SparseLogSpaceTensorAdapter(copyOf(
+          ((SparseLogSpaceTensorAdapter) tensor).getLogWeights(), precision));
+    }
+
+    int[] dimensionNums = tensor.getDimensionNumbers();
+    int[] dimensionSizes = tensor.getDimensionSizes();
+    int tensorSize = tensor.size();
+    boolean isDense = tensor instanceof DenseTensorBase
+        || (tensor instanceof CompactTensor && ((CompactTensor) tensor).isDense());
+    if (isDense) {
+      double[] values = new double[(int) tensor.getMaxKeyNum()];
+      for (int i = 0; i < tensorSize; i++) {
+        values[(int) tensor.indexToKeyNum(i)] = tensor.getByIndex(i);
+      }
+
+      if (precision == TensorPrecision.FLOAT) {
+        return FloatDenseTensor.fromValues(dimensionNums, dimensionSizes, values);
+      } else {
+        return QuantizedTensor.fromValues(dimensionNums, dimensionSizes, null, values);
+      }
+    } else {
+      int numNonzero = 0;
+      for (int i = 0; i < tensorSize; i++) {
+        if (tensor.getByIndex(i) != 0.0) {
+          numNonzero++;
+        }
+      }
+
+      long[] keyNums = new long[numNonzero];
+      double[] values = new double[numNonzero];
+      int index = 0;
+      for (int i = 0; i < tensorSize; i++) {
+        double value = tensor.getByIndex(i);
+        if (value != 0.0) {
+          keyNums[index] = tensor.indexToKeyNum(i);
+          values[index] = value;
+          index++;
+        }
+      }
+
+      // Only some tensor implementations iterate over their keys in
+      // sorted order.
+      SparseTensor sorted = SparseTensor.fromUnorderedKeyValuesNoCopy(dimensionNums,
+          dimensionSizes, keyNums, values);
+      if (precision == TensorPrecision.FLOAT) {
+        return FloatSparseTensor.fromValues(dimensionNums, dimensionSizes,
+            sorted.getKeyNums(), sorted.getValues());
+      } else {
+        return QuantizedTensor.fromValues(dimensionNums, dimensionSizes,
+            sorted.getKeyNums(), sorted.getValues());
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if this tensor stores a value for every key.
+   *
+   * @return
+   */
+  public boolean isDense() {
+    return dense;
+  }
+
+  /**
+   * Decodes this tensor into an equivalent on-heap tensor with
+   * {@code double} values.
+   *
+   * @return
+   */
+  public Tensor toTensor() {
+    if (isDense()) {
+      return new DenseTensor(getDimensionNumbers(), getDimensionSizes(), getValues());
+    } else {
+      return new SparseTensor(getDimensionNumbers(), getDimensionSizes(),
+          copyKeyNums(), getValues());
+    }
+  }
+
+  /**
+   * Gets a sorted array of the key numbers of a sparse tensor's
+   * values. The returned array is not shared with this tensor.
+   *
+   * @return
+   */
+  protected long[] copyKeyNums() {
+    return Arrays.copyOf(keyNums, keyNums.length);
+  }
+
+  // ////////////////////////////////////////////////////////////////////
+  // Inherited from TensorBase
+  // ////////////////////////////////////////////////////////////////////
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public double getLogByIndex(int index) {
+    return Math.log(getByIndex(index));
+  }
+
+  @Override
+  public long indexToKeyNum(int index) {
+    return isDense() ? index : keyNums[index];
+  }
+
+  @Override
+  public int keyNumToIndex(long keyNum) {
+    if (isDense()) {
+      return (int) keyNum;
+    }
+    int possibleIndex = Arrays.binarySearch(keyNums, keyNum);
+    return possibleIndex >= 0 ? possibleIndex : -1;
+  }
+
+  @Override
+  public int getNearestIndex(long keyNum) {
+    if (isDense()) {
+      return (int) keyNum;
+    }
+    int index = Arrays.binarySearch(keyNums, keyNum);
+    if (index < 0) {
+      index = (-1 * index) - 1;
+    }
+    return index;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The returned array contains the decoded values of this tensor.
+   */
+  @Override
+  public double[] getValues() {
+    double[] values = new double[size];
+    for (int i = 0; i < size; i++) {
+      values[i] = getByIndex(i);
+    }
+    return values;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Dense tensors look up keys directly, so they return {@code this}.
+   * Sparse tensors return a {@link CompactTensorHash}, which indexes
+   * the keys of this tensor without copying its values.
+   */
+  @Override
+  public TensorHash toHash() {
+    if (isDense()) {
+      return this;
+    }
+    return CompactTensorHash.fromTensor(this);
+  }
+
+  @Override
+  public Iterator<KeyValue> keyValueIterator() {
+    return new CompactKeyValueIterator(0, size);
+  }
+
+  @Override
+  public Iterator<KeyValue> keyValuePrefixIterator(int[] keyPrefix) {
+    if (keyPrefix.length == 0) {
+      return keyValueIterator();
+    }
+
+    long startKeyNum = dimKeyPrefixToKeyNum(keyPrefix);
+    long endKeyNum = startKeyNum + indexOffsets[keyPrefix.length - 1];
+    return new CompactKeyValueIterator(getNearestIndex(startKeyNum), getNearestIndex(endKeyNum));
+  }
+
+  @Override
+  public double getL2Norm() {
+    double sumSquared = 0.0;
+    for (int i = 0; i < size; i++) {
+      double value = getByIndex(i);
+      sumSquared += value * value;
+    }
+    return Math.sqrt(sumSquared);
+  }
+
+  @Override
+  public double getTrace() {
+    double sum = 0.0;
+    for (int i = 0; i < size; i++) {
+      sum += getByIndex(i);
+    }
+    return sum;
+  }
+
+  @Override
+  public long[] getLargestValues(int n) {
+    long[] largestIndexes = HeapUtils.findLargestItemIndexes(getValues(), n);
+    long[] largestKeyNums = new long[largestIndexes.length];
+    for (int i = 0; i < largestIndexes.length; i++) {
+      largestKeyNums[i] = indexToKeyNum((int) largestIndexes[i]);
+    }
+    return largestKeyNums;
+  }
+
+  // /////////////////////////////////////////////////////////////////
+  // Inherited from Tensor
+  // /////////////////////////////////////////////////////////////////
+
+  @Override
+  public Tensor slice(int[] dimensionNumbers, int[] key) {
+    return toTensor().slice(dimensionNumbers, key);
+  }
+
+  @Override
+  public Tensor retainKeys(Tensor indicatorTensor) {
+    return toTensor().retainKeys(indicatorTensor);
+  }
+
+  @Override
+  public Tensor findKeysLargerThan(double thresholdValue) {
+    return toTensor().findKeysLargerThan(thresholdValue);
+  }
+
+  @Override
+  public Tensor elementwiseProduct(Tensor other) {
+    return toTensor().elementwiseProduct(other);
+  }
+
+  @Override
+  public Tensor innerProduct(Tensor other) {
+    return toTensor().innerProduct(other);
+  }
+
+  @Override
+  public Tensor matrixInnerProduct(Tensor other) {
+    return toTensor().matrixInnerProduct(other);
+  }
+
+  @Override
+  public Tensor outerProduct(Tensor other) {
+    return toTensor().outerProduct(other);
+  }
+
+  @Override
+  public Tensor elementwiseAddition(Tensor other) {
+    return toTensor().elementwiseAddition(other);
+  }
+
+  @Override
+  public Tensor elementwiseAddition(double value) {
+    return toTensor().elementwiseAddition(value);
+  }
+
+  @Override
+  public Tensor elementwiseMaximum(Tensor other) {
+    return toTensor().elementwiseMaximum(other);
+  }
+
+  @Override
+  public Tensor elementwiseInverse() {
+    return toTensor().elementwiseInverse();
+  }
+
+  @Override
+  public Tensor elementwiseSqrt() {
+    return toTensor().elementwiseSqrt();
+  }
+
+  @Override
+  public Tensor elementwiseLog() {
+    return toTensor().elementwiseLog();
+  }
+
+  @Override
+  public Tensor elementwiseLogSparse() {
+    return toTensor().elementwiseLogSparse();
+  }
+
+  @Override
+  public Tensor elementwiseExp() {
+    return toTensor().elementwiseExp();
+  }
+
+  @Override
+  public Tensor elementwiseExpSparse() {
+    return toTensor().elementwiseExpSparse();
+  }
+
+  @Override
+  public Tensor elementwiseTanh() {
+    return toTensor().elementwiseTanh();
+  }
+
+  @Override
+  public Tensor elementwiseAbs() {
+    return toTensor().elementwiseAbs();
+  }
+
+  @Override
+  public Tensor elementwiseLaplaceSigmoid(double smoothness) {
+    return toTensor().elementwiseLaplaceSigmoid(smoothness);
+  }
+
+  @Override
+  public Tensor softThreshold(double threshold) {
+    return toTensor().softThreshold(threshold);
+  }
+
+  @Override
+  public Tensor getEntriesLargerThan(double threshold) {
+    return toTensor().getEntriesLargerThan(threshold);
+  }
+
+  @Override
+  public Tensor sumOutDimensions(Collection<Integer> dimensionsToEliminate) {
+    return toTensor().sumOutDimensions(dimensionsToEliminate);
+  }
+
+  @Override
+  public Tensor maxOutDimensions(Collection<Integer> dimensionsToEliminate) {
+    return toTensor().maxOutDimensions(dimensionsToEliminate);
+  }
+
+  @Override
+  public Tensor maxOutDimensions(Collection<Integer> dimensionsToEliminate,
+      Backpointers backpointers) {
+    return toTensor().maxOutDimensions(dimensionsToEliminate, backpointers);
+  }
+
+  @Override
+  public Tensor relabelDimensions(int[] newDimensions) {
+    return toTensor().relabelDimensions(newDimensions);
+  }
+
+  @Override
+  public Tensor relabelDimensions(Map<Integer, Integer> relabeling) {
+    return toTensor().relabelDimensions(relabeling);
+  }
+
+  @Override
+  public Tensor replaceValues(double[] newValues) {
+    return toTensor().replaceValues(newValues);
+  }
+
+  @Override
+  public String toString() {
+    return toTensor().toString();
+  }
+
+  /**
+   * Iterates over the keys and decoded values of this tensor between
+   * two indexes.
+   */
+  private class CompactKeyValueIterator implements Iterator<KeyValue> {
+    private int curIndex;
+    private final int finalIndex;
+    private final KeyValue keyValue;
+
+    public CompactKeyValueIterator(int initialIndex, int finalIndex) {
+      this.curIndex = initialIndex;
+      this.finalIndex = finalIndex;
+      this.keyValue = new KeyValue(new int[numDimensions()], 0.0);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return curIndex < finalIndex;
+    }
+
+    @Override
+    public KeyValue next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      keyNumToDimKey(indexToKeyNum(curIndex), keyValue.getKey());
+      keyValue.setValue(getByIndex(curIndex));
+      curIndex++;
+      return keyValue;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
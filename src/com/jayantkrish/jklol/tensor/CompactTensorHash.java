@@ -0,0 +1,78 @@
+package com.jayantkrish.jklol.tensor;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Hash table index for the keys of a sparse {@link CompactTensor}.
+ * Unlike {@link SparseTensorHash}, the table stores only the index of
+ * each key in the tensor, and values are decoded from the tensor on
+ * each lookup. The table uses between 8 and 16 bytes per key, in
+ * addition to the tensor itself.
+ *
+ * @author jayantk
+ */
+public class CompactTensorHash implements TensorHash {
+  private static final long serialVersionUID = 1L;
+
+  // Tensors with more keys cannot be indexed by an array of slots.
+  private static final int MAX_SIZE = 1 << 28;
+
+  private final CompactTensor tensor;
+
+  // Open addressing table with linear probing. Each slot contains
+  // 1 + the index of a key of tensor, or 0 if the slot is empty.
+  private final int[] slots;
+  private final int mask;
+
+  private CompactTensorHash(CompactTensor tensor, int[] slots) {
+    this.tensor = Preconditions.checkNotNull(tensor);
+    this.slots = Preconditions.checkNotNull(slots);
+    Preconditions.checkArgument(Integer.bitCount(slots.length) == 1);
+    this.mask = slots.length - 1;
+  }
+
+  public static CompactTensorHash fromTensor(CompactTensor tensor) {
+    int size = tensor.size();
+    Preconditions.checkArgument(size <= MAX_SIZE, "Tensor is too large to hash: %s", size);
+
+    // At most half of the slots are occupied.
+    int numSlots = Integer.highestOneBit(Math.max(size, 1)) << 2;
+    if (numSlots / 4 == size) {
+      numSlots /= 2;
+    }
+    int[] slots = new int[numSlots];
+    int mask = numSlots - 1;
+    for (int i = 0; i < size; i++) {
+      int slot = hash(tensor.indexToKeyNum(i)) & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = i + 1;
+    }
+    return new CompactTensorHash(tensor, slots);
+  }
+
+  @Override
+  public double get(long keyNum) {
+    int slot = hash(keyNum) & mask;
+    int entry;
+    while ((entry = slots[slot]) != 0) {
+      if (tensor.indexToKeyNum(entry - 1) == keyNum) {
+        return tensor.getByIndex(entry - 1);
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    // This is a sparse tensor, so keys not in the tensor
+    // have value 0
+    return 0.0;
+  }
+
+  private static final int hash(long key) {
+    int h = (int) ((key >> 32) ^ key);
+    h = ((h >> 16) ^ h) * 0x45d9f3b;
+    h = ((h >> 16) ^ h) * 0x45d9f3b;
+    h = ((h >> 16) ^ h);
+    return h;
+  }
+}
@@ -0,0 +1,313 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A sorted array of key numbers stored in compressed blocks. Each
+ * block stores its first key in full, followed by the differences
+ * between consecutive keys encoded as variable-length integers (7
+ * bits per byte). Since the keys of large sparse tensors tend to be
+ * densely clustered, most differences fit in one or two bytes instead
+ * of eight.
+ * <p>
+ * The first key of every block is kept in a separate skip index.
+ * Looking up a key binary searches the skip index, then decodes at
+ * most one block, so lookups take {@code O(log n + blockSize)} time.
+ * Sequential access (see {@link Cursor}) decodes each key once.
+ *
+ * @author jayantk
+ */
+public class CompressedKeyArray implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final int DEFAULT_BLOCK_SIZE = 64;
+
+  private final int size;
+  private final int blockSize;
+
+  // The first key of each block, and the offset in deltas of the
+  // encoded differences for the remaining keys of the block.
+  private final long[] blockFirstKeys;
+  private final int[] blockOffsets;
+  private final byte[] deltas;
+
+  private CompressedKeyArray(int size, int blockSize, long[] blockFirstKeys, int[] blockOffsets,
+      byte[] deltas) {
+    this.size = size;
+    this.blockSize = blockSize;
+    this.blockFirstKeys = blockFirstKeys;
+    this.blockOffsets = blockOffsets;
+    this.deltas = deltas;
+  }
+
+  /**
+   * Compresses {@code keyNums}, which must be sorted in strictly
+   * increasing order, using the default block size.
+   *
+   * @param keyNums
+   * @return
+   */
+  public static CompressedKeyArray fromSortedKeys(long[] keyNums) {
+    return fromSortedKeys(keyNums, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Compresses {@code keyNums}, which must be sorted in strictly
+   * increasing order. Larger values of {@code blockSize} reduce the
+   * size of the skip index, but increase the time required to look
+   * up a key.
+   *
+   * @param keyNums
+   * @param blockSize
+   * @return
+   */
+  public static CompressedKeyArray fromSortedKeys(long[] keyNums, int blockSize) {
+    Preconditions.checkArgument(blockSize > 0);
+    int numBlocks = (keyNums.length + blockSize - 1) / blockSize;
+
+    // Compute the number of bytes required to store the
+    // differences before encoding them.
+    int numBytes = 0;
+    Preconditions.checkArgument(keyNums.length == 0 || keyNums[0] >= 0,
+        "Tried compressing negative keyNums.");
+    for (int i = 1; i < keyNums.length; i++) {
+      // Checked across block boundaries as well, as the skip index is
+      // binary searched.
+      Preconditions.checkArgument(keyNums[i] > keyNums[i - 1], "keyNums must be sorted.");
+      if (i % blockSize != 0) {
+        numBytes += varintLength(keyNums[i] - keyNums[i - 1]);
+      }
+    }
+
+    long[] blockFirstKeys = new long[numBlocks];
+    int[] blockOffsets = new int[numBlocks];
+    byte[] deltas = new byte[numBytes];
+    int pos = 0;
+    for (int i = 0; i < keyNums.length; i++) {
+      if (i % blockSize == 0) {
+        blockFirstKeys[i / blockSize] = keyNums[i];
+        blockOffsets[i / blockSize] = pos;
+      } else {
+        long delta = keyNums[i] - keyNums[i - 1];
+        while ((delta & ~0x7FL) != 0) {
+          deltas[pos++] = (byte) ((delta & 0x7F) | 0x80);
+          delta >>>= 7;
+        }
+        deltas[pos++] = (byte) delta;
+      }
+    }
+
+    return new CompressedKeyArray(keyNums.length, blockSize, blockFirstKeys, blockOffsets,
+        deltas);
+  }
+
+  private static int varintLength(long value) {
+    int length = 1;
+    while ((value & ~0x7FL) != 0) {
+      value >>>= 7;
+      length++;
+    }
+    return length;
+  }
+
+  /**
+   * Gets the number of keys in this array.
+   *
+   * @return
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the approximate number of bytes used to store the keys,
+   * including the skip index.
+   *
+   * @return
+   */
+  public long getSizeInBytes() {
+    return deltas.length + (8L * blockFirstKeys.length) + (4L * blockOffsets.length);
+  }
+
+  /**
+   * Gets the key at {@code index}.
+   *
+   * @param index
+   * @return
+   */
+  public long get(int index) {
+    Preconditions.checkElementIndex(index, size);
+    int block = index / blockSize;
+    long key = blockFirstKeys[block];
+    int pos = blockOffsets[block];
+    for (int i = index % blockSize; i > 0; i--) {
+      long delta = 0;
+      int shift = 0;
+      byte cur;
+      do {
+        cur = deltas[pos++];
+        delta |= ((long) (cur & 0x7F)) << shift;
+        shift += 7;
+      } while (cur < 0);
+      key += delta;
+    }
+    return key;
+  }
+
+  /**
+   * Gets the index of {@code keyNum} in this array, or -1 if it is
+   * not present.
+   *
+   * @param keyNum
+   * @return
+   */
+  public int indexOf(long keyNum) {
+    int index = getNearestIndex(keyNum);
+    return (index < size && get(index) == keyNum) ? index : -1;
+  }
+
+  /**
+   * Gets the index of the first key that is greater than or equal to
+   * {@code keyNum}. Returns {@code size()} if every key is smaller
+   * than {@code keyNum}.
+   *
+   * @param keyNum
+   * @return
+   */
+  public int getNearestIndex(long keyNum) {
+    int block = Arrays.binarySearch(blockFirstKeys, keyNum);
+    if (block >= 0) {
+      return block * blockSize;
+    }
+    block = (-1 * block) - 2;
+    if (block < 0) {
+      return 0;
+    }
+
+    // keyNum is between the first key of block and the first key of
+    // the next block.
+    int index = block * blockSize;
+    int blockEnd = Math.min(size, index + blockSize);
+    long key = blockFirstKeys[block];
+    int pos = blockOffsets[block];
+    while (key < keyNum && index + 1 < blockEnd) {
+      long delta = 0;
+      int shift = 0;
+      byte cur;
+      do {
+        cur = deltas[pos++];
+        delta |= ((long) (cur & 0x7F)) << shift;
+        shift += 7;
+      } while (cur < 0);
+      key += delta;
+      index++;
+    }
+    return key >= keyNum ? index : index + 1;
+  }
+
+  /**
+   * Decodes all of the keys in this array.
+   *
+   * @return
+   */
+  public long[] toArray() {
+    long[] keyNums = new long[size];
+    Cursor cursor = cursor(0);
+    for (int i = 0; i < size; i++) {
+      keyNums[i] = cursor.getKey();
+      cursor.next();
+    }
+    return keyNums;
+  }
+
+  /**
+   * Gets a cursor positioned at {@code index}.
+   *
+   * @param index
+   * @return
+   */
+  public Cursor cursor(int index) {
+    Cursor cursor = new Cursor();
+    cursor.seek(index);
+    return cursor;
+  }
+
+  /**
+   * Iterates over the keys of a {@code CompressedKeyArray} in order,
+   * decoding each key once.
+   */
+  public final class Cursor {
+    private int index;
+    private long key;
+    private int pos;
+
+    private Cursor() {}
+
+    /**
+     * Moves this cursor to {@code newIndex}, which may be
+     * {@code size()}.
+     *
+     * @param newIndex
+     */
+    public void seek(int newIndex) {
+      Preconditions.checkPositionIndex(newIndex, size);
+      if (newIndex == size) {
+        index = size;
+        return;
+      }
+
+      int block = newIndex / blockSize;
+      index = block * blockSize;
+      key = blockFirstKeys[block];
+      pos = blockOffsets[block];
+      while (index < newIndex) {
+        next();
+      }
+    }
+
+    /**
+     * Returns {@code true} if this cursor is positioned at a key,
+     * i.e., it has not moved past the last key.
+     *
+     * @return
+     */
+    public boolean hasKey() {
+      return index < size;
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    public long getKey() {
+      return key;
+    }
+
+    /**
+     * Moves this cursor to the next key.
+     */
+    public void next() {
+      index++;
+      if (index >= size) {
+        index = size;
+      } else if (index % blockSize == 0) {
+        key = blockFirstKeys[index / blockSize];
+        pos = blockOffsets[index / blockSize];
+      } else {
+        long delta = 0;
+        int shift = 0;
+        byte cur;
+        do {
+          cur = deltas[pos++];
+          delta |= ((long) (cur & 0x7F)) << shift;
+          shift += 7;
+        } while (cur < 0);
+        key += delta;
+      }
+    }
+  }
+}
@@ -0,0 +1,295 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A read-only sparse tensor whose keys are stored in a
+ * {@link CompressedKeyArray}. Values are stored as {@code double}s.
+ * This tensor uses substantially less memory than a
+ * {@link SparseTensor} when the keys are clustered, which is typical
+ * of large feature tables. Looking up a key takes
+ * {@code O(log n + blockSize)} time.
+ * <p>
+ * {@link #elementwiseProduct} and {@link #elementwiseAddition} with a
+ * sparse tensor over the same dimensions are computed by merging the
+ * keys of both tensors in a single sequential pass. Other operations
+ * decode this tensor into a {@code SparseTensor}; see
+ * {@link CompactTensor}.
+ *
+ * @author jayantk
+ */
+public class CompressedSparseTensor extends CompactTensor {
+
+  private static final long serialVersionUID = 1L;
+
+  private final CompressedKeyArray keys;
+  private final double[] values;
+
+  public CompressedSparseTensor(int[] dimensionNums, int[] dimensionSizes,
+      CompressedKeyArray keys, double[] values) {
+    super(dimensionNums, dimensionSizes, keys.size());
+    Preconditions.checkArgument(keys.size() == values.length);
+    Preconditions.checkArgument(keys.size() == 0 || keys.get(keys.size() - 1) < getMaxKeyNum());
+    this.keys = keys;
+    this.values = values;
+  }
+
+  /**
+   * Copies {@code tensor} into a tensor with compressed keys.
+   *
+   * @param tensor
+   * @return
+   */
+  public static CompressedSparseTensor copyOf(SparseTensor tensor) {
+    return copyOf(tensor, CompressedKeyArray.DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Copies {@code tensor} into a tensor with compressed keys, using
+   * blocks of {@code blockSize} keys.
+   *
+   * @param tensor
+   * @param blockSize
+   * @return
+   */
+  public static CompressedSparseTensor copyOf(SparseTensor tensor, int blockSize) {
+    double[] values = tensor.getValues();
+    return new CompressedSparseTensor(tensor.getDimensionNumbers(), tensor.getDimensionSizes(),
+        CompressedKeyArray.fromSortedKeys(tensor.getKeyNums(), blockSize),
+        Arrays.copyOf(values, values.length));
+  }
+
+  /**
+   * Gets the compressed keys of this tensor.
+   *
+   * @return
+   */
+  public CompressedKeyArray getKeys() {
+    return keys;
+  }
+
+  @Override
+  public double getByIndex(int index) {
+    if (index == -1) {
+      return 0.0;
+    }
+    return values[index];
+  }
+
+  @Override
+  public long indexToKeyNum(int index) {
+    return keys.get(index);
+  }
+
+  @Override
+  public int keyNumToIndex(long keyNum) {
+    return keys.indexOf(keyNum);
+  }
+
+  @Override
+  public int getNearestIndex(long keyNum) {
+    return keys.getNearestIndex(keyNum);
+  }
+
+  @Override
+  protected long[] copyKeyNums() {
+    return keys.toArray();
+  }
+
+  @Override
+  public Iterator<KeyValue> keyValueIterator() {
+    return new CompressedKeyValueIterator(0, size());
+  }
+
+  @Override
+  public Iterator<KeyValue> keyValuePrefixIterator(int[] keyPrefix) {
+    if (keyPrefix.length == 0) {
+      return keyValueIterator();
+    }
+
+    long startKeyNum = dimKeyPrefixToKeyNum(keyPrefix);
+    long endKeyNum = startKeyNum + indexOffsets[keyPrefix.length - 1];
+    return new CompressedKeyValueIterator(getNearestIndex(startKeyNum),
+        getNearestIndex(endKeyNum));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * If {@code other} is sparse and has the same dimensions as this
+   * tensor, the product is computed by merging the keys of both
+   * tensors.
+   */
+  @Override
+  public Tensor elementwiseProduct(Tensor other) {
+    if (!Arrays.equals(getDimensionNumbers(), other.getDimensionNumbers())) {
+      return super.elementwiseProduct(other);
+    }
+    Preconditions.checkArgument(Arrays.equals(getDimensionSizes(), other.getDimensionSizes()));
+
+    int maxResultSize = Math.min(size(), other.size());
+    long[] resultKeyNums = new long[maxResultSize];
+    double[] resultValues = new double[maxResultSize];
+    int resultInd = 0;
+
+    CompressedKeyArray.Cursor myKeys = keys.cursor(0);
+    if (!isSortedSparse(other)) {
+      // Look up the value of each key of this tensor in other.
+      for (; myKeys.hasKey(); myKeys.next()) {
+        double value = values[myKeys.getIndex()] * other.get(myKeys.getKey());
+        if (value != 0.0) {
+          resultKeyNums[resultInd] = myKeys.getKey();
+          resultValues[resultInd] = value;
+          resultInd++;
+        }
+      }
+    } else {
+      CompressedKeyArray.Cursor otherKeys = getCursor(other);
+      int otherInd = 0;
+      int otherSize = other.size();
+      while (myKeys.hasKey() && otherInd < otherSize) {
+        long myKeyNum = myKeys.getKey();
+        long otherKeyNum = otherKeys != null ? otherKeys.getKey() : other.indexToKeyNum(otherInd);
+        if (myKeyNum < otherKeyNum) {
+          myKeys.next();
+        } else if (myKeyNum > otherKeyNum) {
+          otherInd = advance(otherKeys, otherInd);
+        } else {
+          double value = values[myKeys.getIndex()] * other.getByIndex(otherInd);
+          if (value != 0.0) {
+            resultKeyNums[resultInd] = myKeyNum;
+            resultValues[resultInd] = value;
+            resultInd++;
+          }
+          myKeys.next();
+          otherInd = advance(otherKeys, otherInd);
+        }
+      }
+    }
+
+    return SparseTensor.resizeIntoTable(getDimensionNumbers(), getDimensionSizes(),
+        resultKeyNums, resultValues, resultInd);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * If {@code other} is sparse and has the same dimensions as this
+   * tensor, the sum is computed by merging the keys of both tensors.
+   */
+  @Override
+  public Tensor elementwiseAddition(Tensor other) {
+    if (!Arrays.equals(getDimensionNumbers(), other.getDimensionNumbers())
+        || !isSortedSparse(other)) {
+      return super.elementwiseAddition(other);
+    }
+    Preconditions.checkArgument(Arrays.equals(getDimensionSizes(), other.getDimensionSizes()));
+
+    int maxResultSize = size() + other.size();
+    long[] resultKeyNums = new long[maxResultSize];
+    double[] resultValues = new double[maxResultSize];
+    int resultInd = 0;
+
+    CompressedKeyArray.Cursor myKeys = keys.cursor(0);
+    CompressedKeyArray.Cursor otherKeys = getCursor(other);
+    int otherInd = 0;
+    int otherSize = other.size();
+    while (myKeys.hasKey() || otherInd < otherSize) {
+      long myKeyNum = myKeys.hasKey() ? myKeys.getKey() : Long.MAX_VALUE;
+      long otherKeyNum = Long.MAX_VALUE;
+      if (otherInd < otherSize) {
+        otherKeyNum = otherKeys != null ? otherKeys.getKey() : other.indexToKeyNum(otherInd);
+      }
+
+      if (myKeyNum < otherKeyNum) {
+        resultKeyNums[resultInd] = myKeyNum;
+        resultValues[resultInd] = values[myKeys.getIndex()];
+        myKeys.next();
+      } else if (myKeyNum > otherKeyNum) {
+        resultKeyNums[resultInd] = otherKeyNum;
+        resultValues[resultInd] = other.getByIndex(otherInd);
+        otherInd = advance(otherKeys, otherInd);
+      } else {
+        resultKeyNums[resultInd] = myKeyNum;
+        resultValues[resultInd] = values[myKeys.getIndex()] + other.getByIndex(otherInd);
+        myKeys.next();
+        otherInd = advance(otherKeys, otherInd);
+      }
+      resultInd++;
+    }
+
+    return SparseTensor.resizeIntoTable(getDimensionNumbers(), getDimensionSizes(),
+        resultKeyNums, resultValues, resultInd);
+  }
+
+  /**
+   * Returns {@code true} if the keys of {@code tensor} can be merged
+   * with the keys of this tensor, i.e., {@code tensor} stores its
+   * nonzero values in order of their keys.
+   */
+  private static boolean isSortedSparse(Tensor tensor) {
+    return tensor instanceof SparseTensor
+        || (tensor instanceof CompactTensor && !((CompactTensor) tensor).isDense());
+  }
+
+  /**
+   * Gets a cursor over the keys of {@code tensor} if they are
+   * compressed. Otherwise, the keys of {@code tensor} must be
+   * retrieved with {@code indexToKeyNum}, which is efficient for
+   * {@code SparseTensor}s.
+   */
+  private static CompressedKeyArray.Cursor getCursor(Tensor tensor) {
+    if (tensor instanceof CompressedSparseTensor) {
+      return ((CompressedSparseTensor) tensor).keys.cursor(0);
+    }
+    return null;
+  }
+
+  private static int advance(CompressedKeyArray.Cursor cursor, int index) {
+    if (cursor != null) {
+      cursor.next();
+    }
+    return index + 1;
+  }
+
+  /**
+   * Iterates over the keys and values of this tensor between two
+   * indexes, decoding the keys sequentially.
+   */
+  private class CompressedKeyValueIterator implements Iterator<KeyValue> {
+    private final CompressedKeyArray.Cursor cursor;
+    private final int finalIndex;
+    private final KeyValue keyValue;
+
+    public CompressedKeyValueIterator(int initialIndex, int finalIndex) {
+      this.cursor = keys.cursor(initialIndex);
+      this.finalIndex = finalIndex;
+      this.keyValue = new KeyValue(new int[numDimensions()], 0.0);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return cursor.getIndex() < finalIndex;
+    }
+
+    @Override
+    public KeyValue next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      keyNumToDimKey(cursor.getKey(), keyValue.getKey());
+      keyValue.setValue(values[cursor.getIndex()]);
+      cursor.next();
+      return keyValue;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -124,6 +124,14 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
 
   @Override
   public Tensor elementwiseProduct(Tensor other) {
+    if (other instanceof DenseTensor && Arrays.equals(other.getDimensionNumbers(), getDimensionNumbers())) {
+      double[] otherValues = ((DenseTensor) other).values;
+      Preconditions.checkArgument(otherValues.length == values.length);
+      double[] newValues = new double[values.length];
+      DenseTensorKernels.multiply(values, otherValues, newValues);
+      return new DenseTensor(getDimensionNumbers(), getDimensionSizes(), newValues);
+    }
+
     DenseTensorBuilder result = new DenseTensorBuilder(getDimensionNumbers(),
         getDimensionSizes());
     result.incrementWithMultiplier(other, 1);
@@ -142,10 +150,8 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
 
   @Override
   public DenseTensor elementwiseProduct(double constant) {
-    double[] newValues = Arrays.copyOf(values, values.length);
-    for (int i = 0; i < values.length; i++) {
-      newValues[i] *= constant;
-    }
+    double[] newValues = new double[values.length];
+    DenseTensorKernels.scale(constant, values, 0, newValues, 0, values.length);
 
     return new DenseTensor(getDimensionNumbers(), getDimensionSizes(), newValues);
   }
@@ -200,7 +206,7 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
       return fastInnerProductLeftAligned(other, maxKeyNum, newDims, newSizes);
     } else {
       // Slow, default inner product.
-      return elementwiseProduct(other).sumOutDimensions(otherDims);
+      return productSumOut(other, otherDims);
     }
   }
   
@@ -236,11 +242,7 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
     int length = values.length;
     Preconditions.checkArgument(otherValues.length == length);
     
-    double innerProduct = 0.0;
-    for (int i = 0; i < length; i++) {
-      innerProduct += values[i] * otherValues[i];
-    }
-    return innerProduct;
+    return DenseTensorKernels.dot(values, otherValues);
   }
   
   private double denseSparseInnerProduct(SparseTensor other) {
@@ -269,11 +271,21 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
     DenseTensorBuilder resultBuilder = new DenseTensorBuilder(newDims, newSizes);
     int otherSize = other.size();
     double[] otherValues = other.getValues();
+    int finalIndex = (int) (maxKeyNum / keyNumIncrement);
+    if (other instanceof DenseTensor && otherSize == keyNumIncrement) {
+      // The keys of other are contiguous, so each entry of the result
+      // is the dot product of a block of this with other.
+      for (int i = 0; i < finalIndex; i++) {
+        resultBuilder.values[i] = DenseTensorKernels.dot(values, (int) (i * keyNumIncrement),
+            otherValues, 0, otherSize);
+      }
+      return resultBuilder.buildNoCopy();
+    }
+
     // Iterate over the keys of this, then (hopefully sparsely) iterate over the 
     // keys of {@code other},
     double innerProd;
     int otherIndex;
-    int finalIndex = (int) (maxKeyNum / keyNumIncrement);
     long myKeyNum;
     for (int i = 0; i < finalIndex; i++) {
       myKeyNum = i * keyNumIncrement;
@@ -301,9 +313,7 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
     for (int otherIndex = 0; otherIndex < otherSize; otherIndex++) {
       otherKeyNum = (int) (other.indexToKeyNum(otherIndex) * maxKeyNum);
       otherValue = otherValues[otherIndex];
-      for (int i = 0; i < finalIndex; i++) {
-        resultBuilder.incrementEntryByKeyNum(values[i + otherKeyNum] * otherValue, i);
-      }
+      DenseTensorKernels.axpy(otherValue, values, otherKeyNum, resultBuilder.values, 0, finalIndex);
     }
     return resultBuilder.buildNoCopy();
   }
@@ -323,6 +333,17 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
       // are smaller than the dimensions of the other tensor.
       int[] newDims = Ints.concat(myDims, otherDims);
       int[] newSizes = Ints.concat(getDimensionSizes(), other.getDimensionSizes());
+      if (other instanceof DenseTensor) {
+        // Each block of the result is a scaled copy of other.
+        double[] otherValues = ((DenseTensor) other).values;
+        int otherLength = otherValues.length;
+        double[] newValues = new double[values.length * otherLength];
+        for (int i = 0; i < values.length; i++) {
+          DenseTensorKernels.scale(values[i], otherValues, 0, newValues, i * otherLength, otherLength);
+        }
+        return new DenseTensor(newDims, newSizes, newValues);
+      }
+
       DenseTensorBuilder builder = new DenseTensorBuilder(newDims, newSizes);
       builder.increment(this);
       
@@ -384,9 +405,7 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
   public DenseTensor elementwiseLog() {
     DenseTensorBuilder outputBuilder = new DenseTensorBuilder(getDimensionNumbers(),
         getDimensionSizes());
-    for (int i = 0; i < values.length; i++) {
-      outputBuilder.values[i] = Math.log(values[i]);
-    }
+    DenseTensorKernels.log(values, outputBuilder.values);
     return outputBuilder.buildNoCopy();
   }
   
@@ -399,9 +418,7 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
   public DenseTensor elementwiseExp() {
     DenseTensorBuilder outputBuilder = new DenseTensorBuilder(getDimensionNumbers(),
         getDimensionSizes());
-    for (int i = 0; i < values.length; i++) {
-      outputBuilder.values[i] = Math.exp(values[i]);
-    }
+    DenseTensorKernels.exp(values, outputBuilder.values);
     return outputBuilder.buildNoCopy();
   }
   
@@ -414,9 +431,7 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
   public DenseTensor elementwiseTanh() {
     DenseTensorBuilder outputBuilder = new DenseTensorBuilder(getDimensionNumbers(),
         getDimensionSizes());
-    for (int i = 0; i < values.length; i++) {
-      outputBuilder.values[i] = Math.tanh(values[i]);
-    }
+    DenseTensorKernels.tanh(values, outputBuilder.values);
     return outputBuilder.buildNoCopy();
   }
   
@@ -503,6 +518,119 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
     return maxOutDimensions(Ints.asList(dimensionsToEliminate), backpointers);
   }
 
+  @Override
+  public DenseTensor productSumOut(Tensor other, int[] dimensionsToEliminate) {
+    return productReduce(other, dimensionsToEliminate, true, null);
+  }
+
+  @Override
+  public DenseTensor productMaxOut(Tensor other, int[] dimensionsToEliminate) {
+    return productReduce(other, dimensionsToEliminate, false, null);
+  }
+
+  @Override
+  public DenseTensor productMaxOut(Tensor other, int[] dimensionsToEliminate,
+      Backpointers backpointers) {
+    return productReduce(other, dimensionsToEliminate, false, backpointers);
+  }
+
+  /**
+   * Computes the elementwise product of this and {@code other} and
+   * eliminates {@code dimensionsToEliminate} from the product in a
+   * single pass over {@code values}, without constructing the product.
+   * The loop maintains the index of the current key in {@code other}
+   * and the result, which are updated incrementally as the key
+   * advances.
+   */
+  private DenseTensor productReduce(Tensor other, int[] dimensionsToEliminate,
+      boolean useSum, Backpointers backpointers) {
+    int[] myDimensionNumbers = getDimensionNumbers();
+    int[] myDimensionSizes = getDimensionSizes();
+    int[] otherDimensionNumbers = other.getDimensionNumbers();
+    long[] otherDimensionOffsets = other.getDimensionOffsets();
+    for (int i = 0; i < otherDimensionNumbers.length; i++) {
+      Preconditions.checkArgument(Ints.contains(myDimensionNumbers, otherDimensionNumbers[i]),
+          "Dimensions of other must be a subset of this. Got %s and %s.",
+          Ints.asList(myDimensionNumbers), Ints.asList(otherDimensionNumbers));
+    }
+
+    List<Integer> dimensionNumsToKeep = Lists.newArrayList();
+    List<Integer> dimensionSizesToKeep = Lists.newArrayList();
+    for (int i = 0; i < myDimensionNumbers.length; i++) {
+      if (!Ints.contains(dimensionsToEliminate, myDimensionNumbers[i])) {
+        dimensionNumsToKeep.add(myDimensionNumbers[i]);
+        dimensionSizesToKeep.add(myDimensionSizes[i]);
+      }
+    }
+    DenseTensorBuilder outputBuilder = new DenseTensorBuilder(Ints.toArray(dimensionNumsToKeep),
+        Ints.toArray(dimensionSizesToKeep), useSum ? 0.0 : Double.NEGATIVE_INFINITY);
+    double[] resultValues = outputBuilder.values;
+    long[] resultDimensionOffsets = outputBuilder.getDimensionOffsets();
+
+    // The amount by which the index into other and the result changes
+    // when each dimension of this is incremented.
+    int numDims = myDimensionNumbers.length;
+    long[] otherStrides = new long[numDims];
+    long[] resultStrides = new long[numDims];
+    int resultDimIndex = 0;
+    for (int i = 0; i < numDims; i++) {
+      int otherDimIndex = Ints.indexOf(otherDimensionNumbers, myDimensionNumbers[i]);
+      otherStrides[i] = (otherDimIndex >= 0) ? otherDimensionOffsets[otherDimIndex] : 0;
+      if (!Ints.contains(dimensionsToEliminate, myDimensionNumbers[i])) {
+        resultStrides[i] = resultDimensionOffsets[resultDimIndex];
+        resultDimIndex++;
+      }
+    }
+
+    double[] otherValues = (other instanceof DenseTensorBase) ? ((DenseTensorBase) other).values : null;
+    long[] backpointerKeyNums = null;
+    if (backpointers != null) {
+      backpointerKeyNums = new long[resultValues.length];
+      Arrays.fill(backpointerKeyNums, -1);
+    }
+
+    int[] key = new int[numDims];
+    long otherKeyNum = 0;
+    long resultKeyNum = 0;
+    for (int i = 0; i < values.length; i++) {
+      double otherValue = (otherValues != null) ? otherValues[(int) otherKeyNum] : other.get(otherKeyNum);
+      double value = values[i] * otherValue;
+      int resultIndex = (int) resultKeyNum;
+      if (useSum) {
+        resultValues[resultIndex] += value;
+      } else if (value > resultValues[resultIndex]) {
+        resultValues[resultIndex] = value;
+        if (backpointerKeyNums != null) {
+          backpointerKeyNums[resultIndex] = i;
+        }
+      }
+
+      // Advance key to the next key of this.
+      for (int j = numDims - 1; j >= 0; j--) {
+        key[j]++;
+        otherKeyNum += otherStrides[j];
+        resultKeyNum += resultStrides[j];
+        if (key[j] < myDimensionSizes[j]) {
+          break;
+        }
+        otherKeyNum -= otherStrides[j] * myDimensionSizes[j];
+        resultKeyNum -= resultStrides[j] * myDimensionSizes[j];
+        key[j] = 0;
+      }
+    }
+
+    if (backpointers != null) {
+      long[] newBackpointerNums = new long[resultValues.length];
+      for (int i = 0; i < newBackpointerNums.length; i++) {
+        newBackpointerNums[i] = i;
+      }
+      backpointers.setBackpointers(newBackpointerNums, backpointerKeyNums,
+          newBackpointerNums.length, this);
+    }
+
+    return outputBuilder.buildNoCopy();
+  }
+
   /**
    * Performs reduction operations which eliminate some subset of the existing
    * dimensions.
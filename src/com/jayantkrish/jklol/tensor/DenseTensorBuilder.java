@@ -199,10 +199,7 @@ public class DenseTensorBuilder extends DenseTensorBase implements TensorBuilder
     if (other instanceof DenseTensorBase) {
       double[] otherTensorValues = ((DenseTensorBase) other).values;
       Preconditions.checkArgument(otherTensorValues.length == values.length);
-      int length = values.length;
-      for (int i = 0; i < length; i++) {
-        values[i] += otherTensorValues[i] * multiplier;
-      }
+      DenseTensorKernels.axpy(multiplier, otherTensorValues, 0, values, 0, values.length);
     } else {
       int otherSize = other.size();
       for (int i = 0; i < otherSize; i++) {
@@ -273,6 +270,21 @@ public class DenseTensorBuilder extends DenseTensorBase implements TensorBuilder
     Preconditions.checkArgument(leftDimensionNums[leftDimensionNums.length - 1] < rightDimensionNums[0]);
   
     long leftKeyNumMultiplier = rightTensor.getMaxKeyNum();
+    if (rightTensor instanceof DenseTensorBase) {
+      // Each block of this is incremented by a scaled copy of rightTensor.
+      double[] rightValues = ((DenseTensorBase) rightTensor).values;
+      int leftSize = leftTensor.size();
+      double[] leftValues = leftTensor.getValues();
+      for (int i = 0; i < leftSize; i++) {
+        double leftValue = leftValues[i] * multiplier;
+        if (leftValue != 0.0) {
+          int offset = (int) (leftTensor.indexToKeyNum(i) * leftKeyNumMultiplier);
+          DenseTensorKernels.axpy(leftValue, rightValues, 0, values, offset, rightValues.length);
+        }
+      }
+      return;
+    }
+
     int leftSize = leftTensor.size();
     int rightSize = rightTensor.size();
     long leftKeyNumOffset, rightKeyNum;
@@ -347,11 +359,7 @@ public class DenseTensorBuilder extends DenseTensorBase implements TensorBuilder
       DenseTensorBase otherTensor = (DenseTensorBase) other;
       Preconditions.checkArgument(otherTensor.values.length == values.length);
 
-      // info.yeppp.Core.Multiply_V64fV64f_V64f(values, 0, otherTensor.values, 0, values, 0, values.length);
-
-      for (int i = 0; i < values.length; i++) {
-        values[i] *= otherTensor.values[i];
-      }
+      DenseTensorKernels.multiply(values, otherTensor.values, values);
     } else {
       Iterator<KeyValue> keyValueIter = keyValueIterator();
       while (keyValueIter.hasNext()) {
@@ -363,11 +371,7 @@ public class DenseTensorBuilder extends DenseTensorBase implements TensorBuilder
 
   @Override
   public void multiply(double amount) {
-    // Not optimized.
-    // info.yeppp.Core.Multiply_V64fS64f_V64f(values, 0, amount, values, 0, values.length);
-    for (int i = 0; i < values.length; i++) {
-      values[i] *= amount;
-    }
+    DenseTensorKernels.scale(amount, values, 0, values, 0, values.length);
   }
 
   @Override
@@ -430,11 +434,7 @@ public class DenseTensorBuilder extends DenseTensorBase implements TensorBuilder
     if (other instanceof DenseTensorBase) {
       DenseTensorBase otherTensor = (DenseTensorBase) other;
       Preconditions.checkArgument(otherTensor.values.length == values.length);
-      double total = 0.0;
-      for (int i = 0; i < values.length; i++) {
-        total += otherTensor.values[i] * values[i];
-      }
-      return total;
+      return DenseTensorKernels.dot(values, otherTensor.values);
     } else {
       double total = 0.0;
       
@@ -451,9 +451,7 @@ public class DenseTensorBuilder extends DenseTensorBase implements TensorBuilder
 
   @Override
   public void exp() {
-    for (int i = 0; i < values.length; i++) {
-      values[i] = Math.exp(values[i]);
-    }
+    DenseTensorKernels.exp(values, values);
   }
 
   @Override
@@ -0,0 +1,312 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Primitive array kernels for the inner loops of {@link DenseTensor}
+ * and {@link DenseTensorBuilder}. The loops are written so that the
+ * JIT compiler can vectorize them: they are simple counted loops over
+ * arrays with no calls or branches in the loop body. Reductions (e.g.,
+ * {@link #dot}) use several independent accumulators, since the JIT
+ * will not reorder a single floating point accumulator.
+ *
+ * @author jayantk
+ */
+public final class DenseTensorKernels {
+
+  // Tile sizes for gemm. A K_BLOCK x J_BLOCK tile of the right-hand
+  // matrix (128KB) fits in a typical L2 cache.
+  private static final int I_BLOCK = 64;
+  private static final int K_BLOCK = 64;
+  private static final int J_BLOCK = 256;
+
+  /**
+   * Matrix products with at least this many multiply-adds are split
+   * across the threads of the common fork-join pool.
+   */
+  public static final long PARALLEL_GEMM_THRESHOLD = 1L << 22;
+
+  private DenseTensorKernels() {
+    // Prevent instantiation.
+  }
+
+  /**
+   * Computes the dot product of {@code length} elements of
+   * {@code first} and {@code second}, starting at the given offsets.
+   *
+   * @param first
+   * @param firstOffset
+   * @param second
+   * @param secondOffset
+   * @param length
+   * @return
+   */
+  public static double dot(double[] first, int firstOffset, double[] second,
+      int secondOffset, int length) {
+    double sum0 = 0.0, sum1 = 0.0, sum2 = 0.0, sum3 = 0.0;
+    int i = 0;
+    int unrolledLength = length & ~3;
+    for (; i < unrolledLength; i += 4) {
+      sum0 += first[firstOffset + i] * second[secondOffset + i];
+      sum1 += first[firstOffset + i + 1] * second[secondOffset + i + 1];
+      sum2 += first[firstOffset + i + 2] * second[secondOffset + i + 2];
+      sum3 += first[firstOffset + i + 3] * second[secondOffset + i + 3];
+    }
+    for (; i < length; i++) {
+      sum0 += first[firstOffset + i] * second[secondOffset + i];
+    }
+    return (sum0 + sum1) + (sum2 + sum3);
+  }
+
+  /**
+   * Same as {@link #dot(double[], int, double[], int, int)}, for two
+   * arrays of equal length.
+   *
+   * @param first
+   * @param second
+   * @return
+   */
+  public static double dot(double[] first, double[] second) {
+    return dot(first, 0, second, 0, first.length);
+  }
+
+  /**
+   * Performs {@code target[targetOffset + i] += multiplier * source[sourceOffset + i]}
+   * for each {@code i} from 0 to {@code length}.
+   *
+   * @param multiplier
+   * @param source
+   * @param sourceOffset
+   * @param target
+   * @param targetOffset
+   * @param length
+   */
+  public static void axpy(double multiplier, double[] source, int sourceOffset,
+      double[] target, int targetOffset, int length) {
+    for (int i = 0; i < length; i++) {
+      target[targetOffset + i] += multiplier * source[sourceOffset + i];
+    }
+  }
+
+  /**
+   * Performs {@code target[targetOffset + (i * targetStride)] += multiplier * source[sourceOffset + i]}
+   * for each {@code i} from 0 to {@code length}.
+   *
+   * @param multiplier
+   * @param source
+   * @param sourceOffset
+   * @param target
+   * @param targetOffset
+   * @param targetStride
+   * @param length
+   */
+  public static void axpy(double multiplier, double[] source, int sourceOffset,
+      double[] target, int targetOffset, int targetStride, int length) {
+    if (targetStride == 1) {
+      axpy(multiplier, source, sourceOffset, target, targetOffset, length);
+      return;
+    }
+    for (int i = 0; i < length; i++) {
+      target[targetOffset + (i * targetStride)] += multiplier * source[sourceOffset + i];
+    }
+  }
+
+  /**
+   * Performs {@code target[targetOffset + i] = multiplier * source[sourceOffset + i]}
+   * for each {@code i} from 0 to {@code length}.
+   *
+   * @param multiplier
+   * @param source
+   * @param sourceOffset
+   * @param target
+   * @param targetOffset
+   * @param length
+   */
+  public static void scale(double multiplier, double[] source, int sourceOffset,
+      double[] target, int targetOffset, int length) {
+    for (int i = 0; i < length; i++) {
+      target[targetOffset + i] = multiplier * source[sourceOffset + i];
+    }
+  }
+
+  /**
+   * Stores the elementwise product of {@code first} and {@code second}
+   * in {@code result}. {@code result} may be the same array as either
+   * input.
+   *
+   * @param first
+   * @param second
+   * @param result
+   */
+  public static void multiply(double[] first, double[] second, double[] result) {
+    int length = result.length;
+    for (int i = 0; i < length; i++) {
+      result[i] = first[i] * second[i];
+    }
+  }
+
+  /**
+   * Stores {@code Math.exp} of each element of {@code source} in
+   * {@code target}, which may be the same array. The JIT does not
+   * vectorize calls to {@code Math.exp}, {@code Math.log} or
+   * {@code Math.tanh}, so these loops are only as fast as their
+   * scalar intrinsics.
+   *
+   * @param source
+   * @param target
+   */
+  public static void exp(double[] source, double[] target) {
+    int length = target.length;
+    for (int i = 0; i < length; i++) {
+      target[i] = Math.exp(source[i]);
+    }
+  }
+
+  /**
+   * Stores {@code Math.log} of each element of {@code source} in
+   * {@code target}, which may be the same array.
+   *
+   * @param source
+   * @param target
+   */
+  public static void log(double[] source, double[] target) {
+    int length = target.length;
+    for (int i = 0; i < length; i++) {
+      target[i] = Math.log(source[i]);
+    }
+  }
+
+  /**
+   * Stores {@code Math.tanh} of each element of {@code source} in
+   * {@code target}, which may be the same array.
+   *
+   * @param source
+   * @param target
+   */
+  public static void tanh(double[] source, double[] target) {
+    int length = target.length;
+    for (int i = 0; i < length; i++) {
+      target[i] = Math.tanh(source[i]);
+    }
+  }
+
+  /**
+   * Computes the matrix product {@code C += X * Y}, where {@code X} is
+   * {@code m x k}, {@code Y} is {@code k x n}, and {@code C} is
+   * {@code m x n}. Element {@code (i, j)} of each matrix is stored at
+   * {@code offset + (i * rowStride) + (j * colStride)} of its array.
+   * The columns of {@code Y} and {@code C} must be contiguous (i.e.,
+   * their column stride is 1), while {@code X} may have an arbitrary
+   * layout, which allows it to be a transposed matrix.
+   * <p>
+   * The product is computed in cache-sized tiles. Large products are
+   * computed in parallel by splitting the rows of {@code C} across
+   * the common {@code ForkJoinPool}; set the
+   * {@code java.util.concurrent.ForkJoinPool.common.parallelism}
+   * system property to 1 to disable this.
+   *
+   * @param m
+   * @param n
+   * @param k
+   * @param x
+   * @param xOffset
+   * @param xRowStride
+   * @param xColStride
+   * @param y
+   * @param yOffset
+   * @param yRowStride
+   * @param c
+   * @param cOffset
+   * @param cRowStride
+   */
+  public static void gemm(int m, int n, int k, double[] x, int xOffset, int xRowStride,
+      int xColStride, double[] y, int yOffset, int yRowStride, double[] c, int cOffset,
+      int cRowStride) {
+    GemmTask task = new GemmTask(0, m, n, k, x, xOffset, xRowStride, xColStride,
+        y, yOffset, yRowStride, c, cOffset, cRowStride);
+    if (((long) m) * n * k >= PARALLEL_GEMM_THRESHOLD && m > I_BLOCK
+        && ForkJoinPool.getCommonPoolParallelism() > 1) {
+      ForkJoinPool.commonPool().invoke(task);
+    } else {
+      task.computeSequentially();
+    }
+  }
+
+  /**
+   * Computes rows {@code [rowStart, rowEnd)} of a matrix product. Each
+   * task writes to a disjoint set of rows of the result, so subtasks
+   * do not need to synchronize.
+   */
+  private static class GemmTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int rowStart;
+    private final int rowEnd;
+    private final int n;
+    private final int k;
+    private final double[] x;
+    private final int xOffset;
+    private final int xRowStride;
+    private final int xColStride;
+    private final double[] y;
+    private final int yOffset;
+    private final int yRowStride;
+    private final double[] c;
+    private final int cOffset;
+    private final int cRowStride;
+
+    public GemmTask(int rowStart, int rowEnd, int n, int k, double[] x, int xOffset,
+        int xRowStride, int xColStride, double[] y, int yOffset, int yRowStride,
+        double[] c, int cOffset, int cRowStride) {
+      this.rowStart = rowStart;
+      this.rowEnd = rowEnd;
+      this.n = n;
+      this.k = k;
+      this.x = x;
+      this.xOffset = xOffset;
+      this.xRowStride = xRowStride;
+      this.xColStride = xColStride;
+      this.y = y;
+      this.yOffset = yOffset;
+      this.yRowStride = yRowStride;
+      this.c = c;
+      this.cOffset = cOffset;
+      this.cRowStride = cRowStride;
+    }
+
+    @Override
+    protected void compute() {
+      int numRows = rowEnd - rowStart;
+      if (numRows <= I_BLOCK || ((long) numRows) * n * k < PARALLEL_GEMM_THRESHOLD / 4) {
+        computeSequentially();
+      } else {
+        int rowSplit = rowStart + (numRows / 2);
+        invokeAll(new GemmTask(rowStart, rowSplit, n, k, x, xOffset, xRowStride, xColStride,
+            y, yOffset, yRowStride, c, cOffset, cRowStride),
+            new GemmTask(rowSplit, rowEnd, n, k, x, xOffset, xRowStride, xColStride,
+                y, yOffset, yRowStride, c, cOffset, cRowStride));
+      }
+    }
+
+    public void computeSequentially() {
+      for (int i0 = rowStart; i0 < rowEnd; i0 += I_BLOCK) {
+        int iMax = Math.min(i0 + I_BLOCK, rowEnd);
+        for (int k0 = 0; k0 < k; k0 += K_BLOCK) {
+          int kMax = Math.min(k0 + K_BLOCK, k);
+          for (int j0 = 0; j0 < n; j0 += J_BLOCK) {
+            int jLength = Math.min(J_BLOCK, n - j0);
+            for (int i = i0; i < iMax; i++) {
+              int xRow = xOffset + (i * xRowStride);
+              int cRow = cOffset + (i * cRowStride) + j0;
+              for (int kk = k0; kk < kMax; kk++) {
+                axpy(x[xRow + (kk * xColStride)], y, yOffset + (kk * yRowStride) + j0,
+                    c, cRow, jLength);
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package com.jayantkrish.jklol.tensor;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A read-only dense tensor that stores its values as {@code float}s,
+ * using half the memory of a {@link DenseTensor}. See
+ * {@link CompactTensor}.
+ *
+ * @author jayantk
+ */
+public class FloatDenseTensor extends CompactTensor {
+
+  private static final long serialVersionUID = 1L;
+
+  private final float[] values;
+
+  public FloatDenseTensor(int[] dimensionNums, int[] dimensionSizes, float[] values) {
+    super(dimensionNums, dimensionSizes, null);
+    Preconditions.checkArgument(values.length == size());
+    this.values = values;
+  }
+
+  /**
+   * Creates a tensor from {@code values}, rounding each value to the
+   * nearest {@code float}.
+   *
+   * @param dimensionNums
+   * @param dimensionSizes
+   * @param values
+   * @return
+   */
+  public static FloatDenseTensor fromValues(int[] dimensionNums, int[] dimensionSizes,
+      double[] values) {
+    float[] floatValues = new float[values.length];
+    for (int i = 0; i < values.length; i++) {
+      floatValues[i] = (float) values[i];
+    }
+    return new FloatDenseTensor(dimensionNums, dimensionSizes, floatValues);
+  }
+
+  @Override
+  public double getByIndex(int index) {
+    if (index == -1) {
+      return 0.0;
+    }
+    return values[index];
+  }
+
+  @Override
+  public double get(long keyNum) {
+    return values[(int) keyNum];
+  }
+}
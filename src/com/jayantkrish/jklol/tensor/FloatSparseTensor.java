@@ -0,0 +1,60 @@
+package com.jayantkrish.jklol.tensor;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A read-only sparse tensor that stores its values as {@code float}s.
+ * Keys are stored as in {@link SparseTensor}. See
+ * {@link CompactTensor}.
+ *
+ * @author jayantk
+ */
+public class FloatSparseTensor extends CompactTensor {
+
+  private static final long serialVersionUID = 1L;
+
+  private final float[] values;
+
+  /**
+   * Creates a tensor with the given keys and values. {@code keyNums}
+   * must be sorted.
+   *
+   * @param dimensionNums
+   * @param dimensionSizes
+   * @param keyNums
+   * @param values
+   */
+  public FloatSparseTensor(int[] dimensionNums, int[] dimensionSizes, long[] keyNums,
+      float[] values) {
+    super(dimensionNums, dimensionSizes, Preconditions.checkNotNull(keyNums));
+    Preconditions.checkArgument(keyNums.length == values.length);
+    this.values = values;
+  }
+
+  /**
+   * Creates a tensor from {@code keyNums} and {@code values}, rounding
+   * each value to the nearest {@code float}.
+   *
+   * @param dimensionNums
+   * @param dimensionSizes
+   * @param keyNums
+   * @param values
+   * @return
+   */
+  public static FloatSparseTensor fromValues(int[] dimensionNums, int[] dimensionSizes,
+      long[] keyNums, double[] values) {
+    float[] floatValues = new float[values.length];
+    for (int i = 0; i < values.length; i++) {
+      floatValues[i] = (float) values[i];
+    }
+    return new FloatSparseTensor(dimensionNums, dimensionSizes, keyNums, floatValues);
+  }
+
+  @Override
+  public double getByIndex(int index) {
+    if (index == -1) {
+      return 0.0;
+    }
+    return values[index];
+  }
+}
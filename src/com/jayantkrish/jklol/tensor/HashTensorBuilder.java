@@ -0,0 +1,523 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Ordering;
+import com.google.common.primitives.Ints;
+
+/**
+ * Builder for sparse tensors that stores its key/value pairs in a
+ * primitive open-addressing hash table. Reading or incrementing a
+ * single entry takes (expected) constant time, which makes this
+ * builder appropriate for accumulating sparse gradients, where
+ * {@link SparseTensorBuilder} and repeated {@code SparseTensor}
+ * additions are slow. {@link #build()} sorts the keys once to
+ * construct a {@link SparseTensor}.
+ * <p>
+ * Entries are stored in parallel key and value arrays in insertion
+ * order; the index of an entry (as in {@link #getByIndex(int)}) is its
+ * position in these arrays. Entries whose value becomes 0 remain in
+ * the table, but are omitted from the built tensor. Multiplying by 0
+ * removes all entries.
+ *
+ * @author jayantk
+ */
+public class HashTensorBuilder extends AbstractTensorBase implements TensorBuilder {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int INITIAL_CAPACITY = 16;
+  // Multiplier for Fibonacci hashing of key numbers.
+  private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+  private long[] keyNums;
+  private double[] values;
+  private int size;
+
+  // Open-addressing table whose entries are 1 + the index of a key in
+  // keyNums, or 0 for empty slots. Its length is a power of 2 and at
+  // least twice size.
+  private int[] slots;
+  private int slotShift;
+
+  // build() sorts the keys, so its result is cached until the next
+  // modification.
+  private transient SparseTensor cachedTensor;
+
+  public HashTensorBuilder(int[] dimensionNums, int[] dimensionSizes) {
+    this(dimensionNums, dimensionSizes, INITIAL_CAPACITY);
+  }
+
+  /**
+   * Creates an empty builder with space for {@code expectedSize}
+   * entries.
+   *
+   * @param dimensionNums
+   * @param dimensionSizes
+   * @param expectedSize
+   */
+  public HashTensorBuilder(int[] dimensionNums, int[] dimensionSizes, int expectedSize) {
+    super(dimensionNums, dimensionSizes);
+    Preconditions.checkArgument(Ordering.natural().isOrdered(Ints.asList(dimensionNums)));
+    int capacity = Math.max(expectedSize, INITIAL_CAPACITY);
+    this.keyNums = new long[capacity];
+    this.values = new double[capacity];
+    this.size = 0;
+    initializeSlots(capacity);
+  }
+
+  /**
+   * Copy constructor.
+   */
+  private HashTensorBuilder(HashTensorBuilder builder) {
+    super(builder.getDimensionNumbers(), builder.getDimensionSizes());
+    this.keyNums = Arrays.copyOf(builder.keyNums, builder.keyNums.length);
+    this.values = Arrays.copyOf(builder.values, builder.values.length);
+    this.size = builder.size;
+    this.slots = Arrays.copyOf(builder.slots, builder.slots.length);
+    this.slotShift = builder.slotShift;
+    this.cachedTensor = builder.cachedTensor;
+  }
+
+  /**
+   * Gets a builder which contains the same key value pairs as
+   * {@code tensor}.
+   *
+   * @param tensor
+   * @return
+   */
+  public static HashTensorBuilder copyOf(TensorBase tensor) {
+    HashTensorBuilder builder = new HashTensorBuilder(tensor.getDimensionNumbers(),
+        tensor.getDimensionSizes(), tensor.size());
+    builder.increment(tensor);
+    return builder;
+  }
+
+  /**
+   * Gets a {@code TensorFactory} which creates
+   * {@code HashTensorBuilder}s.
+   *
+   * @return
+   */
+  public static TensorFactory getFactory() {
+    return new TensorFactory() {
+      @Override
+      public TensorBuilder getBuilder(int[] dimNums, int[] dimSizes) {
+        return new HashTensorBuilder(dimNums, dimSizes);
+      }
+    };
+  }
+
+  // /////////////////////////////////////////////////////////////
+  // Hash table operations
+  // /////////////////////////////////////////////////////////////
+
+  private void initializeSlots(int capacity) {
+    int numSlots = Integer.highestOneBit(Math.max(capacity, 1)) * 4;
+    slots = new int[numSlots];
+    slotShift = 64 - Integer.numberOfTrailingZeros(numSlots);
+  }
+
+  private int getSlot(long keyNum) {
+    int slot = (int) ((keyNum * HASH_MULTIPLIER) >>> slotShift);
+    int mask = slots.length - 1;
+    while (slots[slot] != 0 && keyNums[slots[slot] - 1] != keyNum) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Gets the index of {@code keyNum} in {@code keyNums}, adding it
+   * (with value 0) if it is not already present.
+   */
+  private int getOrAddIndex(long keyNum) {
+    int slot = getSlot(keyNum);
+    if (slots[slot] != 0) {
+      return slots[slot] - 1;
+    }
+
+    if (size == keyNums.length) {
+      keyNums = Arrays.copyOf(keyNums, size * 2);
+      values = Arrays.copyOf(values, size * 2);
+    }
+    keyNums[size] = keyNum;
+    values[size] = 0.0;
+    size++;
+
+    if (size * 2 > slots.length) {
+      rehash();
+    } else {
+      slots[slot] = size;
+    }
+    return size - 1;
+  }
+
+  private void rehash() {
+    initializeSlots(size);
+    for (int i = 0; i < size; i++) {
+      slots[getSlot(keyNums[i])] = i + 1;
+    }
+  }
+
+  // /////////////////////////////////////////////////////////////
+  // TensorBase methods
+  // /////////////////////////////////////////////////////////////
+
+  /**
+   * Gets the number of keys stored in {@code this}. This count may
+   * include keys whose value is 0.
+   *
+   * @return
+   */
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public double getByIndex(int index) {
+    if (index == -1) {
+      return 0.0;
+    }
+    return values[index];
+  }
+
+  @Override
+  public double getLogByIndex(int index) {
+    return Math.log(getByIndex(index));
+  }
+
+  @Override
+  public long indexToKeyNum(int index) {
+    return keyNums[index];
+  }
+
+  @Override
+  public int keyNumToIndex(long keyNum) {
+    // -1 is reserved for all keys which are not in this tensor.
+    return slots[getSlot(keyNum)] - 1;
+  }
+
+  @Override
+  public Iterator<KeyValue> keyValueIterator() {
+    return build().keyValueIterator();
+  }
+
+  @Override
+  public Iterator<KeyValue> keyValuePrefixIterator(int[] keyPrefix) {
+    return build().keyValuePrefixIterator(keyPrefix);
+  }
+
+  @Override
+  public double getL2Norm() {
+    return Math.sqrt(DenseTensorKernels.dot(values, 0, values, 0, size));
+  }
+
+  @Override
+  public double getTrace() {
+    double sum = 0.0;
+    for (int i = 0; i < size; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+  @Override
+  public long[] getLargestValues(int n) {
+    return build().getLargestValues(n);
+  }
+
+  @Override
+  public void maximum(TensorBase other) {
+    Preconditions.checkArgument(Arrays.equals(other.getDimensionNumbers(), getDimensionNumbers()));
+    int otherSize = other.size();
+    for (int i = 0; i < otherSize; i++) {
+      long keyNum = other.indexToKeyNum(i);
+      int index = getOrAddIndex(keyNum);
+      values[index] = Math.max(values[index], other.getByIndex(i));
+    }
+
+    for (int i = 0; i < size; i++) {
+      values[i] = Math.max(values[i], other.get(keyNums[i]));
+    }
+    cachedTensor = null;
+  }
+
+  @Override
+  public double innerProduct(TensorBase other) {
+    Preconditions.checkArgument(Arrays.equals(other.getDimensionNumbers(), getDimensionNumbers()));
+    double sum = 0.0;
+    for (int i = 0; i < size; i++) {
+      if (values[i] != 0.0) {
+        sum += values[i] * other.get(keyNums[i]);
+      }
+    }
+    return sum;
+  }
+
+  // /////////////////////////////////////////////////////////////
+  // TensorBuilder methods
+  // /////////////////////////////////////////////////////////////
+
+  @Override
+  public void put(int[] key, double value) {
+    putByKeyNum(dimKeyToKeyNum(key), value);
+  }
+
+  @Override
+  public void putByKeyNum(long keyNum, double value) {
+    int index = getOrAddIndex(keyNum);
+    values[index] = value;
+    cachedTensor = null;
+  }
+
+  @Override
+  public void increment(TensorBase other) {
+    incrementWithMultiplier(other, 1.0);
+  }
+
+  @Override
+  public void increment(double amount) {
+    // Invoking this method on a sparse tensor is a bad idea, because it
+    // destroys the sparsity. Use a dense tensor instead.
+    for (long keyNum = 0; keyNum < getMaxKeyNum(); keyNum++) {
+      incrementEntryByKeyNum(amount, keyNum);
+    }
+  }
+
+  @Override
+  public void incrementWithMultiplier(TensorBase other, double multiplier) {
+    Preconditions.checkArgument(Arrays.equals(other.getDimensionNumbers(), getDimensionNumbers()));
+    int otherSize = other.size();
+    for (int i = 0; i < otherSize; i++) {
+      double otherValue = other.getByIndex(i);
+      if (otherValue != 0.0) {
+        int index = getOrAddIndex(other.indexToKeyNum(i));
+        values[index] += otherValue * multiplier;
+      }
+    }
+    cachedTensor = null;
+  }
+
+  @Override
+  public void incrementSquare(TensorBase other, double multiplier) {
+    Preconditions.checkArgument(Arrays.equals(other.getDimensionNumbers(), getDimensionNumbers()));
+    double square = multiplier * multiplier;
+    int otherSize = other.size();
+    for (int i = 0; i < otherSize; i++) {
+      double otherValue = other.getByIndex(i);
+      if (otherValue != 0.0) {
+        int index = getOrAddIndex(other.indexToKeyNum(i));
+        values[index] += otherValue * otherValue * square;
+      }
+    }
+    cachedTensor = null;
+  }
+
+  @Override
+  public void incrementAdagrad(TensorBase other, TensorBase squareTensor, double multiplier) {
+    Preconditions.checkArgument(Arrays.equals(other.getDimensionNumbers(), getDimensionNumbers()));
+    int otherSize = other.size();
+    for (int i = 0; i < otherSize; i++) {
+      double otherValue = other.getByIndex(i);
+      long keyNum = other.indexToKeyNum(i);
+      double squareValue = squareTensor.get(keyNum);
+      if (otherValue != 0.0 && squareValue != 0.0) {
+        int index = getOrAddIndex(keyNum);
+        values[index] += otherValue * multiplier / Math.sqrt(squareValue);
+      }
+    }
+    cachedTensor = null;
+  }
+
+  @Override
+  public void multiplyInverseAdagrad(TensorBase squareTensor, double constant, double multiplier) {
+    for (int i = 0; i < size; i++) {
+      double squareValue = squareTensor.get(keyNums[i]);
+      if (squareValue != 0.0) {
+        squareValue = 1 / squareValue;
+      }
+      values[i] *= (constant + (multiplier * Math.sqrt(squareValue)));
+    }
+    cachedTensor = null;
+  }
+
+  @Override
+  public void incrementSquareAdagrad(TensorBase gradient, TensorBase parameters, double multiplier) {
+    Preconditions.checkArgument(Arrays.equals(gradient.getDimensionNumbers(), getDimensionNumbers()));
+    int gradientSize = gradient.size();
+    for (int i = 0; i < gradientSize; i++) {
+      long keyNum = gradient.indexToKeyNum(i);
+      double value = gradient.getByIndex(i) + (multiplier * parameters.get(keyNum));
+      if (value != 0.0) {
+        int index = getOrAddIndex(keyNum);
+        values[index] += value * value;
+      }
+    }
+
+    // Keys of parameters that are not in gradient.
+    int parametersSize = parameters.size();
+    for (int i = 0; i < parametersSize; i++) {
+      long keyNum = parameters.indexToKeyNum(i);
+      if (gradient.keyNumToIndex(keyNum) == -1) {
+        double value = multiplier * parameters.getByIndex(i);
+        if (value != 0.0) {
+          int index = getOrAddIndex(keyNum);
+          values[index] += value * value;
+        }
+      }
+    }
+    cachedTensor = null;
+  }
+
+  @Override
+  public void incrementOuterProductWithMultiplier(Tensor leftTensor, Tensor rightTensor,
+      double multiplier) {
+    incrementWithMultiplier(leftTensor.outerProduct(rightTensor), multiplier);
+  }
+
+  @Override
+  public void incrementInnerProductWithMultiplier(Tensor leftTensor, Tensor rightTensor,
+      double multiplier) {
+    incrementWithMultiplier(leftTensor.innerProduct(rightTensor), multiplier);
+  }
+
+  @Override
+  public void incrementEntry(double amount, int... key) {
+    Preconditions.checkArgument(key.length == getDimensionNumbers().length);
+    incrementEntryByKeyNum(amount, dimKeyToKeyNum(key));
+  }
+
+  @Override
+  public void incrementEntryByKeyNum(double amount, long keyNum) {
+    int index = getOrAddIndex(keyNum);
+    values[index] += amount;
+    cachedTensor = null;
+  }
+
+  @Override
+  public void multiply(TensorBase other) {
+    Preconditions.checkArgument(Arrays.equals(other.getDimensionNumbers(), getDimensionNumbers()));
+    for (int i = 0; i < size; i++) {
+      if (values[i] != 0.0) {
+        values[i] *= other.get(keyNums[i]);
+      }
+    }
+    cachedTensor = null;
+  }
+
+  @Override
+  public void multiply(double amount) {
+    if (amount == 0.0) {
+      // Removes every entry, so that zeroing out a reused gradient
+      // accumulator does not leave behind the keys of earlier gradients.
+      // Only the slots of the current entries are cleared, so this takes
+      // time proportional to size rather than the table's capacity.
+      // Keys are probed in reverse order of insertion, as the probe
+      // sequence of each key only passes over the slots of earlier keys.
+      for (int i = size - 1; i >= 0; i--) {
+        slots[getSlot(keyNums[i])] = 0;
+      }
+      size = 0;
+    } else {
+      DenseTensorKernels.scale(amount, values, 0, values, 0, size);
+    }
+    cachedTensor = null;
+  }
+
+  @Override
+  public void multiplyEntry(double amount, int... key) {
+    multiplyEntryByKeyNum(amount, dimKeyToKeyNum(key));
+  }
+
+  @Override
+  public void multiplyEntryByKeyNum(double amount, long keyNum) {
+    int index = keyNumToIndex(keyNum);
+    if (index != -1) {
+      values[index] *= amount;
+      cachedTensor = null;
+    }
+  }
+
+  @Override
+  public void softThreshold(double threshold) {
+    double negativeThreshold = -1.0 * threshold;
+    for (int i = 0; i < size; i++) {
+      double value = values[i];
+      if (value > threshold) {
+        values[i] = value - threshold;
+      } else if (value < negativeThreshold) {
+        values[i] = value + threshold;
+      } else {
+        values[i] = 0.0;
+      }
+    }
+    cachedTensor = null;
+  }
+
+  @Override
+  public void findEntriesLargerThan(double threshold) {
+    Preconditions.checkArgument(threshold >= 0.0);
+    for (int i = 0; i < size; i++) {
+      values[i] = values[i] >= threshold ? 1.0 : 0.0;
+    }
+    cachedTensor = null;
+  }
+
+  @Override
+  public void exp() {
+    for (long keyNum = 0; keyNum < getMaxKeyNum(); keyNum++) {
+      putByKeyNum(keyNum, Math.exp(get(keyNum)));
+    }
+  }
+
+  /**
+   * Constructs and returns a {@code SparseTensor} containing all of
+   * the nonzero key/value pairs added to {@code this}.
+   *
+   * @return
+   */
+  @Override
+  public SparseTensor build() {
+    if (cachedTensor == null) {
+      int numNonzero = 0;
+      for (int i = 0; i < size; i++) {
+        if (values[i] != 0.0) {
+          numNonzero++;
+        }
+      }
+
+      long[] tableKeyNums = new long[numNonzero];
+      double[] tableValues = new double[numNonzero];
+      int index = 0;
+      for (int i = 0; i < size; i++) {
+        if (values[i] != 0.0) {
+          tableKeyNums[index] = keyNums[i];
+          tableValues[index] = values[i];
+          index++;
+        }
+      }
+      cachedTensor = SparseTensor.fromUnorderedKeyValuesNoCopy(getDimensionNumbers(),
+          getDimensionSizes(), tableKeyNums, tableValues);
+    }
+    return cachedTensor;
+  }
+
+  @Override
+  public SparseTensor buildNoCopy() {
+    return build();
+  }
+
+  @Override
+  public HashTensorBuilder getCopy() {
+    return new HashTensorBuilder(this);
+  }
+
+  @Override
+  public String toString() {
+    return build().toString();
+  }
+}
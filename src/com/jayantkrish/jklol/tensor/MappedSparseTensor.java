@@ -0,0 +1,1032 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Ordering;
+import com.google.common.primitives.Ints;
+import com.jayantkrish.jklol.util.ArrayUtils;
+import com.jayantkrish.jklol.util.HeapUtils;
+
+/**
+ * A sparse tensor whose keys and values are stored outside of the
+ * Java heap in a memory-mapped file. The file contains the same
+ * sorted key / value arrays as a {@link SparseTensor}, so lookups use
+ * binary search exactly like {@code SparseTensor}. Mapping a file
+ * takes constant time regardless of its size, and the operating
+ * system may share the mapped pages between several processes that
+ * load the same file.
+ * <p>
+ * Operations that read this tensor (lookups, iteration, slicing,
+ * elementwise products, and summing out the rightmost dimensions)
+ * work directly on the mapped buffers. The remaining operations
+ * produce results at least as large as this tensor, and are
+ * delegated to an on-heap copy. All returned tensors are ordinary
+ * on-heap tensors.
+ * <p>
+ * The file format is a little-endian header (magic number, version,
+ * dimension numbers and sizes, and the number of entries), followed
+ * by the {@code long} keys and then the {@code double} values. Each
+ * of these arrays is mapped separately, so a tensor may contain up to
+ * {@code Integer.MAX_VALUE / 8} entries.
+ *
+ * @author jayantk
+ */
+public class MappedSparseTensor extends AbstractTensor {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int MAGIC_NUMBER = 0x4a4b5354;
+  private static final int FORMAT_VERSION = 1;
+  private static final int MAX_ENTRIES = Integer.MAX_VALUE / 8;
+
+  private transient final LongBuffer keyNums;
+  private transient final DoubleBuffer values;
+  private final int size;
+
+  /**
+   * Creates a tensor over the given buffers. Each buffer must contain
+   * exactly the tensor's entries, with {@code keyNums} in ascending
+   * order. Use {@link #map(File)} to create a tensor backed by a file.
+   *
+   * @param dimensionNums
+   * @param dimensionSizes
+   * @param keyNums
+   * @param values
+   */
+  public MappedSparseTensor(int[] dimensionNums, int[] dimensionSizes, LongBuffer keyNums,
+      DoubleBuffer values) {
+    super(dimensionNums, dimensionSizes);
+    Preconditions.checkArgument(Ordering.natural().isOrdered(Ints.asList(dimensionNums)));
+    Preconditions.checkArgument(keyNums.limit() == values.limit());
+
+    this.keyNums = keyNums;
+    this.values = values;
+    this.size = keyNums.limit();
+  }
+
+  /**
+   * Writes {@code tensor} to {@code file} in the format read by
+   * {@link #map(File)}.
+   *
+   * @param tensor
+   * @param file
+   */
+  public static void write(SparseTensor tensor, File file) {
+    Preconditions.checkArgument(tensor.size() <= MAX_ENTRIES,
+        "Tensor too large to map: %s entries", tensor.size());
+    int[] dimensionNums = tensor.getDimensionNumbers();
+    int[] dimensionSizes = tensor.getDimensionSizes();
+    long[] tensorKeyNums = tensor.getKeyNums();
+    double[] tensorValues = tensor.getValues();
+
+    try {
+      RandomAccessFile out = new RandomAccessFile(file, "rw");
+      try {
+        out.setLength(0);
+        FileChannel channel = out.getChannel();
+
+        ByteBuffer header = ByteBuffer.allocate(getHeaderSize(dimensionNums.length))
+            .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC_NUMBER);
+        header.putInt(FORMAT_VERSION);
+        header.putInt(dimensionNums.length);
+        for (int i = 0; i < dimensionNums.length; i++) {
+          header.putInt(dimensionNums[i]);
+        }
+        for (int i = 0; i < dimensionSizes.length; i++) {
+          header.putInt(dimensionSizes[i]);
+        }
+        header.putInt(tensorKeyNums.length);
+        header.rewind();
+        writeFully(channel, header);
+
+        ByteBuffer block = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < tensorKeyNums.length; i++) {
+          if (block.remaining() < 8) {
+            block.flip();
+            writeFully(channel, block);
+            block.clear();
+          }
+          block.putLong(tensorKeyNums[i]);
+        }
+        for (int i = 0; i < tensorValues.length; i++) {
+          if (block.remaining() < 8) {
+            block.flip();
+            writeFully(channel, block);
+            block.clear();
+          }
+          block.putDouble(tensorValues[i]);
+        }
+        block.flip();
+        writeFully(channel, block);
+      } finally {
+        out.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Memory-maps a tensor previously written by
+   * {@link #write(SparseTensor, File)}. Only the header is read; the
+   * keys and values are paged in on demand.
+   *
+   * @param file
+   * @return
+   */
+  public static MappedSparseTensor map(File file) {
+    try {
+      RandomAccessFile in = new RandomAccessFile(file, "r");
+      try {
+        FileChannel channel = in.getChannel();
+        ByteBuffer prefix = channel.map(FileChannel.MapMode.READ_ONLY, 0, 12)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        Preconditions.checkState(prefix.getInt() == MAGIC_NUMBER,
+            "%s is not a mapped tensor file", file);
+        int version = prefix.getInt();
+        Preconditions.checkState(version == FORMAT_VERSION,
+            "Unsupported mapped tensor version: %s", version);
+        int numDimensions = prefix.getInt();
+
+        int headerSize = getHeaderSize(numDimensions);
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerSize)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        header.position(12);
+        int[] dimensionNums = new int[numDimensions];
+        int[] dimensionSizes = new int[numDimensions];
+        for (int i = 0; i < numDimensions; i++) {
+          dimensionNums[i] = header.getInt();
+        }
+        for (int i = 0; i < numDimensions; i++) {
+          dimensionSizes[i] = header.getInt();
+        }
+        int numEntries = header.getInt();
+
+        long keyOffset = headerSize;
+        long valueOffset = keyOffset + (8L * numEntries);
+        Preconditions.checkState(channel.size() == valueOffset + (8L * numEntries),
+            "%s is truncated", file);
+
+        LongBuffer keyBuffer = channel.map(FileChannel.MapMode.READ_ONLY, keyOffset,
+            8L * numEntries).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        DoubleBuffer valueBuffer = channel.map(FileChannel.MapMode.READ_ONLY, valueOffset,
+            8L * numEntries).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        return new MappedSparseTensor(dimensionNums, dimensionSizes, keyBuffer, valueBuffer);
+      } finally {
+        // The mapping remains valid after the channel is closed.
+        in.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Gets a {@code TensorFactory} whose builders write each built
+   * tensor to a temporary file in {@code directory}, then map it. The
+   * temporary files are deleted when the JVM exits.
+   *
+   * @param directory
+   * @return
+   */
+  public static TensorFactory getFactory(final File directory) {
+    return new TensorFactory() {
+      @Override
+      public TensorBuilder getBuilder(int[] dimNums, int[] dimSizes) {
+        return new MappedSparseTensorBuilder(new SparseTensorBuilder(dimNums, dimSizes),
+            directory);
+      }
+    };
+  }
+
+  /**
+   * Same as {@link #getFactory(File)}, using the system's default
+   * temporary file directory.
+   *
+   * @return
+   */
+  public static TensorFactory getFactory() {
+    return getFactory(null);
+  }
+
+  private static int getHeaderSize(int numDimensions) {
+    // magic, version, numDimensions, dims, sizes, numEntries, rounded
+    // up so the key array is 8-byte aligned.
+    int size = 4 * (4 + (2 * numDimensions));
+    return (size + 7) & ~7;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Copies the contents of this tensor onto the Java heap.
+   *
+   * @return
+   */
+  public SparseTensor toSparseTensor() {
+    long[] keyNumsCopy = new long[size];
+    double[] valuesCopy = new double[size];
+    keyNums.duplicate().get(keyNumsCopy);
+    values.duplicate().get(valuesCopy);
+    return new SparseTensor(getDimensionNumbers(), getDimensionSizes(), keyNumsCopy, valuesCopy);
+  }
+
+  // ////////////////////////////////////////////////////////////////////
+  // Inherited from TensorBase
+  // ////////////////////////////////////////////////////////////////////
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public double getByIndex(int index) {
+    if (index == -1) {
+      return 0.0;
+    }
+    return values.get(index);
+  }
+
+  @Override
+  public double getLogByIndex(int index) {
+    return Math.log(getByIndex(index));
+  }
+
+  @Override
+  public long indexToKeyNum(int index) {
+    return keyNums.get(index);
+  }
+
+  @Override
+  public int keyNumToIndex(long keyNum) {
+    int possibleIndex = binarySearch(keyNum, 0, size);
+    return possibleIndex >= 0 ? possibleIndex : -1;
+  }
+
+  @Override
+  public int getNearestIndex(long keyNum) {
+    int index = binarySearch(keyNum, 0, size);
+    if (index < 0) {
+      index = (-1 * index) - 1;
+    }
+    return index;
+  }
+
+  /**
+   * Same contract as {@link Arrays#binarySearch(long[], int, int, long)},
+   * applied to the mapped keys.
+   */
+  private int binarySearch(long keyNum, int fromIndex, int toIndex) {
+    int low = fromIndex;
+    int high = toIndex - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midKeyNum = keyNums.get(mid);
+      if (midKeyNum < keyNum) {
+        low = mid + 1;
+      } else if (midKeyNum > keyNum) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The returned array is a copy of the mapped values.
+   */
+  @Override
+  public double[] getValues() {
+    double[] valuesCopy = new double[size];
+    values.duplicate().get(valuesCopy);
+    return valuesCopy;
+  }
+
+  @Override
+  public TensorHash toHash() {
+    return SparseTensorHash.fromTensor(toSparseTensor());
+  }
+
+  @Override
+  public Iterator<KeyValue> keyValueIterator() {
+    return new MappedKeyValueIterator(0, size);
+  }
+
+  @Override
+  public Iterator<KeyValue> keyValuePrefixIterator(int[] keyPrefix) {
+    if (keyPrefix.length == 0) {
+      return keyValueIterator();
+    }
+
+    long startKeyNum = dimKeyPrefixToKeyNum(keyPrefix);
+    long endKeyNum = startKeyNum + indexOffsets[keyPrefix.length - 1];
+    return new MappedKeyValueIterator(getNearestIndex(startKeyNum), getNearestIndex(endKeyNum));
+  }
+
+  @Override
+  public double getL2Norm() {
+    double sumSquared = 0.0;
+    for (int i = 0; i < size; i++) {
+      double value = values.get(i);
+      sumSquared += value * value;
+    }
+    return Math.sqrt(sumSquared);
+  }
+
+  @Override
+  public double getTrace() {
+    double sum = 0.0;
+    for (int i = 0; i < size; i++) {
+      sum += values.get(i);
+    }
+    return sum;
+  }
+
+  @Override
+  public long[] getLargestValues(int n) {
+    long[] heapKeys = new long[n + 1];
+    double[] heapValues = new double[n + 1];
+    int heapSize = 0;
+
+    for (int i = 0; i < size; i++) {
+      HeapUtils.offer(heapKeys, heapValues, heapSize, keyNums.get(i), values.get(i));
+      heapSize++;
+
+      if (heapSize > n) {
+        HeapUtils.removeMin(heapKeys, heapValues, heapSize);
+        heapSize--;
+      }
+    }
+
+    long[] largestKeyNums = new long[heapSize];
+    while (heapSize > 0) {
+      largestKeyNums[heapSize - 1] = heapKeys[0];
+      HeapUtils.removeMin(heapKeys, heapValues, heapSize);
+      heapSize--;
+    }
+    return largestKeyNums;
+  }
+
+  // /////////////////////////////////////////////////////////////////
+  // Inherited from Tensor
+  // /////////////////////////////////////////////////////////////////
+
+  @Override
+  public Tensor slice(int[] dimensionNumbers, int[] key) {
+    if (dimensionNumbers.length == 0) {
+      return this;
+    }
+
+    if (ArrayUtils.subarrayEquals(getDimensionNumbers(), dimensionNumbers, 0)) {
+      // Only the block of keys with the given prefix is copied onto
+      // the heap.
+      long minKeyNum = 0;
+      int numDimensions = dimensionNumbers.length;
+      for (int i = 0; i < numDimensions; i++) {
+        minKeyNum += indexOffsets[i] * key[i];
+      }
+      long maxKeyNum = minKeyNum + indexOffsets[numDimensions - 1];
+
+      int startIndex = getNearestIndex(minKeyNum);
+      int endIndex = getNearestIndex(maxKeyNum);
+      long[] newKeyNums = new long[endIndex - startIndex];
+      double[] newValues = new double[endIndex - startIndex];
+      for (int i = startIndex; i < endIndex; i++) {
+        newKeyNums[i - startIndex] = keyNums.get(i) - minKeyNum;
+        newValues[i - startIndex] = values.get(i);
+      }
+
+      int[] myDims = getDimensionNumbers();
+      int[] mySizes = getDimensionSizes();
+      return new SparseTensor(ArrayUtils.copyOfRange(myDims, numDimensions, myDims.length),
+          ArrayUtils.copyOfRange(mySizes, numDimensions, mySizes.length), newKeyNums, newValues);
+    }
+
+    int[] dimensionSizes = new int[dimensionNumbers.length];
+    for (int i = 0; i < dimensionNumbers.length; i++) {
+      int dimIndex = getDimensionIndex(dimensionNumbers[i]);
+      Preconditions.checkArgument(dimIndex >= 0);
+      dimensionSizes[i] = getDimensionSizes()[dimIndex];
+    }
+    SparseTensorBuilder builder = new SparseTensorBuilder(dimensionNumbers, dimensionSizes);
+    builder.put(key, 1.0);
+    return elementwiseProduct(builder.build()).sumOutDimensions(Ints.asList(dimensionNumbers));
+  }
+
+  @Override
+  public Tensor retainKeys(Tensor indicatorTensor) {
+    return elementwiseProduct(indicatorTensor);
+  }
+
+  @Override
+  public Tensor findKeysLargerThan(double thresholdValue) {
+    return toSparseTensor().findKeysLargerThan(thresholdValue);
+  }
+
+  @Override
+  public SparseTensor elementwiseProduct(Tensor other) {
+    int[] dimensionNums = getDimensionNumbers();
+    int[] dimensionSizes = getDimensionSizes();
+    int[] otherDimensions = other.getDimensionNumbers();
+    int[] otherSizes = other.getDimensionSizes();
+
+    // Check that dimensionNums contains a superset of otherDimensions
+    int myInd = 0, otherInd = 0;
+    while (myInd < dimensionNums.length && otherInd < otherDimensions.length) {
+      if (dimensionNums[myInd] < otherDimensions[otherInd]) {
+        myInd++;
+      } else if (dimensionNums[myInd] == otherDimensions[otherInd]) {
+        Preconditions.checkArgument(dimensionSizes[myInd] == otherSizes[otherInd],
+            "dimensionSizes[myInd]: %s\notherSizes[otherInd]: %s",
+            dimensionSizes[myInd], otherSizes[otherInd]);
+        myInd++;
+        otherInd++;
+      } else {
+        Preconditions.checkArgument(false, "Dimensions not a superset");
+      }
+    }
+
+    // Same case analysis as SparseTensor.elementwiseProduct.
+    for (int i = 0; i < otherDimensions.length; i++) {
+      if (otherDimensions[i] != dimensionNums[i]) {
+        return SparseTensor.elementwiseMultiplyNaive(this, other);
+      }
+    }
+
+    if (otherDimensions.length == dimensionNums.length) {
+      return elementwiseMultiplySparseDense(other);
+    } else {
+      return elementwiseMultiplyLeftAligned(other);
+    }
+  }
+
+  private SparseTensor elementwiseMultiplySparseDense(Tensor other) {
+    long[] resultKeyNums = new long[size];
+    double[] resultValues = new double[size];
+
+    int numFilled = 0;
+    for (int i = 0; i < size; i++) {
+      long curKeyNum = keyNums.get(i);
+      double value = values.get(i) * other.get(curKeyNum);
+      if (value != 0.0) {
+        resultKeyNums[numFilled] = curKeyNum;
+        resultValues[numFilled] = value;
+        numFilled++;
+      }
+    }
+
+    return SparseTensor.resizeIntoTable(getDimensionNumbers(), getDimensionSizes(),
+        resultKeyNums, resultValues, numFilled);
+  }
+
+  /**
+   * Port of {@code SparseTensor.elementwiseMultiplyLeftAligned} which
+   * reads the mapped buffers. The dimensions of {@code small} must be
+   * the leftmost dimensions of this tensor.
+   */
+  private SparseTensor elementwiseMultiplyLeftAligned(Tensor small) {
+    long[] resultKeyNums = new long[size];
+    double[] resultValues = new double[size];
+    int resultInd = 0;
+
+    long smallIndexMultiplier = 1;
+    for (int i = numDimensions() - 1; i >= small.numDimensions(); i--) {
+      smallIndexMultiplier *= ((long) getDimensionSizes()[i]);
+    }
+
+    int smallSize = small.size();
+    int smallInd = 0;
+    while (smallInd < smallSize && small.getByIndex(smallInd) == 0) {
+      smallInd++;
+    }
+
+    int bigInd = 0;
+    outerloop: while (bigInd < size && smallInd < smallSize) {
+      long bigKeyNum = keyNums.get(bigInd);
+      long bigKeyNumDividedByMultiplier = bigKeyNum / smallIndexMultiplier;
+      while (bigKeyNumDividedByMultiplier > small.indexToKeyNum(smallInd) ||
+          small.getByIndex(smallInd) == 0) {
+        smallInd++;
+        if (smallInd >= smallSize) {
+          break outerloop;
+        }
+      }
+      long smallKeyNum = small.indexToKeyNum(smallInd);
+
+      if (bigKeyNumDividedByMultiplier == smallKeyNum) {
+        resultKeyNums[resultInd] = bigKeyNum;
+        resultValues[resultInd] = values.get(bigInd) * small.getByIndex(smallInd);
+        resultInd++;
+        bigInd++;
+      } else {
+        // Skip to the block of keys beginning with smallKeyNum.
+        bigInd = binarySearch(smallKeyNum * smallIndexMultiplier, bigInd + 1, size);
+        if (bigInd < 0) {
+          bigInd = (-1 * bigInd) - 1;
+        }
+      }
+    }
+    return SparseTensor.resizeIntoTable(getDimensionNumbers(), getDimensionSizes(),
+        resultKeyNums, resultValues, resultInd);
+  }
+
+  @Override
+  public Tensor innerProduct(Tensor other) {
+    return elementwiseProduct(other).sumOutDimensions(Ints.asList(other.getDimensionNumbers()));
+  }
+
+  @Override
+  public Tensor matrixInnerProduct(Tensor other) {
+    return AbstractTensor.innerProduct(this, other, DenseTensorBuilder.getFactory());
+  }
+
+  @Override
+  public Tensor outerProduct(Tensor other) {
+    return toSparseTensor().outerProduct(other);
+  }
+
+  @Override
+  public Tensor elementwiseAddition(Tensor other) {
+    return toSparseTensor().elementwiseAddition(other);
+  }
+
+  @Override
+  public Tensor elementwiseAddition(double value) {
+    return toSparseTensor().elementwiseAddition(value);
+  }
+
+  @Override
+  public Tensor elementwiseMaximum(Tensor other) {
+    return toSparseTensor().elementwiseMaximum(other);
+  }
+
+  @Override
+  public Tensor elementwiseInverse() {
+    return toSparseTensor().elementwiseInverse();
+  }
+
+  @Override
+  public Tensor elementwiseSqrt() {
+    return toSparseTensor().elementwiseSqrt();
+  }
+
+  @Override
+  public Tensor elementwiseLog() {
+    return toSparseTensor().elementwiseLog();
+  }
+
+  @Override
+  public Tensor elementwiseLogSparse() {
+    return toSparseTensor().elementwiseLogSparse();
+  }
+
+  @Override
+  public Tensor elementwiseExp() {
+    return toSparseTensor().elementwiseExp();
+  }
+
+  @Override
+  public Tensor elementwiseExpSparse() {
+    return toSparseTensor().elementwiseExpSparse();
+  }
+
+  @Override
+  public Tensor elementwiseTanh() {
+    return toSparseTensor().elementwiseTanh();
+  }
+
+  @Override
+  public Tensor elementwiseAbs() {
+    return toSparseTensor().elementwiseAbs();
+  }
+
+  @Override
+  public Tensor elementwiseLaplaceSigmoid(double smoothness) {
+    return toSparseTensor().elementwiseLaplaceSigmoid(smoothness);
+  }
+
+  @Override
+  public Tensor softThreshold(double threshold) {
+    return toSparseTensor().softThreshold(threshold);
+  }
+
+  @Override
+  public Tensor getEntriesLargerThan(double threshold) {
+    return toSparseTensor().getEntriesLargerThan(threshold);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * If {@code dimensionsToEliminate} are the rightmost dimensions of
+   * this tensor, the sum is computed in a single pass over the mapped
+   * buffers. Otherwise, this tensor is copied onto the heap.
+   */
+  @Override
+  public Tensor sumOutDimensions(Collection<Integer> dimensionsToEliminate) {
+    int[] dimensionNums = getDimensionNumbers();
+    int numKept = 0;
+    while (numKept < dimensionNums.length && !dimensionsToEliminate.contains(dimensionNums[numKept])) {
+      numKept++;
+    }
+    for (int i = numKept; i < dimensionNums.length; i++) {
+      if (!dimensionsToEliminate.contains(dimensionNums[i])) {
+        return toSparseTensor().sumOutDimensions(dimensionsToEliminate);
+      }
+    }
+
+    if (numKept == dimensionNums.length) {
+      return this;
+    } else if (numKept == 0) {
+      return SparseTensor.getScalarConstant(getTrace());
+    }
+
+    long keyNumDenominator = indexOffsets[numKept - 1];
+    long[] resultKeyNums = new long[size];
+    double[] resultValues = new double[size];
+    int resultInd = 0;
+    for (int i = 0; i < size; i++) {
+      long resultKeyNum = keyNums.get(i) / keyNumDenominator;
+      if (resultInd > 0 && resultKeyNums[resultInd - 1] == resultKeyNum) {
+        resultValues[resultInd - 1] += values.get(i);
+      } else {
+        if (resultInd > 0 && resultValues[resultInd - 1] == 0.0) {
+          // Make sure the result tensor contains no zero-valued
+          // entries.
+          resultInd--;
+        }
+        resultKeyNums[resultInd] = resultKeyNum;
+        resultValues[resultInd] = values.get(i);
+        resultInd++;
+      }
+    }
+    if (resultInd > 0 && resultValues[resultInd - 1] == 0.0) {
+      resultInd--;
+    }
+
+    return SparseTensor.resizeIntoTable(ArrayUtils.copyOf(dimensionNums, numKept),
+        ArrayUtils.copyOf(getDimensionSizes(), numKept), resultKeyNums, resultValues, resultInd);
+  }
+
+  @Override
+  public Tensor maxOutDimensions(Collection<Integer> dimensionsToEliminate) {
+    return toSparseTensor().maxOutDimensions(dimensionsToEliminate);
+  }
+
+  @Override
+  public Tensor maxOutDimensions(Collection<Integer> dimensionsToEliminate,
+      Backpointers backpointers) {
+    return toSparseTensor().maxOutDimensions(dimensionsToEliminate, backpointers);
+  }
+
+  @Override
+  public Tensor relabelDimensions(int[] newDimensions) {
+    Preconditions.checkArgument(newDimensions.length == numDimensions());
+    if (Ordering.natural().isOrdered(Ints.asList(newDimensions))) {
+      // The key order is unchanged, so the mapped buffers can be
+      // shared.
+      return new MappedSparseTensor(newDimensions, getDimensionSizes(), keyNums.duplicate(),
+          values.duplicate());
+    }
+    return toSparseTensor().relabelDimensions(newDimensions);
+  }
+
+  @Override
+  public Tensor relabelDimensions(Map<Integer, Integer> relabeling) {
+    int[] newDimensions = new int[numDimensions()];
+    int[] dimensionNums = getDimensionNumbers();
+    for (int i = 0; i < dimensionNums.length; i++) {
+      Preconditions.checkArgument(relabeling.containsKey(dimensionNums[i]),
+          "Dimension %s not in relabeling %s", dimensionNums[i], relabeling);
+      newDimensions[i] = relabeling.get(dimensionNums[i]);
+    }
+    return relabelDimensions(newDimensions);
+  }
+
+  @Override
+  public Tensor replaceValues(double[] newValues) {
+    Preconditions.checkArgument(newValues.length == size);
+    long[] keyNumsCopy = new long[size];
+    keyNums.duplicate().get(keyNumsCopy);
+    return new SparseTensor(getDimensionNumbers(), getDimensionSizes(), keyNumsCopy, newValues);
+  }
+
+  /**
+   * Mapped buffers cannot be serialized, so this tensor is serialized
+   * as an equivalent {@code SparseTensor}.
+   *
+   * @return
+   */
+  private Object writeReplace() {
+    return toSparseTensor();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<");
+    for (int i = 0; i < size; i++) {
+      sb.append(Arrays.toString(keyNumToDimKey(keyNums.get(i))));
+      sb.append(" : ");
+      sb.append(values.get(i));
+      if (i != size - 1) {
+        sb.append(", ");
+      }
+    }
+    sb.append(">");
+    return sb.toString();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o instanceof MappedSparseTensor) {
+      return toSparseTensor().equals(((MappedSparseTensor) o).toSparseTensor());
+    } else if (o instanceof SparseTensor) {
+      return toSparseTensor().equals(o);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    // Computes the same hash code as SparseTensor, without copying
+    // the mapped buffers onto the heap.
+    int keyHash = 1;
+    int valueHash = 1;
+    for (int i = 0; i < size; i++) {
+      long keyNum = keyNums.get(i);
+      keyHash = 31 * keyHash + (int) (keyNum ^ (keyNum >>> 32));
+      long valueBits = Double.doubleToLongBits(values.get(i));
+      valueHash = 31 * valueHash + (int) (valueBits ^ (valueBits >>> 32));
+    }
+
+    int result = Arrays.hashCode(getDimensionNumbers());
+    result = 31 * result + Arrays.hashCode(getDimensionSizes());
+    result = 31 * result + keyHash;
+    result = 31 * result + valueHash;
+    return result;
+  }
+
+  /**
+   * Iterates over the keys and values stored in the mapped buffers
+   * between two indexes.
+   */
+  private class MappedKeyValueIterator implements Iterator<KeyValue> {
+    private int curIndex;
+    private final int finalIndex;
+    private final KeyValue keyValue;
+
+    public MappedKeyValueIterator(int initialIndex, int finalIndex) {
+      this.curIndex = initialIndex;
+      this.finalIndex = finalIndex;
+      this.keyValue = new KeyValue(new int[numDimensions()], 0.0);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return curIndex < finalIndex;
+    }
+
+    @Override
+    public KeyValue next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      keyNumToDimKey(keyNums.get(curIndex), keyValue.getKey());
+      keyValue.setValue(values.get(curIndex));
+      curIndex++;
+      return keyValue;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * A builder which accumulates values in a {@code SparseTensorBuilder},
+   * then writes the built tensor to a temporary file and maps it.
+   */
+  private static class MappedSparseTensorBuilder extends AbstractTensorBase
+      implements TensorBuilder {
+    private static final long serialVersionUID = 1L;
+
+    private final SparseTensorBuilder builder;
+    private final File directory;
+
+    public MappedSparseTensorBuilder(SparseTensorBuilder builder, File directory) {
+      super(builder.getDimensionNumbers(), builder.getDimensionSizes());
+      this.builder = Preconditions.checkNotNull(builder);
+      this.directory = directory;
+    }
+
+    @Override
+    public int size() {
+      return builder.size();
+    }
+
+    @Override
+    public double getByIndex(int index) {
+      return builder.getByIndex(index);
+    }
+
+    @Override
+    public double getLogByIndex(int index) {
+      return builder.getLogByIndex(index);
+    }
+
+    @Override
+    public int keyNumToIndex(long keyNum) {
+      return builder.keyNumToIndex(keyNum);
+    }
+
+    @Override
+    public long indexToKeyNum(int index) {
+      return builder.indexToKeyNum(index);
+    }
+
+    @Override
+    public Iterator<KeyValue> keyValueIterator() {
+      return builder.keyValueIterator();
+    }
+
+    @Override
+    public Iterator<KeyValue> keyValuePrefixIterator(int[] keyPrefix) {
+      return builder.keyValuePrefixIterator(keyPrefix);
+    }
+
+    @Override
+    public double getL2Norm() {
+      return builder.getL2Norm();
+    }
+
+    @Override
+    public double getTrace() {
+      return builder.getTrace();
+    }
+
+    @Override
+    public long[] getLargestValues(int n) {
+      return builder.getLargestValues(n);
+    }
+
+    @Override
+    public void put(int[] key, double value) {
+      builder.put(key, value);
+    }
+
+    @Override
+    public void putByKeyNum(long keyNum, double value) {
+      builder.putByKeyNum(keyNum, value);
+    }
+
+    @Override
+    public void increment(TensorBase other) {
+      builder.increment(other);
+    }
+
+    @Override
+    public void increment(double amount) {
+      builder.increment(amount);
+    }
+
+    @Override
+    public void incrementWithMultiplier(TensorBase other, double multiplier) {
+      builder.incrementWithMultiplier(other, multiplier);
+    }
+
+    @Override
+    public void incrementOuterProductWithMultiplier(Tensor leftTensor, Tensor rightTensor,
+        double multiplier) {
+      builder.incrementOuterProductWithMultiplier(leftTensor, rightTensor, multiplier);
+    }
+
+    @Override
+    public void incrementInnerProductWithMultiplier(Tensor leftTensor, Tensor rightTensor,
+        double multiplier) {
+      builder.incrementInnerProductWithMultiplier(leftTensor, rightTensor, multiplier);
+    }
+
+    @Override
+    public void incrementSquare(TensorBase other, double multiplier) {
+      builder.incrementSquare(other, multiplier);
+    }
+
+    @Override
+    public void incrementAdagrad(TensorBase other, TensorBase squareTensor, double multiplier) {
+      builder.incrementAdagrad(other, squareTensor, multiplier);
+    }
+
+    @Override
+    public void multiplyInverseAdagrad(TensorBase squareTensor, double constant,
+        double multiplier) {
+      builder.multiplyInverseAdagrad(squareTensor, constant, multiplier);
+    }
+
+    @Override
+    public void incrementSquareAdagrad(TensorBase gradient, TensorBase parameters,
+        double multiplier) {
+      builder.incrementSquareAdagrad(gradient, parameters, multiplier);
+    }
+
+    @Override
+    public void incrementEntry(double amount, int... key) {
+      builder.incrementEntry(amount, key);
+    }
+
+    @Override
+    public void incrementEntryByKeyNum(double amount, long keyNum) {
+      builder.incrementEntryByKeyNum(amount, keyNum);
+    }
+
+    @Override
+    public void multiply(TensorBase other) {
+      builder.multiply(other);
+    }
+
+    @Override
+    public void multiply(double amount) {
+      builder.multiply(amount);
+    }
+
+    @Override
+    public void multiplyEntry(double amount, int... key) {
+      builder.multiplyEntry(amount, key);
+    }
+
+    @Override
+    public void multiplyEntryByKeyNum(double amount, long keyNum) {
+      builder.multiplyEntryByKeyNum(amount, keyNum);
+    }
+
+    @Override
+    public void softThreshold(double threshold) {
+      builder.softThreshold(threshold);
+    }
+
+    @Override
+    public void findEntriesLargerThan(double threshold) {
+      builder.findEntriesLargerThan(threshold);
+    }
+
+    @Override
+    public void maximum(TensorBase other) {
+      builder.maximum(other);
+    }
+
+    @Override
+    public double innerProduct(TensorBase other) {
+      return builder.innerProduct(other);
+    }
+
+    @Override
+    public void exp() {
+      builder.exp();
+    }
+
+    @Override
+    public MappedSparseTensor build() {
+      try {
+        File file = File.createTempFile("tensor", ".bin", directory);
+        file.deleteOnExit();
+        write(builder.build(), file);
+        return map(file);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @Override
+    public MappedSparseTensor buildNoCopy() {
+      return build();
+    }
+
+    @Override
+    public MappedSparseTensorBuilder getCopy() {
+      return new MappedSparseTensorBuilder(builder.getCopy(), directory);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.jayantkrish.jklol.tensor;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A read-only tensor that stores each value as an 8-bit integer. A
+ * value is decoded by multiplying its integer by a single scale
+ * factor for the whole tensor, which is chosen so that the largest
+ * absolute value maps to 127. Quantization therefore introduces an
+ * absolute error of up to half the scale factor in each value. The
+ * tensor may be dense or sparse; see {@link CompactTensor}.
+ * <p>
+ * Quantization works best for values with a similar magnitude, such
+ * as the log weights of a log-linear model.
+ * {@link CompactTensor#copyOf(Tensor, TensorPrecision)} quantizes log
+ * space tensors in log space for this reason. Values must be finite,
+ * so log space tensors with zero weights cannot be quantized.
+ *
+ * @author jayantk
+ */
+public class QuantizedTensor extends CompactTensor {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int MAX_QUANTIZED_VALUE = 127;
+
+  private final byte[] values;
+  private final double scale;
+
+  /**
+   * Creates a tensor whose values are {@code values[i] * scale}. If
+   * {@code keyNums} is {@code null}, the tensor is dense; otherwise,
+   * {@code keyNums} must be sorted.
+   *
+   * @param dimensionNums
+   * @param dimensionSizes
+   * @param keyNums
+   * @param values
+   * @param scale
+   */
+  public QuantizedTensor(int[] dimensionNums, int[] dimensionSizes, long[] keyNums,
+      byte[] values, double scale) {
+    super(dimensionNums, dimensionSizes, keyNums);
+    Preconditions.checkArgument(values.length == size());
+    this.values = values;
+    this.scale = scale;
+  }
+
+  /**
+   * Quantizes {@code values}, which must be finite. If
+   * {@code keyNums} is {@code null}, the tensor is dense and
+   * {@code values} contains a value for every key.
+   *
+   * @param dimensionNums
+   * @param dimensionSizes
+   * @param keyNums
+   * @param values
+   * @return
+   */
+  public static QuantizedTensor fromValues(int[] dimensionNums, int[] dimensionSizes,
+      long[] keyNums, double[] values) {
+    double maxAbsValue = 0.0;
+    for (int i = 0; i < values.length; i++) {
+      // A single infinite or NaN value would make every decoded value NaN.
+      Preconditions.checkArgument(!Double.isInfinite(values[i]) && !Double.isNaN(values[i]),
+          "Cannot quantize non-finite value %s at index %s", values[i], i);
+      maxAbsValue = Math.max(maxAbsValue, Math.abs(values[i]));
+    }
+    double scale = maxAbsValue > 0.0 ? maxAbsValue / MAX_QUANTIZED_VALUE : 1.0;
+
+    byte[] quantizedValues = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      quantizedValues[i] = (byte) Math.round(values[i] / scale);
+    }
+    return new QuantizedTensor(dimensionNums, dimensionSizes, keyNums, quantizedValues, scale);
+  }
+
+  /**
+   * Gets the scale factor that converts the stored integers to
+   * values. Each value of this tensor is an integer multiple of the
+   * scale factor.
+   *
+   * @return
+   */
+  public double getScale() {
+    return scale;
+  }
+
+  @Override
+  public double getByIndex(int index) {
+    if (index == -1) {
+      return 0.0;
+    }
+    return values[index] * scale;
+  }
+}
@@ -17,6 +17,15 @@ public class SparseLogSpaceTensorAdapter extends AbstractTensor {
     super(logWeights.getDimensionNumbers(), logWeights.getDimensionSizes());
     this.logWeights = Preconditions.checkNotNull(logWeights);
   }
+
+  /**
+   * Gets the logarithms of the weights in this tensor.
+   *
+   * @return
+   */
+  public Tensor getLogWeights() {
+    return logWeights;
+  }
   
   @Override
   public Tensor slice(int[] dimensionNumbers, int[] keys) {
@@ -13,6 +13,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
 import com.jayantkrish.jklol.util.ArrayUtils;
 import com.jayantkrish.jklol.util.HeapUtils;
 
@@ -25,6 +26,10 @@ public class SparseTensor extends AbstractTensor implements Serializable {
 
   private static final long serialVersionUID = 4502341777401127137L;
 
+  // productSumOut accumulates into a dense array when the result has
+  // at most this many keys (or at most as many keys as this tensor).
+  private static final int MAX_DENSE_ACCUMULATOR_SIZE = 1 << 16;
+
   protected final long[] keyNums;
   protected final double[] values;
 
@@ -129,18 +134,44 @@ public class SparseTensor extends AbstractTensor implements Serializable {
 
   @Override
   public double getL2Norm() {
+    final int[] chunks = TensorParallelism.getChunkBoundaries(size());
+    List<Double> sums = TensorParallelism.runChunks(chunks.length - 1,
+        new TensorParallelism.ChunkTask<Double>() {
+      @Override
+      public Double run(int chunk) {
+        double sumSquared = 0.0;
+        for (int i = chunks[chunk]; i < chunks[chunk + 1]; i++) {
+          sumSquared += values[i] * values[i];
+        }
+        return sumSquared;
+      }
+    });
+
     double sumSquared = 0.0;
-    for (int i = 0; i < size(); i++) {
-      sumSquared += values[i] * values[i];
+    for (double sum : sums) {
+      sumSquared += sum;
     }
     return Math.sqrt(sumSquared);
   }
 
   @Override
   public double getTrace() {
+    final int[] chunks = TensorParallelism.getChunkBoundaries(size());
+    List<Double> sums = TensorParallelism.runChunks(chunks.length - 1,
+        new TensorParallelism.ChunkTask<Double>() {
+      @Override
+      public Double run(int chunk) {
+        double sum = 0.0;
+        for (int i = chunks[chunk]; i < chunks[chunk + 1]; i++) {
+          sum += values[i];
+        }
+        return sum;
+      }
+    });
+
     double sum = 0.0;
-    for (int i = 0; i < size(); i++) {
-      sum += values[i];
+    for (double chunkSum : sums) {
+      sum += chunkSum;
     }
     return sum;
   }
@@ -278,16 +309,39 @@ public class SparseTensor extends AbstractTensor implements Serializable {
     }
   }
 
-  private static final SparseTensor elementwiseMultiplySparseDense(SparseTensor big, Tensor small) {
+  private static final SparseTensor elementwiseMultiplySparseDense(final SparseTensor big,
+      final Tensor small) {
     Preconditions.checkArgument(Arrays.equals(big.getDimensionNumbers(), small.getDimensionNumbers()));
-    long[] resultKeyNums = new long[big.size()];
-    double[] resultValues = new double[big.size()];
+    final long[] resultKeyNums = new long[big.size()];
+    final double[] resultValues = new double[big.size()];
+
+    final int[] chunks = TensorParallelism.getChunkBoundaries(big.size());
+    List<Integer> counts = TensorParallelism.runChunks(chunks.length - 1,
+        new TensorParallelism.ChunkTask<Integer>() {
+      @Override
+      public Integer run(int chunk) {
+        return elementwiseMultiplySparseDense(big, small, chunks[chunk], chunks[chunk + 1],
+            resultKeyNums, resultValues);
+      }
+    });
+    int numFilled = TensorParallelism.compact(resultKeyNums, resultValues, null, chunks, counts);
+
+    return resizeIntoTable(big.getDimensionNumbers(), big.getDimensionSizes(),
+        resultKeyNums, resultValues, numFilled);
+  }
 
-    int bigSize = big.size();
-    int numFilled = 0;
+  /**
+   * Multiplies the entries of {@code big} with indexes in
+   * {@code [start, end)} by their values in {@code small}, writing
+   * the nonzero products to the result arrays starting at index
+   * {@code start}. Returns the number of products written.
+   */
+  private static final int elementwiseMultiplySparseDense(SparseTensor big, Tensor small,
+      int start, int end, long[] resultKeyNums, double[] resultValues) {
+    int numFilled = start;
     long[] bigKeyNums = big.keyNums;
     double[] bigValues = big.values;
-    for (int i = 0; i < bigSize; i++) {
+    for (int i = start; i < end; i++) {
       long curKeyNum = bigKeyNums[i];
       double value = bigValues[i] * small.get(curKeyNum);
       if (value != 0.0) {
@@ -296,9 +350,7 @@ public class SparseTensor extends AbstractTensor implements Serializable {
         numFilled++;
       }
     }
-
-    return resizeIntoTable(big.getDimensionNumbers(), big.getDimensionSizes(),
-        resultKeyNums, resultValues, numFilled);
+    return numFilled - start;
   }
 
   /**
@@ -312,37 +364,68 @@ public class SparseTensor extends AbstractTensor implements Serializable {
    * @param small
    * @return
    */
-  protected static final SparseTensor elementwiseMultiplyLeftAligned(SparseTensor big, Tensor small) {
+  protected static final SparseTensor elementwiseMultiplyLeftAligned(final SparseTensor big,
+      final Tensor small) {
     // The result tensor is no larger than the larger (superset of
     // dimensions) tensor.
-    long[] resultKeyInts = new long[big.size()];
-    double[] resultValues = new double[big.size()];
-    // How many result values have been filled so far.
-    int resultInd = 0;
+    final long[] resultKeyInts = new long[big.size()];
+    final double[] resultValues = new double[big.size()];
 
-    // Current positions in each tensor's key/value array.
-    int bigInd = 0;
-    int smallInd = advanceToNonzero(-1, small);
-
-    long smallIndexMultiplier = 1;
+    long multiplier = 1;
     for (int i = big.numDimensions() - 1; i >= small.numDimensions(); i--) {
-      smallIndexMultiplier *= ((long) big.getDimensionSizes()[i]);
+      multiplier *= ((long) big.getDimensionSizes()[i]);
     }
+    final long smallIndexMultiplier = multiplier;
+
+    final int[] chunks = TensorParallelism.getChunkBoundaries(big.size());
+    List<Integer> counts = TensorParallelism.runChunks(chunks.length - 1,
+        new TensorParallelism.ChunkTask<Integer>() {
+      @Override
+      public Integer run(int chunk) {
+        return elementwiseMultiplyLeftAligned(big, small, smallIndexMultiplier, chunks[chunk],
+            chunks[chunk + 1], resultKeyInts, resultValues);
+      }
+    });
+    int resultInd = TensorParallelism.compact(resultKeyInts, resultValues, null, chunks, counts);
+
+    return resizeIntoTable(big.getDimensionNumbers(), big.getDimensionSizes(),
+        resultKeyInts, resultValues, resultInd);
+  }
+
+  /**
+   * Computes the products of the entries of {@code big} with indexes
+   * in {@code [bigStart, bigEnd)} for
+   * {@link #elementwiseMultiplyLeftAligned(SparseTensor, Tensor)},
+   * writing them to the result arrays starting at index
+   * {@code bigStart}. Returns the number of products written.
+   */
+  private static final int elementwiseMultiplyLeftAligned(SparseTensor big, Tensor small,
+      long smallIndexMultiplier, int bigStart, int bigEnd, long[] resultKeyInts,
+      double[] resultValues) {
+    // How many result values have been filled so far.
+    int resultInd = bigStart;
+    if (bigStart == bigEnd) {
+      return 0;
+    }
+
+    // Current positions in each tensor's key/value array.
+    int bigInd = bigStart;
+    int smallInd = advanceToNonzero(
+        small.getNearestIndex(big.keyNums[bigStart] / smallIndexMultiplier) - 1, small);
 
     // Variables for the binary search
     int startInd, endInd, cmpInd;
     long targetKeyNum;
 
     // Caches to avoid recomputing method values.
-    int bigSize = big.size();
     int smallSize = small.size();
     long bigKeyNum, smallKeyNum, bigKeyNumDividedByMultiplier;
     double[] bigValues = big.values;
     long[] bigKeyNums = big.keyNums;
-    outerloop: for (bigInd = 0; bigInd < bigSize && smallInd < smallSize;) {
+    outerloop: for (bigInd = bigStart; bigInd < bigEnd && smallInd < smallSize;) {
 
       // Advance smallInd until other's outcome is >= our outcome.
-      bigKeyNum = big.indexToKeyNum(bigInd);
+      bigKeyNum = bigKeyNums[bigInd];
       bigKeyNumDividedByMultiplier = bigKeyNum / smallIndexMultiplier;
       while (bigKeyNumDividedByMultiplier > small.indexToKeyNum(smallInd) ||
           small.getByIndex(smallInd) == 0) {
@@ -363,9 +446,9 @@ public class SparseTensor extends AbstractTensor implements Serializable {
 
         // Find a block of outcomes with the correct starting
         // coordinates. This performs a binary search between the
-        // starting value of bigInd and the end of the array.
+        // starting value of bigInd and the end of the range.
         startInd = bigInd + 1;
-        endInd = bigSize;
+        endInd = bigEnd;
         targetKeyNum = smallKeyNum * smallIndexMultiplier;
         while (startInd != endInd) {
           cmpInd = (startInd + endInd) / 2;
@@ -378,8 +461,7 @@ public class SparseTensor extends AbstractTensor implements Serializable {
         bigInd = startInd;
       }
     }
-    return resizeIntoTable(big.getDimensionNumbers(), big.getDimensionSizes(),
-        resultKeyInts, resultValues, resultInd);
+    return resultInd - bigStart;
   }
 
   private static final int advanceToNonzero(int startInd, Tensor other) {
@@ -399,73 +481,41 @@ public class SparseTensor extends AbstractTensor implements Serializable {
    * @param small
    * @return
    */
-  protected static final SparseTensor elementwiseMultiplyNaive(SparseTensor big, Tensor small) {
+  protected static final SparseTensor elementwiseMultiplyNaive(final Tensor big,
+      final Tensor small) {
     // Compute a mapping from keyNums of big to keyNums of small.
-    int[] bigDimensions = big.getDimensionNumbers();
-    int[] smallDimensions = small.getDimensionNumbers();
-    int[] bigDimensionSizes = big.getDimensionSizes();
-    int smallDimensionInd = smallDimensions.length - 1;
-    int bigDimensionInd = bigDimensions.length - 1;
-    // divisors, modulos and multipliers store the mapping from
-    // bigKeyNum to
-    // smallKeyNum.
-    // They contain a series of division, modulo and multiplication
-    // operations
-    // whose results are added to get a smallKeyNum.
-    long[] divisors = new long[smallDimensions.length];
-    long[] modulos = new long[smallDimensions.length];
-    long[] multipliers = new long[smallDimensions.length];
-    int divisorInd = 0;
-    long divisor = 1;
-    long multiplier = 1;
-    long modulo = 1;
-    while (bigDimensionInd >= 0 && smallDimensionInd >= 0) {
-      while (bigDimensions[bigDimensionInd] != smallDimensions[smallDimensionInd]) {
-        divisor *= bigDimensionSizes[bigDimensionInd];
-        bigDimensionInd--;
-      }
-      divisors[divisorInd] = divisor;
-
-      modulo = 1;
-      while (bigDimensionInd >= 0 && smallDimensionInd >= 0 &&
-          bigDimensions[bigDimensionInd] == smallDimensions[smallDimensionInd]) {
-        divisor *= bigDimensionSizes[bigDimensionInd];
-        modulo *= bigDimensionSizes[bigDimensionInd];
-        bigDimensionInd--;
-        smallDimensionInd--;
-      }
-      modulos[divisorInd] = modulo;
-      multipliers[divisorInd] = multiplier;
-      divisorInd++;
-      multiplier *= modulo;
-    }
+    final KeyNumProjection projection = new KeyNumProjection(big.getDimensionNumbers(),
+        big.getDimensionSizes(), small.getDimensionNumbers());
 
     // The result tensor is no larger than the larger (superset of
-    // dimensions)
-    // tensor.
-    long[] resultKeyInts = new long[big.size()];
-    double[] resultValues = new double[big.size()];
-    // How many result values have been filled so far.
-    int resultInd = 0;
-
-    long bigKeyNum, smallKeyNum;
-    double value;
-    int numElements = big.size();
-    for (int bigInd = 0; bigInd < numElements; bigInd++) {
-      bigKeyNum = big.indexToKeyNum(bigInd);
-      // map bigKeyNum to a smallKeyNum
-      smallKeyNum = 0;
-      for (int i = 0; i < divisorInd; i++) {
-        smallKeyNum += ((bigKeyNum / divisors[i]) % modulos[i]) * multipliers[i];
-      }
-      value = small.get(smallKeyNum);
-
-      if (value != 0.0) {
-        resultKeyInts[resultInd] = bigKeyNum;
-        resultValues[resultInd] = value * big.getByIndex(bigInd);
-        resultInd++;
+    // dimensions) tensor.
+    final long[] resultKeyInts = new long[big.size()];
+    final double[] resultValues = new double[big.size()];
+
+    final int[] chunks = TensorParallelism.getChunkBoundaries(big.size());
+    List<Integer> counts = TensorParallelism.runChunks(chunks.length - 1,
+        new TensorParallelism.ChunkTask<Integer>() {
+      @Override
+      public Integer run(int chunk) {
+        // How many result values have been filled so far.
+        int resultInd = chunks[chunk];
+        long bigKeyNum, smallKeyNum;
+        double value;
+        for (int bigInd = chunks[chunk]; bigInd < chunks[chunk + 1]; bigInd++) {
+          bigKeyNum = big.indexToKeyNum(bigInd);
+          smallKeyNum = projection.project(bigKeyNum);
+          value = small.get(smallKeyNum);
+
+          if (value != 0.0) {
+            resultKeyInts[resultInd] = bigKeyNum;
+            resultValues[resultInd] = value * big.getByIndex(bigInd);
+            resultInd++;
+          }
+        }
+        return resultInd - chunks[chunk];
       }
-    }
+    });
+    int resultInd = TensorParallelism.compact(resultKeyInts, resultValues, null, chunks, counts);
 
     return resizeIntoTable(big.getDimensionNumbers(), big.getDimensionSizes(), resultKeyInts,
         resultValues, resultInd);
@@ -473,8 +523,7 @@ public class SparseTensor extends AbstractTensor implements Serializable {
 
   @Override
   public Tensor innerProduct(Tensor other) {
-    return elementwiseProduct(other)
-        .sumOutDimensions(Ints.asList(other.getDimensionNumbers()));
+    return productSumOut(other, other.getDimensionNumbers());
     /*
     int[] otherDims = other.getDimensionNumbers();
     
@@ -632,24 +681,60 @@ public class SparseTensor extends AbstractTensor implements Serializable {
    * the values of equivalent outcomes; otherwise, it takes the
    * maximum of the two outcomes.
    */
-  private final SparseTensor doElementwise(Tensor other, boolean useSum) {
+  private final SparseTensor doElementwise(final Tensor other, final boolean useSum) {
     // TODO(jayantk): This method could be generalized by taking a
     // Function
     // instead of a boolean flag. However, it's unclear how this
     // change
     // affects performance.
     Preconditions.checkArgument(Arrays.equals(getDimensionNumbers(), other.getDimensionNumbers()));
-    long[] resultKeyInts = new long[size() + other.size()];
-    double[] resultValues = new double[size() + other.size()];
+    final long[] resultKeyInts = new long[size() + other.size()];
+    final double[] resultValues = new double[size() + other.size()];
+
+    // Each chunk of this is merged with the keys of other in the same
+    // key range. Chunks write into disjoint regions of the result,
+    // starting at the sum of their start indexes in both tensors.
+    final int[] myChunks = TensorParallelism.getChunkBoundaries(size());
+    int numChunks = myChunks.length - 1;
+    final int[] otherChunks = new int[numChunks + 1];
+    final int[] resultOffsets = new int[numChunks + 1];
+    for (int i = 1; i < numChunks; i++) {
+      otherChunks[i] = other.getNearestIndex(keyNums[myChunks[i]]);
+      resultOffsets[i] = myChunks[i] + otherChunks[i];
+    }
+    otherChunks[numChunks] = other.size();
+    resultOffsets[numChunks] = size() + other.size();
+
+    List<Integer> counts = TensorParallelism.runChunks(numChunks,
+        new TensorParallelism.ChunkTask<Integer>() {
+      @Override
+      public Integer run(int chunk) {
+        return doElementwise(other, useSum, myChunks[chunk], myChunks[chunk + 1],
+            otherChunks[chunk], otherChunks[chunk + 1], resultKeyInts, resultValues,
+            resultOffsets[chunk]);
+      }
+    });
+    int resultInd = TensorParallelism.compact(resultKeyInts, resultValues, null, resultOffsets,
+        counts);
 
-    int resultInd = 0;
-    int myInd = 0;
-    int otherInd = 0;
+    return resizeIntoTable(getDimensionNumbers(), getDimensionSizes(), resultKeyInts, resultValues, resultInd);
+  }
+
+  /**
+   * Merges the entries of this with indexes in {@code [myStart, myEnd)}
+   * with the entries of {@code other} with indexes in
+   * {@code [otherStart, otherEnd)}, writing the result starting at
+   * {@code resultStart}. Returns the number of entries written.
+   */
+  private final int doElementwise(Tensor other, boolean useSum, int myStart, int myEnd,
+      int otherStart, int otherEnd, long[] resultKeyInts, double[] resultValues,
+      int resultStart) {
+    int resultInd = resultStart;
+    int myInd = myStart;
+    int otherInd = otherStart;
 
-    int mySize = size();
-    int otherSize = other.size();
     long otherKeyNum = 1;
-    while (myInd < mySize && otherInd < otherSize) {
+    while (myInd < myEnd && otherInd < otherEnd) {
       otherKeyNum = other.indexToKeyNum(otherInd);
       if (keyNums[myInd] < otherKeyNum) {
         resultKeyInts[resultInd] = keyNums[myInd];
@@ -680,19 +765,19 @@ public class SparseTensor extends AbstractTensor implements Serializable {
     }
 
     // One of the two lists might not be done yet. Finish it off.
-    for (; myInd < size(); myInd++) {
+    for (; myInd < myEnd; myInd++) {
       resultKeyInts[resultInd] = keyNums[myInd];
       resultValues[resultInd] = values[myInd];
       resultInd++;
     }
 
-    for (; otherInd < other.size(); otherInd++) {
+    for (; otherInd < otherEnd; otherInd++) {
       resultKeyInts[resultInd] = other.indexToKeyNum(otherInd);
       resultValues[resultInd] = other.getByIndex(otherInd);
       resultInd++;
     }
 
-    return resizeIntoTable(getDimensionNumbers(), getDimensionSizes(), resultKeyInts, resultValues, resultInd);
+    return resultInd - resultStart;
   }
 
   @Override
@@ -870,6 +955,249 @@ public class SparseTensor extends AbstractTensor implements Serializable {
     return reduceDimensions(Sets.newHashSet(dimensionsToEliminate), false, backpointers);
   }
 
+  @Override
+  public Tensor productSumOut(Tensor other, int[] dimensionsToEliminate) {
+    return productReduce(other, dimensionsToEliminate, true, null);
+  }
+
+  @Override
+  public Tensor productMaxOut(Tensor other, int[] dimensionsToEliminate) {
+    return productReduce(other, dimensionsToEliminate, false, null);
+  }
+
+  @Override
+  public Tensor productMaxOut(Tensor other, int[] dimensionsToEliminate,
+      Backpointers backpointers) {
+    return productReduce(other, dimensionsToEliminate, false, backpointers);
+  }
+
+  /**
+   * Fused implementation of {@link #productSumOut} and
+   * {@link #productMaxOut}. If the eliminated dimensions are the
+   * rightmost dimensions of this tensor, each key of the result is
+   * computed from a contiguous block of {@code keyNums}, so the
+   * product can be streamed directly into the result. Sums over other
+   * dimensions are accumulated in a dense array when the result is
+   * small enough. In the remaining cases, the intermediate product
+   * must be relabeled and sorted anyway, so this method falls back to
+   * {@code elementwiseProduct} followed by a reduction.
+   */
+  private Tensor productReduce(Tensor other, int[] dimensionsToEliminate, boolean useSum,
+      Backpointers backpointers) {
+    int[] dimensionNums = getDimensionNumbers();
+    int[] dimensionSizes = getDimensionSizes();
+    int[] otherDimensionNums = other.getDimensionNumbers();
+
+    boolean otherIsSubset = true;
+    for (int i = 0; i < otherDimensionNums.length; i++) {
+      otherIsSubset = otherIsSubset && Ints.contains(dimensionNums, otherDimensionNums[i]);
+    }
+
+    int numEliminated = 0;
+    int[] resultDims = new int[dimensionNums.length];
+    int[] resultSizes = new int[dimensionNums.length];
+    boolean eliminatedAreRightmost = true;
+    for (int i = 0; i < dimensionNums.length; i++) {
+      if (Ints.contains(dimensionsToEliminate, dimensionNums[i])) {
+        numEliminated++;
+      } else {
+        eliminatedAreRightmost = eliminatedAreRightmost && numEliminated == 0;
+        resultDims[i - numEliminated] = dimensionNums[i];
+        resultSizes[i - numEliminated] = dimensionSizes[i];
+      }
+    }
+    int numResultDims = dimensionNums.length - numEliminated;
+    resultDims = ArrayUtils.copyOf(resultDims, numResultDims);
+    resultSizes = ArrayUtils.copyOf(resultSizes, numResultDims);
+
+    if (otherIsSubset && numEliminated > 0 && eliminatedAreRightmost) {
+      return productReduceRightmost(other, resultDims, resultSizes, useSum, backpointers);
+    } else if (otherIsSubset && numEliminated > 0 && useSum) {
+      long resultMaxKeyNum = 1;
+      for (int i = 0; i < resultSizes.length; i++) {
+        resultMaxKeyNum *= resultSizes[i];
+      }
+      if (resultMaxKeyNum <= Math.max(size(), MAX_DENSE_ACCUMULATOR_SIZE)) {
+        return productSumOutDense(other, resultDims, resultSizes, (int) resultMaxKeyNum);
+      }
+    }
+
+    Tensor product = elementwiseProduct(other);
+    if (useSum) {
+      return product.sumOutDimensions(dimensionsToEliminate);
+    } else {
+      return product.maxOutDimensions(dimensionsToEliminate, backpointers);
+    }
+  }
+
+  private SparseTensor productReduceRightmost(Tensor other, int[] resultDims,
+      int[] resultSizes, boolean useSum, Backpointers backpointers) {
+    KeyNumProjection otherProjection = new KeyNumProjection(getDimensionNumbers(),
+        getDimensionSizes(), other.getDimensionNumbers());
+    long keyNumDenominator = (resultDims.length > 0) ? indexOffsets[resultDims.length - 1]
+        : getMaxKeyNum();
+
+    long[] resultKeyNums = new long[keyNums.length];
+    double[] resultValues = new double[keyNums.length];
+    long[] backpointerKeyNums = (backpointers != null) ? new long[keyNums.length] : null;
+    int resultInd = 0;
+
+    // State of the block of keyNums that map to groupKeyNum. When
+    // maximizing, a block with fewer than keyNumDenominator entries
+    // has an implicit zero, which is the maximum if all entries are
+    // negative. missingKeyNum is a key in the block that is not in
+    // this tensor.
+    long groupKeyNum = -1;
+    double groupValue = 0.0;
+    long groupBackpointer = -1;
+    long groupSize = 0;
+    long missingKeyNum = -1;
+    long nextKeyNum = 0;
+    int numKeys = keyNums.length;
+    for (int i = 0; i <= numKeys; i++) {
+      long keyNum = (i < numKeys) ? keyNums[i] : -1;
+      long resultKeyNum = (i < numKeys) ? keyNum / keyNumDenominator : -1;
+      if (i == numKeys || resultKeyNum != groupKeyNum) {
+        if (groupKeyNum >= 0) {
+          if (!useSum && groupSize < keyNumDenominator && groupValue < 0.0) {
+            groupValue = 0.0;
+            groupBackpointer = (missingKeyNum >= 0) ? missingKeyNum : nextKeyNum;
+          }
+
+          if (groupValue != 0.0) {
+            resultKeyNums[resultInd] = groupKeyNum;
+            resultValues[resultInd] = groupValue;
+            if (backpointerKeyNums != null) {
+              backpointerKeyNums[resultInd] = groupBackpointer;
+            }
+            resultInd++;
+          }
+        }
+
+        if (i == numKeys) {
+          break;
+        }
+
+        long groupStartKeyNum = resultKeyNum * keyNumDenominator;
+        groupKeyNum = resultKeyNum;
+        groupValue = values[i] * other.get(otherProjection.project(keyNum));
+        groupBackpointer = keyNum;
+        groupSize = 1;
+        missingKeyNum = (keyNum != groupStartKeyNum) ? groupStartKeyNum : -1;
+      } else {
+        double value = values[i] * other.get(otherProjection.project(keyNum));
+        if (useSum) {
+          groupValue += value;
+        } else if (value > groupValue) {
+          groupValue = value;
+          groupBackpointer = keyNum;
+        }
+        groupSize++;
+        if (missingKeyNum < 0 && keyNum != nextKeyNum) {
+          missingKeyNum = nextKeyNum;
+        }
+      }
+      nextKeyNum = keyNum + 1;
+    }
+
+    if (backpointers != null) {
+      backpointers.setBackpointers(resultKeyNums, backpointerKeyNums, resultInd, this);
+    }
+    return resizeIntoTable(resultDims, resultSizes, resultKeyNums, resultValues, resultInd);
+  }
+
+  private SparseTensor productSumOutDense(Tensor other, int[] resultDims, int[] resultSizes,
+      int resultMaxKeyNum) {
+    int[] dimensionNums = getDimensionNumbers();
+    int[] dimensionSizes = getDimensionSizes();
+    KeyNumProjection otherProjection = new KeyNumProjection(dimensionNums, dimensionSizes,
+        other.getDimensionNumbers());
+    KeyNumProjection resultProjection = new KeyNumProjection(dimensionNums, dimensionSizes,
+        resultDims);
+
+    double[] accumulator = new double[resultMaxKeyNum];
+    for (int i = 0; i < keyNums.length; i++) {
+      long keyNum = keyNums[i];
+      accumulator[(int) resultProjection.project(keyNum)] += values[i]
+          * other.get(otherProjection.project(keyNum));
+    }
+
+    int numNonzero = 0;
+    for (int i = 0; i < accumulator.length; i++) {
+      if (accumulator[i] != 0.0) {
+        numNonzero++;
+      }
+    }
+
+    long[] resultKeyNums = new long[numNonzero];
+    double[] resultValues = new double[numNonzero];
+    int resultInd = 0;
+    for (int i = 0; i < accumulator.length; i++) {
+      if (accumulator[i] != 0.0) {
+        resultKeyNums[resultInd] = i;
+        resultValues[resultInd] = accumulator[i];
+        resultInd++;
+      }
+    }
+    return new SparseTensor(resultDims, resultSizes, resultKeyNums, resultValues);
+  }
+
+  /**
+   * Maps the keyNums of a tensor to the keyNums of a tensor over a
+   * subset of its dimensions. The mapping is a series of division,
+   * modulo and multiplication operations whose results are added to
+   * get the projected keyNum, one for each contiguous block of shared
+   * dimensions.
+   */
+  private static class KeyNumProjection {
+    private final long[] divisors;
+    private final long[] modulos;
+    private final long[] multipliers;
+
+    public KeyNumProjection(int[] bigDimensions, int[] bigDimensionSizes, int[] smallDimensions) {
+      long[] divisors = new long[smallDimensions.length];
+      long[] modulos = new long[smallDimensions.length];
+      long[] multipliers = new long[smallDimensions.length];
+      int smallDimensionInd = smallDimensions.length - 1;
+      int bigDimensionInd = bigDimensions.length - 1;
+      int divisorInd = 0;
+      long divisor = 1;
+      long multiplier = 1;
+      while (bigDimensionInd >= 0 && smallDimensionInd >= 0) {
+        while (bigDimensions[bigDimensionInd] != smallDimensions[smallDimensionInd]) {
+          divisor *= bigDimensionSizes[bigDimensionInd];
+          bigDimensionInd--;
+        }
+        divisors[divisorInd] = divisor;
+
+        long modulo = 1;
+        while (bigDimensionInd >= 0 && smallDimensionInd >= 0 &&
+            bigDimensions[bigDimensionInd] == smallDimensions[smallDimensionInd]) {
+          divisor *= bigDimensionSizes[bigDimensionInd];
+          modulo *= bigDimensionSizes[bigDimensionInd];
+          bigDimensionInd--;
+          smallDimensionInd--;
+        }
+        modulos[divisorInd] = modulo;
+        multipliers[divisorInd] = multiplier;
+        divisorInd++;
+        multiplier *= modulo;
+      }
+
+      this.divisors = ArrayUtils.copyOf(divisors, divisorInd);
+      this.modulos = ArrayUtils.copyOf(modulos, divisorInd);
+      this.multipliers = ArrayUtils.copyOf(multipliers, divisorInd);
+    }
+
+    public long project(long keyNum) {
+      long result = 0;
+      for (int i = 0; i < divisors.length; i++) {
+        result += ((keyNum / divisors[i]) % modulos[i]) * multipliers[i];
+      }
+      return result;
+    }
+  }
+
   /**
    * Eliminates {@code dimensionsToEliminate}, either by summing or
    * maximizing.
@@ -929,17 +1257,62 @@ public class SparseTensor extends AbstractTensor implements Serializable {
     long keyNumDenominator = (resultNumDimensions > 0) ? relabeled.indexOffsets[resultNumDimensions - 1] :
         relabeled.indexOffsets[0] * relabeled.getDimensionSizes()[0];
 
-    long[] resultKeyInts = new long[relabeled.values.length];
-    long[] backpointerKeyInts = new long[relabeled.values.length];
-    double[] resultValues = new double[relabeled.values.length];
+    final long[] resultKeyInts = new long[relabeled.values.length];
+    final long[] backpointerKeyInts = new long[relabeled.values.length];
+    final double[] resultValues = new double[relabeled.values.length];
+
+    // Split relabeled into chunks that do not split the block of keys
+    // of any result key.
+    final long[] relabeledKeyNums = relabeled.keyNums;
+    final double[] relabeledValues = relabeled.values;
+    final int[] chunks = TensorParallelism.getChunkBoundaries(relabeledKeyNums.length);
+    for (int i = 1; i < chunks.length - 1; i++) {
+      int chunkStart = Math.max(chunks[i], chunks[i - 1]);
+      while (chunkStart > 0 && chunkStart < relabeledKeyNums.length &&
+          relabeledKeyNums[chunkStart] / keyNumDenominator == relabeledKeyNums[chunkStart - 1] / keyNumDenominator) {
+        chunkStart++;
+      }
+      chunks[i] = chunkStart;
+    }
 
-    int resultInd = 0;
-    long[] relabeledKeyNums = relabeled.keyNums;
-    double[] relabeledValues = relabeled.values;
-    int relabeledValuesLength = relabeled.values.length;
-    for (int i = 0; i < relabeledValuesLength; i++) {
+    List<Integer> counts = TensorParallelism.runChunks(chunks.length - 1,
+        new TensorParallelism.ChunkTask<Integer>() {
+      @Override
+      public Integer run(int chunk) {
+        return reduceDimensions(relabeledKeyNums, relabeledValues, keyNumDenominator, useSum,
+            chunks[chunk], chunks[chunk + 1], resultKeyInts, backpointerKeyInts, resultValues);
+      }
+    });
+    int resultInd = TensorParallelism.compact(resultKeyInts, resultValues, backpointerKeyInts,
+        chunks, counts);
+
+    if (backpointers != null) {
+      // backpointerKeyInts needs to have the inverse dimension
+      // relabeling applied to it.
+      long[] transformedBackpointers = transformKeyNums(backpointerKeyInts, relabeled.indexOffsets,
+          this.indexOffsets, inversionPermutation);
+      backpointers.setBackpointers(resultKeyInts, transformedBackpointers, resultInd, this);
+    }
+
+    return resizeIntoTable(ArrayUtils.copyOf(newDimensions, resultNumDimensions),
+        ArrayUtils.copyOf(newDimensionSizes, resultNumDimensions),
+        resultKeyInts, resultValues, resultInd);
+  }
+
+  /**
+   * Reduces the keys of {@code relabeledKeyNums} with indexes in
+   * {@code [start, end)}, writing the results starting at index
+   * {@code start}. {@code start} and {@code end} must not split the
+   * keys of any result key. Returns the number of results written.
+   */
+  private static int reduceDimensions(long[] relabeledKeyNums, double[] relabeledValues,
+      long keyNumDenominator, boolean useSum, int start, int end, long[] resultKeyInts,
+      long[] backpointerKeyInts, double[] resultValues) {
+    int resultInd = start;
+    int relabeledValuesLength = relabeledValues.length;
+    for (int i = start; i < end; i++) {
       long relabeledKeyNumI = relabeledKeyNums[i];
-      if (i != 0 && resultInd > 0 &&
+      if (i != start && resultInd > start &&
           (relabeledKeyNumI / keyNumDenominator) == resultKeyInts[resultInd - 1]) {
         // This key maps to the same entry as the previous key.
         if (useSum) {
@@ -953,7 +1326,7 @@ public class SparseTensor extends AbstractTensor implements Serializable {
           }
         }
       } else {
-        if (resultInd > 0 && resultValues[resultInd - 1] == 0.0) {
+        if (resultInd > start && resultValues[resultInd - 1] == 0.0) {
           // Make sure the result tensor contains no zero-valued
           // entries.
           resultInd--;
@@ -972,13 +1345,13 @@ public class SparseTensor extends AbstractTensor implements Serializable {
         long prevKeyNum = relabeledKeyNumI - 1;
         long nextKeyNum = relabeledKeyNumI + 1;
 
-        if (i > 0 && relabeledKeyNums[i - 1] != prevKeyNum
+        if ((i == 0 || relabeledKeyNums[i - 1] != prevKeyNum) && prevKeyNum >= 0
             && prevKeyNum / keyNumDenominator == resultKeyInts[prevIndex]) {
           // prevKeyNum is not in relabeled, but has a higher value
           // than the current key.
           resultValues[prevIndex] = 0.0;
           backpointerKeyInts[prevIndex] = prevKeyNum;
-        } else if (i + 1 < relabeledValuesLength && relabeledKeyNums[i + 1] != nextKeyNum
+        } else if ((i + 1 == relabeledValuesLength || relabeledKeyNums[i + 1] != nextKeyNum)
             && nextKeyNum / keyNumDenominator == resultKeyInts[prevIndex]) {
           // nextKeyNum is not in relabeled, but has a higher value
           // than the current key. Delete the current key from the tensor.
@@ -988,26 +1361,14 @@ public class SparseTensor extends AbstractTensor implements Serializable {
       }
     }
 
-    if (backpointers != null) {
-      // backpointerKeyInts needs to have the inverse dimension
-      // relabeling applied to it.
-      long[] transformedBackpointers = transformKeyNums(backpointerKeyInts, relabeled.indexOffsets,
-          this.indexOffsets, inversionPermutation);
-      backpointers.setBackpointers(resultKeyInts, transformedBackpointers, resultInd, this);
+    if (resultInd > start && resultValues[resultInd - 1] == 0.0) {
+      resultInd--;
     }
-
-    return resizeIntoTable(ArrayUtils.copyOf(newDimensions, resultNumDimensions),
-        ArrayUtils.copyOf(newDimensionSizes, resultNumDimensions),
-        resultKeyInts, resultValues, resultInd);
+    return resultInd - start;
   }
 
   private SparseTensor sumOutAllDimensions() {
-    int numValues = values.length;
-    double result = 0;
-    for (int i = 0; i < numValues; i++) {
-      result += values[i];
-    }
-    return SparseTensor.getScalarConstant(result);
+    return SparseTensor.getScalarConstant(getTrace());
   }
 
   /**
@@ -1106,8 +1467,34 @@ public class SparseTensor extends AbstractTensor implements Serializable {
   }
 
   @Override
-  public long[] getLargestValues(int n) {
-    long[] largestKeyIndexes = HeapUtils.findLargestItemIndexes(values, n);
+  public long[] getLargestValues(final int n) {
+    final int[] chunks = TensorParallelism.getChunkBoundaries(values.length);
+    long[] largestKeyIndexes = null;
+    if (chunks.length == 2) {
+      largestKeyIndexes = HeapUtils.findLargestItemIndexes(values, n);
+    } else {
+      // Find the n largest values in each chunk, then the n largest
+      // of these candidates.
+      List<long[]> chunkIndexes = TensorParallelism.runChunks(chunks.length - 1,
+          new TensorParallelism.ChunkTask<long[]>() {
+        @Override
+        public long[] run(int chunk) {
+          return HeapUtils.findLargestItemIndexes(values, chunks[chunk], chunks[chunk + 1], n);
+        }
+      });
+
+      long[] candidateIndexes = Longs.concat(chunkIndexes.toArray(new long[0][]));
+      double[] candidateValues = new double[candidateIndexes.length];
+      for (int i = 0; i < candidateIndexes.length; i++) {
+        candidateValues[i] = values[(int) candidateIndexes[i]];
+      }
+      long[] largestCandidates = HeapUtils.findLargestItemIndexes(candidateValues, n);
+      largestKeyIndexes = new long[largestCandidates.length];
+      for (int i = 0; i < largestCandidates.length; i++) {
+        largestKeyIndexes[i] = candidateIndexes[(int) largestCandidates[i]];
+      }
+    }
+
     long[] largestKeyNums = new long[largestKeyIndexes.length];
     for (int i = 0; i < largestKeyIndexes.length; i++) {
       largestKeyNums[i] = keyNums[(int) largestKeyIndexes[i]];
@@ -1133,7 +1520,9 @@ public class SparseTensor extends AbstractTensor implements Serializable {
 
   @Override
   public boolean equals(Object o) {
-    if (!(o instanceof SparseTensor)) {
+    if (o instanceof MappedSparseTensor) {
+      return equals(((MappedSparseTensor) o).toSparseTensor());
+    } else if (!(o instanceof SparseTensor)) {
       return false;
     }
     SparseTensor other = (SparseTensor) o;
@@ -1144,6 +1533,17 @@ public class SparseTensor extends AbstractTensor implements Serializable {
         Arrays.equals(values, other.values);
   }
 
+  @Override
+  public int hashCode() {
+    // Must agree with MappedSparseTensor.hashCode, as the two classes
+    // may be equal.
+    int result = Arrays.hashCode(getDimensionNumbers());
+    result = 31 * result + Arrays.hashCode(getDimensionSizes());
+    result = 31 * result + Arrays.hashCode(keyNums);
+    result = 31 * result + Arrays.hashCode(values);
+    return result;
+  }
+
   // ///////////////////////////////////////////////////////////////////////////////
   // Static Methods
   // ///////////////////////////////////////////////////////////////////////////////
@@ -1351,7 +1751,7 @@ public class SparseTensor extends AbstractTensor implements Serializable {
    * @param size
    * @return
    */
-  private static SparseTensor resizeIntoTable(int[] dimensions, int[] dimensionSizes,
+  static SparseTensor resizeIntoTable(int[] dimensions, int[] dimensionSizes,
       long[] keyNums, double[] values, int size) {
     if (values.length == size) {
       return new SparseTensor(dimensions, dimensionSizes, keyNums, values);
@@ -382,6 +382,46 @@ public interface Tensor extends TensorBase, Serializable {
    */
   Tensor maxOutDimensions(int[] dimensionsToEliminate, Backpointers backpointers);
 
+  /**
+   * Returns the elementwise product of {@code this} and {@code other}
+   * with {@code dimensionsToEliminate} summed out. The result is
+   * equal to
+   * {@code this.elementwiseProduct(other).sumOutDimensions(dimensionsToEliminate)},
+   * but implementations may compute it without constructing the
+   * intermediate product. {@code other} must contain a subset of the
+   * dimensions of {@code this}.
+   * 
+   * @param other
+   * @param dimensionsToEliminate
+   * @return
+   */
+  Tensor productSumOut(Tensor other, int[] dimensionsToEliminate);
+
+  /**
+   * Same as {@link #productSumOut(Tensor, int[])}, except that
+   * {@code dimensionsToEliminate} are maximized out.
+   * 
+   * @param other
+   * @param dimensionsToEliminate
+   * @return
+   */
+  Tensor productMaxOut(Tensor other, int[] dimensionsToEliminate);
+
+  /**
+   * Same as {@link #productMaxOut(Tensor, int[])}, except
+   * additionally returns the {@code keyNums} which were used in the
+   * construction of the returned tensor (see
+   * {@link #maxOutDimensions(Collection, Backpointers)}). The keyNums
+   * are keys of the elementwise product of {@code this} and
+   * {@code other}, which has the same dimensions as {@code this}.
+   * 
+   * @param other
+   * @param dimensionsToEliminate
+   * @param backpointers
+   * @return
+   */
+  Tensor productMaxOut(Tensor other, int[] dimensionsToEliminate, Backpointers backpointers);
+
   /**
    * Relabels the dimensions of this tensor to {@code newDimensions}.
    * The i'th dimension of {@code this} is relabeled to the i'th
@@ -3,7 +3,8 @@ package com.jayantkrish.jklol.tensor;
 /**
  * Provides methods for retrieving {@link TensorBuilder}s. This interface
  * abstracts over different tensor implementations (specifically,
- * {@link DenseTensorBuilder} and {@link SparseTensorBuilder}).
+ * {@link DenseTensorBuilder}, {@link SparseTensorBuilder} and
+ * {@link HashTensorBuilder}).
  * 
  * @author jayantk
  */
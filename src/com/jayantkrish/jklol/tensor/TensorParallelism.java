@@ -0,0 +1,176 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Configures and implements the parallel execution of operations on
+ * large {@link SparseTensor}s. An operation on a tensor with at least
+ * {@link #getParallelThreshold()} keys partitions its sorted key array
+ * into contiguous chunks, which are processed in parallel on the
+ * common {@code ForkJoinPool}. Each chunk writes its results into a
+ * disjoint region of the result arrays, and the regions are then
+ * compacted in order, so the result is sorted without a merge step.
+ * Smaller tensors are processed in a single chunk on the calling
+ * thread.
+ *
+ * @author jayantk
+ */
+public final class TensorParallelism {
+
+  /**
+   * The default minimum number of keys in a tensor for its operations
+   * to be executed in parallel.
+   */
+  public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 20;
+
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private static volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+  // If positive, overrides the number of chunks used by operations
+  // above the threshold. Used in tests.
+  private static volatile int numChunksOverride = 0;
+
+  private TensorParallelism() {
+    // Prevent instantiation.
+  }
+
+  /**
+   * Sets the minimum number of keys in a tensor for its operations to
+   * be executed in parallel. Use {@code Integer.MAX_VALUE} to disable
+   * parallel execution.
+   *
+   * @param threshold
+   */
+  public static void setParallelThreshold(int threshold) {
+    Preconditions.checkArgument(threshold > 0);
+    parallelThreshold = threshold;
+  }
+
+  public static int getParallelThreshold() {
+    return parallelThreshold;
+  }
+
+  /**
+   * Forces operations above the threshold to use {@code numChunks}
+   * chunks, regardless of the number of available processors. Use 0
+   * to restore the default.
+   *
+   * @param numChunks
+   */
+  static void setNumChunks(int numChunks) {
+    Preconditions.checkArgument(numChunks >= 0);
+    numChunksOverride = numChunks;
+  }
+
+  /**
+   * Partitions {@code size} elements into contiguous chunks. Returns
+   * an array whose {@code i}th and {@code i+1}th elements are the
+   * start (inclusive) and end (exclusive) of the {@code i}th chunk.
+   *
+   * @param size
+   * @return
+   */
+  static int[] getChunkBoundaries(int size) {
+    int parallelism = ForkJoinPool.getCommonPoolParallelism();
+    int numChunks = 1;
+    if (size >= parallelThreshold && size > 0) {
+      if (numChunksOverride > 0) {
+        numChunks = Math.min(numChunksOverride, size);
+      } else if (parallelism > 1) {
+        numChunks = Math.min(parallelism * CHUNKS_PER_THREAD, size);
+      }
+    }
+
+    int[] boundaries = new int[numChunks + 1];
+    for (int i = 0; i <= numChunks; i++) {
+      boundaries[i] = (int) ((((long) size) * i) / numChunks);
+    }
+    return boundaries;
+  }
+
+  /**
+   * Runs {@code task} on each of {@code numChunks} chunks and returns
+   * the results in order. If there is more than one chunk, the chunks
+   * are executed in parallel.
+   *
+   * @param numChunks
+   * @param task
+   * @return
+   */
+  static <T> List<T> runChunks(int numChunks, final ChunkTask<T> task) {
+    List<T> results = Lists.newArrayList();
+    if (numChunks == 1) {
+      results.add(task.run(0));
+      return results;
+    }
+
+    List<Callable<T>> callables = Lists.newArrayList();
+    for (int i = 0; i < numChunks; i++) {
+      final int chunk = i;
+      callables.add(new Callable<T>() {
+        @Override
+        public T call() {
+          return task.run(chunk);
+        }
+      });
+    }
+
+    try {
+      for (Future<T> future : ForkJoinPool.commonPool().invokeAll(callables)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+    return results;
+  }
+
+  /**
+   * Moves the results of each chunk to the front of the result arrays.
+   * Chunk {@code i} wrote {@code counts.get(i)} entries starting at
+   * {@code offsets[i]}. {@code backpointers} may be {@code null}.
+   * Returns the total number of entries.
+   *
+   * @param keyNums
+   * @param values
+   * @param backpointers
+   * @param offsets
+   * @param counts
+   * @return
+   */
+  static int compact(long[] keyNums, double[] values, long[] backpointers, int[] offsets,
+      List<Integer> counts) {
+    int size = 0;
+    for (int i = 0; i < counts.size(); i++) {
+      int count = counts.get(i);
+      if (offsets[i] != size) {
+        System.arraycopy(keyNums, offsets[i], keyNums, size, count);
+        System.arraycopy(values, offsets[i], values, size, count);
+        if (backpointers != null) {
+          System.arraycopy(backpointers, offsets[i], backpointers, size, count);
+        }
+      }
+      size += count;
+    }
+    return size;
+  }
+
+  /**
+   * An operation on a single chunk of a tensor.
+   */
+  static interface ChunkTask<T> {
+    public T run(int chunk);
+  }
+}
@@ -0,0 +1,26 @@
+package com.jayantkrish.jklol.tensor;
+
+/**
+ * The precision used to store the values of a tensor. Trained models
+ * can be converted to a lower precision for inference using
+ * {@link CompactTensor#copyOf(Tensor, TensorPrecision)}.
+ *
+ * @author jayantk
+ */
+public enum TensorPrecision {
+  /**
+   * 64-bit floating point values, as in {@link DenseTensor} and
+   * {@link SparseTensor}.
+   */
+  DOUBLE,
+  /**
+   * 32-bit floating point values ({@link FloatDenseTensor} and
+   * {@link FloatSparseTensor}).
+   */
+  FLOAT,
+  /**
+   * 8-bit integers with a single scale factor per tensor
+   * ({@link QuantizedTensor}).
+   */
+  INT8;
+}
@@ -16,4 +16,8 @@ import java.lang.annotation.Target;
 public @interface PerformanceTest {
   // Number of times to run the test and average results over. 
   int value() default 1;
+
+  // Number of untimed runs before the timed runs, which give the
+  // JIT compiler a chance to compile the tested code.
+  int warmup() default 0;
 }
@@ -11,4 +11,15 @@ public abstract class PerformanceTestCase {
   public void setUp() {}
   
   public void tearDown() {}
+
+  /**
+   * Gets a name for this test case that identifies it in reports.
+   * Test cases that are run with several parameter settings should
+   * include the parameters in their name.
+   *
+   * @return
+   */
+  public String getName() {
+    return getClass().getSimpleName();
+  }
 }
@@ -0,0 +1,102 @@
+package com.jayantkrish.jklol.testing;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Running time statistics for a single performance test, as measured
+ * by {@link PerformanceTestRunner}. Times are in milliseconds.
+ *
+ * @author jayantk
+ */
+public class PerformanceTestResult {
+
+  private final String testCase;
+  private final String test;
+  private final int repetitions;
+
+  private final double meanMillis;
+  private final double stdDevMillis;
+  private final double minMillis;
+  private final double maxMillis;
+
+  @JsonCreator
+  public PerformanceTestResult(@JsonProperty("testCase") String testCase,
+      @JsonProperty("test") String test, @JsonProperty("repetitions") int repetitions,
+      @JsonProperty("meanMillis") double meanMillis,
+      @JsonProperty("stdDevMillis") double stdDevMillis,
+      @JsonProperty("minMillis") double minMillis, @JsonProperty("maxMillis") double maxMillis) {
+    this.testCase = testCase;
+    this.test = test;
+    this.repetitions = repetitions;
+    this.meanMillis = meanMillis;
+    this.stdDevMillis = stdDevMillis;
+    this.minMillis = minMillis;
+    this.maxMillis = maxMillis;
+  }
+
+  /**
+   * Computes statistics from the running time of each repetition of
+   * a test.
+   *
+   * @param testCase
+   * @param test
+   * @param nanos
+   * @return
+   */
+  public static PerformanceTestResult fromNanos(String testCase, String test, long[] nanos) {
+    double sum = 0.0;
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < nanos.length; i++) {
+      double millis = nanos[i] / 1000000.0;
+      sum += millis;
+      min = Math.min(min, millis);
+      max = Math.max(max, millis);
+    }
+    double mean = sum / nanos.length;
+
+    double sumSquaredError = 0.0;
+    for (int i = 0; i < nanos.length; i++) {
+      double error = (nanos[i] / 1000000.0) - mean;
+      sumSquaredError += error * error;
+    }
+    double stdDev = nanos.length > 1 ? Math.sqrt(sumSquaredError / (nanos.length - 1)) : 0.0;
+
+    return new PerformanceTestResult(testCase, test, nanos.length, mean, stdDev, min, max);
+  }
+
+  public String getTestCase() {
+    return testCase;
+  }
+
+  public String getTest() {
+    return test;
+  }
+
+  public int getRepetitions() {
+    return repetitions;
+  }
+
+  public double getMeanMillis() {
+    return meanMillis;
+  }
+
+  public double getStdDevMillis() {
+    return stdDevMillis;
+  }
+
+  public double getMinMillis() {
+    return minMillis;
+  }
+
+  public double getMaxMillis() {
+    return maxMillis;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s.%s: %.3f ms (+/- %.3f, min %.3f, max %.3f, n=%d)", testCase, test,
+        meanMillis, stdDevMillis, minMillis, maxMillis, repetitions);
+  }
+}
@@ -1,41 +1,143 @@
 package com.jayantkrish.jklol.testing;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  * Program for running performance tests, which are methods annotated using
- * {@link PerformanceTest}.
- * 
+ * {@link PerformanceTest}. Each test is run
+ * {@link PerformanceTest#warmup()} times without timing, then timed
+ * for {@link PerformanceTest#value()} repetitions.
+ * <p>
+ * Results can be written to a JSON report and compared against the
+ * report of an earlier run to detect performance regressions.
+ *
  * @author jayantk
  */
 public class PerformanceTestRunner {
 
-  public static void run(PerformanceTestCase testCase) {
+  public static List<PerformanceTestResult> run(PerformanceTestCase testCase) {
     Class<? extends PerformanceTestCase> testCaseClass = testCase.getClass();
     Method[] methods = testCaseClass.getMethods();
+    // getMethods() returns methods in no particular order.
+    Arrays.sort(methods, new Comparator<Method>() {
+      @Override
+      public int compare(Method first, Method second) {
+        return first.getName().compareTo(second.getName());
+      }
+    });
+
+    List<PerformanceTestResult> results = Lists.newArrayList();
     for (int i = 0; i < methods.length; i++) {
       PerformanceTest test = methods[i].getAnnotation(PerformanceTest.class);
       if (test != null) {
-        runTest(testCase, methods[i], test.value());
+        PerformanceTestResult result = runTest(testCase, methods[i], test.value(), test.warmup());
+        System.out.println(result);
+        results.add(result);
       }
     }
+    return results;
   }
-  
-  public static void runTest(PerformanceTestCase testCase, Method testMethod, int repetitions) {
-    long total = 0; 
+
+  public static PerformanceTestResult runTest(PerformanceTestCase testCase, Method testMethod,
+      int repetitions, int warmupRepetitions) {
+    long[] times = new long[repetitions];
     try {
+      for (int j = 0; j < warmupRepetitions; j++) {
+        testCase.setUp();
+        testMethod.invoke(testCase);
+        testCase.tearDown();
+      }
+
       for (int j = 0; j < repetitions; j++) {
         testCase.setUp();
+        // Avoid timing the collection of garbage from setUp or
+        // previous repetitions.
+        System.gc();
         long start = System.nanoTime();
         testMethod.invoke(testCase);
-        total += System.nanoTime() - start;
+        times[j] = System.nanoTime() - start;
         testCase.tearDown();
       }
     } catch (Exception e) {
-      e.printStackTrace();
+      throw new RuntimeException("Error running " + testMethod.getName(), e);
     }
 
-    double avgTime = ((double) total) / (repetitions * 1000000);
-    System.out.println(testMethod.getName() + ": " + avgTime + " ms");
+    return PerformanceTestResult.fromNanos(testCase.getName(), testMethod.getName(), times);
+  }
+
+  /**
+   * Writes {@code results} to {@code filename} in JSON format.
+   *
+   * @param results
+   * @param filename
+   */
+  public static void writeReport(Collection<PerformanceTestResult> results, String filename) {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.enable(SerializationFeature.INDENT_OUTPUT);
+    try {
+      mapper.writeValue(new File(filename), results);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Reads a report written by {@link #writeReport}.
+   *
+   * @param filename
+   * @return
+   */
+  public static List<PerformanceTestResult> readReport(String filename) {
+    ObjectMapper mapper = new ObjectMapper();
+    try {
+      return mapper.readValue(new File(filename),
+          new TypeReference<List<PerformanceTestResult>>() {});
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Finds tests in {@code results} whose mean running time exceeds
+   * their mean running time in {@code baseline} by more than
+   * {@code maxRegression} (as a fraction of the baseline time). Tests
+   * that do not appear in {@code baseline} are ignored.
+   *
+   * @param baseline
+   * @param results
+   * @param maxRegression
+   * @return
+   */
+  public static List<String> findRegressions(Collection<PerformanceTestResult> baseline,
+      Collection<PerformanceTestResult> results, double maxRegression) {
+    Map<String, PerformanceTestResult> baselineMap = Maps.newHashMap();
+    for (PerformanceTestResult result : baseline) {
+      baselineMap.put(result.getTestCase() + "." + result.getTest(), result);
+    }
+
+    List<String> regressions = Lists.newArrayList();
+    for (PerformanceTestResult result : results) {
+      PerformanceTestResult baselineResult = baselineMap.get(
+          result.getTestCase() + "." + result.getTest());
+      if (baselineResult != null
+          && result.getMeanMillis() > baselineResult.getMeanMillis() * (1 + maxRegression)) {
+        regressions.add(String.format("%s.%s: %.3f ms (baseline %.3f ms)", result.getTestCase(),
+            result.getTest(), result.getMeanMillis(), baselineResult.getMeanMillis()));
+      }
+    }
+    return regressions;
   }
 }
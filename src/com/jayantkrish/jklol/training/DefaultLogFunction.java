@@ -93,13 +93,18 @@ public class DefaultLogFunction extends AbstractLogFunction {
 	
 	@Override
 	public void logParameters(long iteration, SufficientStatistics parameters) {
-	  if (modelSerializationInterval > 0 && iteration % modelSerializationInterval == 0) {
+	  if (logsParameters(iteration)) {
 	    String parametersFilename = modelSerializationDir + File.separator + "parameters_"
 	        + iteration + ".ser";
 	    IoUtils.serializeObjectToFile(parameters, parametersFilename);
 	  }
 	}
 
+	@Override
+	public boolean logsParameters(long iteration) {
+	  return modelSerializationInterval > 0 && iteration % modelSerializationInterval == 0;
+	}
+
 	@Override
 	public void notifyIterationStart(long iteration) {
 	  if (iteration % logInterval == 0) {
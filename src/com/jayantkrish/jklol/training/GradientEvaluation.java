@@ -1,5 +1,7 @@
 package com.jayantkrish.jklol.training;
 
+import java.io.Serializable;
+
 import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
 
 /**
@@ -10,7 +12,9 @@ import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
  * 
  * @author jayant
  */
-public class GradientEvaluation {
+public class GradientEvaluation implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   private SufficientStatistics gradient;
   private double objectiveValue;
   private int searchErrors;
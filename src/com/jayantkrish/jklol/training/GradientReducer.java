@@ -1,22 +1,39 @@
 package com.jayantkrish.jklol.training;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
 import com.google.common.base.Preconditions;
 import com.jayantkrish.jklol.inference.MarginalCalculator.ZeroProbabilityError;
 import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
-import com.jayantkrish.jklol.parallel.Reducer;
+import com.jayantkrish.jklol.parallel.LocalMapReduceExecutor;
+import com.jayantkrish.jklol.parallel.Reducer.ThreadLocalReducer;
 
 /**
- * Reducer for accumulating gradients from multiple examples.
+ * Reducer for accumulating gradients from multiple examples. Gradients
+ * are sums, so executors that permit thread-local reduction may
+ * accumulate the gradients of all examples processed by a thread into
+ * a single thread-local gradient (see {@link LocalMapReduceExecutor}).
+ * <p>
+ * This reducer is serializable if its oracle is, in which case it can
+ * be run in other processes. Only the oracle and the parameters are
+ * serialized; the model is instantiated from the parameters again
+ * after deserialization. The log is not serialized, and is replaced
+ * by a {@link NullLogFunction}.
  * 
  * @author jayantk
  */
-public class GradientReducer<M, E> implements Reducer<E, GradientEvaluation> {
+public class GradientReducer<M, E> implements ThreadLocalReducer<E, GradientEvaluation>,
+    Serializable {
+  private static final long serialVersionUID = 1L;
 
-  private final M instantiatedModel;
+  // Instantiated from instantiatedModelParameters after deserialization.
+  private transient M instantiatedModel;
   private final SufficientStatistics instantiatedModelParameters;
   private final GradientOracle<M, ? super E> oracle;
 
-  private final LogFunction log;
+  private transient LogFunction log;
 
   public GradientReducer(M instantiatedModel, SufficientStatistics instantiatedModelParameters,
       GradientOracle<M, ? super E> oracle, LogFunction log) {
@@ -26,6 +43,12 @@ public class GradientReducer<M, E> implements Reducer<E, GradientEvaluation> {
     this.log = log;
   }
 
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    this.instantiatedModel = oracle.instantiateModel(instantiatedModelParameters);
+    this.log = new NullLogFunction();
+  }
+
   @Override
   public GradientEvaluation getInitialValue() {
     log.startTimer("mr_gradient_initialize");
@@ -0,0 +1,263 @@
+package com.jayantkrish.jklol.training;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.jayantkrish.jklol.inference.MarginalCalculator.ZeroProbabilityError;
+import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
+import com.jayantkrish.jklol.models.parametric.TensorSufficientStatistics;
+import com.jayantkrish.jklol.tensor.TensorBase;
+
+/**
+ * Asynchronous, lock-free stochastic gradient ascent, as described in:
+ * <p>
+ * Hogwild!: A Lock-Free Approach to Parallelizing Stochastic Gradient
+ * Descent. Feng Niu, Benjamin Recht, Christopher Re and Stephen J.
+ * Wright. NIPS 2011.
+ * <p>
+ * Each thread repeatedly instantiates a model from the shared
+ * parameters, computes the gradient of a minibatch of examples, and
+ * adds it to the shared parameters without synchronizing with other
+ * threads. Only the parameters with a nonzero gradient are updated, so
+ * threads rarely write to the same parameters when gradients are
+ * sparse. Unlike {@link StochasticGradientTrainer}, threads do not wait
+ * for each other to instantiate models or update parameters.
+ * <p>
+ * The L2 penalty and Adagrad updates are also applied only to
+ * parameters with a nonzero gradient. Parameter averaging is
+ * computed incrementally from the updates, without touching every
+ * parameter on each iteration. All parameters are converted to dense
+ * tensors before training, while each thread accumulates its gradients
+ * in sparse tensors, so the time and memory of each update depend only
+ * on the number of nonzero gradient entries.
+ *
+ * @author jayantk
+ */
+public class HogwildGradientTrainer implements GradientOptimizer {
+
+  private final long numIterations;
+  private final int batchSize;
+  private final int numThreads;
+  private final LogFunction log;
+
+  private final double stepSize;
+  private final boolean decayStepSize;
+  private final boolean returnAveragedParameters;
+  private final boolean adaGrad;
+  private final double l2Penalty;
+
+  /**
+   * Creates a trainer that performs {@code numIterations} updates in
+   * total, using {@code numThreads} threads. Each update is computed
+   * from {@code batchSize} examples.
+   *
+   * @param numIterations
+   * @param batchSize
+   * @param numThreads
+   * @param stepSize
+   * @param decayStepSize
+   * @param returnAveragedParameters
+   * @param adaGrad
+   * @param l2Penalty
+   * @param log
+   */
+  public HogwildGradientTrainer(long numIterations, int batchSize, int numThreads,
+      double stepSize, boolean decayStepSize, boolean returnAveragedParameters, boolean adaGrad,
+      double l2Penalty, LogFunction log) {
+    Preconditions.checkArgument(batchSize > 0);
+    Preconditions.checkArgument(numThreads > 0);
+    Preconditions.checkArgument(l2Penalty >= 0.0);
+    this.numIterations = numIterations;
+    this.batchSize = batchSize;
+    this.numThreads = numThreads;
+    this.log = (log != null) ? log : new NullLogFunction();
+
+    this.stepSize = stepSize;
+    this.decayStepSize = decayStepSize;
+    this.returnAveragedParameters = returnAveragedParameters;
+    this.adaGrad = adaGrad;
+    this.l2Penalty = l2Penalty;
+  }
+
+  @Override
+  public <M, E, T extends E> SufficientStatistics train(GradientOracle<M, E> oracle,
+      SufficientStatistics initialParameters, Iterable<T> trainingData) {
+    List<T> examples = Lists.newArrayList(trainingData);
+    Preconditions.checkArgument(examples.size() > 0, "No training examples.");
+
+    List<double[]> parameterValues = SufficientStatisticsTensors.getDenseValues(initialParameters);
+    List<double[]> sumSquareValues = null;
+    if (adaGrad) {
+      sumSquareValues = SufficientStatisticsTensors.getDenseValues(oracle.initializeGradient());
+    }
+
+    // The average of the parameters from each iteration is the
+    // final parameters minus a correction term, which is updated
+    // along with the parameters.
+    SufficientStatistics averageCorrection = null;
+    List<double[]> averageCorrectionValues = null;
+    if (returnAveragedParameters) {
+      averageCorrection = oracle.initializeGradient();
+      averageCorrectionValues = SufficientStatisticsTensors.getDenseValues(averageCorrection);
+    }
+
+    AtomicLong nextIteration = new AtomicLong(0);
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("hogwild-%d").build());
+    List<Future<Void>> futures = Lists.newArrayList();
+    for (int i = 0; i < numThreads; i++) {
+      futures.add(executor.submit(new HogwildWorker<M, E, T>(oracle, initialParameters,
+          examples, nextIteration, parameterValues, sumSquareValues, averageCorrectionValues)));
+    }
+
+    try {
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      e.getCause().printStackTrace();
+      throw new RuntimeException(e);
+    } finally {
+      // Stops the remaining workers if any worker failed.
+      nextIteration.set(numIterations);
+      executor.shutdown();
+    }
+
+    if (returnAveragedParameters) {
+      SufficientStatistics averagedParameters = initialParameters.duplicate();
+      averagedParameters.increment(averageCorrection, -1.0 / Math.max(numIterations, 1));
+      return averagedParameters;
+    } else {
+      return initialParameters;
+    }
+  }
+
+  /**
+   * Repeatedly computes the gradient of a minibatch and applies it to
+   * the shared parameters, until {@code numIterations} updates have
+   * been claimed by all workers.
+   */
+  private class HogwildWorker<M, E, T extends E> implements Callable<Void> {
+    private final GradientOracle<M, E> oracle;
+    private final SufficientStatistics parameters;
+    private final List<T> examples;
+    private final AtomicLong nextIteration;
+
+    private final List<double[]> parameterValues;
+    private final List<double[]> sumSquareValues;
+    private final List<double[]> averageCorrectionValues;
+
+    public HogwildWorker(GradientOracle<M, E> oracle, SufficientStatistics parameters,
+        List<T> examples, AtomicLong nextIteration, List<double[]> parameterValues,
+        List<double[]> sumSquareValues, List<double[]> averageCorrectionValues) {
+      this.oracle = oracle;
+      this.parameters = parameters;
+      this.examples = examples;
+      this.nextIteration = nextIteration;
+      this.parameterValues = parameterValues;
+      this.sumSquareValues = sumSquareValues;
+      this.averageCorrectionValues = averageCorrectionValues;
+    }
+
+    @Override
+    public Void call() {
+      List<TensorSufficientStatistics> gradientTensors = Lists.newArrayList();
+      SufficientStatistics gradient = SufficientStatisticsTensors.createHashSparse(parameters,
+          gradientTensors);
+
+      long iteration;
+      while ((iteration = nextIteration.getAndIncrement()) < numIterations) {
+        log.startTimer("instantiate_model");
+        M currentModel = oracle.instantiateModel(parameters);
+        log.stopTimer("instantiate_model");
+
+        log.startTimer("compute_gradient");
+        double objectiveValue = 0.0;
+        int searchErrors = 0;
+        for (int i = 0; i < batchSize; i++) {
+          // Examples are visited in order, as in StochasticGradientTrainer.
+          T example = examples.get((int) (((iteration * batchSize) + i) % examples.size()));
+          try {
+            objectiveValue += oracle.accumulateGradient(gradient, parameters, currentModel,
+                example, log);
+          } catch (ZeroProbabilityError e) {
+            searchErrors++;
+          }
+        }
+        log.stopTimer("compute_gradient");
+
+        log.startTimer("parameter_update");
+        double currentStepSize = decayStepSize ? (stepSize / Math.sqrt(iteration + 2)) : stepSize;
+        double gradientL2 = 0.0;
+        for (int i = 0; i < gradientTensors.size(); i++) {
+          gradientL2 += update(iteration, currentStepSize, gradientTensors.get(i).get(),
+              parameterValues.get(i), (sumSquareValues != null) ? sumSquareValues.get(i) : null,
+              (averageCorrectionValues != null) ? averageCorrectionValues.get(i) : null);
+        }
+        gradient.zeroOut();
+        gradientL2 = Math.sqrt(gradientL2);
+        log.stopTimer("parameter_update");
+
+        synchronized (log) {
+          log.notifyIterationStart(iteration);
+          log.logParameters(iteration, parameters);
+          log.logStatistic(iteration, "search errors", searchErrors);
+          log.logStatistic(iteration, "gradient l2 norm", gradientL2);
+          log.logStatistic(iteration, "step size", currentStepSize);
+          log.logStatistic(iteration, "objective value", objectiveValue / batchSize);
+          log.notifyIterationEnd(iteration);
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Adds the nonzero entries of {@code gradient} to
+     * {@code parameters}, visiting only the keys stored in
+     * {@code gradient}. Returns the squared L2 norm of the
+     * (minibatch-averaged) gradient.
+     */
+    private double update(long iteration, double currentStepSize, TensorBase gradient,
+        double[] parameters, double[] sumSquares, double[] averageCorrection) {
+      double gradientSumSquares = 0.0;
+      int numEntries = gradient.size();
+      for (int j = 0; j < numEntries; j++) {
+        double gradientValue = gradient.getByIndex(j);
+        if (gradientValue == 0.0) {
+          continue;
+        }
+        // Dense parameter arrays are indexed by key number.
+        int i = (int) gradient.indexToKeyNum(j);
+        double value = gradientValue / batchSize;
+        gradientSumSquares += value * value;
+
+        value -= l2Penalty * parameters[i];
+        double delta = 0.0;
+        if (sumSquares != null) {
+          sumSquares[i] += value * value;
+          if (sumSquares[i] != 0.0) {
+            delta = currentStepSize * value / Math.sqrt(sumSquares[i]);
+          }
+        } else {
+          delta = currentStepSize * value;
+        }
+
+        parameters[i] += delta;
+        if (averageCorrection != null) {
+          averageCorrection[i] += iteration * delta;
+        }
+      }
+      return gradientSumSquares;
+    }
+  }
+}
@@ -0,0 +1,243 @@
+package com.jayantkrish.jklol.training;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
+import com.jayantkrish.jklol.tensor.Tensor;
+
+/**
+ * Applies L2-regularized stochastic gradient updates and parameter
+ * averaging in time proportional to the number of nonzero entries in
+ * the gradient, rather than the number of parameters.
+ * <p>
+ * L2 regularization multiplies every parameter by a decay factor on
+ * each iteration, and averaging adds every parameter to a running sum.
+ * Instead of touching every parameter, this class records the
+ * cumulative decay at the time each parameter was last updated. When a
+ * parameter's gradient is nonzero, the missed decay and its missed
+ * contributions to the average are first applied in constant time (as
+ * in the averaged perceptron), and then the gradient step is taken.
+ * <p>
+ * Parameters that have not been updated recently are stale, i.e.,
+ * larger in magnitude than their regularized values. Before they are
+ * read, e.g., to compute a gradient, they must be brought up to date
+ * using {@link #catchUp(SufficientStatistics)}, which takes time
+ * proportional to the number of parameters read, or {@link #flush()},
+ * which updates every parameter.
+ *
+ * @author jayantk
+ */
+class LazyL2Updater {
+
+  // All parameters are brought up to date when the cumulative decay
+  // falls below exp(MIN_LOG_DECAY), which limits the loss of precision
+  // in the catch-up computation.
+  private static final double MIN_LOG_DECAY = -10.0;
+
+  private final double l2Penalty;
+  private final double averageWeight;
+
+  private final List<double[]> parameterValues;
+  // null if the parameters are not averaged.
+  private final List<double[]> averageValues;
+
+  // Log of the product of the decay factors since the last flush, and
+  // the sum over iterations of the cumulative decay factor.
+  private double logDecay;
+  private double decaySum;
+  // exp(logDecay), which is the decay of parameters that have not been
+  // updated since the last flush.
+  private double decay;
+
+  // The values of logDecay and decaySum when each parameter was last
+  // brought up to date. lastLogDecay is null if there is no
+  // regularization, and lastDecaySum is null if there is no averaging.
+  private final List<double[]> lastLogDecay;
+  private final List<double[]> lastDecaySum;
+
+  /**
+   * Creates an updater for {@code parameters}, which are updated in
+   * place. If {@code averagedParameters} is non-null, {@code averageWeight}
+   * times the parameters from each iteration are added to it.
+   *
+   * @param parameters
+   * @param averagedParameters
+   * @param averageWeight
+   * @param l2Penalty
+   */
+  public LazyL2Updater(SufficientStatistics parameters, SufficientStatistics averagedParameters,
+      double averageWeight, double l2Penalty) {
+    Preconditions.checkArgument(l2Penalty >= 0.0);
+    this.l2Penalty = l2Penalty;
+    this.averageWeight = averageWeight;
+
+    this.parameterValues = SufficientStatisticsTensors.getDenseValues(parameters);
+    this.averageValues = (averagedParameters != null) ?
+        SufficientStatisticsTensors.getDenseValues(averagedParameters) : null;
+
+    this.logDecay = 0.0;
+    this.decaySum = 0.0;
+    this.decay = 1.0;
+    this.lastLogDecay = (l2Penalty != 0.0) ? createArrays(parameterValues) : null;
+    this.lastDecaySum = (averageValues != null) ? createArrays(parameterValues) : null;
+  }
+
+  private static List<double[]> createArrays(List<double[]> toMatch) {
+    List<double[]> arrays = Lists.newArrayList();
+    for (double[] values : toMatch) {
+      arrays.add(new double[values.length]);
+    }
+    return arrays;
+  }
+
+  /**
+   * Gets the L2 norm of {@code gradient}, which must have the same
+   * structure as the parameters.
+   *
+   * @param gradient
+   * @return
+   */
+  public double getGradientL2Norm(SufficientStatistics gradient) {
+    double sumSquares = 0.0;
+    for (Tensor tensor : SufficientStatisticsTensors.getTensors(gradient)) {
+      int size = tensor.size();
+      for (int j = 0; j < size; j++) {
+        double value = tensor.getByIndex(j);
+        sumSquares += value * value;
+      }
+    }
+    return Math.sqrt(sumSquares);
+  }
+
+  /**
+   * Performs one iteration of gradient ascent, adding
+   * {@code stepSize * gradientMultiplier * gradient} to the
+   * parameters after decaying them by {@code 1 - stepSize * l2Penalty}.
+   * Only parameters with a nonzero gradient are updated.
+   *
+   * @param gradient
+   * @param gradientMultiplier
+   * @param stepSize
+   */
+  public void update(SufficientStatistics gradient, double gradientMultiplier, double stepSize) {
+    double iterationDecay = 1.0 - (stepSize * l2Penalty);
+    Preconditions.checkArgument(iterationDecay > 0.0,
+        "Step size times L2 penalty must be less than 1. Got: %s", stepSize * l2Penalty);
+
+    // Averages are brought up to date through the previous iteration,
+    // as the current iteration's contribution includes the gradient.
+    double previousDecaySum = decaySum;
+    logDecay += Math.log(iterationDecay);
+    decay = Math.exp(logDecay);
+    decaySum += decay;
+
+    List<Tensor> gradientTensors = SufficientStatisticsTensors.getTensors(gradient);
+    Preconditions.checkArgument(gradientTensors.size() == parameterValues.size());
+    double multiplier = stepSize * gradientMultiplier;
+    for (int k = 0; k < gradientTensors.size(); k++) {
+      Tensor tensor = gradientTensors.get(k);
+      double[] parameters = parameterValues.get(k);
+      double[] averages = (averageValues != null) ? averageValues.get(k) : null;
+
+      int size = tensor.size();
+      for (int j = 0; j < size; j++) {
+        double value = tensor.getByIndex(j);
+        if (value == 0.0) {
+          continue;
+        }
+        // Parameters have the same dimensions as the gradient, so
+        // their array indexes are the gradient's key numbers.
+        int index = (int) tensor.indexToKeyNum(j);
+        catchUp(k, index, previousDecaySum);
+        parameters[index] += multiplier * value;
+        if (averages != null) {
+          averages[index] += averageWeight * parameters[index];
+          lastDecaySum.get(k)[index] = decaySum;
+        }
+      }
+    }
+
+    if (logDecay < MIN_LOG_DECAY) {
+      flush();
+    }
+  }
+
+  /**
+   * Brings the parameters that are nonzero in {@code usedParameters},
+   * which must have the same structure as the parameters, and their
+   * averages up to date with the current iteration.
+   *
+   * @param usedParameters
+   */
+  public void catchUp(SufficientStatistics usedParameters) {
+    List<Tensor> tensors = SufficientStatisticsTensors.getTensors(usedParameters);
+    Preconditions.checkArgument(tensors.size() == parameterValues.size());
+    for (int k = 0; k < tensors.size(); k++) {
+      Tensor tensor = tensors.get(k);
+      int size = tensor.size();
+      for (int j = 0; j < size; j++) {
+        if (tensor.getByIndex(j) != 0.0) {
+          catchUp(k, (int) tensor.indexToKeyNum(j), decaySum);
+        }
+      }
+    }
+  }
+
+  /**
+   * Brings every parameter and average up to date with the current
+   * iteration.
+   */
+  public void flush() {
+    for (int k = 0; k < parameterValues.size(); k++) {
+      double[] parameters = parameterValues.get(k);
+      for (int i = 0; i < parameters.length; i++) {
+        catchUp(k, i, decaySum);
+      }
+    }
+
+    // Decay factors are now relative to the current iteration.
+    logDecay = 0.0;
+    decaySum = 0.0;
+    decay = 1.0;
+    if (lastLogDecay != null) {
+      for (double[] values : lastLogDecay) {
+        Arrays.fill(values, 0.0);
+      }
+    }
+    if (lastDecaySum != null) {
+      for (double[] values : lastDecaySum) {
+        Arrays.fill(values, 0.0);
+      }
+    }
+  }
+
+  /**
+   * Adds the contributions of parameter {@code index} of tensor
+   * {@code k} to the average up to {@code averageDecaySum}, then
+   * applies the decay accumulated since its last update.
+   */
+  private void catchUp(int k, int index, double averageDecaySum) {
+    double[] parameters = parameterValues.get(k);
+    double lastLog = (lastLogDecay != null) ? lastLogDecay.get(k)[index] : 0.0;
+
+    if (averageValues != null) {
+      // The parameter's value on each missed iteration is its current
+      // value times the decay since its last update.
+      double[] lastSums = lastDecaySum.get(k);
+      double lastDecayInverse = (lastLog == 0.0) ? 1.0 : Math.exp(-lastLog);
+      averageValues.get(k)[index] += averageWeight * parameters[index] * lastDecayInverse
+          * (averageDecaySum - lastSums[index]);
+      lastSums[index] = averageDecaySum;
+    }
+
+    if (lastLogDecay != null) {
+      // Most parameters are never updated between flushes, and their
+      // decay is the same.
+      parameters[index] *= (lastLog == 0.0) ? decay : Math.exp(logDecay - lastLog);
+      lastLogDecay.get(k)[index] = logDecay;
+    }
+  }
+}
@@ -18,6 +18,16 @@ public interface LogFunction {
   
   public void logParameters(long iteration, SufficientStatistics parameters);
 
+  /**
+   * Returns {@code true} if {@link #logParameters} records the
+   * parameters of {@code iteration}. Trainers whose parameters are not
+   * always up to date only need to update them on these iterations.
+   * 
+   * @param iteration
+   * @return
+   */
+  public boolean logsParameters(long iteration);
+
   public void logStatistic(long iteration, String statisticName, double value);
 
   public void notifyIterationStart(long iteration);
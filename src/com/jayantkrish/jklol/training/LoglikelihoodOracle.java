@@ -1,5 +1,7 @@
 package com.jayantkrish.jklol.training;
 
+import java.io.Serializable;
+
 import com.google.common.base.Preconditions;
 import com.jayantkrish.jklol.evaluation.Example;
 import com.jayantkrish.jklol.inference.MarginalCalculator;
@@ -23,7 +25,9 @@ import com.jayantkrish.jklol.util.Assignment;
  * @author jayantk
  */
 public class LoglikelihoodOracle implements GradientOracle<DynamicFactorGraph, 
-Example<DynamicAssignment, DynamicAssignment>> {
+Example<DynamicAssignment, DynamicAssignment>>, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private final ParametricFactorGraph family;
   private final MarginalCalculator marginalCalculator;
@@ -1,5 +1,7 @@
 package com.jayantkrish.jklol.training;
 
+import java.io.Serializable;
+
 import com.google.common.base.Preconditions;
 import com.jayantkrish.jklol.evaluation.Example;
 import com.jayantkrish.jklol.inference.FactorMarginalSet;
@@ -17,7 +19,9 @@ import com.jayantkrish.jklol.tensor.DenseTensorBuilder;
 import com.jayantkrish.jklol.util.Assignment;
 
 public class MaxMarginOracle implements GradientOracle<DynamicFactorGraph,
-    Example<DynamicAssignment, DynamicAssignment>> {
+    Example<DynamicAssignment, DynamicAssignment>>, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private final ParametricFactorGraph family;
   private final CostFunction costFunction;
@@ -125,7 +129,7 @@ public class MaxMarginOracle implements GradientOracle<DynamicFactorGraph,
    * 
    * @author jayantk
    */
-  public static interface CostFunction {
+  public static interface CostFunction extends Serializable {
 
     /**
      * Returns {@code factorGraph} with additional cost factors added. Cost
@@ -156,6 +160,9 @@ public class MaxMarginOracle implements GradientOracle<DynamicFactorGraph,
    * @author jayantk
    */
   public static class HammingCost implements CostFunction {
+
+    private static final long serialVersionUID = 1L;
+
     public FactorGraph augmentWithCosts(FactorGraph factorGraph, VariableNumMap outputVariables, Assignment trueLabel) {
       FactorGraph augmentedGraph = factorGraph;
       for (int varNum : outputVariables.getVariableNumsArray()) {
@@ -180,6 +187,9 @@ public class MaxMarginOracle implements GradientOracle<DynamicFactorGraph,
    * @author jayantk
    */
   public static class ZeroCost implements CostFunction {
+
+    private static final long serialVersionUID = 1L;
+
     public FactorGraph augmentWithCosts(FactorGraph factorGraph, VariableNumMap outputVariables, Assignment trueLabel) {
       return factorGraph;
     }
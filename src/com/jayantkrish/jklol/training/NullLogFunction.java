@@ -25,6 +25,11 @@ public class NullLogFunction implements LogFunction {
   @Override
   public void logParameters(long iteration, SufficientStatistics parameters) {}
 
+  @Override
+  public boolean logsParameters(long iteration) {
+    return false;
+  }
+
   @Override
   public void logStatistic(long iteration, String statisticName, double value) {}
 
@@ -0,0 +1,30 @@
+package com.jayantkrish.jklol.training;
+
+import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
+
+/**
+ * A {@code GradientOracle} whose gradient on each example depends on
+ * only a few of the parameters, such as a linear model with sparse
+ * features. Trainers that update parameters lazily (see
+ * {@link StochasticGradientTrainer#createWithLazyL2Regularization})
+ * use this oracle to bring only these parameters up to date before
+ * computing the gradient of a minibatch.
+ *
+ * @param <M> model type
+ * @param <E> training example type
+ */
+public interface SparseGradientOracle<M, E> extends GradientOracle<M, E> {
+
+  /**
+   * Increments {@code usedParameters} by a positive amount for every
+   * parameter whose value may affect the gradient or objective value
+   * of {@code example}. {@code usedParameters} is created by
+   * {@link #initializeGradient()}. Parameters that are not incremented
+   * may be out of date when the gradient of {@code example} is
+   * computed.
+   *
+   * @param usedParameters
+   * @param example
+   */
+  public void accumulateUsedParameters(SufficientStatistics usedParameters, E example);
+}
@@ -117,6 +117,31 @@ public class StochasticGradientTrainer implements GradientOptimizer {
         new AdagradL2Regularizer(l2Penalty, regularizationFrequency), log);
   }
 
+  /**
+   * L2-regularized stochastic gradient descent whose updates take time
+   * proportional to the number of nonzero entries of the gradient (see
+   * {@link LazyL2Regularizer}). The results are the same as
+   * {@link #createWithL2Regularization}. Lazy updates require an
+   * oracle that implements {@link SparseGradientOracle}; other oracles
+   * are trained with eager L2 regularization.
+   * 
+   * @param numIterations
+   * @param batchSize
+   * @param stepSize
+   * @param decayStepSize
+   * @param returnAveragedParameters
+   * @param maxGradientNorm
+   * @param l2Penalty
+   * @param log
+   * @return
+   */
+  public static StochasticGradientTrainer createWithLazyL2Regularization(long numIterations,
+      int batchSize, double stepSize, boolean decayStepSize, boolean returnAveragedParameters,
+      double maxGradientNorm, double l2Penalty, LogFunction log) {
+    return new StochasticGradientTrainer(numIterations, batchSize, stepSize, decayStepSize,
+        returnAveragedParameters, false, maxGradientNorm, new LazyL2Regularizer(l2Penalty), log);
+  }
+
   public static StochasticGradientTrainer createWithL1Regularization(long numIterations, int batchSize,
       double stepSize, boolean decayStepSize, boolean returnAveragedParameters, double maxGradientNorm,
       double l1Penalty, LogFunction log) {
@@ -148,6 +173,26 @@ public class StochasticGradientTrainer implements GradientOptimizer {
       gradientSumSquares = oracle.initializeGradient();
     }
 
+    LazyL2Updater lazyUpdater = null;
+    SparseGradientOracle<M, E> sparseOracle = null;
+    SufficientStatistics usedParameters = null;
+    if (regularizer instanceof LazyL2Regularizer) {
+      Preconditions.checkState(!adaGrad, "Lazy regularization does not support adagrad.");
+      if (oracle instanceof SparseGradientOracle) {
+        @SuppressWarnings("unchecked")
+        SparseGradientOracle<M, E> castOracle = (SparseGradientOracle<M, E>) oracle;
+        sparseOracle = castOracle;
+        usedParameters = oracle.initializeGradient();
+        lazyUpdater = new LazyL2Updater(initialParameters, averagedParameters,
+            1.0 / numIterations, ((LazyL2Regularizer) regularizer).getL2Penalty());
+      } else {
+        // Bringing every parameter up to date on each iteration is
+        // slower than eager regularization, which gives the same results.
+        System.err.println("WARNING: applying L2 regularization eagerly, as the oracle does not "
+            + "implement SparseGradientOracle: " + oracle.getClass().getName());
+      }
+    }
+
     double gradientL2 = 0.0;
     GradientEvaluation gradientAccumulator = null;
     // This is an attempt at estimating how much the parameters are still
@@ -159,6 +204,9 @@ public class StochasticGradientTrainer implements GradientOptimizer {
     for (long i = 0; i < numIterations; i++) {
       log.notifyIterationStart(i);
       log.startTimer("serialize_parameters");
+      if (lazyUpdater != null && log.logsParameters(i)) {
+        lazyUpdater.flush();
+      }
       log.logParameters(i, initialParameters);
       log.stopTimer("serialize_parameters");
 
@@ -168,6 +216,15 @@ public class StochasticGradientTrainer implements GradientOptimizer {
       // random order.
       log.startTimer("instantiate_model");
       List<T> batchData = getBatch(cycledTrainingData, batchSize);
+      if (lazyUpdater != null) {
+        // The parameters used by the minibatch must be up to date
+        // before the model is instantiated.
+        usedParameters.zeroOut();
+        for (T example : batchData) {
+          sparseOracle.accumulateUsedParameters(usedParameters, example);
+        }
+        lazyUpdater.catchUp(usedParameters);
+      }
       M currentModel = oracle.instantiateModel(initialParameters);
       log.stopTimer("instantiate_model");
 
@@ -179,7 +236,7 @@ public class StochasticGradientTrainer implements GradientOptimizer {
 
       totalSearchErrors += gradientAccumulator.getSearchErrors();
       SufficientStatistics gradient = gradientAccumulator.getGradient();
-      if (batchSize > 1) {
+      if (batchSize > 1 && lazyUpdater == null) {
         gradient.multiply(1.0 / batchSize);
       }
       log.stopTimer("compute_gradient_(serial)");
@@ -188,14 +245,27 @@ public class StochasticGradientTrainer implements GradientOptimizer {
       // Apply regularization and take a gradient step.
       double currentStepSize = decayStepSize ? (stepSize / Math.sqrt(i + 2)) : stepSize;
       
-      // Clip gradient if necessary.
-      gradientL2 = gradient.getL2Norm();
-      if (gradientL2 * currentStepSize > maxGradientNorm) {
-        gradient.multiply(maxGradientNorm / (gradientL2 * currentStepSize));
-        gradientL2 = maxGradientNorm / currentStepSize;
+      if (lazyUpdater == null) {
+        // Clip gradient if necessary.
+        gradientL2 = gradient.getL2Norm();
+        if (gradientL2 * currentStepSize > maxGradientNorm) {
+          gradient.multiply(maxGradientNorm / (gradientL2 * currentStepSize));
+          gradientL2 = maxGradientNorm / currentStepSize;
+        }
+
+        regularizer.apply(gradient, initialParameters, gradientSumSquares, currentStepSize);
+      } else {
+        // Scaling and clipping are folded into the update, which only
+        // touches the nonzero entries of the gradient. The update also
+        // averages the parameters.
+        double gradientMultiplier = 1.0 / batchSize;
+        gradientL2 = lazyUpdater.getGradientL2Norm(gradient) * gradientMultiplier;
+        if (gradientL2 * currentStepSize > maxGradientNorm) {
+          gradientMultiplier *= maxGradientNorm / (gradientL2 * currentStepSize);
+          gradientL2 = maxGradientNorm / currentStepSize;
+        }
+        lazyUpdater.update(gradient, gradientMultiplier, currentStepSize);
       }
-      
-      regularizer.apply(gradient, initialParameters, gradientSumSquares, currentStepSize);
 
       // System.out.println(initialParameters);
       log.stopTimer("parameter_update");
@@ -209,7 +279,7 @@ public class StochasticGradientTrainer implements GradientOptimizer {
       exponentiallyWeightedDenom = 1 + (MOVING_AVG_DISCOUNT * exponentiallyWeightedDenom);
       log.stopTimer("compute_statistics");
 
-      if (returnAveragedParameters) {
+      if (returnAveragedParameters && lazyUpdater == null) {
         log.startTimer("average_parameters");
         averagedParameters.increment(initialParameters, 1.0 / numIterations);
         log.stopTimer("average_parameters");
@@ -228,6 +298,10 @@ public class StochasticGradientTrainer implements GradientOptimizer {
       log.notifyIterationEnd(i);
     }
 
+    if (lazyUpdater != null) {
+      lazyUpdater.flush();
+    }
+
     if (returnAveragedParameters) {
       return averagedParameters;
     } else {
@@ -333,6 +407,51 @@ public class StochasticGradientTrainer implements GradientOptimizer {
     }
   }
 
+  /**
+   * An L2 regularization penalty that is applied lazily by
+   * {@code StochasticGradientTrainer}: each parameter is decayed only
+   * when it is used or its gradient is nonzero, by the total decay since
+   * its last update. Averaged parameters are computed in the same
+   * fashion. The results are the same as {@link StochasticL2Regularizer}
+   * with frequency 1.
+   * <p>
+   * Before computing the gradient of a minibatch, the parameters that
+   * the {@link SparseGradientOracle} reports for the minibatch's
+   * examples are brought up to date, so the cost of an iteration is
+   * proportional to the number of parameters used by the minibatch,
+   * instead of the number of parameters. All parameters are brought up
+   * to date on iterations whose parameters are logged. If the oracle is
+   * not a {@code SparseGradientOracle}, {@link #apply} is used on every
+   * iteration instead.
+   * <p>
+   * When used outside of {@code StochasticGradientTrainer},
+   * {@link #apply} performs the equivalent eager update.
+   * 
+   * @author jayantk
+   */
+  public static class LazyL2Regularizer implements Regularizer {
+    private final double l2Penalty;
+
+    public LazyL2Regularizer(double l2Penalty) {
+      Preconditions.checkArgument(l2Penalty >= 0.0);
+      this.l2Penalty = l2Penalty;
+    }
+
+    public double getL2Penalty() {
+      return l2Penalty;
+    }
+
+    @Override
+    public void apply(SufficientStatistics gradient, SufficientStatistics currentParameters,
+        SufficientStatistics gradientSumSquares, double currentStepSize) {
+      Preconditions.checkArgument(gradientSumSquares == null);
+      if (l2Penalty != 0.0) {
+        currentParameters.multiply(1.0 - (currentStepSize * l2Penalty));
+      }
+      currentParameters.increment(gradient, currentStepSize);
+    }
+  }
+
   /**
    * An L1 regularization penalty, i.e., a penalty on the sum of absolute values
    * of the weights. This regularizer implements the truncated gradient method
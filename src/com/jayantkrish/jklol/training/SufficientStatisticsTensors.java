@@ -0,0 +1,116 @@
+package com.jayantkrish.jklol.training;
+
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.jayantkrish.jklol.models.parametric.ListSufficientStatistics;
+import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
+import com.jayantkrish.jklol.models.parametric.TensorSufficientStatistics;
+import com.jayantkrish.jklol.tensor.DenseTensor;
+import com.jayantkrish.jklol.tensor.HashTensorBuilder;
+import com.jayantkrish.jklol.tensor.Tensor;
+
+/**
+ * Utilities for trainers that update the tensors underlying
+ * {@code SufficientStatistics} directly. Parameters must be
+ * {@link TensorSufficientStatistics}, possibly nested in
+ * {@link ListSufficientStatistics}; their tensors are visited in
+ * depth-first order.
+ *
+ * @author jayantk
+ */
+final class SufficientStatisticsTensors {
+
+  private SufficientStatisticsTensors() {
+    // Prevent instantiation.
+  }
+
+  /**
+   * Gets the arrays storing the values of {@code statistics}, in the
+   * order of the underlying tensors. {@code statistics} is first
+   * converted to dense tensors, so that updating the returned arrays
+   * updates {@code statistics} in place.
+   *
+   * @param statistics
+   * @return
+   */
+  static List<double[]> getDenseValues(SufficientStatistics statistics) {
+    List<double[]> values = Lists.newArrayList();
+    getDenseValues(statistics, values);
+    return values;
+  }
+
+  private static void getDenseValues(SufficientStatistics statistics, List<double[]> values) {
+    if (statistics instanceof ListSufficientStatistics) {
+      for (SufficientStatistics child : ((ListSufficientStatistics) statistics).getStatistics()) {
+        getDenseValues(child, values);
+      }
+    } else {
+      Preconditions.checkArgument(statistics instanceof TensorSufficientStatistics,
+          "Unsupported parameter type: %s", statistics.getClass());
+      statistics.makeDense();
+      // The tensor of dense statistics shares its values with the
+      // underlying builder, so updates to these values are reflected in
+      // the statistics.
+      Tensor tensor = ((TensorSufficientStatistics) statistics).get();
+      Preconditions.checkArgument(tensor instanceof DenseTensor,
+          "Unsupported tensor type: %s", tensor.getClass());
+      values.add(tensor.getValues());
+    }
+  }
+
+  /**
+   * Creates empty sufficient statistics with the same structure as
+   * {@code statistics}, whose tensors are sparse
+   * {@link HashTensorBuilder}s. The tensors are added to
+   * {@code tensors} in the same order as {@link #getDenseValues}.
+   *
+   * @param statistics
+   * @param tensors
+   * @return
+   */
+  static SufficientStatistics createHashSparse(SufficientStatistics statistics,
+      List<TensorSufficientStatistics> tensors) {
+    if (statistics instanceof ListSufficientStatistics) {
+      ListSufficientStatistics list = (ListSufficientStatistics) statistics;
+      List<SufficientStatistics> children = Lists.newArrayList();
+      for (SufficientStatistics child : list.getStatistics()) {
+        children.add(createHashSparse(child, tensors));
+      }
+      return new ListSufficientStatistics(list.getStatisticNames(), children);
+    } else {
+      Preconditions.checkArgument(statistics instanceof TensorSufficientStatistics,
+          "Unsupported parameter type: %s", statistics.getClass());
+      TensorSufficientStatistics tensor = TensorSufficientStatistics.createHashSparse(
+          ((TensorSufficientStatistics) statistics).getStatisticNames());
+      tensors.add(tensor);
+      return tensor;
+    }
+  }
+
+  /**
+   * Gets the tensors of {@code statistics}, in the same order as
+   * {@link #getDenseValues}.
+   *
+   * @param statistics
+   * @return
+   */
+  static List<Tensor> getTensors(SufficientStatistics statistics) {
+    List<Tensor> tensors = Lists.newArrayList();
+    getTensors(statistics, tensors);
+    return tensors;
+  }
+
+  private static void getTensors(SufficientStatistics statistics, List<Tensor> tensors) {
+    if (statistics instanceof ListSufficientStatistics) {
+      for (SufficientStatistics child : ((ListSufficientStatistics) statistics).getStatistics()) {
+        getTensors(child, tensors);
+      }
+    } else {
+      Preconditions.checkArgument(statistics instanceof TensorSufficientStatistics,
+          "Unsupported gradient type: %s", statistics.getClass());
+      tensors.add(((TensorSufficientStatistics) statistics).get());
+    }
+  }
+}
@@ -0,0 +1,359 @@
+package com.jayantkrish.jklol.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import com.google.common.base.Preconditions;
+import com.jayantkrish.jklol.tensor.DenseTensor;
+import com.jayantkrish.jklol.tensor.SparseTensor;
+
+/**
+ * A versioned binary file format for trained models. The model's
+ * object graph is written with Java serialization, except that the
+ * key and value arrays of every {@link SparseTensor} and
+ * {@link DenseTensor} are written separately as raw little-endian
+ * blocks. Java serialization is slow and produces a lot of garbage
+ * for large primitive arrays, so moving these arrays out of the
+ * object stream makes loading large models (e.g., CCG parsers and
+ * their parameters) much faster. When reading, each block is
+ * bulk-copied into its tensor's arrays, and large blocks are
+ * memory-mapped to avoid an intermediate copy.
+ * <p>
+ * A file consists of a 16 byte header (magic number, version, and the
+ * offset of the object graph), followed by the tensor blocks, followed
+ * by the serialized object graph. The graph refers to blocks by their
+ * offset in the file.
+ * <p>
+ * {@link IoUtils#readSerializedObject} automatically detects this
+ * format, so callers can read either format through it.
+ *
+ * @author jayantk
+ */
+public class BinaryModelFormat {
+
+  private static final int MAGIC_NUMBER = 0x4a4b424d;
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+  private static final long MIN_MAPPED_BLOCK_BYTES = 1 << 20;
+
+  /**
+   * Writes {@code object} to {@code filename} in the binary model
+   * format. {@code object} must be {@code Serializable}.
+   *
+   * @param object
+   * @param filename
+   */
+  public static void write(Object object, String filename) {
+    try {
+      RandomAccessFile out = new RandomAccessFile(filename, "rw");
+      try {
+        out.setLength(0);
+        FileChannel channel = out.getChannel();
+        BlockWriter blockWriter = new BlockWriter(channel, HEADER_SIZE);
+
+        ByteArrayOutputStream graphBytes = new ByteArrayOutputStream();
+        BlockObjectOutputStream graphOut = new BlockObjectOutputStream(graphBytes, blockWriter);
+        graphOut.writeObject(object);
+        graphOut.close();
+        long graphOffset = blockWriter.finish();
+
+        writeFully(channel, ByteBuffer.wrap(graphBytes.toByteArray()), graphOffset);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC_NUMBER);
+        header.putInt(FORMAT_VERSION);
+        header.putLong(graphOffset);
+        header.flip();
+        writeFully(channel, header, 0);
+      } finally {
+        out.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Reads an object written by {@link #write(Object, String)} from
+   * {@code filename}, and casts it to {@code clazz}.
+   *
+   * @param filename
+   * @param clazz
+   * @return
+   */
+  public static <T> T read(String filename, Class<T> clazz) {
+    try {
+      RandomAccessFile in = new RandomAccessFile(filename, "r");
+      try {
+        FileChannel channel = in.getChannel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        header.flip();
+        Preconditions.checkState(header.getInt() == MAGIC_NUMBER,
+            "%s is not a binary model file", filename);
+        int version = header.getInt();
+        Preconditions.checkState(version == FORMAT_VERSION,
+            "Unsupported binary model version: %s", version);
+        long graphOffset = header.getLong();
+
+        long graphLength = channel.size() - graphOffset;
+        Preconditions.checkState(graphLength <= Integer.MAX_VALUE);
+        ByteBuffer graphBytes = ByteBuffer.allocate((int) graphLength);
+        readFully(channel, graphBytes, graphOffset);
+
+        BlockObjectInputStream graphIn = new BlockObjectInputStream(
+            new ByteArrayInputStream(graphBytes.array()), channel);
+        Object object = graphIn.readObject();
+        graphIn.close();
+        return clazz.cast(object);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Returns {@code true} if {@code filename} begins with the magic
+   * number of this format.
+   *
+   * @param filename
+   * @return
+   */
+  public static boolean isBinaryModel(String filename) {
+    try {
+      RandomAccessFile in = new RandomAccessFile(filename, "r");
+      try {
+        if (in.length() < HEADER_SIZE) {
+          return false;
+        }
+        ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(in.getChannel(), magic, 0);
+        magic.flip();
+        return magic.getInt() == MAGIC_NUMBER;
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int numRead = channel.read(buffer, position);
+      Preconditions.checkState(numRead >= 0, "Unexpected end of file");
+      position += numRead;
+    }
+  }
+
+  /**
+   * Appends little-endian primitive arrays to a file, starting at a
+   * given offset.
+   */
+  private static class BlockWriter {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long position;
+
+    public BlockWriter(FileChannel channel, long initialPosition) {
+      this.channel = channel;
+      this.buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+      this.position = initialPosition;
+    }
+
+    /**
+     * Gets the offset in the file at which the next value will be
+     * written.
+     */
+    public long getOffset() {
+      return position + buffer.position();
+    }
+
+    public void write(long[] values) throws IOException {
+      for (int i = 0; i < values.length; i++) {
+        if (buffer.remaining() < 8) {
+          flush();
+        }
+        buffer.putLong(values[i]);
+      }
+    }
+
+    public void write(double[] values) throws IOException {
+      for (int i = 0; i < values.length; i++) {
+        if (buffer.remaining() < 8) {
+          flush();
+        }
+        buffer.putDouble(values[i]);
+      }
+    }
+
+    /**
+     * Writes any buffered values and returns the offset of the end of
+     * the written data.
+     */
+    public long finish() throws IOException {
+      flush();
+      return position;
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      int numBytes = buffer.remaining();
+      writeFully(channel, buffer, position);
+      position += numBytes;
+      buffer.clear();
+    }
+  }
+
+  /**
+   * Serializes an object graph, replacing tensors with references to
+   * blocks written by a {@code BlockWriter}.
+   */
+  private static class BlockObjectOutputStream extends ObjectOutputStream {
+    private final BlockWriter blockWriter;
+
+    public BlockObjectOutputStream(OutputStream out, BlockWriter blockWriter) throws IOException {
+      super(out);
+      this.blockWriter = blockWriter;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) throws IOException {
+      // Subclasses of these tensors may have additional state, so
+      // only the exact classes are replaced.
+      if (obj != null && obj.getClass() == SparseTensor.class) {
+        SparseTensor tensor = (SparseTensor) obj;
+        long offset = blockWriter.getOffset();
+        blockWriter.write(tensor.getKeyNums());
+        blockWriter.write(tensor.getValues());
+        return new SparseTensorBlock(tensor.getDimensionNumbers(), tensor.getDimensionSizes(),
+            offset, tensor.size());
+      } else if (obj != null && obj.getClass() == DenseTensor.class) {
+        DenseTensor tensor = (DenseTensor) obj;
+        long offset = blockWriter.getOffset();
+        blockWriter.write(tensor.getValues());
+        return new DenseTensorBlock(tensor.getDimensionNumbers(), tensor.getDimensionSizes(),
+            offset, tensor.size());
+      }
+      return obj;
+    }
+  }
+
+  /**
+   * Deserializes an object graph, replacing references to tensor
+   * blocks with the tensors themselves.
+   */
+  private static class BlockObjectInputStream extends ObjectInputStream {
+    private final FileChannel channel;
+
+    public BlockObjectInputStream(InputStream in, FileChannel channel) throws IOException {
+      super(in);
+      this.channel = channel;
+      enableResolveObject(true);
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) throws IOException {
+      if (obj instanceof TensorBlock) {
+        return ((TensorBlock) obj).read(channel);
+      }
+      return obj;
+    }
+  }
+
+  /**
+   * Placeholder for a tensor in the serialized object graph.
+   */
+  private abstract static class TensorBlock implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    protected final int[] dimensionNums;
+    protected final int[] dimensionSizes;
+    protected final long offset;
+    protected final int size;
+
+    public TensorBlock(int[] dimensionNums, int[] dimensionSizes, long offset, int size) {
+      this.dimensionNums = dimensionNums;
+      this.dimensionSizes = dimensionSizes;
+      this.offset = offset;
+      this.size = size;
+    }
+
+    public abstract Object read(FileChannel channel) throws IOException;
+
+    /**
+     * Gets a buffer containing {@code numValues} 8-byte values
+     * starting at {@code offset}. Large blocks are memory-mapped;
+     * small blocks are read directly, which avoids creating a mapping
+     * for each of the many small tensors in a typical model.
+     */
+    protected static ByteBuffer readBlock(FileChannel channel, long offset, int numValues)
+        throws IOException {
+      long numBytes = 8L * numValues;
+      if (numBytes >= MIN_MAPPED_BLOCK_BYTES) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, numBytes)
+            .order(ByteOrder.LITTLE_ENDIAN);
+      } else {
+        ByteBuffer buffer = ByteBuffer.allocate((int) numBytes).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buffer, offset);
+        buffer.flip();
+        return buffer;
+      }
+    }
+  }
+
+  private static class SparseTensorBlock extends TensorBlock {
+    private static final long serialVersionUID = 1L;
+
+    public SparseTensorBlock(int[] dimensionNums, int[] dimensionSizes, long offset, int size) {
+      super(dimensionNums, dimensionSizes, offset, size);
+    }
+
+    @Override
+    public Object read(FileChannel channel) throws IOException {
+      long[] keyNums = new long[size];
+      double[] values = new double[size];
+      readBlock(channel, offset, size).asLongBuffer().get(keyNums);
+      readBlock(channel, offset + (8L * size), size).asDoubleBuffer().get(values);
+      return new SparseTensor(dimensionNums, dimensionSizes, keyNums, values);
+    }
+  }
+
+  private static class DenseTensorBlock extends TensorBlock {
+    private static final long serialVersionUID = 1L;
+
+    public DenseTensorBlock(int[] dimensionNums, int[] dimensionSizes, long offset, int size) {
+      super(dimensionNums, dimensionSizes, offset, size);
+    }
+
+    @Override
+    public Object read(FileChannel channel) throws IOException {
+      double[] values = new double[size];
+      readBlock(channel, offset, size).asDoubleBuffer().get(values);
+      return new DenseTensor(dimensionNums, dimensionSizes, values);
+    }
+  }
+}
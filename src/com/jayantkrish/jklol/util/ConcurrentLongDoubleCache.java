@@ -0,0 +1,251 @@
+package com.jayantkrish.jklol.util;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A bounded cache from {@code long} keys to {@code double} values
+ * that can be shared by many threads without locking. The cache is
+ * set-associative: each key can only be stored in a small set of
+ * slots, and when the set is full, an entry is evicted using the
+ * CLOCK approximation of least-recently-used.
+ * <p>
+ * Concurrent updates may occasionally lose an insertion or evict a
+ * recently-used entry, but {@link #get} only ever returns a value
+ * that was stored for the requested key. Serializing a cache retains
+ * its capacity but not its contents.
+ * <p>
+ * Keys and values are stored in primitive arrays, so {@link #put}
+ * does not allocate. Each slot has a version number that a writer
+ * makes odd while it updates the slot's key and value, and readers
+ * ignore slots whose version is odd or changes during the read.
+ * Versions only increase, so a reader cannot mistake a rewritten slot
+ * for the slot it started reading.
+ *
+ * @author jayantk
+ */
+public class ConcurrentLongDoubleCache implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  // Number of slots that can hold any given key.
+  private static final int NUM_WAYS = 4;
+
+  // Hit and miss counts are striped by thread to avoid contention.
+  // Each stripe is padded to occupy its own cache line.
+  private static final int NUM_STRIPES = 16;
+  private static final int STRIPE_PADDING = 8;
+
+  private static final long EMPTY_VALUE_BITS = Double.doubleToRawLongBits(Double.NaN);
+
+  private final int capacity;
+  private final int setMask;
+
+  // The key and value bits of slot i are stored at 2i and 2i + 1,
+  // so both are usually on the same cache line. Empty slots have a
+  // NaN value. A slot's version is odd while it is being written.
+  private final transient AtomicLongArray entries;
+  private final transient AtomicIntegerArray versions;
+  // CLOCK reference bits and hands. Races on these arrays only
+  // affect which entries are evicted.
+  private final transient byte[] referenced;
+  private final transient int[] hands;
+
+  private final transient AtomicLongArray hits;
+  private final transient AtomicLongArray misses;
+
+  /**
+   * Creates an empty cache that holds at least {@code capacity}
+   * entries. The capacity is rounded up to a power of two.
+   *
+   * @param capacity
+   */
+  public ConcurrentLongDoubleCache(int capacity) {
+    Preconditions.checkArgument(capacity > 0 && capacity <= (1 << 30),
+        "Invalid cache capacity: %s", capacity);
+    int numSets = Math.max(1, Integer.highestOneBit(capacity - 1) * 2 / NUM_WAYS);
+    this.capacity = numSets * NUM_WAYS;
+    this.setMask = numSets - 1;
+
+    this.entries = new AtomicLongArray(2 * this.capacity);
+    this.versions = new AtomicIntegerArray(this.capacity);
+    for (int i = 0; i < this.capacity; i++) {
+      entries.set((2 * i) + 1, EMPTY_VALUE_BITS);
+    }
+    this.referenced = new byte[this.capacity];
+    this.hands = new int[numSets];
+
+    this.hits = new AtomicLongArray(NUM_STRIPES * STRIPE_PADDING);
+    this.misses = new AtomicLongArray(NUM_STRIPES * STRIPE_PADDING);
+  }
+
+  /**
+   * Gets the maximum number of entries in this cache.
+   *
+   * @return
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Gets the value cached for {@code key}, or {@code Double.NaN} if
+   * {@code key} is not in the cache.
+   *
+   * @param key
+   * @return
+   */
+  public double get(long key) {
+    int base = getSetIndex(key) * NUM_WAYS;
+    for (int i = base; i < base + NUM_WAYS; i++) {
+      int version = versions.get(i);
+      if ((version & 1) != 0 || entries.get(2 * i) != key) {
+        continue;
+      }
+      double value = Double.longBitsToDouble(entries.get((2 * i) + 1));
+      if (Double.isNaN(value) || versions.get(i) != version) {
+        // The slot is empty, or was overwritten while it was read.
+        continue;
+      }
+
+      if (referenced[i] == 0) {
+        referenced[i] = 1;
+      }
+      hits.incrementAndGet(getStripeIndex());
+      return value;
+    }
+    misses.incrementAndGet(getStripeIndex());
+    return Double.NaN;
+  }
+
+  /**
+   * Stores {@code value} for {@code key}, possibly evicting another
+   * entry from the cache.
+   *
+   * @param key
+   * @param value
+   */
+  public void put(long key, double value) {
+    int set = getSetIndex(key);
+    int base = set * NUM_WAYS;
+
+    for (int i = base; i < base + NUM_WAYS; i++) {
+      // These reads may be inconsistent, which only affects the
+      // choice of slot; write checks that the version is unchanged.
+      int version = versions.get(i);
+      if (entries.get((2 * i) + 1) == EMPTY_VALUE_BITS || entries.get(2 * i) == key) {
+        write(i, version, key, value);
+        return;
+      }
+    }
+
+    // Advance the clock hand, clearing reference bits, until an
+    // unreferenced entry is found. After one revolution every bit
+    // has been cleared, so the search terminates in the second.
+    int hand = hands[set];
+    for (int i = 0; i < 2 * NUM_WAYS; i++) {
+      int slot = base + hand;
+      hand = (hand + 1) % NUM_WAYS;
+      if (referenced[slot] == 0 || i == (2 * NUM_WAYS) - 1) {
+        write(slot, versions.get(slot), key, value);
+        break;
+      }
+      referenced[slot] = 0;
+    }
+    hands[set] = hand;
+  }
+
+  /**
+   * Stores {@code key} and {@code value} in {@code slot}, if its
+   * version is still {@code version}. The write is dropped if another
+   * thread has written or is writing the slot.
+   */
+  private void write(int slot, int version, long key, double value) {
+    if ((version & 1) != 0 || !versions.compareAndSet(slot, version, version + 1)) {
+      return;
+    }
+    entries.set(2 * slot, key);
+    entries.set((2 * slot) + 1, Double.doubleToRawLongBits(value));
+    versions.set(slot, version + 2);
+    referenced[slot] = 1;
+  }
+
+  /**
+   * Removes all entries from this cache and resets its hit and miss
+   * counts. Entries that are inserted concurrently may remain.
+   */
+  public void clear() {
+    for (int i = 0; i < capacity; i++) {
+      write(i, versions.get(i), entries.get(2 * i), Double.NaN);
+      referenced[i] = 0;
+    }
+    for (int i = 0; i < hits.length(); i++) {
+      hits.set(i, 0);
+      misses.set(i, 0);
+    }
+  }
+
+  /**
+   * Gets the number of calls to {@link #get} that found a cached
+   * value.
+   *
+   * @return
+   */
+  public long getNumHits() {
+    return sum(hits);
+  }
+
+  /**
+   * Gets the number of calls to {@link #get} that did not find a
+   * cached value.
+   *
+   * @return
+   */
+  public long getNumMisses() {
+    return sum(misses);
+  }
+
+  /**
+   * Gets the fraction of calls to {@link #get} that found a cached
+   * value, or 0 if {@code get} has not been called.
+   *
+   * @return
+   */
+  public double getHitRate() {
+    long numHits = getNumHits();
+    long total = numHits + getNumMisses();
+    return total == 0 ? 0.0 : ((double) numHits) / total;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("capacity=%d hits=%d misses=%d hitRate=%.3f", capacity,
+        getNumHits(), getNumMisses(), getHitRate());
+  }
+
+  private int getSetIndex(long key) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return ((int) (hash ^ (hash >>> 32))) & setMask;
+  }
+
+  private static int getStripeIndex() {
+    return ((int) Thread.currentThread().getId() & (NUM_STRIPES - 1)) * STRIPE_PADDING;
+  }
+
+  private static long sum(AtomicLongArray counts) {
+    long total = 0;
+    for (int i = 0; i < counts.length(); i += STRIPE_PADDING) {
+      total += counts.get(i);
+    }
+    return total;
+  }
+
+  /**
+   * Deserialized caches are empty.
+   */
+  private Object readResolve() {
+    return new ConcurrentLongDoubleCache(capacity);
+  }
+}
@@ -151,11 +151,26 @@ public final class HeapUtils {
    * @return
    */
   public static final long[] findLargestItemIndexes(double[] values, int n) {
+    return findLargestItemIndexes(values, 0, values.length, n);
+  }
+
+  /**
+   * Same as {@link #findLargestItemIndexes(double[], int)}, but only
+   * considers the elements of {@code values} with indexes in
+   * {@code [start, end)}.
+   *
+   * @param values
+   * @param start
+   * @param end
+   * @param n
+   * @return
+   */
+  public static final long[] findLargestItemIndexes(double[] values, int start, int end, int n) {
     long[] heapKeys = new long[n + 1];
     double[] heapValues = new double[n + 1];
     int heapSize = 0;
 
-    for (int i = 0; i < values.length; i++) {
+    for (int i = start; i < end; i++) {
       offer(heapKeys, heapValues, heapSize, i, values[i]);
       heapSize++;
 
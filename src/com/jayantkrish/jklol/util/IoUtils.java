@@ -155,7 +155,34 @@ public class IoUtils {
     }    
   }
 
+  /**
+   * Serializes {@code object} into {@code filename} using
+   * {@link BinaryModelFormat}, which writes tensors as raw binary
+   * blocks. The result can be read using
+   * {@link #readSerializedObject(String, Class)}.
+   * 
+   * @param object
+   * @param filename
+   */
+  public static void serializeObjectToBinaryFile(Object object, String filename) {
+    BinaryModelFormat.write(object, filename);
+  }
+
+  /**
+   * Reads an object serialized by either
+   * {@link #serializeObjectToFile(Object, String)} or
+   * {@link #serializeObjectToBinaryFile(Object, String)} from
+   * {@code filename}. The file's format is automatically detected.
+   * 
+   * @param filename
+   * @param clazz
+   * @return
+   */
   public static <T> T readSerializedObject(String filename, Class<T> clazz) {
+    if (BinaryModelFormat.isBinaryModel(filename)) {
+      return BinaryModelFormat.read(filename, clazz);
+    }
+
     // Read in the serialized model.
     T object = null;
     FileInputStream fis = null;
@@ -0,0 +1,36 @@
+package com.jayantkrish.jklol.ccg;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.jayantkrish.jklol.nlpannotation.AnnotatedSentence;
+
+public class CcgAStarInferenceTest extends CcgParserTest {
+
+  public void testBestParse() {
+    List<String> words = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    AnnotatedSentence sentence = new AnnotatedSentence(words,
+        Collections.nCopies(words.size(), ParametricCcgParser.DEFAULT_POS_TAG));
+
+    CcgParse expected = parser.beamSearch(sentence, 100).get(0);
+    CcgParse actual = CcgAStarInference.getDefault(100).getBestParse(parser, sentence, null, null);
+    assertEquals(expected.getSubtreeProbability(), actual.getSubtreeProbability(), 1e-10);
+    assertEquals(expected.getAllDependencies(), actual.getAllDependencies());
+  }
+
+  public void testChartSizeLimit() {
+    List<String> words = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    AnnotatedSentence sentence = new AnnotatedSentence(words,
+        Collections.nCopies(words.size(), ParametricCcgParser.DEFAULT_POS_TAG));
+
+    CcgAStarInference inference = new CcgAStarInference(null, 100, -1, 5);
+    assertEquals(0, inference.beamSearch(parser, sentence, null, null).size());
+  }
+
+  @Override
+  public List<CcgParse> beamSearch(CcgParser parser, List<String> words, List<String> posTags, int beamSize) {
+    CcgAStarInference inference = CcgAStarInference.getDefault(beamSize);
+    return inference.beamSearch(parser, new AnnotatedSentence(words, posTags), null, null);
+  }
+}
@@ -1,15 +1,21 @@
 package com.jayantkrish.jklol.ccg;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.TestCase;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -19,6 +25,12 @@ import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Doubles;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.Futures;
+import com.jayantkrish.jklol.ccg.SupertaggingCcgParser.CcgParseResult;
+import com.jayantkrish.jklol.ccg.SupertaggingCcgParser.PassStatistics;
+import com.jayantkrish.jklol.ccg.chart.CcgBeamSearchChart;
+import com.jayantkrish.jklol.ccg.chart.CcgBeamSearchChartPool;
+import com.jayantkrish.jklol.ccg.chart.CcgMemoryBoundedChart;
 import com.jayantkrish.jklol.ccg.chart.ChartCost;
 import com.jayantkrish.jklol.ccg.chart.ChartEntry;
 import com.jayantkrish.jklol.ccg.lambda.ExpressionParser;
@@ -34,8 +46,11 @@ import com.jayantkrish.jklol.ccg.lexicon.StringLexicon.CategorySpanConfig;
 import com.jayantkrish.jklol.ccg.lexicon.SyntaxLexiconScorer;
 import com.jayantkrish.jklol.ccg.lexicon.TableLexicon;
 import com.jayantkrish.jklol.ccg.lexicon.UnknownWordLexicon;
+import com.jayantkrish.jklol.ccg.supertag.ListSupertaggedSentence;
 import com.jayantkrish.jklol.ccg.supertag.SupertagAnnotation;
 import com.jayantkrish.jklol.ccg.supertag.SupertagLexiconScorer;
+import com.jayantkrish.jklol.ccg.supertag.Supertagger;
+import com.jayantkrish.jklol.ccg.supertag.WordAndPos;
 import com.jayantkrish.jklol.models.DiscreteFactor;
 import com.jayantkrish.jklol.models.DiscreteFactor.Outcome;
 import com.jayantkrish.jklol.models.DiscreteVariable;
@@ -43,9 +58,14 @@ import com.jayantkrish.jklol.models.TableFactor;
 import com.jayantkrish.jklol.models.TableFactorBuilder;
 import com.jayantkrish.jklol.models.VariableNumMap;
 import com.jayantkrish.jklol.nlpannotation.AnnotatedSentence;
+import com.jayantkrish.jklol.preprocessing.FeatureVectorGenerator;
+import com.jayantkrish.jklol.sequence.LocalContext;
+import com.jayantkrish.jklol.sequence.TaggedSequence;
 import com.jayantkrish.jklol.tensor.SparseTensorBuilder;
+import com.jayantkrish.jklol.tensor.TensorPrecision;
 import com.jayantkrish.jklol.training.NullLogFunction;
 import com.jayantkrish.jklol.util.Assignment;
+import com.jayantkrish.jklol.util.ConcurrentLongDoubleCache;
 
 public class CcgParserTest extends TestCase {
 
@@ -282,6 +302,327 @@ public class CcgParserTest extends TestCase {
     assertEquals(2, eatDeps.size());
   }
 
+  public void testParallelBeamSearch() {
+    AnnotatedSentence sentence = new AnnotatedSentence(
+        Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses"),
+        Collections.nCopies(7, DEFAULT_POS));
+    List<CcgParse> expected = parser.beamSearch(sentence, 100, null, new NullLogFunction(),
+        -1, Integer.MAX_VALUE, 1);
+
+    for (int numThreads = 2; numThreads <= 4; numThreads++) {
+      List<CcgParse> actual = parser.beamSearch(sentence, 100, null, new NullLogFunction(),
+          -1, Integer.MAX_VALUE, numThreads);
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(expected.get(i).getSubtreeProbability(), actual.get(i).getSubtreeProbability(), 1e-10);
+      }
+    }
+  }
+
+  public void testParallelBeamSearchMaxChartSize() {
+    AnnotatedSentence sentence = new AnnotatedSentence(
+        Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses"),
+        Collections.nCopies(7, DEFAULT_POS));
+    List<CcgParse> parses = parser.beamSearch(sentence, 100, null, new NullLogFunction(),
+        -1, 5, 4);
+    assertEquals(0, parses.size());
+  }
+
+  public void testParseBatch() throws Exception {
+    List<AnnotatedSentence> sentences = Lists.newArrayList();
+    for (List<String> words : Arrays.asList(
+        Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses"),
+        Arrays.asList("I", "eat", "berries"),
+        Arrays.asList("I", "quickly", "eat", "amazingly", "tasty", "berries"),
+        Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses"))) {
+      sentences.add(new AnnotatedSentence(words, Collections.nCopies(words.size(), DEFAULT_POS)));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<List<CcgParse>> results = Futures.allAsList(
+          parser.parseBatch(sentences, 100, null, -1, Integer.MAX_VALUE, executor)).get();
+      List<List<CcgParse>> defaultResults = Futures.allAsList(
+          parser.parseBatch(sentences, 100)).get();
+
+      assertEquals(sentences.size(), results.size());
+      for (int i = 0; i < sentences.size(); i++) {
+        List<CcgParse> expected = parser.beamSearch(sentences.get(i), 100);
+        for (List<CcgParse> actual : Arrays.asList(results.get(i), defaultResults.get(i))) {
+          assertEquals(expected.size(), actual.size());
+          for (int j = 0; j < expected.size(); j++) {
+            assertEquals(expected.get(j).getSubtreeProbability(),
+                actual.get(j).getSubtreeProbability(), 1e-10);
+            assertEquals(expected.get(j).getAllDependencies(), actual.get(j).getAllDependencies());
+          }
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testPooledChartReuse() {
+    List<List<String>> sentences = Arrays.asList(
+        Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses"),
+        Arrays.asList("I", "eat", "berries"),
+        Arrays.asList("I", "quickly", "eat", "amazingly", "tasty", "berries"));
+
+    // Parsing sentences of different lengths with different beam sizes
+    // reuses and resizes the current thread's pooled chart.
+    for (int beamSize : new int[] {2, 100, 10}) {
+      for (List<String> words : sentences) {
+        AnnotatedSentence sentence = new AnnotatedSentence(words,
+            Collections.nCopies(words.size(), DEFAULT_POS));
+        CcgBeamSearchChart chart = new CcgBeamSearchChart(sentence, Integer.MAX_VALUE, beamSize);
+        parser.parseCommon(chart, sentence, null, null, -1, 1);
+        List<CcgParse> expected = chart.decodeBestParsesForSpan(0, chart.size() - 1,
+            beamSize, parser);
+
+        List<CcgParse> actual = parser.beamSearch(sentence, beamSize);
+        assertEquals(expected.size(), actual.size());
+        for (int j = 0; j < expected.size(); j++) {
+          assertEquals(expected.get(j).getSubtreeProbability(),
+              actual.get(j).getSubtreeProbability(), 1e-10);
+          assertEquals(expected.get(j).getAllDependencies(), actual.get(j).getAllDependencies());
+        }
+      }
+    }
+  }
+
+  public void testDependencyScoreCache() {
+    assertNull(parser.getDependencyScoreCache());
+    CcgParser cachedParser = parser.withDependencyScoreCache(1 << 10);
+    ConcurrentLongDoubleCache cache = cachedParser.getDependencyScoreCache();
+    assertNotNull(cache);
+    assertEquals(1 << 10, cache.getCapacity());
+
+    List<String> words = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    AnnotatedSentence sentence = new AnnotatedSentence(words,
+        Collections.nCopies(words.size(), DEFAULT_POS));
+    List<CcgParse> first = cachedParser.beamSearch(sentence, 10);
+    long numHits = cache.getNumHits();
+    assertTrue(cache.getNumMisses() > 0);
+
+    // Cached dependency scores are reused by later sentences without
+    // changing their parses.
+    List<CcgParse> second = cachedParser.beamSearch(sentence, 10);
+    assertTrue(cache.getNumHits() > numHits);
+    List<CcgParse> uncached = parser.beamSearch(sentence, 10);
+    assertEquals(first.size(), second.size());
+    assertEquals(uncached.size(), second.size());
+    for (int i = 0; i < first.size(); i++) {
+      assertEquals(first.get(i).getSubtreeProbability(), second.get(i).getSubtreeProbability(), 1e-10);
+      assertEquals(uncached.get(i).getSubtreeProbability(), second.get(i).getSubtreeProbability(), 1e-10);
+      assertEquals(first.get(i).getAllDependencies(), second.get(i).getAllDependencies());
+    }
+  }
+
+  public void testKBestParsing() {
+    List<String> words = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    AnnotatedSentence sentence = new AnnotatedSentence(words,
+        Collections.nCopies(words.size(), DEFAULT_POS));
+
+    // With a large enough beam, beam search finds every derivation.
+    CcgParser kbestParser = parserWithUnaryAndComposition;
+    List<CcgParse> expected = kbestParser.beamSearch(sentence, 1000);
+    assertTrue(expected.size() > 5);
+    List<CcgParse> actual = kbestParser.parseKBest(sentence, 5, null, null, -1, Integer.MAX_VALUE);
+    assertEquals(5, actual.size());
+    for (int i = 0; i < actual.size(); i++) {
+      assertEquals(expected.get(i).getSubtreeProbability(), actual.get(i).getSubtreeProbability(), 1e-10);
+    }
+
+    actual = kbestParser.parseKBest(sentence, 1000, null, null, -1, Integer.MAX_VALUE);
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < actual.size(); i++) {
+      assertEquals(expected.get(i).getSubtreeProbability(), actual.get(i).getSubtreeProbability(), 1e-10);
+    }
+  }
+
+  public void testIterateBestParses() {
+    List<String> words = Arrays.asList("I", "quickly", "eat", "amazingly", "tasty", "berries");
+    AnnotatedSentence sentence = new AnnotatedSentence(words,
+        Collections.nCopies(words.size(), DEFAULT_POS));
+    CcgBeamSearchChart chart = new CcgBeamSearchChart(sentence, Integer.MAX_VALUE, 10);
+    parser.parseCommon(chart, sentence, null, null, -1, 1);
+    List<CcgParse> expected = chart.decodeBestParsesForSpan(0, chart.size() - 1, 10, parser);
+
+    Iterator<CcgParse> iterator = chart.iterateBestParsesForSpan(0, chart.size() - 1, parser);
+    for (CcgParse parse : expected) {
+      assertTrue(iterator.hasNext());
+      CcgParse actual = iterator.next();
+      assertEquals(parse.getSubtreeProbability(), actual.getSubtreeProbability(), 1e-10);
+    }
+    assertFalse(iterator.hasNext());
+  }
+
+  public void testMemoryBoundedParsing() {
+    List<String> words = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    AnnotatedSentence sentence = new AnnotatedSentence(words,
+        Collections.nCopies(words.size(), DEFAULT_POS));
+    CcgParser boundedParser = parserWithUnaryAndComposition;
+
+    CcgParse expected = boundedParser.parse(sentence);
+    CcgParse actual = boundedParser.parseMemoryBounded(sentence, null, null, -1,
+        Long.MAX_VALUE, false, 1);
+    assertEquals(expected.getSubtreeProbability(), actual.getSubtreeProbability(), 1e-10);
+    assertEquals(expected.getAllDependencies(), actual.getAllDependencies());
+
+    // Summing the probabilities of each signature's derivations
+    // computes the total probability of all parses.
+    CcgMemoryBoundedChart chart = new CcgMemoryBoundedChart(sentence, Long.MAX_VALUE, true);
+    boundedParser.parseCommon(chart, sentence, null, null, -1, 1);
+    double expectedPartitionFunction = 0.0;
+    for (CcgParse parse : boundedParser.beamSearch(sentence, 1000)) {
+      expectedPartitionFunction += parse.getSubtreeProbability();
+    }
+    double partitionFunction = 0.0;
+    double[] rootProbs = chart.getChartEntryProbsForSpan(0, chart.size() - 1);
+    for (int i = 0; i < chart.getNumChartEntriesForSpan(0, chart.size() - 1); i++) {
+      partitionFunction += rootProbs[i];
+    }
+    assertEquals(expectedPartitionFunction, partitionFunction, 1e-8);
+    assertTrue(chart.getNumEntriesMerged() > 0);
+    assertTrue(chart.getDeduplicationRatio() > 0.0);
+    assertTrue(chart.getEstimatedChartBytes() > 0);
+
+    // Filling the chart with multiple threads produces the same totals.
+    CcgMemoryBoundedChart parallelChart = new CcgMemoryBoundedChart(sentence, Long.MAX_VALUE, true);
+    boundedParser.parseCommon(parallelChart, sentence, null, null, -1, 4);
+    assertEquals(chart.getNumEntriesAdded(), parallelChart.getNumEntriesAdded());
+    assertEquals(chart.getNumEntriesMerged(), parallelChart.getNumEntriesMerged());
+    assertEquals(chart.getTotalNumChartEntries(), parallelChart.getTotalNumChartEntries());
+    assertEquals(chart.getEstimatedChartBytes(), parallelChart.getEstimatedChartBytes());
+
+    // Parsing is cancelled when the chart exceeds its memory budget.
+    assertNull(boundedParser.parseMemoryBounded(sentence, null, null, -1,
+        chart.getEstimatedChartBytes() / 2, false, 1));
+
+    // The arrays allocated for each span count against the budget, even
+    // before any entries are added.
+    CcgMemoryBoundedChart emptyChart = new CcgMemoryBoundedChart(sentence, Long.MAX_VALUE, false);
+    long spanArrayBytes = emptyChart.getEstimatedChartBytes();
+    assertTrue(spanArrayBytes > 0);
+    assertTrue(chart.getEstimatedChartBytes() > spanArrayBytes);
+    assertTrue(new CcgMemoryBoundedChart(sentence, spanArrayBytes - 1, false).exceedsMaxChartSize());
+    assertNull(boundedParser.parseMemoryBounded(sentence, null, null, -1,
+        spanArrayBytes, false, 1));
+  }
+
+  public void testChartPoolSizeCap() {
+    List<String> words = Arrays.asList("I", "quickly", "eat", "amazingly", "tasty", "berries");
+    AnnotatedSentence sentence = new AnnotatedSentence(words,
+        Collections.nCopies(words.size(), DEFAULT_POS));
+    int largeBeamSize = (int) (CcgBeamSearchChartPool.MAX_POOLED_CHART_CELLS
+        / (words.size() * words.size()));
+
+    // Charts above the size cap are not pooled, so they do not count
+    // against the pool's size.
+    CcgBeamSearchChartPool pool = new CcgBeamSearchChartPool(1);
+    CcgBeamSearchChart large1 = pool.checkOut(sentence, Integer.MAX_VALUE, largeBeamSize);
+    CcgBeamSearchChart large2 = pool.checkOut(sentence, Integer.MAX_VALUE, largeBeamSize);
+    assertNotSame(large1, large2);
+    pool.checkIn(large1);
+    pool.checkIn(large2);
+
+    CcgBeamSearchChart small = pool.checkOut(sentence, Integer.MAX_VALUE, 10);
+    pool.checkIn(small);
+    // Requesting a larger beam must not grow the pooled chart past the cap.
+    CcgBeamSearchChart resized = pool.checkOut(sentence, Integer.MAX_VALUE, largeBeamSize - 2);
+    assertTrue(resized.getMaxBeamSize() <= largeBeamSize - 2);
+    pool.checkIn(resized);
+    assertSame(resized, pool.checkOut(sentence, Integer.MAX_VALUE, 10));
+  }
+
+  public void testClearChartPools() {
+    List<String> words = Arrays.asList("I", "eat", "berries");
+    AnnotatedSentence sentence = new AnnotatedSentence(words,
+        Collections.nCopies(words.size(), DEFAULT_POS));
+    List<CcgParse> expected = parser.beamSearch(sentence, 10);
+
+    CcgBeamSearchChartPool pool = CcgBeamSearchChartPool.forCurrentThread();
+    assertSame(pool, CcgBeamSearchChartPool.forCurrentThread());
+    CcgParser.clearChartPools();
+    assertNotSame(pool, CcgBeamSearchChartPool.forCurrentThread());
+
+    List<CcgParse> actual = parser.beamSearch(sentence, 10);
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getSubtreeProbability(),
+          actual.get(i).getSubtreeProbability(), 1e-10);
+    }
+  }
+
+  public void testChartReset() {
+    List<String> longWords = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    List<String> shortWords = Arrays.asList("I", "eat", "berries");
+    CcgBeamSearchChart chart = new CcgBeamSearchChart(longWords.size(), 10);
+
+    chart.reset(new AnnotatedSentence(longWords, Collections.nCopies(longWords.size(), DEFAULT_POS)),
+        Integer.MAX_VALUE, 10);
+    parser.parseCommon(chart, chart.getInput(), null, null, -1, 1);
+    assertTrue(chart.getTotalNumChartEntries() > 0);
+
+    chart.reset(new AnnotatedSentence(shortWords, Collections.nCopies(shortWords.size(), DEFAULT_POS)),
+        Integer.MAX_VALUE, 5);
+    assertEquals(shortWords.size(), chart.size());
+    assertEquals(5, chart.getBeamSize());
+    assertEquals(0, chart.getTotalNumChartEntries());
+    assertFalse(chart.isFinishedParsing());
+    for (int i = 0; i < chart.size(); i++) {
+      for (int j = i; j < chart.size(); j++) {
+        assertEquals(0, chart.getNumChartEntriesForSpan(i, j));
+        assertNull(chart.getChartEntriesBySyntacticCategoryForSpan(i, j));
+      }
+    }
+
+    try {
+      chart.reset(new AnnotatedSentence(shortWords, Collections.nCopies(shortWords.size(), DEFAULT_POS)),
+          Integer.MAX_VALUE, 11);
+    } catch (IllegalArgumentException e) {
+      return;
+    }
+    fail("Expected IllegalArgumentException");
+  }
+
+  public void testIncrementalParsing() {
+    List<String> words = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    IncrementalCcgParser session = new IncrementalCcgParser(parser, 10, words.size(), null);
+    for (int i = 0; i < words.size(); i++) {
+      List<CcgParse> actual = session.addToken(words.get(i), DEFAULT_POS);
+      assertEquals(i + 1, session.size());
+
+      List<String> prefix = words.subList(0, i + 1);
+      List<CcgParse> expected = parser.beamSearch(new AnnotatedSentence(prefix,
+          Collections.nCopies(prefix.size(), DEFAULT_POS)), 10);
+      assertEquals(expected.size(), actual.size());
+      for (int j = 0; j < expected.size(); j++) {
+        assertEquals(expected.get(j).getSubtreeProbability(),
+            actual.get(j).getSubtreeProbability(), 1e-10);
+        assertEquals(expected.get(j).getAllDependencies(), actual.get(j).getAllDependencies());
+      }
+      // Scoring the complete parses must not modify the chart.
+      assertEquals(expected.size(), session.getBestParses(10).size());
+    }
+    assertTrue(session.getBestPartialParses(10).size() > 0);
+  }
+
+  public void testCompactForm() {
+    List<String> words = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    List<CcgParse> expected = beamSearch(parser, words, 100);
+
+    for (TensorPrecision precision : TensorPrecision.values()) {
+      CcgParser compactParser = parser.toCompactForm(precision);
+      List<CcgParse> actual = beamSearch(compactParser, words, 100);
+
+      assertEquals(expected.size(), actual.size());
+      assertEquals(expected.get(0).getAllDependencies(), actual.get(0).getAllDependencies());
+      assertEquals(expected.get(0).getSubtreeProbability(),
+          actual.get(0).getSubtreeProbability(), 0.05 * expected.get(0).getSubtreeProbability());
+    }
+  }
+
   public void testBeamSearch2() {
     List<CcgParse> parses = beamSearch(parser, 
         Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses"), 100);
@@ -1004,12 +1345,85 @@ public class CcgParserTest extends TestCase {
     assertEquals(1, parses.size());
   }
 
+  public void testSupertaggingBackoff() {
+    AnnotatedSentence sentence = new AnnotatedSentence(
+        Arrays.asList("blue", "berries"), Collections.nCopies(2, DEFAULT_POS));
+    // The best supertag for "berries" has no lexicon entry, so parsing
+    // only succeeds at the less restrictive threshold.
+    final List<List<HeadedSyntacticCategory>> supertags = Lists.newArrayList();
+    final List<List<Double>> scores = Lists.newArrayList();
+    supertags.add(Lists.newArrayList(HeadedSyntacticCategory.parseFrom("N{0}")));
+    scores.add(Lists.newArrayList(1.0));
+    supertags.add(Lists.newArrayList(HeadedSyntacticCategory.parseFrom("S{0}"),
+        HeadedSyntacticCategory.parseFrom("N{0}")));
+    scores.add(Lists.newArrayList(1.0, 0.5));
+
+    final int[] numMultitagCalls = new int[1];
+    Supertagger supertagger = new Supertagger() {
+      @Override
+      public FeatureVectorGenerator<LocalContext<WordAndPos>> getFeatureGenerator() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Function<? super LocalContext<WordAndPos>, ? extends Object> getInputGenerator() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public TaggedSequence<WordAndPos, HeadedSyntacticCategory> tag(List<WordAndPos> input) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public ListSupertaggedSentence multitag(List<WordAndPos> input, double threshold) {
+        numMultitagCalls[0]++;
+        return new ListSupertaggedSentence(input, supertags, scores).filterSupertags(threshold);
+      }
+    };
+
+    SupertaggingCcgParser supertaggingParser = SupertaggingCcgParser.createAdaptive(parser,
+        CcgCkyInference.getDefault(10), supertagger, new double[] {0.1, 0.9}, "supertags");
+    CcgParseResult result = supertaggingParser.parse(sentence);
+    assertEquals(0.1, result.getTagThreshold());
+    assertEquals(1, numMultitagCalls[0]);
+
+    List<PassStatistics> statistics = supertaggingParser.getPassStatistics();
+    assertEquals(2, statistics.size());
+    assertEquals(0.9, statistics.get(0).getTagThreshold());
+    assertEquals(1, statistics.get(0).getNumAttempts());
+    assertEquals(0, statistics.get(0).getNumSuccesses());
+    assertEquals(1, statistics.get(1).getNumAttempts());
+    assertEquals(1, statistics.get(1).getNumSuccesses());
+  }
+
   public void testSerialization() throws IOException {
     ObjectOutputStream oos = new ObjectOutputStream(ByteStreams.nullOutputStream());
     oos.writeObject(parserWithUnary);
     oos.close();
   }
 
+  public void testDeserializedParser() throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(bytes);
+    oos.writeObject(parserWithUnary);
+    oos.close();
+    ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    CcgParser deserialized = (CcgParser) ois.readObject();
+    ois.close();
+
+    // The deserialized parser must rebuild its compiled rules.
+    List<String> words = Arrays.asList("people", "eat", "berries", "or", "directed", "houses");
+    List<CcgParse> expected = beamSearch(parserWithUnary, words, 10);
+    List<CcgParse> actual = beamSearch(deserialized, words, 10);
+    assertEquals(2, expected.size());
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getSubtreeProbability(), actual.get(i).getSubtreeProbability(), 1e-10);
+      assertEquals(expected.get(i).getAllDependencies(), actual.get(i).getAllDependencies());
+    }
+  }
+
   public void testStringLexicon() {
     List<CcgParse> parses = beamSearch(parserWithString, Arrays.asList("stringfunc", "bar"), 20);
     assertTrue(parses.size() > 0);
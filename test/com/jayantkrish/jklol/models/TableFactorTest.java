@@ -206,6 +206,26 @@ public class TableFactorTest extends TestCase {
 	}
 
 
+	public void testProductMarginalize() {
+		DiscreteFactor m = f.productMarginalize(g.marginalize(1), Arrays.asList(new Integer[] {5, 2}));
+
+		assertEquals(Arrays.asList(new Integer[] {0, 3}), m.getVars().getVariableNums());
+		assertEquals(13.0,
+				m.getUnnormalizedProbability(Arrays.asList(new String[] {"T", "T"})));
+		assertEquals(90.0,
+				m.getUnnormalizedProbability(Arrays.asList(new String[] {"T", "F"})));
+	}
+
+	public void testProductMaxMarginalize() {
+		DiscreteFactor m = f.productMaxMarginalize(g.marginalize(1), Arrays.asList(new Integer[] {5, 2}));
+
+		assertEquals(Arrays.asList(new Integer[] {0, 3}), m.getVars().getVariableNums());
+		assertEquals(13.0,
+				m.getUnnormalizedProbability(Arrays.asList(new String[] {"T", "T"})));
+		assertEquals(54.0,
+				m.getUnnormalizedProbability(Arrays.asList(new String[] {"T", "F"})));
+	}
+
 	public void testProductEmptyFactor() {
 		DiscreteFactor m = f.marginalize(Arrays.asList(new Integer[] {0, 3, 2, 5}));
 		DiscreteFactor t = f.product(m).coerceToDiscrete();
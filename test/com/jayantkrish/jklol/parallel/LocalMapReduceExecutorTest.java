@@ -1,23 +1,39 @@
 package com.jayantkrish.jklol.parallel;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.TestCase;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
 import com.google.common.primitives.Doubles;
 import com.google.common.primitives.Ints;
+import com.jayantkrish.jklol.parallel.LocalMapReduceExecutor.CallStatistics;
+import com.jayantkrish.jklol.parallel.LocalMapReduceExecutor.PoolType;
 import com.jayantkrish.jklol.parallel.Reducer.SimpleReducer;
+import com.jayantkrish.jklol.parallel.Reducer.ThreadLocalReducer;
 
 public class LocalMapReduceExecutorTest extends TestCase {
 
   private LocalMapReduceExecutor executor;
+  private LocalMapReduceExecutor fixedExecutor;
+  private LocalMapReduceExecutor workStealingExecutor;
   private List<Double> shortItems;
   private List<Double> longItems;
 
   @Override
   public void setUp() {
     executor = new LocalMapReduceExecutor(3, 2);
+    fixedExecutor = new LocalMapReduceExecutor(3, 2, PoolType.FIXED);
+    workStealingExecutor = new LocalMapReduceExecutor(3, 2, PoolType.WORK_STEALING);
     // Has fewer than the number of batches;
     shortItems = Doubles.asList(new double[] { 0.6, 2.2, 3.3, 3.9 });
     // Has more than the number of batches;
@@ -33,6 +49,206 @@ public class LocalMapReduceExecutorTest extends TestCase {
     assertEquals(45, value);
   }
 
+  @Override
+  public void tearDown() {
+    fixedExecutor.shutdown();
+    workStealingExecutor.shutdown();
+  }
+
+  public void testMapReducePersistent() {
+    for (LocalMapReduceExecutor persistent : Arrays.asList(fixedExecutor, workStealingExecutor)) {
+      assertTrue(persistent.isPersistent());
+      // Repeated calls reuse the same threads.
+      for (int i = 0; i < 10; i++) {
+        assertEquals(10, (int) persistent.mapReduce(shortItems, new RoundMapper(), new SumReducer()));
+        assertEquals(45, (int) persistent.mapReduce(longItems, new RoundMapper(), new SumReducer()));
+        assertEquals(Ints.asList(1, 2, 3, 4, 5, 6, 7, 8, 9), persistent.map(longItems, new RoundMapper()));
+      }
+    }
+  }
+
+  public void testShutdown() {
+    assertFalse(fixedExecutor.isShutdown());
+    fixedExecutor.shutdown();
+    assertTrue(fixedExecutor.isShutdown());
+    try {
+      fixedExecutor.mapReduce(longItems, new RoundMapper(), new SumReducer());
+    } catch (IllegalStateException e) {
+      return;
+    }
+    fail("Expected IllegalStateException");
+  }
+
+  public void testCallStatistics() {
+    assertNull(fixedExecutor.getLastCallStatistics());
+    fixedExecutor.mapReduce(longItems, new RoundMapper(), new SumReducer());
+    CallStatistics statistics = fixedExecutor.getLastCallStatistics();
+    assertEquals(9, statistics.getNumItems());
+    assertEquals(5, statistics.getNumBatches());
+    assertTrue(statistics.getQueueWaitNanos() >= 0);
+    assertTrue(statistics.getMapNanos() > 0);
+    assertTrue(statistics.getCombineNanos() > 0);
+    assertTrue(statistics.getTotalNanos() > 0);
+
+    fixedExecutor.map(shortItems, new RoundMapper());
+    statistics = fixedExecutor.getLastCallStatistics();
+    assertEquals(4, statistics.getNumItems());
+    assertEquals(4, statistics.getNumBatches());
+  }
+
+  public void testCombineOrder() {
+    // Batch results must be combined in order, since the reducer
+    // is not commutative.
+    List<Integer> items = Lists.newArrayList();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      items.add(i);
+      expected.append(i + ",");
+    }
+
+    for (LocalMapReduceExecutor e : Arrays.asList(executor, fixedExecutor, workStealingExecutor)) {
+      for (int i = 0; i < 10; i++) {
+        assertEquals(expected.toString(), e.mapReduce(items, Mappers.<Integer>identity(),
+            new ConcatenatingReducer()));
+      }
+    }
+  }
+
+  public void testThreadLocalReducer() {
+    List<Double> items = Lists.newArrayList();
+    for (int i = 0; i < 1000; i++) {
+      items.add((double) i);
+    }
+
+    // By default, each batch has its own accumulator, so the result
+    // does not depend on thread scheduling.
+    for (LocalMapReduceExecutor e : Arrays.asList(executor, fixedExecutor, workStealingExecutor)) {
+      assertFalse(e.usesThreadLocalReduction());
+      CountingSumReducer reducer = new CountingSumReducer();
+      int[] result = e.mapReduce(items, new RoundMapper(), reducer);
+      assertEquals(999 * 500, result[0]);
+      assertEquals(7, reducer.numInitialValues.get());
+    }
+
+    List<LocalMapReduceExecutor> threadLocalExecutors = Arrays.asList(
+        new LocalMapReduceExecutor(3, 2, PoolType.PER_CALL, true),
+        new LocalMapReduceExecutor(3, 2, PoolType.FIXED, true),
+        new LocalMapReduceExecutor(3, 2, PoolType.WORK_STEALING, true));
+    try {
+      for (LocalMapReduceExecutor e : threadLocalExecutors) {
+        assertTrue(e.usesThreadLocalReduction());
+        CountingSumReducer reducer = new CountingSumReducer();
+        int[] result = e.mapReduce(items, new RoundMapper(), reducer);
+        assertEquals(999 * 500, result[0]);
+        // Accumulators are only created for each of the 3 threads and
+        // the returned value, not each batch.
+        assertTrue(reducer.numInitialValues.get() <= 4);
+
+        // Reducers that are not thread-local still get one accumulator
+        // per batch.
+        assertEquals("0,1,2,3,", e.mapReduce(Arrays.asList(0, 1, 2, 3),
+            Mappers.<Integer>identity(), new ConcatenatingReducer()));
+      }
+    } finally {
+      for (LocalMapReduceExecutor e : threadLocalExecutors) {
+        e.shutdown();
+      }
+    }
+  }
+
+  public void testNestedCalls() {
+    final LocalMapReduceExecutor nested = new LocalMapReduceExecutor(2, 1, PoolType.FIXED);
+    Mapper<Double, Integer> mapper = new Mapper<Double, Integer>() {
+      @Override
+      public Integer map(Double item) {
+        return nested.mapReduce(shortItems, new RoundMapper(), new SumReducer());
+      }
+    };
+
+    try {
+      // Calls from the executor's own threads must not deadlock.
+      assertEquals(90, (int) nested.mapReduce(longItems, mapper, new SumReducer()));
+      assertEquals(Collections.nCopies(4, 10), nested.map(shortItems, mapper));
+    } finally {
+      nested.shutdown();
+    }
+  }
+
+  public void testNestedCallsSharedPool() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    final LocalMapReduceExecutor outer = new LocalMapReduceExecutor(2, 1, pool);
+    final LocalMapReduceExecutor inner = new LocalMapReduceExecutor(2, 1, pool);
+    final Mapper<Double, Integer> mapper = new Mapper<Double, Integer>() {
+      @Override
+      public Integer map(Double item) {
+        // The second call follows a nested call in the same task.
+        inner.mapReduce(shortItems, new RoundMapper(), new SumReducer());
+        return inner.mapReduce(shortItems, new RoundMapper(), new SumReducer());
+      }
+    };
+
+    // Calls from tasks of another executor on the same pool must not
+    // deadlock.
+    ExecutorService caller = Executors.newSingleThreadExecutor();
+    try {
+      Future<Integer> result = caller.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() {
+          return outer.mapReduce(longItems, mapper, new SumReducer());
+        }
+      });
+      assertEquals(90, (int) result.get(60, TimeUnit.SECONDS));
+      assertEquals(1, inner.getLastCallStatistics().getNumBatches());
+    } finally {
+      caller.shutdownNow();
+      outer.shutdown();
+    }
+  }
+
+  public void testNestedCallsGlobalExecutor() {
+    MapReduceExecutor previous = MapReduceConfiguration.getMapReduceExecutor();
+    MapReduceConfiguration.setMapReduceExecutor(null);
+    final MapReduceExecutor global = MapReduceConfiguration.getMapReduceExecutor();
+    Mapper<Double, Integer> mapper = new Mapper<Double, Integer>() {
+      @Override
+      public Integer map(Double item) {
+        return MapReduceConfiguration.getMapReduceExecutor().mapReduce(shortItems,
+            new RoundMapper(), new SumReducer());
+      }
+    };
+
+    try {
+      // The default executor has a persistent pool, which tasks that
+      // call the global executor must not deadlock.
+      List<Double> items = Collections.nCopies(
+          4 * Runtime.getRuntime().availableProcessors(), 1.0);
+      assertEquals(10 * items.size(), (int) global.mapReduce(items, mapper, new SumReducer()));
+      assertEquals(Collections.nCopies(items.size(), 10), global.map(items, mapper));
+    } finally {
+      ((LocalMapReduceExecutor) global).shutdown();
+      MapReduceConfiguration.setMapReduceExecutor(previous);
+    }
+  }
+
+  public void testCallsFromOtherExecutors() {
+    final LocalMapReduceExecutor inner = new LocalMapReduceExecutor(2, 1, PoolType.FIXED);
+    Mapper<Double, Integer> mapper = new Mapper<Double, Integer>() {
+      @Override
+      public Integer map(Double item) {
+        inner.mapReduce(longItems, new RoundMapper(), new SumReducer());
+        return inner.getLastCallStatistics().getNumBatches();
+      }
+    };
+
+    try {
+      // Tasks of another executor's pool may use this executor's
+      // threads, so their calls are run in parallel.
+      assertEquals(Collections.nCopies(4, 2), fixedExecutor.map(shortItems, mapper));
+    } finally {
+      inner.shutdown();
+    }
+  }
+
   public void testMap() {
     List<Integer> result = executor.map(shortItems, new RoundMapper());
     assertEquals(Ints.asList(1, 2, 3, 4), result);
@@ -63,6 +279,45 @@ public class LocalMapReduceExecutorTest extends TestCase {
     }
   }
  
+  private static class ConcatenatingReducer implements Reducer<Integer, String> {
+    @Override
+    public String getInitialValue() {
+      return "";
+    }
+
+    @Override
+    public String reduce(Integer item, String accumulated) {
+      return accumulated + item + ",";
+    }
+
+    @Override
+    public String combine(String other, String accumulated) {
+      return accumulated + other;
+    }
+  }
+
+  private static class CountingSumReducer implements ThreadLocalReducer<Integer, int[]> {
+    private final AtomicInteger numInitialValues = new AtomicInteger(0);
+
+    @Override
+    public int[] getInitialValue() {
+      numInitialValues.incrementAndGet();
+      return new int[1];
+    }
+
+    @Override
+    public int[] reduce(Integer item, int[] accumulated) {
+      accumulated[0] += item;
+      return accumulated;
+    }
+
+    @Override
+    public int[] combine(int[] other, int[] accumulated) {
+      accumulated[0] += other[0];
+      return accumulated;
+    }
+  }
+
   private static class SumReducer extends SimpleReducer<Integer> {
     @Override
     public Integer getInitialValue() {
@@ -0,0 +1,351 @@
+package com.jayantkrish.jklol.parallel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Ints;
+import com.jayantkrish.jklol.evaluation.Example;
+import com.jayantkrish.jklol.inference.JunctionTree;
+import com.jayantkrish.jklol.models.DiscreteVariable;
+import com.jayantkrish.jklol.models.VariableNumMap;
+import com.jayantkrish.jklol.models.dynamic.DynamicAssignment;
+import com.jayantkrish.jklol.models.loglinear.DiscreteLogLinearFactor;
+import com.jayantkrish.jklol.models.parametric.ParametricFactorGraph;
+import com.jayantkrish.jklol.models.parametric.ParametricFactorGraphBuilder;
+import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
+import com.jayantkrish.jklol.models.parametric.TensorSufficientStatistics;
+import com.jayantkrish.jklol.parallel.LocalMapReduceExecutor.PoolType;
+import com.jayantkrish.jklol.parallel.Reducer.SimpleReducer;
+import com.jayantkrish.jklol.training.GradientEvaluation;
+import com.jayantkrish.jklol.training.GradientOracle;
+import com.jayantkrish.jklol.training.GradientReducer;
+import com.jayantkrish.jklol.training.LogFunction;
+import com.jayantkrish.jklol.training.LoglikelihoodOracle;
+import com.jayantkrish.jklol.training.NullLogFunction;
+import com.jayantkrish.jklol.training.StochasticGradientTrainer;
+
+public class MultiProcessMapReduceExecutorTest extends TestCase {
+
+  private MultiProcessMapReduceExecutor executor;
+  private List<Double> shortItems;
+  private List<Double> longItems;
+
+  @Override
+  public void setUp() {
+    executor = MultiProcessMapReduceExecutor.createInProcess(3, 2);
+    // Has fewer items than workers.
+    shortItems = Doubles.asList(new double[] { 0.6, 2.2 });
+    longItems = Doubles.asList(new double[] { 0.6, 2.2, 3.3, 3.9, 5.1, 6.1, 7.2, 8.3, 9.4 });
+  }
+
+  @Override
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  public void testMapReduce() {
+    assertEquals(3, (int) executor.mapReduce(shortItems, new RoundMapper(), new SumReducer()));
+    assertEquals(45, (int) executor.mapReduce(longItems, new RoundMapper(), new SumReducer()));
+    assertEquals(50, (int) executor.mapReduce(longItems, new RoundMapper(), new SumReducer(), 5));
+    assertEquals(0, (int) executor.mapReduce(Collections.<Double>emptyList(),
+        new RoundMapper(), new SumReducer()));
+  }
+
+  public void testMap() {
+    assertEquals(Ints.asList(1, 2), executor.map(shortItems, new RoundMapper()));
+    assertEquals(Ints.asList(1, 2, 3, 4, 5, 6, 7, 8, 9), executor.map(longItems, new RoundMapper()));
+  }
+
+  public void testCombineOrder() {
+    String value = executor.mapReduce(longItems, new RoundMapper(), new ConcatenatingReducer());
+    assertEquals("123456789", value);
+  }
+
+  public void testNotSerializable() {
+    // Anonymous classes of this test case cannot be serialized, so the
+    // call runs locally.
+    Reducer<Integer, Integer> reducer = new SimpleReducer<Integer>() {
+      @Override
+      public Integer getInitialValue() {
+        return 0;
+      }
+
+      @Override
+      public Integer reduce(Integer item, Integer accumulated) {
+        return item + accumulated;
+      }
+    };
+    assertEquals(45, (int) executor.mapReduce(longItems, new RoundMapper(), reducer));
+  }
+
+  public void testWorkerError() {
+    try {
+      executor.map(Doubles.asList(1.0, -1.0, 2.0), new RoundMapper());
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage().contains("Negative item"));
+      return;
+    }
+    fail("Expected RuntimeException");
+  }
+
+  public void testGradientReducer() {
+    SumOracle oracle = new SumOracle(5);
+    SufficientStatistics parameters = oracle.initializeGradient();
+    GradientReducer<SufficientStatistics, int[]> reducer = new GradientReducer<SufficientStatistics, int[]>(
+        parameters, parameters, oracle, new NullLogFunction());
+
+    List<int[]> examples = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      examples.add(new int[] { i % 5, (i * 3) % 5 });
+    }
+
+    GradientEvaluation expected = new LocalMapReduceExecutor(2, 2).mapReduce(examples,
+        Mappers.<int[]>identity(), reducer);
+    GradientEvaluation actual = executor.mapReduce(examples,
+        Mappers.<int[]>identity(), reducer);
+
+    assertEquals(expected.getObjectiveValue(), actual.getObjectiveValue(), 1e-10);
+    assertEquals(20.0, actual.getObjectiveValue(), 1e-10);
+    actual.getGradient().increment(expected.getGradient(), -1.0);
+    assertEquals(0.0, actual.getGradient().getL2Norm(), 1e-10);
+  }
+
+  public void testTrainLoglikelihoodOracle() {
+    ParametricFactorGraphBuilder builder = new ParametricFactorGraphBuilder();
+    DiscreteVariable tfVar = new DiscreteVariable("TrueFalse", Arrays.asList("T", "F"));
+    builder.addVariable("Var0", tfVar);
+    builder.addVariable("Var1", tfVar);
+    builder.addVariable("Var2", tfVar);
+    builder.addUnreplicatedFactor("f0", DiscreteLogLinearFactor.createIndicatorFactor(
+        builder.getVariables().getVariablesByName(Arrays.asList("Var0", "Var1"))));
+    builder.addUnreplicatedFactor("f1", DiscreteLogLinearFactor.createIndicatorFactor(
+        builder.getVariables().getVariablesByName(Arrays.asList("Var1", "Var2"))));
+    ParametricFactorGraph family = builder.build();
+
+    List<Example<DynamicAssignment, DynamicAssignment>> trainingData = Lists.newArrayList();
+    for (List<String> outcome : Arrays.asList(Arrays.asList("T", "T", "T"),
+        Arrays.asList("T", "T", "F"), Arrays.asList("F", "F", "F"))) {
+      trainingData.add(Example.create(DynamicAssignment.EMPTY,
+          family.getVariables().fixedVariableOutcomeToAssignment(outcome)));
+    }
+
+    List<CountingWorkerConnection> workers = Lists.newArrayList();
+    for (int i = 0; i < 2; i++) {
+      workers.add(new CountingWorkerConnection(new MapReduceWorker(1)));
+    }
+    // Calls that are run locally would fail.
+    MultiProcessMapReduceExecutor remote = new MultiProcessMapReduceExecutor(workers,
+        new LocalMapReduceExecutor(1, 1, PoolType.FIXED) {
+          @Override
+          public <A, B, C, D extends Mapper<A, B>, E extends Reducer<B, C>> C mapReduce(
+              Collection<? extends A> items, D mapper, E reducer, C accumulator) {
+            throw new UnsupportedOperationException("Expected a remote call.");
+          }
+        });
+
+    LoglikelihoodOracle oracle = new LoglikelihoodOracle(family, new JunctionTree());
+    StochasticGradientTrainer trainer = StochasticGradientTrainer.createWithL2Regularization(
+        10, 3, 1.0, true, false, Double.MAX_VALUE, 0.1, new NullLogFunction());
+    MapReduceExecutor previous = MapReduceConfiguration.getMapReduceExecutor();
+    try {
+      MapReduceConfiguration.setMapReduceExecutor(new LocalMapReduceExecutor(1, 1));
+      SufficientStatistics expected = trainer.train(oracle, oracle.initializeGradient(),
+          trainingData);
+
+      MapReduceConfiguration.setMapReduceExecutor(remote);
+      SufficientStatistics actual = trainer.train(oracle, oracle.initializeGradient(),
+          trainingData);
+
+      // Each iteration sends its minibatch to both workers.
+      for (CountingWorkerConnection worker : workers) {
+        assertEquals(10, worker.getNumCalls());
+      }
+      assertTrue(expected.getL2Norm() > 0.1);
+      actual.increment(expected, -1.0);
+      assertEquals(0.0, actual.getL2Norm(), 1e-8);
+    } finally {
+      MapReduceConfiguration.setMapReduceExecutor(previous);
+      remote.shutdown();
+    }
+  }
+
+  public void testForkedWorkers() {
+    MultiProcessMapReduceExecutor forked = MultiProcessMapReduceExecutor.forkLocalWorkers(2, 1,
+        Collections.<String>emptyList());
+    try {
+      for (int i = 0; i < 3; i++) {
+        assertEquals(45, (int) forked.mapReduce(longItems, new RoundMapper(), new SumReducer()));
+        assertEquals("123456789", forked.mapReduce(longItems, new RoundMapper(),
+            new ConcatenatingReducer()));
+      }
+    } finally {
+      forked.shutdown();
+    }
+  }
+
+  public void testWorkerAuthentication() throws Exception {
+    final String token = MapReduceWorker.generateToken();
+    assertFalse(token.equals(MapReduceWorker.generateToken()));
+
+    final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    ExecutorService acceptor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Socket> accepted = acceptor.submit(new Callable<Socket>() {
+        @Override
+        public Socket call() throws IOException {
+          return MapReduceWorker.acceptAuthenticated(serverSocket, token);
+        }
+      });
+
+      // Connections with the wrong token are closed.
+      Socket wrongToken = connect(serverSocket.getLocalPort(), token.replace(token.charAt(0),
+          token.charAt(0) == '0' ? '1' : '0'));
+      assertEquals(-1, wrongToken.getInputStream().read());
+      wrongToken.close();
+      Socket truncatedToken = connect(serverSocket.getLocalPort(), token.substring(1));
+      truncatedToken.shutdownOutput();
+      assertEquals(-1, truncatedToken.getInputStream().read());
+      truncatedToken.close();
+      assertFalse(accepted.isDone());
+
+      Socket rightToken = connect(serverSocket.getLocalPort(), token);
+      Socket workerSocket = accepted.get();
+      assertEquals(rightToken.getLocalPort(), workerSocket.getPort());
+      rightToken.close();
+      workerSocket.close();
+    } finally {
+      acceptor.shutdownNow();
+      serverSocket.close();
+    }
+  }
+
+  private static Socket connect(int port, String token) throws IOException {
+    Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+    OutputStream out = socket.getOutputStream();
+    out.write(token.getBytes(StandardCharsets.UTF_8));
+    out.flush();
+    return socket;
+  }
+
+  private static class RoundMapper extends Mapper<Double, Integer> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Integer map(Double item) {
+      if (item < 0) {
+        throw new IllegalArgumentException("Negative item: " + item);
+      }
+      return (int) Math.round(item);
+    }
+  }
+
+  private static class SumReducer implements Reducer<Integer, Integer>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Integer getInitialValue() {
+      return 0;
+    }
+
+    @Override
+    public Integer reduce(Integer item, Integer accumulated) {
+      return item + accumulated;
+    }
+
+    @Override
+    public Integer combine(Integer other, Integer accumulated) {
+      return other + accumulated;
+    }
+  }
+
+  private static class ConcatenatingReducer implements Reducer<Integer, String>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String getInitialValue() {
+      return "";
+    }
+
+    @Override
+    public String reduce(Integer item, String accumulated) {
+      return accumulated + item;
+    }
+
+    @Override
+    public String combine(String other, String accumulated) {
+      return accumulated + other;
+    }
+  }
+
+  private static class CountingWorkerConnection extends LocalWorkerConnection {
+    private final AtomicInteger numCalls;
+
+    public CountingWorkerConnection(MapReduceWorker worker) {
+      super(worker);
+      this.numCalls = new AtomicInteger(0);
+    }
+
+    @Override
+    public byte[] call(byte[] request) {
+      numCalls.incrementAndGet();
+      return super.call(request);
+    }
+
+    public int getNumCalls() {
+      return numCalls.get();
+    }
+  }
+
+  /**
+   * Objective is the number of features of each example, whose gradient
+   * is the vector of feature counts.
+   */
+  private static class SumOracle implements GradientOracle<SufficientStatistics, int[]>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final VariableNumMap features;
+
+    public SumOracle(int numFeatures) {
+      features = VariableNumMap.singleton(0, "features",
+          DiscreteVariable.sequence("features", numFeatures));
+    }
+
+    @Override
+    public SufficientStatistics initializeGradient() {
+      return TensorSufficientStatistics.createDense(features);
+    }
+
+    @Override
+    public SufficientStatistics instantiateModel(SufficientStatistics parameters) {
+      return parameters;
+    }
+
+    @Override
+    public double accumulateGradient(SufficientStatistics gradient,
+        SufficientStatistics currentParameters, SufficientStatistics instantiatedModel,
+        int[] example, LogFunction log) {
+      for (int i = 0; i < example.length; i++) {
+        ((TensorSufficientStatistics) gradient).incrementFeatureByIndex(1.0, example[i]);
+      }
+      return example.length;
+    }
+  }
+}
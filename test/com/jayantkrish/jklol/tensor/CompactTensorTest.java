@@ -0,0 +1,213 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import com.jayantkrish.jklol.tensor.TensorBase.KeyValue;
+
+/**
+ * Unit tests for {@link CompactTensor} and its subclasses.
+ *
+ * @author jayantk
+ */
+public class CompactTensorTest extends TestCase {
+
+  private static final double TOLERANCE = 1e-10;
+
+  private int[] dimNums, dimSizes;
+  private SparseTensor sparse, other;
+  private DenseTensor dense;
+
+  @Override
+  public void setUp() {
+    dimNums = new int[] {1, 3};
+    dimSizes = new int[] {4, 3};
+
+    SparseTensorBuilder builder = new SparseTensorBuilder(dimNums, dimSizes);
+    builder.put(new int[] {0, 1}, 0.1);
+    builder.put(new int[] {1, 0}, -2.5);
+    builder.put(new int[] {2, 2}, 3.0);
+    builder.put(new int[] {3, 1}, 1.0 / 3.0);
+    sparse = builder.build();
+
+    SparseTensorBuilder otherBuilder = new SparseTensorBuilder(dimNums, dimSizes);
+    otherBuilder.put(new int[] {0, 1}, 2.0);
+    otherBuilder.put(new int[] {2, 2}, 4.0);
+    otherBuilder.put(new int[] {3, 0}, 1.0);
+    other = otherBuilder.build();
+
+    dense = DenseTensor.copyOf(sparse);
+  }
+
+  public void testDoublePrecision() {
+    assertSame(sparse, CompactTensor.copyOf(sparse, TensorPrecision.DOUBLE));
+  }
+
+  public void testFloatSparse() {
+    Tensor tensor = CompactTensor.copyOf(sparse, TensorPrecision.FLOAT);
+    assertTrue(tensor instanceof FloatSparseTensor);
+    assertEquals(sparse.size(), tensor.size());
+    for (int i = 0; i < sparse.size(); i++) {
+      assertEquals(sparse.indexToKeyNum(i), tensor.indexToKeyNum(i));
+      assertEquals((float) sparse.getByIndex(i), tensor.getByIndex(i), 0.0);
+    }
+    assertEquals(0.0, tensor.getByDimKey(0, 0));
+    assertEquals(-1, tensor.keyNumToIndex(0));
+    assertEquals(1.0f / 3.0f, tensor.getByDimKey(3, 1), 0.0);
+  }
+
+  public void testFloatDense() {
+    Tensor tensor = CompactTensor.copyOf(dense, TensorPrecision.FLOAT);
+    assertTrue(tensor instanceof FloatDenseTensor);
+    assertTrue(((CompactTensor) tensor).isDense());
+    assertEquals(dense.size(), tensor.size());
+    for (int i = 0; i < dense.size(); i++) {
+      assertEquals(i, tensor.indexToKeyNum(i));
+      assertEquals((float) dense.getByIndex(i), tensor.getByIndex(i), 0.0);
+    }
+  }
+
+  public void testQuantized() {
+    Tensor tensor = CompactTensor.copyOf(sparse, TensorPrecision.INT8);
+    assertTrue(tensor instanceof QuantizedTensor);
+    double scale = ((QuantizedTensor) tensor).getScale();
+    assertEquals(3.0 / 127, scale, TOLERANCE);
+    assertEquals(3.0, tensor.getByDimKey(2, 2), TOLERANCE);
+
+    for (int i = 0; i < sparse.size(); i++) {
+      assertEquals(sparse.indexToKeyNum(i), tensor.indexToKeyNum(i));
+      assertEquals(sparse.getByIndex(i), tensor.getByIndex(i), (scale / 2) + TOLERANCE);
+    }
+  }
+
+  public void testQuantizedZeros() {
+    SparseTensor zeros = SparseTensor.empty(dimNums, dimSizes);
+    Tensor tensor = CompactTensor.copyOf(DenseTensor.copyOf(zeros), TensorPrecision.INT8);
+    assertTrue(((CompactTensor) tensor).isDense());
+    assertEquals(0.0, tensor.getTrace());
+    assertEquals(0.0, tensor.getByDimKey(1, 1));
+  }
+
+  public void testQuantizedNonFinite() {
+    for (double value : new double[] {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+        Double.NaN}) {
+      try {
+        QuantizedTensor.fromValues(new int[] {0}, new int[] {2}, null, new double[] {1.0, value});
+      } catch (IllegalArgumentException e) {
+        continue;
+      }
+      fail("Expected IllegalArgumentException for " + value);
+    }
+  }
+
+  public void testToHash() {
+    SparseTensorBuilder builder = new SparseTensorBuilder(new int[] {0, 1}, new int[] {100, 50});
+    for (int i = 0; i < 100; i++) {
+      builder.put(new int[] {i, (i * 7) % 50}, i + 1.0);
+    }
+    SparseTensor large = builder.build();
+
+    for (Tensor tensor : Arrays.<Tensor>asList(CompactTensor.copyOf(sparse, TensorPrecision.FLOAT),
+        CompactTensor.copyOf(large, TensorPrecision.INT8), CompressedSparseTensor.copyOf(large),
+        CompactTensor.copyOf(dense, TensorPrecision.FLOAT))) {
+      TensorHash hash = tensor.toHash();
+      assertEquals(((CompactTensor) tensor).isDense(), hash == tensor);
+      for (long keyNum = 0; keyNum < tensor.getMaxKeyNum(); keyNum++) {
+        assertEquals(tensor.get(keyNum), hash.get(keyNum));
+      }
+    }
+  }
+
+  public void testSparseDropsZeros() {
+    SparseTensorBuilder builder = new SparseTensorBuilder(dimNums, dimSizes);
+    builder.put(new int[] {0, 0}, 0.0);
+    builder.put(new int[] {1, 1}, 2.0);
+    Tensor tensor = CompactTensor.copyOf(builder.build(), TensorPrecision.FLOAT);
+    assertEquals(1, tensor.size());
+    assertEquals(2.0, tensor.getByDimKey(1, 1));
+  }
+
+  public void testUnsortedSource() {
+    HashTensorBuilder builder = new HashTensorBuilder(dimNums, dimSizes);
+    builder.put(new int[] {3, 2}, 1.0);
+    builder.put(new int[] {0, 1}, 2.0);
+    builder.put(new int[] {2, 0}, 3.0);
+
+    Tensor tensor = CompactTensor.copyOf(builder.buildNoCopy(), TensorPrecision.FLOAT);
+    long[] keyNums = new long[tensor.size()];
+    for (int i = 0; i < keyNums.length; i++) {
+      keyNums[i] = tensor.indexToKeyNum(i);
+    }
+    long[] sortedKeyNums = Arrays.copyOf(keyNums, keyNums.length);
+    Arrays.sort(sortedKeyNums);
+    assertTrue(Arrays.equals(sortedKeyNums, keyNums));
+    assertEquals(2.0, tensor.getByDimKey(0, 1));
+  }
+
+  public void testGetNearestIndex() {
+    Tensor tensor = CompactTensor.copyOf(sparse, TensorPrecision.FLOAT);
+    for (long keyNum = 0; keyNum < sparse.getMaxKeyNum(); keyNum++) {
+      assertEquals(sparse.getNearestIndex(keyNum), tensor.getNearestIndex(keyNum));
+    }
+  }
+
+  public void testKeyValueIterators() {
+    Tensor tensor = CompactTensor.copyOf(sparse, TensorPrecision.FLOAT);
+    assertEquals(sparse.size(), countKeyValues(tensor.keyValueIterator()));
+    assertEquals(countKeyValues(sparse.keyValuePrefixIterator(new int[] {3})),
+        countKeyValues(tensor.keyValuePrefixIterator(new int[] {3})));
+  }
+
+  public void testReductions() {
+    Tensor tensor = CompactTensor.copyOf(sparse, TensorPrecision.FLOAT);
+    assertEquals(sparse.getTrace(), tensor.getTrace(), 1e-6);
+    assertEquals(sparse.getL2Norm(), tensor.getL2Norm(), 1e-6);
+    assertTrue(Arrays.equals(sparse.getLargestValues(2), tensor.getLargestValues(2)));
+  }
+
+  public void testDelegatedOperations() {
+    Tensor tensor = CompactTensor.copyOf(sparse, TensorPrecision.FLOAT);
+    Tensor rounded = ((CompactTensor) tensor).toTensor();
+
+    assertTensorEquals(rounded.elementwiseProduct(other), tensor.elementwiseProduct(other));
+    assertTensorEquals(rounded.elementwiseAddition(other), tensor.elementwiseAddition(other));
+    assertTensorEquals(rounded.sumOutDimensions(Arrays.asList(3)),
+        tensor.sumOutDimensions(Arrays.asList(3)));
+    assertTensorEquals(rounded.maxOutDimensions(Arrays.asList(1)),
+        tensor.maxOutDimensions(Arrays.asList(1)));
+    assertTensorEquals(rounded.elementwiseExp(), tensor.elementwiseExp());
+  }
+
+  public void testLogSpaceAdapters() {
+    Tensor logWeights = CompactTensor.copyOf(sparse, TensorPrecision.INT8);
+    Tensor logSpace = CompactTensor.copyOf(new SparseLogSpaceTensorAdapter(sparse),
+        TensorPrecision.INT8);
+    assertTrue(logSpace instanceof SparseLogSpaceTensorAdapter);
+    assertTrue(((SparseLogSpaceTensorAdapter) logSpace).getLogWeights() instanceof QuantizedTensor);
+    assertEquals(Math.exp(logWeights.getByDimKey(2, 2)), logSpace.getByDimKey(2, 2), TOLERANCE);
+
+    Tensor denseLogSpace = CompactTensor.copyOf(new LogSpaceTensorAdapter(dense),
+        TensorPrecision.FLOAT);
+    assertTrue(denseLogSpace instanceof LogSpaceTensorAdapter);
+    assertEquals(Math.exp((float) 3.0), denseLogSpace.getByDimKey(2, 2), 1e-6);
+    assertEquals(1.0, denseLogSpace.getByDimKey(0, 0), TOLERANCE);
+  }
+
+  private static int countKeyValues(Iterator<KeyValue> iterator) {
+    int count = 0;
+    while (iterator.hasNext()) {
+      iterator.next();
+      count++;
+    }
+    return count;
+  }
+
+  private static void assertTensorEquals(Tensor expected, Tensor actual) {
+    assertTrue(Arrays.equals(expected.getDimensionNumbers(), actual.getDimensionNumbers()));
+    for (long keyNum = 0; keyNum < expected.getMaxKeyNum(); keyNum++) {
+      assertEquals(expected.get(keyNum), actual.get(keyNum), TOLERANCE);
+    }
+  }
+}
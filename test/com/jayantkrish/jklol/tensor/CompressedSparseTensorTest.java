@@ -0,0 +1,173 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.jayantkrish.jklol.tensor.TensorBase.KeyValue;
+
+/**
+ * Unit tests for {@link CompressedSparseTensor} and
+ * {@link CompressedKeyArray}.
+ *
+ * @author jayantk
+ */
+public class CompressedSparseTensorTest extends TestCase {
+
+  private static final double TOLERANCE = 1e-10;
+
+  private int[] dimNums, dimSizes;
+  private SparseTensor sparse, other;
+  private CompressedSparseTensor compressed;
+
+  @Override
+  public void setUp() {
+    dimNums = new int[] {0, 2};
+    dimSizes = new int[] {200, 1000};
+
+    // Keys are clustered, with occasional large gaps, and span many
+    // blocks of the compressed key array.
+    sparse = randomTensor(new Random(0), 0.02);
+    other = randomTensor(new Random(1), 0.01);
+    compressed = CompressedSparseTensor.copyOf(sparse, 8);
+  }
+
+  private SparseTensor randomTensor(Random random, double density) {
+    SparseTensorBuilder builder = new SparseTensorBuilder(dimNums, dimSizes);
+    for (int i = 0; i < dimSizes[0]; i++) {
+      for (int j = 0; j < dimSizes[1]; j++) {
+        if (random.nextDouble() < density || (i == 17 && j < 300)) {
+          builder.put(new int[] {i, j}, random.nextDouble() - 0.5);
+        }
+      }
+    }
+    builder.put(new int[] {dimSizes[0] - 1, dimSizes[1] - 1}, 1.0);
+    return builder.build();
+  }
+
+  public void testKeyArray() {
+    long[] keyNums = new long[] {0, 1, 2, 130, 131, 20000, 1L << 40, (1L << 40) + 1, Long.MAX_VALUE};
+    for (int blockSize = 1; blockSize <= keyNums.length + 1; blockSize++) {
+      CompressedKeyArray keys = CompressedKeyArray.fromSortedKeys(keyNums, blockSize);
+      assertEquals(keyNums.length, keys.size());
+      assertTrue(Arrays.equals(keyNums, keys.toArray()));
+      for (int i = 0; i < keyNums.length; i++) {
+        assertEquals(keyNums[i], keys.get(i));
+        assertEquals(i, keys.indexOf(keyNums[i]));
+        assertEquals(i, keys.getNearestIndex(keyNums[i]));
+      }
+      assertEquals(-1, keys.indexOf(3));
+      assertEquals(3, keys.getNearestIndex(3));
+      assertEquals(5, keys.getNearestIndex(132));
+      assertEquals(8, keys.getNearestIndex(Long.MAX_VALUE - 1));
+    }
+  }
+
+  public void testEmptyKeyArray() {
+    CompressedKeyArray keys = CompressedKeyArray.fromSortedKeys(new long[0]);
+    assertEquals(0, keys.size());
+    assertEquals(-1, keys.indexOf(5));
+    assertEquals(0, keys.getNearestIndex(5));
+    assertFalse(keys.cursor(0).hasKey());
+  }
+
+  public void testUnsortedKeys() {
+    try {
+      CompressedKeyArray.fromSortedKeys(new long[] {1, 3, 3});
+    } catch (IllegalArgumentException e) {
+      return;
+    }
+    fail("Expected IllegalArgumentException");
+  }
+
+  public void testUnsortedBlockBoundary() {
+    try {
+      // Each block of 2 keys is sorted, but the second block starts
+      // before the end of the first.
+      CompressedKeyArray.fromSortedKeys(new long[] {1, 5, 4, 6}, 2);
+    } catch (IllegalArgumentException e) {
+      return;
+    }
+    fail("Expected IllegalArgumentException");
+  }
+
+  public void testCompression() {
+    long uncompressedBytes = 8L * sparse.size();
+    long compressedBytes = CompressedKeyArray.fromSortedKeys(sparse.getKeyNums()).getSizeInBytes();
+    assertTrue(compressedBytes * 3 < uncompressedBytes);
+  }
+
+  public void testLookups() {
+    assertEquals(sparse.size(), compressed.size());
+    for (long keyNum = 0; keyNum < sparse.getMaxKeyNum(); keyNum += 7) {
+      assertEquals(sparse.keyNumToIndex(keyNum), compressed.keyNumToIndex(keyNum));
+      assertEquals(sparse.getNearestIndex(keyNum), compressed.getNearestIndex(keyNum));
+      assertEquals(sparse.get(keyNum), compressed.get(keyNum));
+    }
+    for (int i = 0; i < sparse.size(); i++) {
+      assertEquals(sparse.indexToKeyNum(i), compressed.indexToKeyNum(i));
+    }
+  }
+
+  public void testKeyValueIterators() {
+    assertIteratorEquals(sparse.keyValueIterator(), compressed.keyValueIterator());
+    assertIteratorEquals(sparse.keyValuePrefixIterator(new int[] {17}),
+        compressed.keyValuePrefixIterator(new int[] {17}));
+    assertIteratorEquals(sparse.keyValuePrefixIterator(new int[] {18, 3}),
+        compressed.keyValuePrefixIterator(new int[] {18, 3}));
+  }
+
+  public void testElementwiseProduct() {
+    assertTensorEquals(sparse.elementwiseProduct(other), compressed.elementwiseProduct(other));
+    assertTensorEquals(sparse.elementwiseProduct(other),
+        compressed.elementwiseProduct(CompressedSparseTensor.copyOf(other)));
+
+    DenseTensor dense = DenseTensor.copyOf(other);
+    assertTensorEquals(sparse.elementwiseProduct(dense), compressed.elementwiseProduct(dense));
+
+    SparseLogSpaceTensorAdapter logSpace = new SparseLogSpaceTensorAdapter(other);
+    assertTensorEquals(sparse.elementwiseProduct(logSpace),
+        compressed.elementwiseProduct(logSpace));
+
+    SparseTensor vector = SparseTensor.vector(0, dimSizes[0], new double[dimSizes[0]]);
+    assertTensorEquals(sparse.elementwiseProduct(vector), compressed.elementwiseProduct(vector));
+  }
+
+  public void testElementwiseAddition() {
+    assertTensorEquals(sparse.elementwiseAddition(other), compressed.elementwiseAddition(other));
+    assertTensorEquals(sparse.elementwiseAddition(other),
+        compressed.elementwiseAddition(CompressedSparseTensor.copyOf(other)));
+
+    DenseTensor dense = DenseTensor.copyOf(other);
+    assertTensorEquals(sparse.elementwiseAddition(dense), compressed.elementwiseAddition(dense));
+  }
+
+  public void testDelegatedOperations() {
+    assertTensorEquals(sparse.sumOutDimensions(Arrays.asList(2)),
+        compressed.sumOutDimensions(Arrays.asList(2)));
+    assertTensorEquals(sparse.maxOutDimensions(Arrays.asList(0)),
+        compressed.maxOutDimensions(Arrays.asList(0)));
+    assertEquals(sparse.getTrace(), compressed.getTrace(), TOLERANCE);
+    assertTrue(Arrays.equals(sparse.getLargestValues(10), compressed.getLargestValues(10)));
+  }
+
+  private static void assertIteratorEquals(Iterator<KeyValue> expected, Iterator<KeyValue> actual) {
+    while (expected.hasNext()) {
+      assertTrue(actual.hasNext());
+      KeyValue expectedKeyValue = expected.next();
+      KeyValue actualKeyValue = actual.next();
+      assertTrue(Arrays.equals(expectedKeyValue.getKey(), actualKeyValue.getKey()));
+      assertEquals(expectedKeyValue.getValue(), actualKeyValue.getValue());
+    }
+    assertFalse(actual.hasNext());
+  }
+
+  private static void assertTensorEquals(Tensor expected, Tensor actual) {
+    assertTrue(Arrays.equals(expected.getDimensionNumbers(), actual.getDimensionNumbers()));
+    for (long keyNum = 0; keyNum < expected.getMaxKeyNum(); keyNum++) {
+      assertEquals(expected.get(keyNum), actual.get(keyNum), TOLERANCE);
+    }
+  }
+}
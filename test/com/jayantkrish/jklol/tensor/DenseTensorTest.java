@@ -1,5 +1,6 @@
 package com.jayantkrish.jklol.tensor;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 import com.jayantkrish.jklol.tensor.TensorBase.KeyValue;
@@ -27,4 +28,32 @@ public class DenseTensorTest extends TensorTest {
     }
     assertEquals(6, keyCount);
   }
+
+  public void testMatrixInnerProductLarge() {
+    // Large enough to span several tiles and be computed in parallel.
+    DenseTensor first = DenseTensor.random(new int[] {0, 1}, new int[] {150, 130}, 0.0, 1.0);
+    DenseTensor second = DenseTensor.random(new int[] {1, 2}, new int[] {130, 300}, 0.0, 1.0);
+    Tensor expected = AbstractTensor.innerProduct(first, second, SparseTensorBuilder.getFactory());
+
+    assertMatrixEquals(expected, first.matrixInnerProduct(second));
+    assertMatrixEquals(expected, SparseTensor.copyOf(first).matrixInnerProduct(second));
+  }
+
+  public void testMatrixInnerProductLargeMiddleAligned() {
+    DenseTensor first = DenseTensor.random(new int[] {0, 1, 3}, new int[] {3, 70, 90}, 0.0, 1.0);
+    DenseTensor second = DenseTensor.random(new int[] {1, 2}, new int[] {70, 80}, 0.0, 1.0);
+    Tensor expected = AbstractTensor.innerProduct(first, second, SparseTensorBuilder.getFactory());
+
+    assertMatrixEquals(expected, first.matrixInnerProduct(second));
+    assertMatrixEquals(expected, SparseTensor.copyOf(first).matrixInnerProduct(second));
+  }
+
+  private static void assertMatrixEquals(Tensor expected, Tensor actual) {
+    assertTrue(Arrays.equals(expected.getDimensionNumbers(), actual.getDimensionNumbers()));
+    assertTrue(Arrays.equals(expected.getDimensionSizes(), actual.getDimensionSizes()));
+    for (int i = 0; i < actual.size(); i++) {
+      long keyNum = actual.indexToKeyNum(i);
+      assertEquals(expected.get(keyNum), actual.getByIndex(i), 1e-8);
+    }
+  }
 }
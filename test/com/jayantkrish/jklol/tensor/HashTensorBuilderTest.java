@@ -0,0 +1,95 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.Random;
+import java.util.Set;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Unit tests for {@link HashTensorBuilder}. Most test cases are in the
+ * superclass, {@link TensorBuilderTest}.
+ * 
+ * @author jayantk
+ */
+public class HashTensorBuilderTest extends TensorBuilderTest {
+
+  public HashTensorBuilderTest() {
+    super(HashTensorBuilder.getFactory());
+  }
+
+  public void testManyIncrements() {
+    HashTensorBuilder hashBuilder = new HashTensorBuilder(new int[] {0, 1},
+        new int[] {100, 100});
+    SparseTensorBuilder expected = new SparseTensorBuilder(new int[] {0, 1},
+        new int[] {100, 100});
+    for (int i = 0; i < 5000; i++) {
+      long keyNum = (i * 7919L) % 10000;
+      hashBuilder.incrementEntryByKeyNum(i % 3, keyNum);
+      expected.incrementEntryByKeyNum(i % 3, keyNum);
+    }
+
+    SparseTensor actualTensor = hashBuilder.build();
+    SparseTensor expectedTensor = expected.build();
+    assertEquals(expectedTensor.size(), actualTensor.size());
+    for (int i = 0; i < expectedTensor.size(); i++) {
+      assertEquals(expectedTensor.indexToKeyNum(i), actualTensor.indexToKeyNum(i));
+      assertEquals(expectedTensor.getByIndex(i), actualTensor.getByIndex(i));
+    }
+  }
+
+  public void testBuildIsNotAffectedByUpdates() {
+    HashTensorBuilder hashBuilder = new HashTensorBuilder(new int[] {0}, new int[] {10});
+    hashBuilder.incrementEntry(1.0, 3);
+    SparseTensor tensor = hashBuilder.build();
+    hashBuilder.incrementEntry(1.0, 3);
+    hashBuilder.incrementEntry(1.0, 4);
+
+    assertEquals(1, tensor.size());
+    assertEquals(1.0, tensor.getByDimKey(3));
+    assertEquals(2.0, hashBuilder.build().getByDimKey(3));
+    assertEquals(1.0, hashBuilder.build().getByDimKey(4));
+  }
+
+  public void testMultiplyByZero() {
+    HashTensorBuilder hashBuilder = new HashTensorBuilder(new int[] {0}, new int[] {100});
+    for (int i = 0; i < 50; i++) {
+      hashBuilder.incrementEntry(1.0, i);
+    }
+    hashBuilder.multiply(0.0);
+    assertEquals(0, hashBuilder.size());
+    assertEquals(0, hashBuilder.build().size());
+
+    hashBuilder.incrementEntry(2.0, 7);
+    hashBuilder.incrementEntry(1.0, 7);
+    assertEquals(1, hashBuilder.size());
+    assertEquals(3.0, hashBuilder.getByDimKey(7));
+    assertEquals(0.0, hashBuilder.getByDimKey(8));
+  }
+
+  public void testRepeatedMultiplyByZero() {
+    HashTensorBuilder hashBuilder = new HashTensorBuilder(new int[] {0}, new int[] {100000});
+    // The first round grows the table, and later rounds reuse it with
+    // fewer keys. Each round's keys must not be affected by slots left
+    // over from earlier rounds.
+    Set<Integer> allKeys = Sets.newHashSet();
+    Random random = new Random(0);
+    for (int round = 0; round < 20; round++) {
+      int numKeys = (round == 0) ? 5000 : 200;
+      Set<Integer> roundKeys = Sets.newHashSet();
+      for (int i = 0; i < numKeys; i++) {
+        int key = random.nextInt(20000);
+        if (roundKeys.add(key)) {
+          hashBuilder.incrementEntry(1.0, key);
+        }
+      }
+      allKeys.addAll(roundKeys);
+
+      assertEquals(roundKeys.size(), hashBuilder.size());
+      for (int key : allKeys) {
+        assertEquals(roundKeys.contains(key) ? 1.0 : 0.0, hashBuilder.getByDimKey(key));
+      }
+      hashBuilder.multiply(0.0);
+      assertEquals(0, hashBuilder.size());
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link MappedSparseTensor}.
+ * 
+ * @author jayantk
+ */
+public class MappedSparseTensorTest extends TensorTest {
+
+  public MappedSparseTensorTest() {
+    super(MappedSparseTensor.getFactory());
+  }
+
+  public void testWriteAndMap() throws IOException {
+    SparseTensor original = SparseTensor.copyOf(table);
+    File file = File.createTempFile("mapped", ".bin");
+    file.deleteOnExit();
+    MappedSparseTensor.write(original, file);
+
+    MappedSparseTensor mapped = MappedSparseTensor.map(file);
+    assertEquals(original, mapped.toSparseTensor());
+    for (int i = 0; i < original.size(); i++) {
+      long keyNum = original.indexToKeyNum(i);
+      assertEquals(i, mapped.keyNumToIndex(keyNum));
+      assertEquals(original.get(keyNum), mapped.get(keyNum));
+    }
+    assertEquals(-1, mapped.keyNumToIndex(mapped.dimKeyToKeyNum(new int[] {5, 4, 2})));
+  }
+
+  public void testEqualsAndHashCode() throws IOException {
+    SparseTensor original = SparseTensor.copyOf(table);
+    File file = File.createTempFile("mapped", ".bin");
+    file.deleteOnExit();
+    MappedSparseTensor.write(original, file);
+
+    MappedSparseTensor mapped = MappedSparseTensor.map(file);
+    assertEquals(original, mapped);
+    assertEquals(mapped, original);
+    assertEquals(original.hashCode(), mapped.hashCode());
+  }
+}
@@ -0,0 +1,37 @@
+package com.jayantkrish.jklol.tensor;
+
+/**
+ * Runs the {@link SparseTensor} unit tests with every operation split
+ * into several chunks, as they are for large tensors.
+ *
+ * @author jayantk
+ */
+public class ParallelSparseTensorTest extends TensorTest {
+
+  public ParallelSparseTensorTest() {
+    super(SparseTensorBuilder.getFactory());
+  }
+
+  @Override
+  public void setUp() {
+    TensorParallelism.setParallelThreshold(1);
+    TensorParallelism.setNumChunks(3);
+    super.setUp();
+  }
+
+  @Override
+  public void tearDown() {
+    TensorParallelism.setParallelThreshold(TensorParallelism.DEFAULT_PARALLEL_THRESHOLD);
+    TensorParallelism.setNumChunks(0);
+  }
+
+  public void testGetLargestValues() {
+    SparseTensor tensor = SparseTensor.vector(0, 8,
+        new double[] {1.0, 7.0, 3.0, 0.0, 6.0, 2.0, 8.0, 5.0});
+    long[] largest = tensor.getLargestValues(3);
+    assertEquals(3, largest.length);
+    assertEquals(6, largest[0]);
+    assertEquals(1, largest[1]);
+    assertEquals(4, largest[2]);
+  }
+}
@@ -37,7 +37,8 @@ public abstract class TensorBuilderTest extends TestCase {
 
   public TensorBuilderTest(TensorFactory tensorFactory) {
     this.tensorFactory = tensorFactory;
-    this.allTensorFactories = Lists.newArrayList(SparseTensorBuilder.getFactory(), DenseTensorBuilder.getFactory());
+    this.allTensorFactories = Lists.newArrayList(SparseTensorBuilder.getFactory(),
+        DenseTensorBuilder.getFactory(), HashTensorBuilder.getFactory());
   }
 
   public void setUp() {
@@ -650,6 +650,30 @@ public abstract class TensorTest extends TestCase {
     runReduceTest(table, Sets.<Integer>newHashSet(1, 3, 4));
   }
   
+  public void testProductReduceNone() {
+    runProductReduceTest(table, Sets.<Integer>newHashSet());
+  }
+
+  public void testProductReduceFirstDimension() {
+    runProductReduceTest(table, Sets.<Integer>newHashSet(1));
+  }
+
+  public void testProductReduceThirdDimension() {
+    runProductReduceTest(table, Sets.<Integer>newHashSet(4));
+  }
+
+  public void testProductReduceTwoDimensions() {
+    runProductReduceTest(table, Sets.<Integer>newHashSet(1, 4));
+  }
+
+  public void testProductReduceTwoDimensions2() {
+    runProductReduceTest(table, Sets.<Integer>newHashSet(3, 4));
+  }
+
+  public void testProductReduceAllDimensions() {
+    runProductReduceTest(table, Sets.<Integer>newHashSet(1, 3, 4));
+  }
+
   public void testRelabelDimensionsSameOrder() {
     Tensor actual = table.relabelDimensions(new int[] {5, 6, 7});
     assertTrue(Arrays.equals(new int[] {5, 6, 7}, actual.getDimensionNumbers()));
@@ -797,6 +821,40 @@ public abstract class TensorTest extends TestCase {
     }
   }
   
+  /**
+   * Helper method for testing productSumOut / productMaxOut against
+   * an elementwise product followed by a reduction.
+   */
+  private void runProductReduceTest(Tensor table, Set<Integer> dimsToEliminate) {
+    int[] dims = Ints.toArray(dimsToEliminate);
+    List<Tensor> others = Lists.newArrayList();
+    others.addAll(smallTables);
+    others.addAll(missingFirsts);
+    others.addAll(missingMiddles);
+    others.addAll(missingLasts);
+    for (Tensor other : others) {
+      Tensor product = simpleMultiply(table, other);
+
+      Tensor expected = simpleReduce(product, dimsToEliminate, ReduceType.SUM);
+      Tensor actual = table.productSumOut(other, dims);
+      assertTensorEquals(expected, actual, 10e-8);
+      assertTensorEquals(actual, expected, 10e-8);
+
+      Backpointers actualBackpointers = new Backpointers();
+      expected = simpleReduce(product, dimsToEliminate, ReduceType.MAX);
+      actual = table.productMaxOut(other, dims, actualBackpointers);
+      assertTensorEquals(expected, actual, 10e-8);
+      assertTensorEquals(actual, expected, 10e-8);
+
+      Iterator<KeyValue> iter = actual.keyValueIterator();
+      while (iter.hasNext()) {
+        KeyValue k = iter.next();
+        long oldKeyNum = actualBackpointers.getBackpointer(actual.dimKeyToKeyNum(k.getKey()));
+        assertEquals(actual.getByDimKey(k.getKey()), product.get(oldKeyNum), 0.0);
+      }
+    }
+  }
+
   /**
    * This is a simple version of sum/max out dimensions algorithm. 
    */
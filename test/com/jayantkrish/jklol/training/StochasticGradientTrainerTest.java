@@ -125,6 +125,89 @@ public class StochasticGradientTrainerTest extends TestCase {
 	      Double.MAX_VALUE, 0.1, new DefaultLogFunction()));
 	}
 
+	public void testTrainLazyL2() {
+	  runTest(StochasticGradientTrainer.createWithLazyL2Regularization(100, 3, 1, true, false,
+	      Double.MAX_VALUE, 1, new DefaultLogFunction()));
+	}
+
+	public void testTrainLazyL2Averaged() {
+	  runTest(StochasticGradientTrainer.createWithLazyL2Regularization(100, 3, 0.01, true, true,
+	      Double.MAX_VALUE, 1, new DefaultLogFunction()));
+	}
+
+	public void testLazyL2MatchesEager() {
+	  // This oracle does not report the parameters used by each example,
+	  // so all parameters are brought up to date on every iteration.
+	  // Clipping and a large penalty also exercise the rescaling of the
+	  // lazy parameters.
+	  for (boolean averaged : new boolean[] {false, true}) {
+	    SufficientStatistics eager = trainParameters(StochasticGradientTrainer.createWithL2Regularization(
+	        100, 3, 0.5, true, averaged, 2.0, 1.5, null));
+	    SufficientStatistics lazy = trainParameters(StochasticGradientTrainer.createWithLazyL2Regularization(
+	        100, 3, 0.5, true, averaged, 2.0, 1.5, null));
+	    lazy.increment(eager, -1.0);
+	    assertEquals(0.0, lazy.getL2Norm(), 1e-8);
+	  }
+	}
+
+	public void testLazyL2IdleFeature() {
+	  // Feature 3 only occurs in every fourth example, so it is idle for
+	  // several iterations before it is used again.
+	  List<LogisticExample> examples = Lists.newArrayList(
+	      new LogisticExample(1.0, 0, 3), new LogisticExample(-1.0, 0, 1),
+	      new LogisticExample(1.0, 1, 2), new LogisticExample(-1.0, 0, 2, 4));
+	  LogisticOracle oracle = new LogisticOracle(5);
+	  SparseLogisticOracle sparseOracle = new SparseLogisticOracle(5);
+	  for (boolean averaged : new boolean[] {false, true}) {
+	    SufficientStatistics eager = StochasticGradientTrainer.createWithL2Regularization(
+	        41, 1, 1.0, true, averaged, Double.MAX_VALUE, 0.3, null).train(
+	            oracle, oracle.initializeGradient(), examples);
+	    SufficientStatistics lazy = StochasticGradientTrainer.createWithLazyL2Regularization(
+	        41, 1, 1.0, true, averaged, Double.MAX_VALUE, 0.3, null).train(
+	            oracle, oracle.initializeGradient(), examples);
+	    SufficientStatistics sparseLazy = StochasticGradientTrainer.createWithLazyL2Regularization(
+	        41, 1, 1.0, true, averaged, Double.MAX_VALUE, 0.3, null).train(
+	            sparseOracle, sparseOracle.initializeGradient(), examples);
+
+	    assertTrue(eager.getL2Norm() > 0.1);
+	    lazy.increment(eager, -1.0);
+	    assertEquals(0.0, lazy.getL2Norm(), 1e-10);
+	    sparseLazy.increment(eager, -1.0);
+	    assertEquals(0.0, sparseLazy.getL2Norm(), 1e-10);
+	  }
+	}
+
+	private SufficientStatistics trainParameters(GradientOptimizer trainer) {
+	  LoglikelihoodOracle oracle = new LoglikelihoodOracle(logLinearModel, new JunctionTree());
+	  return trainer.train(oracle, oracle.initializeGradient(), trainingData);
+	}
+
+	public void testHogwild() {
+	  runTest(new HogwildGradientTrainer(300, 1, 3, 1.0, true, false, false, 0.0,
+	      new DefaultLogFunction()));
+	}
+
+	public void testHogwildAdagradL2() {
+	  runTest(new HogwildGradientTrainer(300, 1, 3, 0.1, true, false, true, 0.1,
+	      new DefaultLogFunction()));
+	}
+
+	public void testHogwildAveraged() {
+	  runTest(new HogwildGradientTrainer(300, 3, 3, 1.0, true, true, false, 0.01,
+	      new DefaultLogFunction()));
+	}
+
+	public void testHogwildMatchesStochasticGradient() {
+	  // With a single thread, Hogwild applies the same updates as
+	  // (unregularized) stochastic gradient descent.
+	  SufficientStatistics expected = trainParameters(StochasticGradientTrainer.createWithL2Regularization(
+	      50, 2, 0.5, false, false, Double.MAX_VALUE, 0.0, null));
+	  SufficientStatistics actual = trainParameters(new HogwildGradientTrainer(
+	      50, 2, 1, 0.5, false, false, false, 0.0, null));
+	  actual.increment(expected, -1.0);
+	  assertEquals(0.0, actual.getL2Norm(), 1e-8);
+	}
+
 	private void runTest(GradientOptimizer trainer) {
 	  		// These assignments should have positive weight for clique 1
 		Set<Assignment> clique1PositiveAssignments = new HashSet<Assignment>();
@@ -164,4 +247,70 @@ public class StochasticGradientTrainerTest extends TestCase {
 		  }
 		}
 	}
+
+	private static class LogisticExample {
+	  private final double label;
+	  private final int[] features;
+
+	  public LogisticExample(double label, int... features) {
+	    this.label = label;
+	    this.features = features;
+	  }
+	}
+
+	/**
+	 * Logistic regression with binary features. The gradient of each
+	 * example reads the weights of its features.
+	 */
+	private static class LogisticOracle implements GradientOracle<SufficientStatistics, LogisticExample> {
+	  private final VariableNumMap features;
+
+	  public LogisticOracle(int numFeatures) {
+	    features = VariableNumMap.singleton(0, "features",
+	        DiscreteVariable.sequence("features", numFeatures));
+	  }
+
+	  @Override
+	  public SufficientStatistics initializeGradient() {
+	    return TensorSufficientStatistics.createHashSparse(features);
+	  }
+
+	  @Override
+	  public SufficientStatistics instantiateModel(SufficientStatistics parameters) {
+	    return parameters;
+	  }
+
+	  @Override
+	  public double accumulateGradient(SufficientStatistics gradient,
+	      SufficientStatistics currentParameters, SufficientStatistics instantiatedModel,
+	      LogisticExample example, LogFunction log) {
+	    TensorBase weights = ((TensorSufficientStatistics) instantiatedModel).get();
+	    double score = 0.0;
+	    for (int feature : example.features) {
+	      score += weights.getByDimKey(feature);
+	    }
+	    double margin = example.label * score;
+	    double multiplier = example.label / (1.0 + Math.exp(margin));
+	    for (int feature : example.features) {
+	      ((TensorSufficientStatistics) gradient).incrementFeatureByIndex(multiplier, feature);
+	    }
+	    return -Math.log(1.0 + Math.exp(-margin));
+	  }
+	}
+
+	private static class SparseLogisticOracle extends LogisticOracle
+	    implements SparseGradientOracle<SufficientStatistics, LogisticExample> {
+
+	  public SparseLogisticOracle(int numFeatures) {
+	    super(numFeatures);
+	  }
+
+	  @Override
+	  public void accumulateUsedParameters(SufficientStatistics usedParameters,
+	      LogisticExample example) {
+	    for (int feature : example.features) {
+	      ((TensorSufficientStatistics) usedParameters).incrementFeatureByIndex(1.0, feature);
+	    }
+	  }
+	}
 }
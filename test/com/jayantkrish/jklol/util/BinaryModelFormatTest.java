@@ -0,0 +1,60 @@
+package com.jayantkrish.jklol.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.google.common.collect.Lists;
+import com.jayantkrish.jklol.tensor.CachedSparseTensor;
+import com.jayantkrish.jklol.tensor.DenseTensor;
+import com.jayantkrish.jklol.tensor.SparseTensor;
+import com.jayantkrish.jklol.tensor.Tensor;
+
+/**
+ * Unit tests for {@link BinaryModelFormat}.
+ * 
+ * @author jayantk
+ */
+public class BinaryModelFormatTest extends TestCase {
+
+  SparseTensor sparse;
+  DenseTensor dense;
+  CachedSparseTensor cached;
+  
+  public void setUp() {
+    sparse = new SparseTensor(new int[] {0, 2}, new int[] {3, 4},
+        new long[] {0, 5, 11}, new double[] {1.0, -2.0, 3.5});
+    dense = new DenseTensor(new int[] {1}, new int[] {3}, new double[] {0.0, 4.0, 5.0});
+    cached = CachedSparseTensor.cacheAllPermutations(sparse);
+  }
+
+  public void testRoundTrip() throws IOException {
+    List<Object> model = Lists.<Object>newArrayList(sparse, dense, cached, sparse, "label");
+    File file = File.createTempFile("model", ".bin");
+    file.deleteOnExit();
+    IoUtils.serializeObjectToBinaryFile(model, file.getPath());
+
+    assertTrue(BinaryModelFormat.isBinaryModel(file.getPath()));
+    List<?> read = IoUtils.readSerializedObject(file.getPath(), List.class);
+
+    assertEquals(5, read.size());
+    assertEquals(sparse, read.get(0));
+    assertEquals(dense, read.get(1));
+    assertTrue(read.get(2) instanceof CachedSparseTensor);
+    assertEquals(sparse.getByDimKey(2, 3), ((Tensor) read.get(2)).getByDimKey(2, 3));
+    // Shared references are preserved.
+    assertSame(read.get(0), read.get(3));
+    assertEquals("label", read.get(4));
+  }
+
+  public void testReadJavaSerialization() throws IOException {
+    File file = File.createTempFile("model", ".ser");
+    file.deleteOnExit();
+    IoUtils.serializeObjectToFile(sparse, file.getPath());
+
+    assertFalse(BinaryModelFormat.isBinaryModel(file.getPath()));
+    assertEquals(sparse, IoUtils.readSerializedObject(file.getPath(), SparseTensor.class));
+  }
+}
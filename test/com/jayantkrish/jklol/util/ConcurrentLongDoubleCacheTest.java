@@ -0,0 +1,97 @@
+package com.jayantkrish.jklol.util;
+
+import junit.framework.TestCase;
+
+public class ConcurrentLongDoubleCacheTest extends TestCase {
+
+  ConcurrentLongDoubleCache cache;
+
+  @Override
+  public void setUp() {
+    cache = new ConcurrentLongDoubleCache(16);
+  }
+
+  public void testGetPut() {
+    assertTrue(Double.isNaN(cache.get(3L)));
+    cache.put(3L, 0.5);
+    cache.put(-7L, 2.0);
+    assertEquals(0.5, cache.get(3L));
+    assertEquals(2.0, cache.get(-7L));
+
+    cache.put(3L, 0.25);
+    assertEquals(0.25, cache.get(3L));
+  }
+
+  public void testHitRate() {
+    cache.put(1L, 1.0);
+    cache.get(1L);
+    cache.get(1L);
+    cache.get(1L);
+    cache.get(2L);
+
+    assertEquals(3, cache.getNumHits());
+    assertEquals(1, cache.getNumMisses());
+    assertEquals(0.75, cache.getHitRate(), 1e-10);
+
+    cache.clear();
+    assertEquals(0, cache.getNumHits());
+    assertTrue(Double.isNaN(cache.get(1L)));
+  }
+
+  public void testEviction() {
+    int numKeys = 1000;
+    for (long i = 0; i < numKeys; i++) {
+      cache.put(i, i);
+    }
+
+    int numCached = 0;
+    for (long i = 0; i < numKeys; i++) {
+      double value = cache.get(i);
+      if (!Double.isNaN(value)) {
+        // Evicted keys must never return another key's value.
+        assertEquals((double) i, value);
+        numCached++;
+      }
+    }
+    assertTrue(numCached > 0);
+    assertTrue(numCached <= cache.getCapacity());
+  }
+
+  public void testConcurrentAccess() throws InterruptedException {
+    // Many threads write colliding keys. Each key's value is derived
+    // from the key, so a torn read would return the wrong value.
+    final int numKeys = 256;
+    final boolean[] failed = new boolean[1];
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final int offset = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 200000; i++) {
+            long key = (i * 31L + offset) % numKeys;
+            double value = cache.get(key);
+            if (!Double.isNaN(value) && value != key * 0.5) {
+              failed[0] = true;
+            }
+            cache.put(key, key * 0.5);
+            if (i % 10000 == 0) {
+              cache.clear();
+            }
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertFalse(failed[0]);
+  }
+
+  public void testCapacity() {
+    assertEquals(16, cache.getCapacity());
+    assertEquals(32, new ConcurrentLongDoubleCache(17).getCapacity());
+    assertEquals(4, new ConcurrentLongDoubleCache(1).getCapacity());
+  }
+}